@@ -48,6 +48,7 @@ import org.apache.ode.bpel.iapi.Endpoint;
 import org.apache.ode.bpel.iapi.EndpointReference;
 import org.apache.ode.bpel.iapi.PartnerRoleChannel;
 import org.apache.ode.bpel.iapi.ProcessConf;
+import org.apache.ode.utils.concurrent.ExecutorRegistry;
 import org.apache.ode.utils.wsdl.WsdlUtils;
 
 /**
@@ -119,6 +120,7 @@ public class BindingContextImpl implements BindingContext {
     protected ODEService createService(ProcessConf pconf, QName serviceName, String portName) throws AxisFault {
         AxisService axisService = ODEAxisService.createService(_server._configContext.getAxisConfiguration(), pconf, serviceName, portName);
         ODEService odeService = new ODEService(axisService, pconf, serviceName, portName, _server._bpelServer, _server._txMgr);
+        odeService.setBackPressure(_server.getBackPressure());
 
         destroyService(serviceName, portName);
 
@@ -223,10 +225,10 @@ public class BindingContextImpl implements BindingContext {
         try {
             if (WsdlUtils.useHTTPBinding(def, serviceName, portName)) {
                 if (__log.isDebugEnabled()) __log.debug("Creating HTTP-bound external service " + serviceName);
-                extService = new HttpExternalService(pconf, serviceName, portName, _server._executorService, _server._scheduler, _server._bpelServer, _server.httpConnectionManager, _server._clusterUrlTransformer);
+                extService = new HttpExternalService(pconf, serviceName, portName, _server._executors.get(ExecutorRegistry.OUTBOUND), _server._scheduler, _server._bpelServer, _server.httpConnectionManager, _server._clusterUrlTransformer, _server._endpointHealth);
             } else if (WsdlUtils.useSOAPBinding(def, serviceName, portName)) {
                 if (__log.isDebugEnabled()) __log.debug("Creating SOAP-bound external service " + serviceName);
-                extService = new SoapExternalService(pconf, serviceName, portName, _server._executorService, _server._configContext, _server._scheduler, _server._bpelServer, _server.httpConnectionManager, _server._clusterUrlTransformer);
+                extService = new SoapExternalService(pconf, serviceName, portName, _server._executors.get(ExecutorRegistry.OUTBOUND), _server._configContext, _server._scheduler, _server._bpelServer, _server.httpConnectionManager, _server._clusterUrlTransformer, _server._endpointHealth);
             }
         } catch (Exception ex) {
             __log.error("Could not create external service.", ex);
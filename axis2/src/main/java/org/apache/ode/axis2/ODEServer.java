@@ -23,14 +23,12 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 import java.util.StringTokenizer;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -58,6 +56,7 @@ import org.apache.ode.axis2.deploy.DeploymentPoller;
 import org.apache.ode.axis2.service.DeploymentWebService;
 import org.apache.ode.axis2.service.ManagementService;
 import org.apache.ode.axis2.util.ClusterUrlTransformer;
+import org.apache.ode.axis2.util.EndpointHealthRegistry;
 import org.apache.ode.bpel.connector.BpelServerConnector;
 import org.apache.ode.bpel.dao.BpelDAOConnectionFactory;
 import org.apache.ode.bpel.engine.BpelServerImpl;
@@ -78,6 +77,10 @@ import org.apache.ode.il.config.OdeConfigProperties;
 import org.apache.ode.il.dbutil.Database;
 import org.apache.ode.scheduler.simple.JdbcDelegate;
 import org.apache.ode.scheduler.simple.SimpleScheduler;
+import org.apache.ode.utils.concurrent.BackPressure;
+import org.apache.ode.utils.concurrent.BoundedExecutor;
+import org.apache.ode.utils.concurrent.ExecutorRegistry;
+import org.apache.ode.utils.metrics.MetricsRegistry;
 import org.apache.ode.store.ProcessStoreImpl;
 import org.apache.ode.utils.GUID;
 import org.apache.ode.utils.fs.TempFileManager;
@@ -112,12 +115,18 @@ public class ODEServer {
 
     protected BpelDAOConnectionFactory _daoCF;
 
-    protected ExecutorService _executorService;
+    protected ExecutorRegistry _executors;
+
+    protected EndpointHealthRegistry _endpointHealth;
+
+    protected BackPressure _backPressure;
 
     protected Scheduler _scheduler;
 
     protected CronScheduler _cronScheduler;
 
+    protected MetricsRegistry _metrics;
+
     protected Database _db;
 
     private DeploymentPoller _poller;
@@ -339,6 +348,15 @@ public class ODEServer {
                     __log.debug("Scheduler couldn't be shutdown.", ex);
                 }
 
+            if (_endpointHealth != null) {
+                _endpointHealth.unregister();
+                _endpointHealth = null;
+            }
+            if (_metrics != null) {
+                _metrics.unregister();
+                _metrics = null;
+            }
+
             if (_store != null)
                 try {
                     _store.shutdown();
@@ -405,9 +423,9 @@ public class ODEServer {
                 __log.error("Unable to cleanup temp files.", t);
             }
 
-            if (_executorService != null) {
-                _executorService.shutdownNow();
-                _executorService = null;
+            if (_executors != null) {
+                _executors.shutdownNow();
+                _executors = null;
             }
 
             __log.info(__msgs.msgOdeShutdownCompleted());
@@ -475,6 +493,10 @@ public class ODEServer {
     protected void initProcessStore(EndpointReferenceContext eprContext) {
         _store = createProcessStore(eprContext, _db.getDataSource());
         _store.registerListener(new ProcessStoreListenerImpl());
+        if (_daoCF instanceof ProcessStoreListener) {
+            // drops the cached metadata of redeployed processes
+            _store.registerListener((ProcessStoreListener) _daoCF);
+        }
         _store.setDeployDir(
                 _odeConfig.getDeployDir() != null ?
                     new File(_odeConfig.getDeployDir()) :
@@ -489,7 +511,7 @@ public class ODEServer {
     protected Scheduler createScheduler() {
         SimpleScheduler scheduler = new SimpleScheduler(new GUID().toString(),
                 new JdbcDelegate(_db.getDataSource()), _odeConfig.getProperties());
-        scheduler.setExecutorService(_executorService);
+        scheduler.setExecutorService(_executors.get(ExecutorRegistry.JOBS));
         scheduler.setTransactionManager(_txMgr);
         return scheduler;
     }
@@ -498,20 +520,29 @@ public class ODEServer {
         if (__log.isDebugEnabled()) {
             __log.debug("ODE initializing");
         }
-        ThreadFactory threadFactory = new ThreadFactory() {
-            int threadNumber = 0;
-            public Thread newThread(Runnable r) {
-                threadNumber += 1;
-                Thread t = new Thread(r, "ODEServer-"+threadNumber);
-                t.setDaemon(true);
-                return t;
-            }
-        };
-
-        if (_odeConfig.getThreadPoolMaxSize() == 0)
-            _executorService = Executors.newCachedThreadPool(threadFactory);
-        else
-            _executorService = Executors.newFixedThreadPool(_odeConfig.getThreadPoolMaxSize(), threadFactory);
+        _metrics = new MetricsRegistry(_odeConfig.isMetricsEnabled());
+        if (_metrics.isEnabled()) {
+            _metrics.register(ManagementFactory.getPlatformMBeanServer());
+        }
+
+        // separate pools, so that a slow partner can't hold up the jobs and a job backlog can't hold up the replies
+        _executors = new ExecutorRegistry(_metrics);
+        _odeConfig.createExecutor(_executors, ExecutorRegistry.JOBS, 50, 1000, BoundedExecutor.RejectionPolicy.BLOCK);
+        _odeConfig.createExecutor(_executors, ExecutorRegistry.OUTBOUND, 50, 500, BoundedExecutor.RejectionPolicy.ABORT);
+        _odeConfig.createExecutor(_executors, ExecutorRegistry.MANAGEMENT, 5, 200, BoundedExecutor.RejectionPolicy.ABORT);
+        _odeConfig.createExecutor(_executors, ExecutorRegistry.CRON, 5, 100, BoundedExecutor.RejectionPolicy.BLOCK);
+
+        _endpointHealth = new EndpointHealthRegistry();
+        _endpointHealth.setEnabled(_odeConfig.isEndpointBreakerEnabled());
+        _endpointHealth.setMaxEndpoints(_odeConfig.getEndpointBreakerMaxEndpoints());
+        _endpointHealth.setWindowSize(_odeConfig.getEndpointBreakerWindow());
+        _endpointHealth.setMinCalls(_odeConfig.getEndpointBreakerMinCalls());
+        _endpointHealth.setFailureRate(_odeConfig.getEndpointBreakerFailureRate());
+        _endpointHealth.setOpenInterval(_odeConfig.getEndpointBreakerOpenInterval());
+        _endpointHealth.setAdaptiveTimeout(_odeConfig.isEndpointTimeoutAdaptive());
+        _endpointHealth.setTimeoutMin(_odeConfig.getEndpointTimeoutMin());
+        _endpointHealth.setLatencyFactor(_odeConfig.getEndpointTimeoutLatencyFactor());
+        _endpointHealth.register(ManagementFactory.getPlatformMBeanServer());
 
         {
             List<String> targets = new ArrayList<String>();
@@ -522,18 +553,45 @@ public class ODEServer {
         _scheduler = createScheduler();
         _scheduler.setJobProcessor(_bpelServer);
 
+        if (_metrics.isEnabled()) {
+            _bpelServer.setMetricsRegistry(_metrics);
+            if (_scheduler instanceof SimpleScheduler)
+                ((SimpleScheduler) _scheduler).setMetricsRegistry(_metrics);
+        }
+
+        // turn requests away at the door rather than letting the scheduler's backlog grow
+        _backPressure = _odeConfig.createBackPressure("http", _executors);
+        if (_backPressure != null) {
+            if (_scheduler instanceof SimpleScheduler)
+                ((SimpleScheduler) _scheduler).addBackPressureLimits(_backPressure,
+                        _odeConfig.getBackPressureSchedulerRatio(), _odeConfig.getBackPressureTransactionLatency());
+            _backPressure.registerMetrics(_metrics);
+        }
+
         BpelServerImpl.PolledRunnableProcessor polledRunnableProcessor = new BpelServerImpl.PolledRunnableProcessor();
-        polledRunnableProcessor.setPolledRunnableExecutorService(_executorService);
+        polledRunnableProcessor.setPolledRunnableExecutorService(_executors.get(ExecutorRegistry.MANAGEMENT));
         polledRunnableProcessor.setContexts(_bpelServer.getContexts());
         _scheduler.setPolledRunnableProcesser(polledRunnableProcessor);
 
         _cronScheduler = new CronScheduler();
-        _cronScheduler.setScheduledTaskExec(_executorService);
         _cronScheduler.setContexts(_bpelServer.getContexts());
+        _cronScheduler.setScheduledTaskExec(_executors.get(ExecutorRegistry.CRON));
+        _cronScheduler.setMisfireThreshold(_odeConfig.getCronMisfireThreshold());
+        try {
+            _cronScheduler.setMisfirePolicy(CronScheduler.MisfirePolicy.valueOf(_odeConfig.getCronMisfirePolicy()));
+        } catch (IllegalArgumentException e) {
+            __log.warn("Unknown cron misfire policy " + _odeConfig.getCronMisfirePolicy() + ", using "
+                    + CronScheduler.MisfirePolicy.FIRE_NOW + " instead.");
+        }
+        _cronScheduler.registerMetrics(_metrics);
         _bpelServer.setCronScheduler(_cronScheduler);
+        _bpelServer.setManagementExecutor(_executors.get(ExecutorRegistry.MANAGEMENT));
 
         _bpelServer.setDaoConnectionFactory(_daoCF);
-        _bpelServer.setInMemDaoConnectionFactory(new BpelDAOConnectionFactoryImpl(_scheduler, _odeConfig.getInMemMexTtl()));
+        BpelDAOConnectionFactoryImpl inMemCF = new BpelDAOConnectionFactoryImpl(_scheduler, _odeConfig.getInMemMexTtl());
+        inMemCF.setSpoolThreshold(_odeConfig.getInMemSpoolThreshold());
+        inMemCF.setInstanceDataBudget(_odeConfig.getInMemInstanceDataBudget());
+        _bpelServer.setInMemDaoConnectionFactory(inMemCF);
         _bpelServer.setEndpointReferenceContext(eprContext);
         _bpelServer.setMessageExchangeContext(new MessageExchangeContextImpl(this));
         _bpelServer.setBindingContext(new BindingContextImpl(this));
@@ -548,6 +606,7 @@ public class ODEServer {
         _bpelServer.setConfigProperties(_odeConfig.getProperties());
         _bpelServer.init();
         _bpelServer.setInstanceThrottledMaximumCount(_odeConfig.getInstanceThrottledMaximumCount());
+        _bpelServer.setInstanceCountReconcileInterval(_odeConfig.getInstanceCountReconcileInterval());
         _bpelServer.setProcessThrottledMaximumCount(_odeConfig.getProcessThrottledMaximumCount());
         _bpelServer.setProcessThrottledMaximumSize(_odeConfig.getProcessThrottledMaximumSize());
         _bpelServer.setHydrationLazy(_odeConfig.isHydrationLazy());
@@ -593,6 +652,13 @@ public class ODEServer {
         return _store;
     }
 
+    /**
+     * @return admission control of the inbound services, null if disabled
+     */
+    public BackPressure getBackPressure() {
+        return _backPressure;
+    }
+
     public BpelServerImpl getBpelServer() {
         return _bpelServer;
     }
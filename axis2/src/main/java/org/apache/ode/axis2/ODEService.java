@@ -23,6 +23,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.Map;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.transaction.TransactionManager;
 import javax.wsdl.Definition;
 import javax.wsdl.Operation;
@@ -38,10 +39,12 @@ import org.apache.axiom.soap.SOAPEnvelope;
 import org.apache.axiom.soap.SOAPFactory;
 import org.apache.axiom.soap.SOAPFault;
 import org.apache.axis2.AxisFault;
+import org.apache.axis2.Constants;
 import org.apache.axis2.client.Options;
 import org.apache.axis2.context.MessageContext;
 import org.apache.axis2.description.AxisService;
 import org.apache.axis2.description.TwoChannelAxisOperation;
+import org.apache.axis2.transport.http.HTTPConstants;
 import org.apache.axis2.transport.jms.JMSConstants;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -58,6 +61,7 @@ import org.apache.ode.bpel.iapi.MyRoleMessageExchange;
 import org.apache.ode.bpel.iapi.ProcessConf;
 import org.apache.ode.utils.DOMUtils;
 import org.apache.ode.utils.GUID;
+import org.apache.ode.utils.concurrent.BackPressure;
 import org.apache.ode.utils.Namespaces;
 import org.apache.ode.utils.Properties;
 import org.w3c.dom.Document;
@@ -83,6 +87,7 @@ public class ODEService {
     private String _portName;
     private WSAEndpoint _serviceRef;
     private SoapMessageConverter _converter;
+    private BackPressure _backPressure;
 
     public ODEService(AxisService axisService, ProcessConf pconf, QName serviceName, String portName, BpelServer server,
                       TransactionManager txManager) throws AxisFault {
@@ -98,12 +103,33 @@ public class ODEService {
 
     }
 
+    /**
+     * Turns a request away while the server is saturated, answering 503 with a
+     * Retry-After header when it came in over HTTP.
+     */
+    private void rejectBusy(MessageContext msgContext) throws AxisFault {
+        HttpServletResponse response = (HttpServletResponse) msgContext.getProperty(HTTPConstants.MC_HTTP_SERVLETRESPONSE);
+        if (response != null) {
+            response.setHeader("Retry-After", String.valueOf(_backPressure.getRetryAfter()));
+        }
+        msgContext.setProperty(Constants.HTTP_RESPONSE_STATE, String.valueOf(HttpServletResponse.SC_SERVICE_UNAVAILABLE));
+        if (__log.isDebugEnabled()) __log.debug("Server busy, rejecting request for service " + _serviceName);
+        throw new OdeFault("Server busy, retry in " + _backPressure.getRetryAfter() + " seconds.");
+    }
+
     public String getName() {
         return _axisService.getName();
     }
 
+    public void setBackPressure(BackPressure backPressure) {
+        _backPressure = backPressure;
+    }
+
     public void onAxisMessageExchange(MessageContext msgContext, MessageContext outMsgContext, SOAPFactory soapFactory)
             throws AxisFault {
+        if (_backPressure != null && !_backPressure.admit()) {
+            rejectBusy(msgContext);
+        }
         boolean success = true;
         MyRoleMessageExchange odeMex = null;
         Future responseFuture = null;
@@ -114,7 +140,7 @@ public class ODEService {
             _server.acquireTransactionLocks();
 
             // Creating message exchange
-            String messageId = new GUID().toString();
+            String messageId = GUID.nextId();
             odeMex = _server.getEngine().createMessageExchange("" + messageId, _serviceName,
                     msgContext.getAxisOperation().getName().getLocalPart());
             __log.debug("ODE routed to portType " + odeMex.getPortType() + " operation " + odeMex.getOperation() + " from service " + _serviceName);
@@ -38,6 +38,8 @@ import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.neethi.Policy;
 import org.apache.neethi.PolicyEngine;
 import org.apache.ode.axis2.util.ClusterUrlTransformer;
+import org.apache.ode.axis2.util.EndpointHealth;
+import org.apache.ode.axis2.util.EndpointHealthRegistry;
 import org.apache.ode.axis2.util.SoapMessageConverter;
 import org.apache.ode.axis2.util.AxisUtils;
 import org.apache.ode.bpel.engine.BpelServerImpl;
@@ -71,6 +73,7 @@ import java.net.MalformedURLException;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.lang.reflect.Field;
 
 /**
@@ -104,9 +107,11 @@ public class SoapExternalService implements ExternalService {
     private ProcessConf _pconf;
     private ClusterUrlTransformer _clusterUrlTransformer;
     private String endpointUrl;
+    private EndpointHealthRegistry _endpointHealth;
 
     public SoapExternalService(ProcessConf pconf, QName serviceName, String portName, ExecutorService executorService,
-                               ConfigurationContext configContext, Scheduler sched, BpelServer server, MultiThreadedHttpConnectionManager connManager, ClusterUrlTransformer clusterUrlTransformer) throws AxisFault {
+                               ConfigurationContext configContext, Scheduler sched, BpelServer server, MultiThreadedHttpConnectionManager connManager, ClusterUrlTransformer clusterUrlTransformer,
+                               EndpointHealthRegistry endpointHealth) throws AxisFault {
         _definition = pconf.getDefinitionForService(serviceName);
         _serviceName = serviceName;
         _portName = portName;
@@ -118,6 +123,7 @@ public class SoapExternalService implements ExternalService {
         _server = server;
         _pconf = pconf;
         _clusterUrlTransformer = clusterUrlTransformer;
+        _endpointHealth = endpointHealth;
 
         File fileToWatch = new File(_pconf.getBaseURI().resolve(_serviceName.getLocalPart() + ".axis2"));
         _axisServiceWatchDog = WatchDog.watchFile(fileToWatch, new ServiceFileObserver(fileToWatch));
@@ -171,6 +177,15 @@ public class SoapExternalService implements ExternalService {
 
             axisEPR.setAddress(_clusterUrlTransformer.rewriteOutgoingClusterURL(axisEPR.getAddress()));
 
+            // fail fast rather than tie up a thread and a connection on an endpoint that is down
+            final EndpointHealth health = _endpointHealth == null ? null : _endpointHealth.get(axisEPR.getAddress());
+            if (health != null && !health.allowRequest()) {
+                String errmsg = "Circuit breaker open for endpoint " + health.getEndpoint() + ", message not sent for ODE mex " + odeMex;
+                __log.warn(errmsg);
+                odeMex.replyWithFailure(FailureType.COMMUNICATION_ERROR, errmsg, null);
+                return;
+            }
+
             if (__log.isDebugEnabled()) {
                 __log.debug("Axis2 sending message to " + axisEPR.getAddress() + " using MEX " + odeMex);
                 __log.debug("Message: " + soapEnv);
@@ -187,6 +202,13 @@ public class SoapExternalService implements ExternalService {
 
             operationOptions.setAction(mctx.getSoapAction());
             operationOptions.setTo(axisEPR);
+            if (health != null && _endpointHealth.isAdaptiveTimeout()) {
+                Object soTimeout = operationOptions.getProperty(HTTPConstants.SO_TIMEOUT);
+                long configured = soTimeout instanceof Integer ? (Integer) soTimeout : operationOptions.getTimeOutInMilliSeconds();
+                int timeout = (int) health.getTimeout(configured);
+                operationOptions.setTimeOutInMilliSeconds(timeout);
+                operationOptions.setProperty(HTTPConstants.SO_TIMEOUT, timeout);
+            }
 
             if (isTwoWay) {
                 final String mexId = odeMex.getMessageExchangeId();
@@ -200,34 +222,38 @@ public class SoapExternalService implements ExternalService {
 
                         // The invocation must happen in a separate thread, holding on the afterCompletion
                         // blocks other operations that could have been listed there as well.
-                        _executorService.submit(new Callable<Object>() {
-                            public Object call() throws Exception {
-                                try {
-                                    operationClient.execute(true);
-                                    MessageContext response = operationClient.getMessageContext(WSDLConstants.MESSAGE_LABEL_IN_VALUE);
-                                    MessageContext flt = operationClient.getMessageContext(WSDLConstants.MESSAGE_LABEL_FAULT_VALUE);
-                                    if (response != null && __log.isDebugEnabled())
-                                        __log.debug("Service response:\n" + response.getEnvelope().toString());
-
-                                    if (flt != null) {
-                                        reply(mexId, operation, flt, true);
-                                    } else {
-                                        reply(mexId, operation, response, response.isFault());
-                                    }
-                                } catch (Throwable t) {
-                                    String errmsg = "Error sending message (mex=" + odeMex + "): " + t.getMessage();
-                                    __log.error(errmsg, t);
-                                    replyWithFailure(mexId, MessageExchange.FailureType.COMMUNICATION_ERROR, errmsg);
-                                } finally {
-                                    // release the HTTP connection, we don't need it anymore
-                                    TransportOutDescription out = mctx.getTransportOut();
-                                    if (out != null && out.getSender() != null) {
-                                        out.getSender().cleanup(mctx);
+                        try {
+                            _executorService.submit(new Callable<Object>() {
+                                public Object call() throws Exception {
+                                    try {
+                                        execute(operationClient, health);
+                                        MessageContext response = operationClient.getMessageContext(WSDLConstants.MESSAGE_LABEL_IN_VALUE);
+                                        MessageContext flt = operationClient.getMessageContext(WSDLConstants.MESSAGE_LABEL_FAULT_VALUE);
+                                        if (response != null && __log.isDebugEnabled())
+                                            __log.debug("Service response:\n" + response.getEnvelope().toString());
+
+                                        if (flt != null) {
+                                            reply(mexId, operation, flt, true);
+                                        } else {
+                                            reply(mexId, operation, response, response.isFault());
+                                        }
+                                    } catch (Throwable t) {
+                                        String errmsg = "Error sending message (mex=" + odeMex + "): " + t.getMessage();
+                                        __log.error(errmsg, t);
+                                        replyWithFailure(mexId, MessageExchange.FailureType.COMMUNICATION_ERROR, errmsg);
+                                    } finally {
+                                        // release the HTTP connection, we don't need it anymore
+                                        TransportOutDescription out = mctx.getTransportOut();
+                                        if (out != null && out.getSender() != null) {
+                                            out.getSender().cleanup(mctx);
+                                        }
                                     }
+                                    return null;
                                 }
-                                return null;
-                            }
-                        });
+                            });
+                        } catch (RejectedExecutionException e) {
+                            replyWithRejection(mexId, e);
+                        }
                     }
 
                     public void beforeCompletion() {
@@ -236,23 +262,29 @@ public class SoapExternalService implements ExternalService {
                 odeMex.replyAsync();
 
             } else { /** one-way case * */
-                _executorService.submit(new Callable<Object>() {
-                    public Object call() throws Exception {
-                        try {
-                            operationClient.execute(true);
-                        } catch (Throwable t) {
-                            String errmsg = "Error sending message (mex=" + odeMex + "): " + t.getMessage();
-                            __log.error(errmsg, t);
-                        } finally {
-                            // release the HTTP connection, we don't need it anymore
-                            TransportOutDescription out = mctx.getTransportOut();
-                            if (out != null && out.getSender() != null) {
-                                out.getSender().cleanup(mctx);
+                try {
+                    _executorService.submit(new Callable<Object>() {
+                        public Object call() throws Exception {
+                            try {
+                                execute(operationClient, health);
+                            } catch (Throwable t) {
+                                String errmsg = "Error sending message (mex=" + odeMex + "): " + t.getMessage();
+                                __log.error(errmsg, t);
+                            } finally {
+                                // release the HTTP connection, we don't need it anymore
+                                TransportOutDescription out = mctx.getTransportOut();
+                                if (out != null && out.getSender() != null) {
+                                    out.getSender().cleanup(mctx);
+                                }
                             }
+                            return null;
                         }
-                        return null;
-                    }
-                });
+                    });
+                } catch (RejectedExecutionException e) {
+                    // still in the invoking transaction, so the mex can be failed right here
+                    odeMex.replyWithFailure(FailureType.COMMUNICATION_ERROR, rejected(odeMex.getMessageExchangeId(), e), null);
+                    return;
+                }
                 odeMex.replyOneWayOk();
             }
         } catch (Throwable t) {
@@ -262,6 +294,24 @@ public class SoapExternalService implements ExternalService {
         }
     }
 
+    /**
+     * Sends the message and records how the endpoint coped with it. SOAP faults are answers,
+     * so only transport errors count as failures.
+     */
+    private static void execute(OperationClient operationClient, EndpointHealth health) throws AxisFault {
+        long start = System.currentTimeMillis();
+        try {
+            operationClient.execute(true);
+        } catch (AxisFault e) {
+            if (health != null) health.recordFailure(System.currentTimeMillis() - start);
+            throw e;
+        } catch (RuntimeException e) {
+            if (health != null) health.recordFailure(System.currentTimeMillis() - start);
+            throw e;
+        }
+        if (health != null) health.recordSuccess(System.currentTimeMillis() - start);
+    }
+
     private ServiceClient getServiceClient() throws AxisFault {
         try {
             // call manually the check procedure
@@ -459,6 +509,35 @@ public class SoapExternalService implements ExternalService {
         }
     }
 
+    /**
+     * Fails a two-way mex whose invocation the outbound executor refused. We're past the commit
+     * of the invoking transaction at that point, so the reply gets a transaction of its own.
+     */
+    private void replyWithRejection(final String odeMexId, RejectedExecutionException e) {
+        final String errmsg = rejected(odeMexId, e);
+        try {
+            _sched.execIsolatedTransaction(new Callable<Void>() {
+                public Void call() throws Exception {
+                    PartnerRoleMessageExchange odeMex = (PartnerRoleMessageExchange) _server.getEngine().getMessageExchange(odeMexId);
+                    odeMex.replyWithFailure(FailureType.COMMUNICATION_ERROR, errmsg, null);
+                    return null;
+                }
+            });
+        } catch (Exception ex) {
+            __log.error("Error executing replyWithFailure transaction; reply will be lost.", ex);
+        }
+    }
+
+    /**
+     * Logs an invocation the outbound executor refused.
+     * @return the failure description for the mex
+     */
+    private static String rejected(String odeMexId, RejectedExecutionException e) {
+        String errmsg = "Outbound executor saturated, message not sent (mex=" + odeMexId + ")";
+        __log.warn(errmsg, e);
+        return errmsg;
+    }
+
     private void reply(final String odeMexId, final Operation operation, final MessageContext reply, final boolean isFault) {
         // ODE MEX needs to be invoked in a TX.
         try {
@@ -52,7 +52,9 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Polls a directory for the deployment of a new deployment unit.
@@ -64,6 +66,15 @@ public class DeploymentPoller {
     /** The polling interval. */
     private static final long POLL_TIME = 3000;
 
+    /**
+     * Number of polls after which the deploy directory is scanned even if it looks unchanged. Edits to the
+     * deploy.xml of a deployed unit are picked up by scans, so within this many polls.
+     */
+    private static final int FULL_SCAN_POLLS = 20;
+
+    /** Coarsest timestamp resolution of the supported file systems. */
+    private static final long TIMESTAMP_RESOLUTION = 2000;
+
     private File _deployDir;
 
     private PollingThread _poller;
@@ -79,10 +90,18 @@ public class DeploymentPoller {
     @SuppressWarnings("unchecked")
     private WatchDog _systemCronConfigWatchDog;
 
-    /** Filter accepting directories containing a ode dd file. */
-    private static final FileFilter _fileFilter = new FileFilter() {
+    /** Modification time of the deploy directory when it was last scanned. */
+    private long _lastScanModified = -1;
+
+    private int _pollsSinceScan;
+
+    /** Directories the last scan skipped for lack of a deploy.xml, which may still be copied in. */
+    private final Set<File> _incompleteUnits = new HashSet<File>();
+
+    /** Filter accepting directories. */
+    private static final FileFilter _dirFilter = new FileFilter() {
         public boolean accept(File path) {
-            return new File(path, "deploy.xml").exists();
+            return path.isDirectory();
         }
     };
 
@@ -124,12 +143,46 @@ public class DeploymentPoller {
     }
 
     /**
-     * Scan the directory for new (or removed) files (called mainly from {@link PollingThread}) and calls whoever is in charge of
-     * the actual deployment (or undeployment).
+     * Checks for new (or removed) deployment units (called mainly from {@link PollingThread}). The deploy directory
+     * is only listed, and the deploy.xml of deployed units only checked, when its modification time says that entries
+     * were added or removed or every {@link #FULL_SCAN_POLLS} polls, so that the cost of an idle poll doesn't grow
+     * with the number of deployed units.
      */
     @SuppressWarnings("unchecked")
     private void check() {
-        File[] files = _deployDir.listFiles(_fileFilter);
+        long modified = _deployDir.lastModified();
+        if (modified != _lastScanModified || hasCompletedUnits() || ++_pollsSinceScan >= FULL_SCAN_POLLS
+                // a change made within the timestamp resolution of the last scan may not show
+                || System.currentTimeMillis() - modified < TIMESTAMP_RESOLUTION) {
+            _lastScanModified = modified;
+            _pollsSinceScan = 0;
+            scan();
+        }
+
+        checkSystemCronConfigWatchDog(_systemCronConfigWatchDog);
+    }
+
+    /**
+     * Adding a deploy.xml to a unit doesn't touch the deploy directory, so the units skipped by the last
+     * scan are looked at on their own rather than rescanning everything while they're around.
+     */
+    private boolean hasCompletedUnits() {
+        for (File unit : _incompleteUnits) {
+            if (new File(unit, "deploy.xml").exists()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Scan the directory for new (or removed) files and calls whoever is in charge of the actual deployment
+     * (or undeployment).
+     */
+    @SuppressWarnings("unchecked")
+    private void scan() {
+        File[] files = _deployDir.listFiles(_dirFilter);
+        _incompleteUnits.clear();
 
         // Checking for new deployment directories
         if (isDeploymentFromODEFileSystemAllowed() && files != null) {
@@ -138,10 +191,12 @@ public class DeploymentPoller {
                 File deployedMarker = new File(_deployDir, file.getName() + ".deployed");
 
                 if (!deployXml.exists()) {
-                    // Skip if deploy.xml is abset
+                    // Skip if deploy.xml is absent, watching for it to show up
+                    _incompleteUnits.add(file);
                     if (__log.isDebugEnabled()) {
                         __log.debug("Not deploying " + file + " (missing deploy.xml)");
                     }
+                    continue;
                 }
 
                 WatchDog ddWatchDog = ensureDeployXmlWatchDog(file, deployXml);
@@ -196,8 +251,6 @@ public class DeploymentPoller {
                     __log.info("Successfully undeployed " + pkg);
             }
         }
-
-        checkSystemCronConfigWatchDog(_systemCronConfigWatchDog);
     }
 
     @SuppressWarnings("unchecked")
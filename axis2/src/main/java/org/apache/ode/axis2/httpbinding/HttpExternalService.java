@@ -23,6 +23,7 @@ import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.URIException;
+import org.apache.commons.httpclient.params.HttpMethodParams;
 import org.apache.commons.httpclient.params.HttpParams;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -31,6 +32,8 @@ import org.apache.ode.axis2.ODEService;
 import org.apache.ode.utils.Properties;
 import org.apache.ode.axis2.OdeFault;
 import org.apache.ode.axis2.util.ClusterUrlTransformer;
+import org.apache.ode.axis2.util.EndpointHealth;
+import org.apache.ode.axis2.util.EndpointHealthRegistry;
 import org.apache.ode.bpel.epr.EndpointFactory;
 import org.apache.ode.bpel.epr.WSAEndpoint;
 import org.apache.ode.bpel.epr.MutableEndpoint;
@@ -57,6 +60,7 @@ import java.io.UnsupportedEncodingException;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.net.URL;
 import java.net.MalformedURLException;
 
@@ -86,9 +90,12 @@ public class HttpExternalService implements ExternalService {
 
     private ClusterUrlTransformer clusterUrlTransformer;
 
+    private EndpointHealthRegistry endpointHealth;
+
     public HttpExternalService(ProcessConf pconf, QName serviceName, String portName,
                                ExecutorService executorService, Scheduler scheduler, BpelServer server,
-                               MultiThreadedHttpConnectionManager connManager, ClusterUrlTransformer clusterUrlTransformer) throws OdeFault {
+                               MultiThreadedHttpConnectionManager connManager, ClusterUrlTransformer clusterUrlTransformer,
+                               EndpointHealthRegistry endpointHealth) throws OdeFault {
         if (log.isDebugEnabled())
             log.debug("new HTTP External service, service name=[" + serviceName + "]; port name=[" + portName + "]");
         this.portName = portName;
@@ -98,6 +105,7 @@ public class HttpExternalService implements ExternalService {
         this.server = server;
         this.pconf = pconf;
         this.clusterUrlTransformer = clusterUrlTransformer;
+        this.endpointHealth = endpointHealth;
         Definition definition = pconf.getDefinitionForService(serviceName);
         Service serviceDef = definition.getService(serviceName);
         if (serviceDef == null)
@@ -171,8 +179,21 @@ public class HttpExternalService implements ExternalService {
 
             baseUrl = clusterUrlTransformer.rewriteOutgoingClusterURL(baseUrl);
 
+            // fail fast rather than tie up a thread and a connection on an endpoint that is down
+            final EndpointHealth health = endpointHealth == null ? null : endpointHealth.get(baseUrl);
+            if (health != null && !health.allowRequest()) {
+                String errmsg = "Circuit breaker open for endpoint " + health.getEndpoint() + ", request not sent for ODE mex " + odeMex;
+                log.warn("[Service: " + serviceName + ", Port: " + portName + ", Operation: " + odeMex.getOperationName() + "] " + errmsg);
+                odeMex.replyWithFailure(MessageExchange.FailureType.COMMUNICATION_ERROR, errmsg, null);
+                return;
+            }
+
             // build the http method
             final HttpMethod method = httpMethodConverter.createHttpRequest(odeMex, params, baseUrl);
+            if (health != null && endpointHealth.isAdaptiveTimeout()) {
+                int configured = params.getIntParameter(HttpMethodParams.SO_TIMEOUT, 0);
+                method.getParams().setSoTimeout((int) health.getTimeout(configured));
+            }
 
             // create a client
             HttpClient client = new HttpClient(connections);
@@ -190,13 +211,18 @@ public class HttpExternalService implements ExternalService {
             boolean isTwoWay = odeMex.getMessageExchangePattern() == MessageExchange.MessageExchangePattern.REQUEST_RESPONSE;
             if (isTwoWay) {
                 // two way
-                executionCallable = new HttpExternalService.TwoWayCallable(client, method, odeMex.getMessageExchangeId(), odeMex.getOperation());
+                final String mexId = odeMex.getMessageExchangeId();
+                executionCallable = new HttpExternalService.TwoWayCallable(client, method, mexId, odeMex.getOperation(), health);
                 scheduler.registerSynchronizer(new Scheduler.Synchronizer() {
                     public void afterCompletion(boolean success) {
                         // If the TX is rolled back, then we don't send the request.
                         if (!success) return;
                         // The invocation must happen in a separate thread
-                        executorService.submit(executionCallable);
+                        try {
+                            executorService.submit(executionCallable);
+                        } catch (RejectedExecutionException e) {
+                            replyWithRejection(mexId, e);
+                        }
                     }
 
                     public void beforeCompletion() {
@@ -205,8 +231,14 @@ public class HttpExternalService implements ExternalService {
                 odeMex.replyAsync();
             } else {
                 // one way, just execute and forget
-                executionCallable = new HttpExternalService.OneWayCallable(client, method, odeMex.getMessageExchangeId(), odeMex.getOperation());
-                executorService.submit(executionCallable);
+                executionCallable = new HttpExternalService.OneWayCallable(client, method, odeMex.getMessageExchangeId(), odeMex.getOperation(), health);
+                try {
+                    executorService.submit(executionCallable);
+                } catch (RejectedExecutionException e) {
+                    // still in the invoking transaction, so the mex can be failed right here
+                    odeMex.replyWithFailure(MessageExchange.FailureType.COMMUNICATION_ERROR, rejected(odeMex.getMessageExchangeId(), e), null);
+                    return;
+                }
                 odeMex.replyOneWayOk();
             }
         } catch (UnsupportedEncodingException e) {
@@ -224,17 +256,48 @@ public class HttpExternalService implements ExternalService {
         }
     }
 
+    /**
+     * Fails a two-way mex whose request the outbound executor refused. We're past the commit
+     * of the invoking transaction at that point, so the reply gets a transaction of its own.
+     */
+    private void replyWithRejection(final String mexId, RejectedExecutionException e) {
+        final String errmsg = rejected(mexId, e);
+        try {
+            scheduler.execIsolatedTransaction(new Callable<Void>() {
+                public Void call() throws Exception {
+                    PartnerRoleMessageExchange odeMex = (PartnerRoleMessageExchange) server.getEngine().getMessageExchange(mexId);
+                    odeMex.replyWithFailure(MessageExchange.FailureType.COMMUNICATION_ERROR, errmsg, null);
+                    return null;
+                }
+            });
+        } catch (Exception ex) {
+            log.error("[Service: " + serviceName + ", Port: " + portName + "] Error executing reply transaction; reply will be lost.", ex);
+        }
+    }
+
+    /**
+     * Logs a request the outbound executor refused.
+     * @return the failure description for the mex
+     */
+    private String rejected(String mexId, RejectedExecutionException e) {
+        String errmsg = "Outbound executor saturated, request not sent (mex=" + mexId + ")";
+        log.warn("[Service: " + serviceName + ", Port: " + portName + "] " + errmsg, e);
+        return errmsg;
+    }
+
     private class OneWayCallable implements Callable<Void> {
         HttpMethod method;
         String mexId;
         Operation operation;
         HttpClient client;
+        EndpointHealth health;
 
-        public OneWayCallable(HttpClient client, HttpMethod method, String mexId, Operation operation) {
+        public OneWayCallable(HttpClient client, HttpMethod method, String mexId, Operation operation, EndpointHealth health) {
             this.method = method;
             this.mexId = mexId;
             this.operation = operation;
             this.client = client;
+            this.health = health;
         }
 
         public Void call() throws Exception {
@@ -245,7 +308,19 @@ public class HttpExternalService implements ExternalService {
                     log.debug(HttpHelper.requestToString(method));
                 }
 
-                final int statusCode = client.executeMethod(method);
+                long start = System.currentTimeMillis();
+                final int statusCode;
+                try {
+                    statusCode = client.executeMethod(method);
+                } catch (IOException e) {
+                    if (health != null) health.recordFailure(System.currentTimeMillis() - start);
+                    throw e;
+                }
+                if (health != null) {
+                    // 5xx means the server is in trouble, anything else is an answer
+                    if (statusCode >= 500) health.recordFailure(System.currentTimeMillis() - start);
+                    else health.recordSuccess(System.currentTimeMillis() - start);
+                }
                 // invoke getResponseBody to force the loading of the body
                 // Actually the processResponse may happen in a separate thread and
                 // as a result the connection might be closed before the body processing (see the finally clause below).
@@ -296,8 +371,8 @@ public class HttpExternalService implements ExternalService {
     }
 
     private class TwoWayCallable extends OneWayCallable {
-        public TwoWayCallable(org.apache.commons.httpclient.HttpClient client, HttpMethod method, String mexId, Operation operation) {
-            super(client, method, mexId, operation);
+        public TwoWayCallable(org.apache.commons.httpclient.HttpClient client, HttpMethod method, String mexId, Operation operation, EndpointHealth health) {
+            super(client, method, mexId, operation, health);
         }
 
         public void processResponse(final int statusCode) {
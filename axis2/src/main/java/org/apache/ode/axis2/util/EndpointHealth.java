@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.axis2.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Health of a partner endpoint, judged from its most recent calls: a circuit
+ * breaker that opens when too many of them failed, and a timeout derived from
+ * how long the successful ones took.
+ *
+ * While the breaker is open, calls are refused so that they fail fast instead
+ * of holding a thread and a connection until they time out. Once the open
+ * interval has passed, a single probe call is let through (half-open); its
+ * outcome closes the breaker or opens it again.
+ */
+public class EndpointHealth implements EndpointHealthMBean {
+    private static final Log __log = LogFactory.getLog(EndpointHealth.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String _endpoint;
+    private final EndpointHealthRegistry _config;
+
+    /** Ring buffer of the recent calls. */
+    private final long[] _latencies;
+    private final boolean[] _failed;
+    private int _next;
+    private int _count;
+    private int _failures;
+
+    private State _state = State.CLOSED;
+    private long _openedAt;
+    private long _probeStartedAt;
+    private boolean _probing;
+    private volatile long _adaptiveTimeout;
+
+    private final AtomicLong _totalCalls = new AtomicLong();
+    private final AtomicLong _totalFailures = new AtomicLong();
+    private final AtomicLong _rejected = new AtomicLong();
+    private final AtomicLong _opened = new AtomicLong();
+
+    EndpointHealth(String endpoint, EndpointHealthRegistry config) {
+        _endpoint = endpoint;
+        _config = config;
+        _latencies = new long[config.getWindowSize()];
+        _failed = new boolean[config.getWindowSize()];
+    }
+
+    /**
+     * @return false if the call must not be attempted because the breaker is open
+     */
+    public boolean allowRequest() {
+        return allowRequest(System.currentTimeMillis());
+    }
+
+    synchronized boolean allowRequest(long now) {
+        if (!_config.isEnabled()) return true;
+        switch (_state) {
+        case CLOSED:
+            return true;
+        case OPEN:
+            if (now - _openedAt < _config.getOpenInterval()) break;
+            _state = State.HALF_OPEN;
+            return startProbe(now);
+        case HALF_OPEN:
+            // a probe that never reported back (e.g. it was dropped) doesn't block us forever
+            if (!_probing || now - _probeStartedAt > _config.getOpenInterval()) return startProbe(now);
+            break;
+        }
+        _rejected.incrementAndGet();
+        return false;
+    }
+
+    private boolean startProbe(long now) {
+        _probing = true;
+        _probeStartedAt = now;
+        if (__log.isDebugEnabled()) __log.debug("Probing endpoint " + _endpoint);
+        return true;
+    }
+
+    public void recordSuccess(long latencyMillis) {
+        record(false, latencyMillis, System.currentTimeMillis());
+    }
+
+    public void recordFailure(long latencyMillis) {
+        record(true, latencyMillis, System.currentTimeMillis());
+    }
+
+    synchronized void record(boolean failed, long latencyMillis, long now) {
+        _totalCalls.incrementAndGet();
+        if (failed) _totalFailures.incrementAndGet();
+
+        if (_count == _latencies.length) {
+            if (_failed[_next]) _failures--;
+        } else {
+            _count++;
+        }
+        _latencies[_next] = latencyMillis;
+        _failed[_next] = failed;
+        if (failed) _failures++;
+        _next = (_next + 1) % _latencies.length;
+
+        if (_state == State.HALF_OPEN && _probing) {
+            _probing = false;
+            if (failed) {
+                open(now);
+            } else {
+                __log.info("Endpoint " + _endpoint + " is responding again, closing its circuit breaker.");
+                clear();
+                _state = State.CLOSED;
+            }
+        } else if (_state == State.CLOSED && _config.isEnabled() && _count >= _config.getMinCalls()
+                && _failures >= _config.getFailureRate() * _count) {
+            open(now);
+        }
+        _adaptiveTimeout = computeTimeout();
+    }
+
+    private void open(long now) {
+        _state = State.OPEN;
+        _openedAt = now;
+        _opened.incrementAndGet();
+        __log.warn("Circuit breaker for endpoint " + _endpoint + " opened: " + _failures + " of the last " + _count
+                + " calls failed; failing calls for " + _config.getOpenInterval() + "ms.");
+    }
+
+    private void clear() {
+        _next = 0;
+        _count = 0;
+        _failures = 0;
+    }
+
+    /**
+     * @return timeout to use for the next call, within the configured minimum and the given endpoint timeout
+     */
+    public long getTimeout(long configured) {
+        long adaptive = _adaptiveTimeout;
+        if (adaptive <= 0) return configured;
+        adaptive = Math.max(adaptive, _config.getTimeoutMin());
+        return configured > 0 ? Math.min(adaptive, configured) : adaptive;
+    }
+
+    private long computeTimeout() {
+        if (!_config.isAdaptiveTimeout()) return 0;
+        long p99 = percentile(0.99, true);
+        return p99 < 0 ? 0 : (long) (p99 * _config.getLatencyFactor());
+    }
+
+    /**
+     * @return latency percentile of the recent (successful, if so asked) calls, -1 if there aren't enough
+     */
+    private synchronized long percentile(double percentile, boolean successOnly) {
+        long[] values = new long[_count];
+        int n = 0;
+        for (int i = 0; i < _count; i++) {
+            if (!successOnly || !_failed[i]) values[n++] = _latencies[i];
+        }
+        if (n == 0 || (successOnly && n < _config.getMinCalls())) return -1;
+        Arrays.sort(values, 0, n);
+        return values[Math.min(n - 1, (int) Math.ceil(percentile * n) - 1)];
+    }
+
+    public synchronized State getCurrentState() {
+        return _state;
+    }
+
+    public String getEndpoint() {
+        return _endpoint;
+    }
+
+    public String getState() {
+        return getCurrentState().name();
+    }
+
+    public synchronized double getFailureRate() {
+        return _count == 0 ? 0 : (double) _failures / _count;
+    }
+
+    public synchronized int getRecentCalls() {
+        return _count;
+    }
+
+    public long getLatencyPercentile50() {
+        return Math.max(0, percentile(0.5, false));
+    }
+
+    public long getLatencyPercentile99() {
+        return Math.max(0, percentile(0.99, false));
+    }
+
+    public long getTotalCalls() {
+        return _totalCalls.get();
+    }
+
+    public long getTotalFailures() {
+        return _totalFailures.get();
+    }
+
+    public long getRejectedCalls() {
+        return _rejected.get();
+    }
+
+    public long getTimesOpened() {
+        return _opened.get();
+    }
+
+    public long getAdaptiveTimeout() {
+        return _adaptiveTimeout;
+    }
+
+    public synchronized void reset() {
+        clear();
+        _state = State.CLOSED;
+        _probing = false;
+        _adaptiveTimeout = 0;
+    }
+
+    public String toString() {
+        return "EndpointHealth[" + _endpoint + ", " + getState() + ", failureRate=" + getFailureRate() + "]";
+    }
+}
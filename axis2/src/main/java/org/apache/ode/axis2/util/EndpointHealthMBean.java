@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.axis2.util;
+
+/**
+ * JMX view of an {@link EndpointHealth}.
+ */
+public interface EndpointHealthMBean {
+
+    String getEndpoint();
+
+    /**
+     * @return CLOSED, OPEN or HALF_OPEN
+     */
+    String getState();
+
+    /**
+     * @return ratio of failed calls among the recent ones
+     */
+    double getFailureRate();
+
+    int getRecentCalls();
+
+    long getLatencyPercentile50();
+
+    long getLatencyPercentile99();
+
+    long getTotalCalls();
+
+    long getTotalFailures();
+
+    long getRejectedCalls();
+
+    long getTimesOpened();
+
+    /**
+     * @return timeout derived from the recent latencies, 0 if there aren't enough of them
+     */
+    long getAdaptiveTimeout();
+
+    /**
+     * Closes the breaker and forgets the recent calls.
+     */
+    void reset();
+}
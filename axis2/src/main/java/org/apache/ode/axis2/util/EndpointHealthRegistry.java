@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.axis2.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * The {@link EndpointHealth} of every partner endpoint invoked by the server,
+ * keyed by address (without query string), and their settings. Each health is
+ * published as an MBean named like
+ * <code>org.apache.ode:type=EndpointHealth,name="http://host/service"</code>.
+ * At most {@link #getMaxEndpoints()} endpoints are tracked; beyond that the least
+ * recently invoked one is dropped along with its MBean.
+ */
+public class EndpointHealthRegistry {
+    private static final Log __log = LogFactory.getLog(EndpointHealthRegistry.class);
+
+    public static final String JMX_DOMAIN = "org.apache.ode";
+
+    /** Access ordered, so the first entry is the least recently invoked endpoint. */
+    private final Map<String, EndpointHealth> _endpoints = new LinkedHashMap<String, EndpointHealth>(16, 0.75f, true);
+    private MBeanServer _mbeanServer;
+
+    private boolean _enabled;
+    private int _maxEndpoints = 1000;
+    private int _windowSize = 20;
+    private int _minCalls = 10;
+    private double _failureRate = 0.5;
+    private long _openInterval = 30000;
+    private boolean _adaptiveTimeout;
+    private long _timeoutMin = 1000;
+    private double _latencyFactor = 4;
+
+    /**
+     * @return health of the endpoint at the given address, null if neither the breaker nor
+     * adaptive timeouts are enabled
+     */
+    public EndpointHealth get(String address) {
+        if ((!_enabled && !_adaptiveTimeout) || address == null) return null;
+        int query = address.indexOf('?');
+        String key = query < 0 ? address : address.substring(0, query);
+        synchronized (_endpoints) {
+            EndpointHealth health = _endpoints.get(key);
+            if (health == null) {
+                health = new EndpointHealth(key, this);
+                _endpoints.put(key, health);
+                export(health);
+                Iterator<EndpointHealth> eldest = _endpoints.values().iterator();
+                while (_endpoints.size() > _maxEndpoints) {
+                    EndpointHealth evicted = eldest.next();
+                    eldest.remove();
+                    unexport(evicted);
+                    if (__log.isDebugEnabled()) __log.debug("Stopped tracking health of endpoint " + evicted.getEndpoint());
+                }
+            }
+            return health;
+        }
+    }
+
+    public void register(MBeanServer server) {
+        synchronized (_endpoints) {
+            _mbeanServer = server;
+            for (EndpointHealth health : _endpoints.values()) export(health);
+        }
+    }
+
+    public void unregister() {
+        synchronized (_endpoints) {
+            for (EndpointHealth health : _endpoints.values()) unexport(health);
+            _mbeanServer = null;
+        }
+    }
+
+    private void unexport(EndpointHealth health) {
+        MBeanServer server = _mbeanServer;
+        if (server == null) return;
+        try {
+            ObjectName name = createObjectName(health.getEndpoint());
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+        } catch (Exception e) {
+            __log.debug("Couldn't unregister health of endpoint " + health.getEndpoint(), e);
+        }
+    }
+
+    private void export(EndpointHealth health) {
+        MBeanServer server = _mbeanServer;
+        if (server == null) return;
+        try {
+            ObjectName name = createObjectName(health.getEndpoint());
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new StandardMBean(health, EndpointHealthMBean.class, false), name);
+            }
+        } catch (Exception e) {
+            __log.warn("Couldn't register health of endpoint " + health.getEndpoint() + " in JMX.", e);
+        }
+    }
+
+    public static ObjectName createObjectName(String endpoint) throws javax.management.MalformedObjectNameException {
+        return new ObjectName(JMX_DOMAIN + ":type=EndpointHealth,name=" + ObjectName.quote(endpoint));
+    }
+
+    public boolean isEnabled() {
+        return _enabled;
+    }
+
+    /**
+     * Turns the circuit breaker on; adaptive timeouts work without it.
+     */
+    public void setEnabled(boolean enabled) {
+        _enabled = enabled;
+    }
+
+    public int getMaxEndpoints() {
+        return _maxEndpoints;
+    }
+
+    /**
+     * Number of endpoints whose health is tracked at once.
+     */
+    public void setMaxEndpoints(int maxEndpoints) {
+        if (maxEndpoints < 1) throw new IllegalArgumentException("Maximum endpoints must be positive: " + maxEndpoints);
+        _maxEndpoints = maxEndpoints;
+    }
+
+    public int getWindowSize() {
+        return _windowSize;
+    }
+
+    /**
+     * Number of recent calls the failure rate and latencies are computed from.
+     */
+    public void setWindowSize(int windowSize) {
+        if (windowSize < 1) throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+        _windowSize = windowSize;
+    }
+
+    public int getMinCalls() {
+        return _minCalls;
+    }
+
+    /**
+     * Number of recent calls needed before the breaker may open or the timeout adapts.
+     */
+    public void setMinCalls(int minCalls) {
+        _minCalls = minCalls;
+    }
+
+    public double getFailureRate() {
+        return _failureRate;
+    }
+
+    /**
+     * Ratio of failed recent calls that opens the breaker.
+     */
+    public void setFailureRate(double failureRate) {
+        _failureRate = failureRate;
+    }
+
+    public long getOpenInterval() {
+        return _openInterval;
+    }
+
+    /**
+     * How long, in milliseconds, an open breaker fails calls before letting a probe through.
+     */
+    public void setOpenInterval(long openInterval) {
+        _openInterval = openInterval;
+    }
+
+    public boolean isAdaptiveTimeout() {
+        return _adaptiveTimeout;
+    }
+
+    public void setAdaptiveTimeout(boolean adaptiveTimeout) {
+        _adaptiveTimeout = adaptiveTimeout;
+    }
+
+    public long getTimeoutMin() {
+        return _timeoutMin;
+    }
+
+    /**
+     * Lower bound of adaptive timeouts; the endpoint's configured timeout is the upper one.
+     */
+    public void setTimeoutMin(long timeoutMin) {
+        _timeoutMin = timeoutMin;
+    }
+
+    public double getLatencyFactor() {
+        return _latencyFactor;
+    }
+
+    /**
+     * Adaptive timeouts are this many times the 99th percentile of the recent successful calls.
+     */
+    public void setLatencyFactor(double latencyFactor) {
+        _latencyFactor = latencyFactor;
+    }
+}
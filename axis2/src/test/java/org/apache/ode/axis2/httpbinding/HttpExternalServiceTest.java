@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ode.axis2.httpbinding;
+
+import junit.framework.TestCase;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.ode.axis2.util.ClusterUrlTransformer;
+import org.apache.ode.bpel.epr.MutableEndpoint;
+import org.apache.ode.bpel.iapi.BpelEngine;
+import org.apache.ode.bpel.iapi.BpelServer;
+import org.apache.ode.bpel.iapi.Message;
+import org.apache.ode.bpel.iapi.MessageExchange;
+import org.apache.ode.bpel.iapi.PartnerRoleMessageExchange;
+import org.apache.ode.bpel.iapi.ProcessConf;
+import org.apache.ode.bpel.iapi.Scheduler;
+import org.apache.ode.utils.DOMUtils;
+import org.apache.ode.utils.concurrent.BoundedExecutor;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.wsdl.Definition;
+import javax.wsdl.Operation;
+import javax.wsdl.factory.WSDLFactory;
+import javax.wsdl.xml.WSDLReader;
+import javax.xml.namespace.QName;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Invokes through a saturated outbound executor and checks that one-way and two-way
+ * exchanges fail the same way.
+ */
+public class HttpExternalServiceTest extends TestCase {
+
+    private static final QName SERVICE = new QName("http://ode/bpel/unit-test.wsdl", "DeliciousService");
+
+    private static final String PORT = "TagHttpPort";
+
+    private Definition definition;
+
+    private BoundedExecutor outbound;
+
+    private CountDownLatch release;
+
+    private MockMex current;
+
+    private HttpExternalService service;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        URL wsdlURL = getClass().getResource("/http-method-builder.wsdl");
+        WSDLReader wsdlReader = WSDLFactory.newInstance().newWSDLReader();
+        wsdlReader.setFeature("javax.wsdl.verbose", false);
+        definition = wsdlReader.readWSDL(wsdlURL.toURI().toString());
+
+        // one running task and one queued task saturate the pool
+        outbound = new BoundedExecutor("outbound", 1, 1, BoundedExecutor.RejectionPolicy.ABORT);
+        release = new CountDownLatch(1);
+        for (int i = 0; i < 2; i++) {
+            outbound.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    release.await();
+                    return null;
+                }
+            });
+        }
+
+        service = new HttpExternalService(mock(ProcessConf.class, new ProcessConfHandler()), SERVICE, PORT,
+                outbound, mock(Scheduler.class, new SchedulerHandler()), mock(BpelServer.class, new ServerHandler()),
+                new MultiThreadedHttpConnectionManager(),
+                new ClusterUrlTransformer(Collections.<String>emptyList(), ""), null);
+    }
+
+    protected void tearDown() throws Exception {
+        release.countDown();
+        outbound.shutdownNow();
+        service.close();
+        super.tearDown();
+    }
+
+    public void testOneWayRejected() throws Exception {
+        current = new MockMex(MessageExchange.MessageExchangePattern.REQUEST_ONLY);
+        service.invoke(current.proxy);
+        assertFalse("one-way reported as sent", current.oneWayOk);
+        assertEquals(MessageExchange.FailureType.COMMUNICATION_ERROR, current.failure);
+        assertTrue(current.failureMessage, current.failureMessage.startsWith("Outbound executor saturated"));
+    }
+
+    public void testTwoWayRejected() throws Exception {
+        current = new MockMex(MessageExchange.MessageExchangePattern.REQUEST_RESPONSE);
+        service.invoke(current.proxy);
+        assertTrue(current.async);
+        assertEquals(MessageExchange.FailureType.COMMUNICATION_ERROR, current.failure);
+        assertTrue(current.failureMessage, current.failureMessage.startsWith("Outbound executor saturated"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T mock(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(HttpExternalServiceTest.class.getClassLoader(), new Class[]{type}, handler);
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) return Boolean.FALSE;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        return null;
+    }
+
+    private class ProcessConfHandler implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("getDefinitionForService")) return definition;
+            if (method.getName().equals("getEndpointProperties")) return Collections.emptyMap();
+            return defaultValue(method);
+        }
+    }
+
+    /**
+     * Commits right away and runs transactions in the calling thread.
+     */
+    private class SchedulerHandler implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("registerSynchronizer")) {
+                Scheduler.Synchronizer synch = (Scheduler.Synchronizer) args[0];
+                synch.beforeCompletion();
+                synch.afterCompletion(true);
+                return null;
+            }
+            if (method.getName().startsWith("exec")) {
+                ((Callable<?>) args[0]).call();
+                return null;
+            }
+            return defaultValue(method);
+        }
+    }
+
+    private class ServerHandler implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("getEngine")) {
+                return mock(BpelEngine.class, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("getMessageExchange")) return current.proxy;
+                        return defaultValue(method);
+                    }
+                });
+            }
+            return defaultValue(method);
+        }
+    }
+
+    private class MockMex implements InvocationHandler {
+        final MessageExchange.MessageExchangePattern pattern;
+        final PartnerRoleMessageExchange proxy;
+        final Operation operation;
+        final Element request;
+        boolean oneWayOk;
+        boolean async;
+        MessageExchange.FailureType failure;
+        String failureMessage;
+
+        MockMex(MessageExchange.MessageExchangePattern pattern) {
+            this.pattern = pattern;
+            this.proxy = mock(PartnerRoleMessageExchange.class, this);
+            this.operation = definition.getService(SERVICE).getPort(PORT).getBinding()
+                    .getBindingOperation("getTag", null, null).getOperation();
+            Document odeMsg = DOMUtils.newDocument();
+            request = odeMsg.createElementNS(null, "message");
+            Element partEl = odeMsg.createElementNS(null, "TagPart");
+            partEl.setTextContent("java");
+            odeMsg.appendChild(request);
+            request.appendChild(partEl);
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("getMessageExchangePattern")) return pattern;
+            if (name.equals("getMessageExchangeId")) return "mex-" + pattern;
+            if (name.equals("getOperation")) return operation;
+            if (name.equals("getOperationName")) return operation.getName();
+            if (name.equals("getEndpointReference")) {
+                return mock(MutableEndpoint.class, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("getUrl")) return "http://feeds.delicious.com/rss";
+                        return defaultValue(method);
+                    }
+                });
+            }
+            if (name.equals("getRequest")) {
+                return mock(Message.class, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("getMessage")) return request;
+                        return defaultValue(method);
+                    }
+                });
+            }
+            if (name.equals("replyOneWayOk")) oneWayOk = true;
+            if (name.equals("replyAsync")) async = true;
+            if (name.equals("replyWithFailure")) {
+                failure = (MessageExchange.FailureType) args[0];
+                failureMessage = (String) args[1];
+            }
+            if (name.equals("toString")) return "MockMex[" + pattern + "]";
+            return defaultValue(method);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.axis2.util;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+/**
+ * Test case for {@link EndpointHealth} and {@link EndpointHealthRegistry}.
+ */
+public class EndpointHealthTest extends TestCase {
+
+    private EndpointHealthRegistry _registry;
+
+    protected void setUp() throws Exception {
+        _registry = new EndpointHealthRegistry();
+        _registry.setEnabled(true);
+        _registry.setWindowSize(10);
+        _registry.setMinCalls(4);
+        _registry.setFailureRate(0.5);
+        _registry.setOpenInterval(1000);
+    }
+
+    public void testOpensOnFailures() {
+        EndpointHealth health = _registry.get("http://localhost:8080/service?wsdl");
+        assertSame(health, _registry.get("http://localhost:8080/service"));
+        long now = 0;
+        for (int i = 0; i < 3; i++) health.record(false, 10, now);
+        health.record(true, 10, now);
+        health.record(true, 10, now);
+        assertTrue(health.allowRequest(now));
+        // 2 out of 5 calls failed
+        assertEquals(EndpointHealth.State.CLOSED, health.getCurrentState());
+        health.record(true, 10, now);
+        assertEquals(EndpointHealth.State.OPEN, health.getCurrentState());
+        assertFalse(health.allowRequest(now + 999));
+        assertEquals(1, health.getRejectedCalls());
+        assertEquals(1, health.getTimesOpened());
+    }
+
+    public void testHalfOpenProbe() {
+        EndpointHealth health = _registry.get("http://localhost:8080/service");
+        for (int i = 0; i < 4; i++) health.record(true, 10, 0);
+        assertEquals(EndpointHealth.State.OPEN, health.getCurrentState());
+
+        // only one probe at a time
+        assertTrue(health.allowRequest(1000));
+        assertEquals(EndpointHealth.State.HALF_OPEN, health.getCurrentState());
+        assertFalse(health.allowRequest(1001));
+        health.record(true, 10, 1002);
+        assertEquals(EndpointHealth.State.OPEN, health.getCurrentState());
+        assertFalse(health.allowRequest(1500));
+
+        assertTrue(health.allowRequest(2002));
+        health.record(false, 10, 2003);
+        assertEquals(EndpointHealth.State.CLOSED, health.getCurrentState());
+        assertEquals(0, health.getRecentCalls());
+        assertTrue(health.allowRequest(2004));
+
+        // a probe that never reports back doesn't keep the endpoint closed forever
+        for (int i = 0; i < 4; i++) health.record(true, 10, 3000);
+        assertTrue(health.allowRequest(4000));
+        assertFalse(health.allowRequest(4500));
+        assertTrue(health.allowRequest(5001));
+    }
+
+    public void testAdaptiveTimeout() {
+        EndpointHealth health = _registry.get("http://localhost:8080/service");
+        for (int i = 0; i < 10; i++) health.record(false, 100, 0);
+        assertEquals(60000, health.getTimeout(60000));
+
+        _registry.setAdaptiveTimeout(true);
+        _registry.setLatencyFactor(4);
+        _registry.setTimeoutMin(1000);
+        health.record(false, 500, 0);
+        // p99 of the last ten calls is 500ms
+        assertEquals(2000, health.getAdaptiveTimeout());
+        assertEquals(2000, health.getTimeout(60000));
+        assertEquals(1500, health.getTimeout(1500));
+        health.reset();
+        for (int i = 0; i < 10; i++) health.record(false, 10, 0);
+        assertEquals(1000, health.getTimeout(60000));
+        assertEquals(1000, health.getTimeout(0));
+    }
+
+    public void testDisabledAndJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        _registry.register(server);
+        EndpointHealth health = _registry.get("http://localhost:8080/jmx");
+        ObjectName name = EndpointHealthRegistry.createObjectName(health.getEndpoint());
+        try {
+            assertEquals("CLOSED", server.getAttribute(name, "State"));
+        } finally {
+            _registry.unregister();
+        }
+        assertFalse(server.isRegistered(name));
+
+        _registry.setEnabled(false);
+        assertNull(_registry.get("http://localhost:8080/other"));
+    }
+
+    public void testAdaptiveTimeoutWithoutBreaker() {
+        _registry.setEnabled(false);
+        _registry.setAdaptiveTimeout(true);
+        _registry.setTimeoutMin(100);
+        EndpointHealth health = _registry.get("http://localhost:8080/service");
+        // failures alone don't open a disabled breaker
+        for (int i = 0; i < 10; i++) health.record(true, 100, 0);
+        assertEquals(EndpointHealth.State.CLOSED, health.getCurrentState());
+        assertTrue(health.allowRequest(0));
+        for (int i = 0; i < 4; i++) health.record(false, 100, 0);
+        assertEquals(400, health.getTimeout(60000));
+    }
+
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        _registry.setMaxEndpoints(2);
+        _registry.register(server);
+        try {
+            EndpointHealth first = _registry.get("http://localhost:8080/first");
+            EndpointHealth second = _registry.get("http://localhost:8080/second");
+            assertSame(first, _registry.get("http://localhost:8080/first"));
+            _registry.get("http://localhost:8080/third");
+
+            // second was used least recently
+            assertFalse(server.isRegistered(EndpointHealthRegistry.createObjectName(second.getEndpoint())));
+            assertTrue(server.isRegistered(EndpointHealthRegistry.createObjectName(first.getEndpoint())));
+            assertSame(first, _registry.get("http://localhost:8080/first"));
+            assertNotSame(second, _registry.get("http://localhost:8080/second"));
+        } finally {
+            _registry.unregister();
+        }
+    }
+}
@@ -206,6 +206,18 @@ public class CorrelationKeySet implements Serializable {
      * @return a list of all subset correlation key sets
      */
     public List<CorrelationKeySet> findSubSets() {
+        return findSubSets(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds the subsets of this correlation key set that have at most maxSize keys, plus
+     * the whole set itself. A route only matches through one of these if it's been
+     * registered on at most maxSize correlation sets or on all of them.
+     *
+     * @param maxSize the largest subset to generate, besides the whole set
+     * @return a list of subset correlation key sets
+     */
+    public List<CorrelationKeySet> findSubSets(int maxSize) {
         List<CorrelationKeySet> subSets = new ArrayList<CorrelationKeySet>();
 
         // if the key set contains a opaque key and at least one non-opaque key, take out the opaque key
@@ -226,7 +238,11 @@ public class CorrelationKeySet implements Serializable {
         }
 
         // we are generating (2 powered by the number of correlation keys) number of sub-sets
-        for( int setIndex = 0; setIndex < Math.pow(2, explicitKeySet.correlationKeys.size()); setIndex++ ) {
+        int fullSet = (1 << explicitKeySet.correlationKeys.size()) - 1;
+        for( int setIndex = 0; setIndex <= fullSet; setIndex++ ) {
+            if( setIndex != fullSet && Integer.bitCount(setIndex) > maxSize ) {
+                continue;
+            }
             CorrelationKeySet subKeySet = new CorrelationKeySet();
             int bitPattern = setIndex; // the bitPattern will be 0b0000, 0b0001, 0b0010 and so on
             Iterator<CorrelationKey> ckeys = explicitKeySet.iterator();
@@ -268,6 +284,24 @@ public class CorrelationKeySet implements Serializable {
         return "@" + VERSION_2 + buf.toString();
     }
 
+    /**
+     * Returns a fixed-width hash of a canonical form of correlation key set (64 bit FNV-1a
+     * over the characters). Stored next to the canonical form, it gives the database a
+     * narrow column to index and match on; as different key sets may share a hash, the
+     * canonical form still has to be compared.
+     *
+     * @param canonicalForm a canonical form of correlation key set
+     * @return the hash
+     */
+    public static long canonicalHash(String canonicalForm) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < canonicalForm.length(); i++) {
+            hash ^= canonicalForm.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
     private static String escapeRightBracket(String str) {
         if (str == null)
             return null;
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.explang;
+
+import org.apache.ode.bpel.common.FaultException;
+import org.apache.ode.bpel.o.OMessageVarType;
+import org.apache.ode.bpel.o.OScope;
+import org.w3c.dom.Node;
+
+/**
+ * {@link EvaluationContext} that can keep immutable copies of variables for an
+ * {@link ExpressionLanguageRuntime}, in a representation of the runtime's own
+ * choosing. A copy is built on the first read of the variable and is handed
+ * out again until the variable gets written.
+ *
+ * Runtimes must only use snapshots to read variables, never to select nodes
+ * that are going to be modified.
+ */
+public interface SnapshotEvaluationContext extends EvaluationContext {
+
+    /**
+     * Read the immutable copy of a BPEL variable.
+     *
+     * @param variable
+     *          variable to read
+     * @param part
+     *          the part (or <code>null</code>)
+     * @param builder
+     *          builds the copy from the variable's value, also identifies the
+     *          representation
+     * @return the copy, or <code>null</code> if this variable can't be kept as a
+     *         snapshot, in which case it should be read with
+     *         {@link #readVariable(OScope.Variable, OMessageVarType.Part)}
+     */
+    Object readVariableSnapshot(OScope.Variable variable, OMessageVarType.Part part, SnapshotBuilder builder)
+            throws FaultException;
+
+    /**
+     * Builds the copies of variables for a runtime. Implementations must be
+     * thread safe.
+     */
+    interface SnapshotBuilder {
+        /**
+         * @param data value of the variable
+         * @return an immutable copy of the value, or <code>null</code> if it can't be copied
+         */
+        Object build(Node data);
+    }
+}
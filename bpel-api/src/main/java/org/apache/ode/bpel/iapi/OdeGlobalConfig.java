@@ -29,4 +29,26 @@ public class OdeGlobalConfig {
     public static boolean autoincrementVersion() {
         return Boolean.parseBoolean(System.getProperty("org.apache.ode.autoincrementVersion", "true"));
     }
+    /**
+     * Largest number of correlation sets a route is looked up on, besides routes on all the
+     * sets of the incoming message. Unset or 0 looks up every subset; only lower it when no
+     * deployed receive correlates on more sets than this and not on all of them, or those
+     * receives stop getting messages.
+     */
+    public static int correlationMaxSubSetSize() {
+        int max = Integer.parseInt(System.getProperty("org.apache.ode.correlation.maxSubSetSize", "0"));
+        return max > 0 ? max : Integer.MAX_VALUE;
+    }
+    /**
+     * Number of compiled instance queries kept by the DAO layer, 0 disables the plan cache.
+     */
+    public static int queryPlanCacheSize() {
+        return Integer.parseInt(System.getProperty("org.apache.ode.ql.planCacheSize", "256"));
+    }
+    /**
+     * Number of rows fetched from the database at a time when running an instance query.
+     */
+    public static int queryFetchSize() {
+        return Integer.parseInt(System.getProperty("org.apache.ode.ql.fetchSize", "100"));
+    }
 }
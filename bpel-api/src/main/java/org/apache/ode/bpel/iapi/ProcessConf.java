@@ -198,6 +198,16 @@ public interface ProcessConf {
 
     Set<CLEANUP_CATEGORY> getCleanupCategories(boolean instanceSucceeded);
 
+    /**
+     * Tells if the message exchanges of requests made to an operation of this process
+     * are kept in memory instead of the database. An exchange that is still waiting for
+     * its reply when the request's transaction ends gets persisted then. Meaningless
+     * for transient processes, whose exchanges are never persisted.
+     * @param operation name of the my-role operation
+     * @return <code>true</code> if the exchanges don't need to be persisted up front
+     */
+    boolean isTransientMessageExchange(String operation);
+
     List<CronJob> getCronJobs();
 
     public enum CLEANUP_CATEGORY {
@@ -175,4 +175,34 @@ public class CorrelationKeySetTest {
         }
         assertEquals("'@2[1~a~b]','@2[2~b~c]','@2[1~a~b],[2~b~c]','@2[3~c~d]','@2[1~a~b],[3~c~d]','@2[2~b~c],[3~c~d]','@2[1~a~b],[2~b~c],[3~c~d]'", buf.toString());
     }
+
+    @Test
+    public void testFindBoundedSubSets() throws Exception {
+        CorrelationKeySet keySet = new CorrelationKeySet();
+        keySet.add(keyX);
+        keySet.add(keyY);
+        keySet.add(keyZ);
+        StringBuffer buf = new StringBuffer();
+        for( CorrelationKeySet subSet : keySet.findSubSets(1) ) {
+            if( buf.length() > 0 ) {
+                buf.append(",");
+            }
+            buf.append("'").append(subSet.toCanonicalString()).append("'");
+        }
+        assertEquals("'@2[1~a~b]','@2[2~b~c]','@2[3~c~d]','@2[1~a~b],[2~b~c],[3~c~d]'", buf.toString());
+
+        assertEquals(7, keySet.findSubSets(2).size());
+        assertEquals(keySet.findSubSets(), keySet.findSubSets(3));
+        assertEquals(1, new CorrelationKeySet().findSubSets(1).size());
+    }
+
+    @Test
+    public void testCanonicalHash() throws Exception {
+        assertEquals(0xcbf29ce484222325L, CorrelationKeySet.canonicalHash(""));
+        CorrelationKeySet setA = new CorrelationKeySet().add(keyX).add(keyY);
+        CorrelationKeySet setB = new CorrelationKeySet("@2[1~a~b],[2~b~c]");
+        assertEquals(CorrelationKeySet.canonicalHash(setA.toCanonicalString()),
+                CorrelationKeySet.canonicalHash(setB.toCanonicalString()));
+        assertFalse(CorrelationKeySet.canonicalHash("@2[1~a~b]") == CorrelationKeySet.canonicalHash("@2[1~a~c]"));
+    }
 }
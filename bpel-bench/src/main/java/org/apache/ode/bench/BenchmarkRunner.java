@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bench;
+
+import java.io.File;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar. Accepts the usual JMH command line options
+ * but always writes the results as JSON (target/jmh-result.json unless -rff is
+ * given) so that runs of different releases can be compared. The location of
+ * the process corpus used by the end-to-end benchmarks is passed on to the
+ * forked JVMs.
+ *
+ * <pre>
+ * mvn -Pbench package                                  # in the top directory, then in bpel-bench
+ * java -jar target/benchmarks.jar                      # everything
+ * java -jar target/benchmarks.jar Scheduler -rff 1.4.json
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(cmd);
+        if (!cmd.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cmd.getResult().hasValue()) {
+            new File("target").mkdirs();
+            builder.result("target/jmh-result.json");
+        }
+        builder.jvmArgsAppend("-D" + Corpus.CORPUS_PROPERTY + "=" + Corpus.getRoot().getAbsolutePath());
+        Options opts = builder.build();
+        new Runner(opts).run();
+    }
+}
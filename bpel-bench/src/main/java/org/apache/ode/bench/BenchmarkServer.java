@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bench;
+
+import java.io.File;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.ode.bpel.iapi.BpelEngineException;
+import org.apache.ode.bpel.iapi.ContextException;
+import org.apache.ode.bpel.iapi.Message;
+import org.apache.ode.bpel.iapi.MessageExchange;
+import org.apache.ode.bpel.iapi.MessageExchangeContext;
+import org.apache.ode.bpel.iapi.MyRoleMessageExchange;
+import org.apache.ode.bpel.iapi.PartnerRoleMessageExchange;
+import org.apache.ode.bpel.iapi.Scheduler;
+import org.apache.ode.test.BPELTestAbstract;
+import org.apache.ode.utils.GUID;
+import org.w3c.dom.Element;
+
+/**
+ * The in-memory server of {@link BPELTestAbstract}, driven synchronously so that
+ * benchmarks can push messages through deployed processes as fast as the engine
+ * takes them.
+ */
+public class BenchmarkServer extends BPELTestAbstract {
+
+    private File _workDir;
+    private boolean _events = true;
+
+    public BenchmarkServer(int threads) {
+        executorService.shutdown();
+        executorService = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * @param events whether processes without an event filter in their deployment descriptor
+     * generate all events, the default, or none; to be set before {@link #setUp()}
+     */
+    public void setEvents(boolean events) {
+        _events = events;
+    }
+
+    @Override
+    protected Properties getConfigProperties() {
+        Properties props = super.getConfigProperties();
+        if (!_events) props.setProperty("generateProcessEvents", "none");
+        return props;
+    }
+
+    /**
+     * Deploys a copy of a corpus process, leaving the sources untouched by the compiler output.
+     */
+    public void deploy(String name) throws Exception {
+        if (_workDir == null) {
+            _workDir = File.createTempFile("ode-bench", "");
+            _workDir.delete();
+        }
+        File deployDir = new File(_workDir, name);
+        FileUtils.copyDirectory(Corpus.getProcessDir(name), deployDir);
+        Deployment d = addDeployment(deployDir);
+        doDeployment(d);
+        checkFailure();
+    }
+
+    /**
+     * Makes partners answer two-way invokes asynchronously: the request is echoed back from
+     * the given executor, in a transaction of its own, once the invoking transaction has
+     * committed. That's how the Axis2 integration layer handles two-way operations.
+     */
+    public void useAsyncPartners(ExecutorService partners) {
+        _server.setMessageExchangeContext(new AsyncPartnerContext(partners));
+    }
+
+    /**
+     * Sends a request to a process and waits for the exchange to complete.
+     * @return the response message, null for one-way operations
+     */
+    public Element invoke(final QName service, final String operation, final Element request) throws Exception {
+        final MyRoleMessageExchange[] mex = new MyRoleMessageExchange[1];
+        final Future<?> running = scheduler.execTransaction(new Callable<Future<?>>() {
+            public Future<?> call() throws Exception {
+                mex[0] = _server.getEngine().createMessageExchange(GUID.nextId(), service, operation);
+                Message msg = mex[0].createMessage(null);
+                msg.setMessage(request);
+                return mex[0].invoke(msg);
+            }
+        });
+        running.get(60, TimeUnit.SECONDS);
+        return scheduler.execTransaction(new Callable<Element>() {
+            public Element call() throws Exception {
+                if (mex[0].getStatus() == MessageExchange.Status.FAULT
+                        || mex[0].getStatus() == MessageExchange.Status.FAILURE)
+                    throw new IllegalStateException("Invocation of " + service + "." + operation + " failed: "
+                            + mex[0].getStatus() + " " + mex[0].getFaultExplanation());
+                Message response = mex[0].getResponse();
+                mex[0].release(true);
+                return response == null ? null : response.getMessage();
+            }
+        });
+    }
+
+    private class AsyncPartnerContext implements MessageExchangeContext {
+        private final ExecutorService _partners;
+
+        AsyncPartnerContext(ExecutorService partners) {
+            _partners = partners;
+        }
+
+        public void invokePartner(PartnerRoleMessageExchange mex) throws ContextException {
+            if (mex.getMessageExchangePattern() != MessageExchange.MessageExchangePattern.REQUEST_RESPONSE) {
+                mex.replyOneWayOk();
+                return;
+            }
+            final String mexId = mex.getMessageExchangeId();
+            scheduler.registerSynchronizer(new Scheduler.Synchronizer() {
+                public void afterCompletion(boolean success) {
+                    if (!success) return;
+                    _partners.submit(new Callable<Void>() {
+                        public Void call() throws Exception {
+                            return scheduler.execTransaction(new Callable<Void>() {
+                                public Void call() throws Exception {
+                                    PartnerRoleMessageExchange mex =
+                                        (PartnerRoleMessageExchange) _server.getEngine().getMessageExchange(mexId);
+                                    Message response = mex.createMessage(mex.getOperation().getOutput().getMessage().getQName());
+                                    response.setMessage(mex.getRequest().getMessage());
+                                    mex.reply(response);
+                                    return null;
+                                }
+                            });
+                        }
+                    });
+                }
+
+                public void beforeCompletion() {
+                }
+            });
+            mex.replyAsync();
+        }
+
+        public void onAsyncReply(MyRoleMessageExchange myRoleMex) throws BpelEngineException {
+            mexContext.onAsyncReply(myRoleMex);
+        }
+    }
+
+    public void shutdown() throws Exception {
+        try {
+            tearDown();
+        } finally {
+            ExecutorService exec = executorService;
+            exec.shutdownNow();
+            if (_workDir != null) FileUtils.deleteDirectory(_workDir);
+        }
+    }
+}
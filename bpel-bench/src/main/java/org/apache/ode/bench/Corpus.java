@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Locates the processes of the bpel-test corpus the benchmarks are run against.
+ */
+public class Corpus {
+    public static final String CORPUS_PROPERTY = "ode.bench.corpus";
+
+    private Corpus() {
+    }
+
+    public static File getRoot() {
+        return new File(System.getProperty(CORPUS_PROPERTY, "../bpel-test/src/test/resources"));
+    }
+
+    /**
+     * @param name process directory under bpel/2.0, e.g. HelloWorld2
+     */
+    public static File getProcessDir(String name) {
+        File dir = new File(getRoot(), "bpel/2.0/" + name);
+        if (!new File(dir, "deploy.xml").exists())
+            throw new IllegalStateException("Not a deployment directory: " + dir.getAbsolutePath()
+                    + "; set -D" + CORPUS_PROPERTY + " to the bpel-test resources directory.");
+        return dir;
+    }
+
+    /**
+     * @return the first BPEL file of the given process directory
+     */
+    public static File getBpelFile(String name) {
+        File[] bpels = getProcessDir(name).listFiles();
+        for (File f : bpels) {
+            if (f.getName().endsWith(".bpel")) return f;
+        }
+        throw new IllegalStateException("No BPEL file in " + getProcessDir(name));
+    }
+
+    /**
+     * Loads the test.properties (or test1.properties) describing the first request of a process.
+     */
+    public static Properties getTestProperties(String name) throws IOException {
+        File dir = getProcessDir(name);
+        File f = new File(dir, "test.properties");
+        if (!f.exists()) f = new File(dir, "test1.properties");
+        Properties props = new Properties();
+        InputStream is = new FileInputStream(f);
+        try {
+            props.load(is);
+        } finally {
+            is.close();
+        }
+        return props;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bench;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ode.bpel.common.CorrelationKey;
+import org.apache.ode.bpel.common.CorrelationKeySet;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Route lookup of the persistent correlators for messages carrying several
+ * correlation sets of several properties each. The selector index is modelled
+ * by a sorted map, like the B-tree of the database: the text benchmark probes
+ * it with the canonical form of every key subset, the hashed one with their
+ * 64 bit hashes and rechecks the canonical form of the rows found, probing
+ * subsets of up to maxSubSetSize keys (0 probes them all).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CorrelationKeyHashBenchmark {
+
+    /** Number of routes waiting on the correlator. */
+    private static final int ROUTES = 10000;
+
+    /** Correlation sets of the incoming message. */
+    @Param({ "2", "4", "8" })
+    public int correlationSets;
+
+    /** Properties of each correlation set. */
+    @Param({ "3" })
+    public int properties;
+
+    @Param({ "0", "4" })
+    public int maxSubSetSize;
+
+    private TreeMap<String, Integer> _textIndex;
+    private TreeMap<Long, List<String>> _hashIndex;
+    private CorrelationKeySet[] _messages;
+    private int _message;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Probes {
+        public long probes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        _textIndex = new TreeMap<String, Integer>();
+        _hashIndex = new TreeMap<Long, List<String>>();
+        for (int i = 0; i < ROUTES; i++) {
+            // routes wait on one or two of the sets, as receives usually do
+            CorrelationKeySet route = new CorrelationKeySet();
+            route.add(key(i % correlationSets, i));
+            if (i % 3 == 0 && correlationSets > 1) route.add(key((i + 1) % correlationSets, i));
+            String canonical = route.toCanonicalString();
+            _textIndex.put(canonical, i);
+            long hash = CorrelationKeySet.canonicalHash(canonical);
+            List<String> rows = _hashIndex.get(hash);
+            if (rows == null) {
+                rows = new ArrayList<String>(1);
+                _hashIndex.put(hash, rows);
+            }
+            rows.add(canonical);
+        }
+        _messages = new CorrelationKeySet[64];
+        for (int m = 0; m < _messages.length; m++) {
+            int instance = (m * 157) % ROUTES;
+            CorrelationKeySet message = new CorrelationKeySet();
+            for (int s = 0; s < correlationSets; s++) {
+                message.add(key(s, instance));
+            }
+            _messages[m] = message;
+        }
+    }
+
+    private CorrelationKey key(int set, int instance) {
+        String[] values = new String[properties];
+        for (int p = 0; p < properties; p++) {
+            values[p] = "urn:example:orders:property" + p + ":" + instance;
+        }
+        return new CorrelationKey(String.valueOf(set + 1), values);
+    }
+
+    @Benchmark
+    public int text(Probes counter) {
+        int found = 0;
+        for (CorrelationKeySet subSet : subSets()) {
+            counter.probes++;
+            if (_textIndex.get(subSet.toCanonicalString()) != null) found++;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int hashed(Probes counter) {
+        List<CorrelationKeySet> subSets = subSets();
+        Set<String> keys = new HashSet<String>(subSets.size() * 2);
+        for (CorrelationKeySet subSet : subSets) {
+            keys.add(subSet.toCanonicalString());
+        }
+        int found = 0;
+        for (String key : keys) {
+            counter.probes++;
+            List<String> rows = _hashIndex.get(CorrelationKeySet.canonicalHash(key));
+            if (rows != null) {
+                for (String row : rows) {
+                    if (keys.contains(row)) found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    private List<CorrelationKeySet> subSets() {
+        CorrelationKeySet message = _messages[_message++ & (_messages.length - 1)];
+        return maxSubSetSize > 0 ? message.findSubSets(maxSubSetSize) : message.findSubSets();
+    }
+}
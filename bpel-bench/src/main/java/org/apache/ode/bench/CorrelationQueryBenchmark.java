@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bench;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ode.daohib.QueryShapes;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * HQL parses per routed message in the Hibernate correlator. Every message looks
+ * up its routes with a query whose IN-list has one parameter per correlation key
+ * subset; the query strings go through an MRU cache sized like Hibernate's query
+ * plan cache, shared with the other queries of the DAO layer, and every miss is
+ * counted as a parse. The legacy benchmark builds the query with the exact arity
+ * the way CorrelatorDaoImpl used to.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CorrelationQueryBenchmark {
+
+    private static final String HEADER = "from HCorrelatorSelector as hs where hs.processType = :processType"
+            + " and hs.correlator.correlatorId = :correlatorId";
+
+    /** Strong references kept by the query plan cache of Hibernate 3.3. */
+    private static final int PLAN_CACHE_SIZE = 128;
+
+    /** Largest number of correlation key subsets of a message. */
+    @Param({ "8", "200" })
+    public int maxSubSets;
+
+    /** Other query shapes in use by the DAO layer, competing for the plan cache. */
+    @Param({ "0", "100" })
+    public int otherShapes;
+
+    private Map<String, Boolean> _planCache;
+    private String[] _others;
+    private int _message;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Parses {
+        public long parses;
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        _planCache = new LinkedHashMap<String, Boolean>(PLAN_CACHE_SIZE * 2, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > PLAN_CACHE_SIZE;
+            }
+        };
+        _others = new String[otherShapes];
+        for (int i = 0; i < otherShapes; i++) {
+            _others[i] = "from HOther" + i + " as o where o.id = ?";
+        }
+        _message = 0;
+    }
+
+    @Benchmark
+    public String padded(Parses counter) {
+        int subSets = nextArity();
+        String hql = QueryShapes.inCondition(HEADER, " and ", "hs.correlationKey", "s", subSets);
+        plan(hql, counter);
+        return hql;
+    }
+
+    @Benchmark
+    public String legacy(Parses counter) {
+        int subSets = nextArity();
+        StringBuffer hql = new StringBuffer(HEADER);
+        if (subSets == 1) {
+            hql.append(" and hs.correlationKey = :s0");
+        } else if (subSets > 1) {
+            hql.append(" and hs.correlationKey in(");
+            for (int i = 0; i < subSets; i++) {
+                if (i > 0) hql.append(", ");
+                hql.append(":s").append(i);
+            }
+            hql.append(")");
+        }
+        plan(hql.toString(), counter);
+        return hql.toString();
+    }
+
+    private int nextArity() {
+        // subset counts spread over the whole range, small ones being the most common
+        int m = _message++;
+        return 1 + (int) ((long) (m % 97) * (m % 97) * (maxSubSets - 1) / (96 * 96));
+    }
+
+    private void plan(String hql, Parses counter) {
+        if (_planCache.get(hql) == null) {
+            _planCache.put(hql, Boolean.TRUE);
+            counter.parses++;
+        }
+        if (_others.length > 0) {
+            String other = _others[_message % _others.length];
+            if (_planCache.get(other) == null) {
+                _planCache.put(other, Boolean.TRUE);
+                counter.parses++;
+            }
+        }
+    }
+}
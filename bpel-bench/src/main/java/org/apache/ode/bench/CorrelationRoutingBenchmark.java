@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ode.bpel.common.CorrelationKey;
+import org.apache.ode.bpel.common.CorrelationKeySet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Correlation key handling on the message routing path: building the key set
+ * of an incoming message, its canonical form (the lookup key of the persistent
+ * DAOs), parsing it back, and matching it against the waiting routes the way
+ * the in-memory correlator does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CorrelationRoutingBenchmark {
+
+    /** Number of instances waiting on the correlator. */
+    @Param({ "10", "1000" })
+    public int routes;
+
+    private String[] _values;
+    private CorrelationKeySet _incoming;
+    private String _canonical;
+    private List<CorrelationKeySet> _routes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        _routes = new ArrayList<CorrelationKeySet>(routes);
+        for (int i = 0; i < routes; i++) {
+            _routes.add(keySet(new String[] { "order-" + i, "customer-" + (i % 17) }));
+        }
+        // the incoming message matches the last route, the worst case for a scan
+        _values = new String[] { "order-" + (routes - 1), "customer-" + ((routes - 1) % 17) };
+        _incoming = keySet(_values);
+        _canonical = _incoming.toCanonicalString();
+    }
+
+    private static CorrelationKeySet keySet(String[] values) {
+        CorrelationKeySet set = new CorrelationKeySet();
+        set.add(new CorrelationKey("1", new String[] { values[0] }));
+        set.add(new CorrelationKey("2", values));
+        return set;
+    }
+
+    @Benchmark
+    public String toCanonicalString() {
+        return keySet(_values).toCanonicalString();
+    }
+
+    @Benchmark
+    public CorrelationKeySet restore() {
+        return new CorrelationKeySet(_canonical);
+    }
+
+    @Benchmark
+    public List<CorrelationKeySet> findSubSets() {
+        return _incoming.findSubSets();
+    }
+
+    @Benchmark
+    public CorrelationKeySet findRoute() {
+        for (CorrelationKeySet route : _routes) {
+            if (_incoming.isRoutableTo(route, false)) return route;
+        }
+        return null;
+    }
+}
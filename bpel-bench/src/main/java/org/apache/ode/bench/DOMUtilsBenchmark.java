@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bench;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ode.utils.DOMUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Message (de)serialization and copying through {@link DOMUtils}, done for
+ * every message and variable the engine persists. The legacy benchmarks go
+ * through a String the way the byte conversions used to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DOMUtilsBenchmark {
+
+    /** Number of line items in the message, ~100 bytes each. */
+    @Param({ "10", "1000" })
+    public int items;
+
+    private String _xml;
+    private byte[] _bytes;
+    private Element _message;
+
+    private static final OutputStream NULL_STREAM = new OutputStream() {
+        public void write(int b) {
+        }
+
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        StringBuilder sb = new StringBuilder("<message><payload><po:order xmlns:po='urn:ode:bench:po'>");
+        for (int i = 0; i < items; i++) {
+            sb.append("<po:item sku='sku-").append(i).append("'><po:description>Item number ").append(i)
+                    .append("</po:description><po:qty>").append(i % 7).append("</po:qty></po:item>");
+        }
+        _xml = sb.append("</po:order></payload></message>").toString();
+        _message = DOMUtils.stringToDOM(_xml);
+        _bytes = DOMUtils.domToBytes(_message);
+    }
+
+    @Benchmark
+    public Element stringToDOM() throws Exception {
+        return DOMUtils.stringToDOM(_xml);
+    }
+
+    @Benchmark
+    public Element bytesToDOM() throws Exception {
+        return DOMUtils.stringToDOM(_bytes);
+    }
+
+    @Benchmark
+    public Element legacyBytesToDOM() throws Exception {
+        return DOMUtils.stringToDOM(new String(_bytes));
+    }
+
+    @Benchmark
+    public String domToString() {
+        return DOMUtils.domToString(_message);
+    }
+
+    @Benchmark
+    public byte[] domToBytes() {
+        return DOMUtils.domToBytes(_message);
+    }
+
+    @Benchmark
+    public byte[] legacyDomToBytes() {
+        return DOMUtils.domToString(_message).getBytes();
+    }
+
+    @Benchmark
+    public void serializeToStream() {
+        DOMUtils.serialize(_message, NULL_STREAM, "UTF-8", true);
+    }
+
+    @Benchmark
+    public Node cloneNode() {
+        Document doc = DOMUtils.newDocument();
+        return DOMUtils.cloneNode(doc, _message);
+    }
+}
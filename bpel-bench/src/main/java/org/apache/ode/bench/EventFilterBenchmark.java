@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bench;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+
+import org.apache.ode.utils.DOMUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Element;
+
+/**
+ * Cost of event generation: average time of a complete instance with all events
+ * generated and with none. With events off, an activity only checks its scope's
+ * event mask, so the gap to the events-on figures is what filtering saves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms512M", "-Xmx1024M" })
+public class EventFilterBenchmark {
+
+    @Param({ "TestAssignActivity1", "TestFlowActivity2", "TestForEach" })
+    public String process;
+
+    @Param({ "true", "false" })
+    public boolean events;
+
+    private BenchmarkServer _server;
+    private QName _service;
+    private String _operation;
+    private Element _request;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        _server = new BenchmarkServer(1);
+        _server.setEvents(events);
+        _server.setUp();
+        _server.deploy(process);
+
+        Properties props = Corpus.getTestProperties(process);
+        _service = new QName(props.getProperty("namespace"), props.getProperty("service"));
+        _operation = props.getProperty("operation");
+        _request = DOMUtils.stringToDOM(props.getProperty("request1"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        _server.shutdown();
+    }
+
+    @Benchmark
+    public Element invoke() throws Exception {
+        return _server.invoke(_service, _operation, _request);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ode.bpel.runtime.channels.Termination;
+import org.apache.ode.jacob.JacobRunnable;
+import org.apache.ode.jacob.ReceiveProcess;
+import org.apache.ode.jacob.vpu.ExecutionQueueImpl;
+import org.apache.ode.jacob.vpu.JacobVPU;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Round trip of the JACOB execution state through
+ * {@link ExecutionQueueImpl#write} and {@link ExecutionQueueImpl#read}, which
+ * happens for every transaction of a persistent instance. The soup is made of
+ * waiting receivers, like an instance blocked on many scopes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ExecutionQueueBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    public int waiters;
+
+    private ExecutionQueueImpl _soup;
+    private byte[] _state;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        _soup = new ExecutionQueueImpl(null);
+        JacobVPU vpu = new JacobVPU();
+        vpu.setContext(_soup);
+        vpu.inject(new SPAWN(waiters));
+        while (vpu.execute()) ;
+        _state = write();
+    }
+
+    @Benchmark
+    public byte[] write() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(_state == null ? 4096 : _state.length);
+        _soup.write(bos);
+        return bos.toByteArray();
+    }
+
+    @Benchmark
+    public ExecutionQueueImpl read() throws Exception {
+        ExecutionQueueImpl soup = new ExecutionQueueImpl(null);
+        soup.read(new ByteArrayInputStream(_state));
+        return soup;
+    }
+
+    /**
+     * Starts the given number of waiting receivers.
+     */
+    static class SPAWN extends JacobRunnable {
+        private static final long serialVersionUID = 1L;
+        private final int _count;
+
+        SPAWN(int count) {
+            _count = count;
+        }
+
+        public void run() {
+            for (int i = 0; i < _count; i++) {
+                instance(new WAITER(i));
+            }
+        }
+    }
+
+    /**
+     * Waits on a termination channel, holding on to a bit of instance data.
+     */
+    static class WAITER extends JacobRunnable {
+        private static final long serialVersionUID = 1L;
+        private final int _id;
+        private final String _data;
+
+        WAITER(int id) {
+            _id = id;
+            _data = "waiter-" + id;
+        }
+
+        public void run() {
+            Termination self = newChannel(Termination.class);
+            object(new ReceiveProcess() {
+                private static final long serialVersionUID = 1L;
+            }.setChannel(self).setReceiver(new Termination() {
+                public void terminate() {
+                    // never called, the receiver only needs to sit in the soup
+                }
+            }));
+        }
+
+        public String toString() {
+            return "WAITER#" + _id + "(" + _data + ")";
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ode.bpel.dao.ProcessInstanceDAO;
+import org.apache.ode.bpel.engine.ExecutionStateStore;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Persistence of the execution state at the end of a transaction in which a single
+ * branch of a large fan-out changed. The bytes counters give the bytes actually
+ * written against the size of the full state, per transaction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ExecutionStateBenchmark {
+
+    /** Number of parallel branches in the state. */
+    @Param({ "100", "1000", "10000" })
+    public int branches;
+
+    private ArrayList<Map<String, Object>> _soup;
+    private ProcessInstanceDAO _dao;
+    private byte[] _state;
+    private byte[] _delta;
+    private int _counter;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Bytes {
+        public long written;
+        public long full;
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        _soup = new ArrayList<Map<String, Object>>(branches);
+        for (int i = 0; i < branches; i++) {
+            Map<String, Object> branch = new HashMap<String, Object>();
+            branch.put("channel", "channel-" + i);
+            branch.put("activity", "invoke-" + (i % 17));
+            branch.put("counter", Integer.valueOf(0));
+            _soup.add(branch);
+        }
+        _state = null;
+        _delta = null;
+        _dao = (ProcessInstanceDAO) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { ProcessInstanceDAO.class }, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("getExecutionState")) return _state;
+                if (name.equals("getExecutionStateDelta")) return _delta;
+                if (name.equals("setExecutionState")) _state = (byte[]) args[0];
+                else if (name.equals("setExecutionStateDelta")) _delta = (byte[]) args[0];
+                else throw new UnsupportedOperationException(name);
+                return null;
+            }
+        });
+        ExecutionStateStore.writeFull(_dao, serialize());
+    }
+
+    private byte[] serialize() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(10000);
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(_soup);
+        oos.close();
+        return bos.toByteArray();
+    }
+
+    /** One transaction: a single branch progresses and the state gets persisted. */
+    @Benchmark
+    public int transaction(Bytes bytes) throws Exception {
+        Map<String, Object> branch = _soup.get(_counter++ % branches);
+        branch.put("counter", Integer.valueOf(_counter));
+        byte[] state = serialize();
+        int written = ExecutionStateStore.write(_dao, state);
+        bytes.written += written;
+        bytes.full += state.length;
+        return written;
+    }
+
+    @Benchmark
+    public byte[] read() {
+        return ExecutionStateStore.read(_dao);
+    }
+}
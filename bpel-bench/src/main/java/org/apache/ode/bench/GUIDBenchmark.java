@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bench;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ode.utils.GUID;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Id generation under contention, as done for every job, message exchange and
+ * message id. The class-locked benchmark reproduces the former GUID: a counter
+ * taken under a lock on the class and the string formed through BigInteger.
+ * Run with -t to try other thread counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@Threads(32)
+public class GUIDBenchmark {
+
+    private static final byte[] BASE = GUID.getVMGUID().getGuid();
+
+    private static short _cnt = Short.MIN_VALUE;
+
+    @Benchmark
+    public String classLocked() {
+        short c;
+        synchronized (GUIDBenchmark.class) {
+            c = ++_cnt;
+            if (_cnt == Short.MAX_VALUE) {
+                _cnt = Short.MIN_VALUE;
+            }
+        }
+        byte[] id = new byte[14];
+        System.arraycopy(BASE, 0, id, 0, 12);
+        id[12] = (byte) ((c >>> 8) & 0xff);
+        id[13] = (byte) (c & 0xff);
+        return new BigInteger(id).toString(34);
+    }
+
+    @Benchmark
+    public String guid() {
+        return new GUID().toString();
+    }
+
+    @Benchmark
+    public String nextId() {
+        return GUID.nextId();
+    }
+}
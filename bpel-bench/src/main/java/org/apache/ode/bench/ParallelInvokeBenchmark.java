@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bench;
+
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+
+import org.apache.ode.utils.DOMUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Element;
+
+/**
+ * Completion time of an instance whose parallel forEach invokes a partner from
+ * every branch. The partner answers asynchronously from its own threads, so the
+ * responses race each other back to the instance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms512M", "-Xmx1024M" })
+public class ParallelInvokeBenchmark {
+    private static final String PROCESS = "TestParallelInvoke";
+
+    @Param({ "10", "100" })
+    public int branches;
+
+    @Param({ "4" })
+    public int engineThreads;
+
+    @Param({ "8" })
+    public int partnerThreads;
+
+    private BenchmarkServer _server;
+    private ExecutorService _partners;
+    private QName _service;
+    private String _operation;
+    private Element _request;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        _partners = Executors.newFixedThreadPool(partnerThreads);
+        _server = new BenchmarkServer(engineThreads);
+        _server.setUp();
+        _server.useAsyncPartners(_partners);
+        _server.deploy(PROCESS);
+
+        Properties props = Corpus.getTestProperties(PROCESS);
+        _service = new QName(props.getProperty("namespace"), props.getProperty("service"));
+        _operation = props.getProperty("operation");
+        _request = DOMUtils.stringToDOM("<message><branches>" + branches + "</branches></message>");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try {
+            _server.shutdown();
+        } finally {
+            _partners.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public Element invoke() throws Exception {
+        return _server.invoke(_service, _operation, _request);
+    }
+}
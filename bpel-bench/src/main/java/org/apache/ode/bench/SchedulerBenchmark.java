@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bench;
+
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ode.bpel.iapi.Scheduler;
+import org.apache.ode.bpel.iapi.Scheduler.JobDetails;
+import org.apache.ode.bpel.iapi.Scheduler.JobInfo;
+import org.apache.ode.bpel.iapi.Scheduler.JobType;
+import org.apache.ode.scheduler.simple.JdbcDelegate;
+import org.apache.ode.scheduler.simple.SimpleScheduler;
+import org.apache.ode.test.BPELTestAbstract;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Job throughput of the {@link SimpleScheduler}: jobs scheduled in a transaction,
+ * dispatched and run by a no-op processor. Persisted jobs go through the Derby
+ * database of the test harness.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class SchedulerBenchmark {
+    private static final int BATCH = 100;
+
+    private BenchmarkServer _harness;
+    private SimpleScheduler _scheduler;
+    private ExecutorService _exec;
+    private volatile CountDownLatch _done;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        // the harness owns the transaction manager and data source
+        _harness = new BenchmarkServer(1);
+        _harness.setUp();
+
+        _exec = Executors.newFixedThreadPool(8);
+        _scheduler = new SimpleScheduler("bench", new JdbcDelegate(BPELTestAbstract._dataSource), new Properties());
+        _scheduler.setTransactionManager(BPELTestAbstract._txManager);
+        _scheduler.setExecutorService(_exec);
+        _scheduler.setJobProcessor(new Scheduler.JobProcessor() {
+            public void onScheduledJob(JobInfo jobInfo) {
+                _done.countDown();
+            }
+        });
+        _scheduler.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        _scheduler.shutdown();
+        _exec.shutdownNow();
+        _harness.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void volatileJobs() throws Exception {
+        _done = new CountDownLatch(BATCH);
+        _scheduler.execTransaction(new Callable<Void>() {
+            public Void call() throws Exception {
+                for (int i = 0; i < BATCH; i++) {
+                    _scheduler.scheduleVolatileJob(true, newDetails(i));
+                }
+                return null;
+            }
+        });
+        _done.await(60, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void persistedJobs() throws Exception {
+        _done = new CountDownLatch(BATCH);
+        _scheduler.execTransaction(new Callable<Void>() {
+            public Void call() throws Exception {
+                for (int i = 0; i < BATCH; i++) {
+                    _scheduler.schedulePersistedJob(newDetails(i), null);
+                }
+                return null;
+            }
+        });
+        _done.await(60, TimeUnit.SECONDS);
+    }
+
+    private static JobDetails newDetails(long iid) {
+        JobDetails details = new JobDetails();
+        details.setType(JobType.TIMER);
+        details.setInstanceId(iid);
+        return details;
+    }
+}
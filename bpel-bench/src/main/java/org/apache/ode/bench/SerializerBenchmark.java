@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ode.bpel.compiler.BpelC;
+import org.apache.ode.bpel.o.OProcess;
+import org.apache.ode.bpel.o.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading of compiled processes, done on every deployment and rehydration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+
+    @Param({ "HelloWorld2", "TestFlowActivity2", "TestCorrelationMultiComplex" })
+    public String process;
+
+    private byte[] _cbp;
+    private OProcess _oprocess;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        BpelC compiler = BpelC.newBpelCompiler();
+        compiler.setOutputStream(bos);
+        compiler.compile(Corpus.getBpelFile(process), 0);
+        _cbp = bos.toByteArray();
+        _oprocess = readOProcess();
+    }
+
+    @Benchmark
+    public OProcess readOProcess() throws Exception {
+        return new Serializer(new ByteArrayInputStream(_cbp)).readOProcess();
+    }
+
+    @Benchmark
+    public byte[] writeOProcess() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(_cbp.length);
+        new Serializer(_oprocess.compileDate.getTime()).writeOProcess(_oprocess, bos);
+        return bos.toByteArray();
+    }
+}
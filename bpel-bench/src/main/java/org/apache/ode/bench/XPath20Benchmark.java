@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bench;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+
+import net.sf.saxon.xpath.XPathFactoryImpl;
+
+import org.apache.ode.bpel.elang.xpath20.compiler.Constants;
+import org.apache.ode.bpel.elang.xpath20.o.OXPath20ExpressionBPEL20;
+import org.apache.ode.bpel.elang.xpath20.runtime.XPath20ExpressionRuntime;
+import org.apache.ode.bpel.explang.EvaluationContext;
+import org.apache.ode.bpel.o.OExpression;
+import org.apache.ode.bpel.o.OLink;
+import org.apache.ode.bpel.o.OMessageVarType;
+import org.apache.ode.bpel.o.OProcess;
+import org.apache.ode.bpel.o.OScope;
+import org.apache.ode.utils.DOMUtils;
+import org.apache.ode.utils.NSContext;
+import org.apache.ode.utils.Namespaces;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * XPath 2.0 evaluation the way assigns and conditions do it, through
+ * {@link XPath20ExpressionRuntime}, against the same expression compiled once
+ * with Saxon to show how much of the cost is compilation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class XPath20Benchmark implements EvaluationContext {
+
+    @Param({
+        "count(/order/item[price > 10])",
+        "sum(for $i in /order/item return $i/price * $i/qty)",
+        "string-join(/order/item/@sku, ',')",
+        "/order/item[last()]/@sku = 'sku-99'" })
+    public String expression;
+
+    @Param({ "100" })
+    public int items;
+
+    private XPath20ExpressionRuntime _runtime;
+    private OXPath20ExpressionBPEL20 _oexpr;
+    private XPathExpression _compiled;
+    private Element _root;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        StringBuilder doc = new StringBuilder("<order>");
+        for (int i = 0; i < items; i++) {
+            doc.append("<item sku='sku-").append(i).append("'><price>").append(i % 20)
+                    .append("</price><qty>").append(1 + i % 3).append("</qty></item>");
+        }
+        _root = DOMUtils.stringToDOM(doc.append("</order>").toString());
+
+        _runtime = new XPath20ExpressionRuntime();
+        _runtime.initialize(new HashMap());
+
+        String bpelNS = Namespaces.WSBPEL2_0_FINAL_EXEC;
+        _oexpr = new OXPath20ExpressionBPEL20(new OProcess("2.0"),
+                new QName(bpelNS, Constants.EXT_FUNCTION_GETVARIABLEDATA),
+                new QName(bpelNS, Constants.EXT_FUNCTION_GETVARIABLEPROPERTY),
+                new QName(bpelNS, Constants.EXT_FUNCTION_GETLINKSTATUS),
+                new QName(bpelNS, Constants.EXT_FUNCTION_DOXSLTRANSFORM), false);
+        _oexpr.namespaceCtx = new NSContext();
+        _oexpr.xpath = expression;
+
+        _compiled = new XPathFactoryImpl().newXPath().compile(expression);
+    }
+
+    @Benchmark
+    public String runtime() throws Exception {
+        return _runtime.evaluateAsString(_oexpr, this);
+    }
+
+    @Benchmark
+    public Object precompiled() throws Exception {
+        return _compiled.evaluate(_root, XPathConstants.STRING);
+    }
+
+    // EvaluationContext, only the context node is used by the expressions above
+
+    public Node getRootNode() {
+        return _root;
+    }
+
+    public Node readVariable(OScope.Variable variable, OMessageVarType.Part part) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Node getPartData(Element message, OMessageVarType.Part part) {
+        throw new UnsupportedOperationException();
+    }
+
+    public String readMessageProperty(OScope.Variable variable, OProcess.OProperty property) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean isLinkActive(OLink olink) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Node evaluateQuery(Node root, OExpression expr) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Long getProcessId() {
+        return 1L;
+    }
+
+    public QName getProcessQName() {
+        return new QName("urn:ode:bench", "XPath20Benchmark");
+    }
+
+    public boolean narrowTypes() {
+        return true;
+    }
+
+    public URI getBaseResourceURI() {
+        return null;
+    }
+
+    public Node getPropertyValue(QName propertyName) {
+        return null;
+    }
+
+    public Date getCurrentEventDateTime() {
+        return new Date();
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bench;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+
+import org.apache.ode.bpel.elang.xpath20.compiler.Constants;
+import org.apache.ode.bpel.elang.xpath20.o.OXPath20ExpressionBPEL20;
+import org.apache.ode.bpel.elang.xpath20.runtime.NativeTreeBuilder;
+import org.apache.ode.bpel.elang.xpath20.runtime.XPath20ExpressionRuntime;
+import org.apache.ode.bpel.explang.SnapshotEvaluationContext;
+import org.apache.ode.bpel.o.OElementVarType;
+import org.apache.ode.bpel.o.OExpression;
+import org.apache.ode.bpel.o.OLink;
+import org.apache.ode.bpel.o.OMessageVarType;
+import org.apache.ode.bpel.o.OProcess;
+import org.apache.ode.bpel.o.OScope;
+import org.apache.ode.bpel.runtime.VariableSnapshotCache;
+import org.apache.ode.utils.DOMUtils;
+import org.apache.ode.utils.NSContext;
+import org.apache.ode.utils.Namespaces;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * XPath 2.0 selections over a large variable, read through Saxon's DOM
+ * wrappers (the default) against a native copy of the variable kept across
+ * evaluations, the way {@link NativeTreeBuilder} does for read-mostly
+ * variables. The rebuilt case pays for the copy on every evaluation, as a
+ * variable written between every two reads would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class XPath20NativeTreeBenchmark implements SnapshotEvaluationContext {
+
+    @Param({
+        "count($order/item[price > 10 and starts-with(@sku, 'sku-1')])",
+        "sum(for $i in $order/item[qty > 1] return $i/price * $i/qty)",
+        "string-join(distinct-values($order/item/category), ',')",
+        "$order/item[@sku = $order/item[last()]/@ref]/price" })
+    public String expression;
+
+    @Param({ "1000", "10000" })
+    public int items;
+
+    private XPath20ExpressionRuntime _domRuntime;
+    private XPath20ExpressionRuntime _nativeRuntime;
+    private OXPath20ExpressionBPEL20 _oexpr;
+    private OScope.Variable _variable;
+    private Element _order;
+    private VariableSnapshotCache _snapshots;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        StringBuilder doc = new StringBuilder("<order>");
+        for (int i = 0; i < items; i++) {
+            doc.append("<item sku='sku-").append(i).append("' ref='sku-").append(i / 2).append("'><price>")
+                    .append(i % 20).append("</price><qty>").append(1 + i % 3).append("</qty><category>cat-")
+                    .append(i % 7).append("</category></item>");
+        }
+        _order = DOMUtils.stringToDOM(doc.append("</order>").toString());
+
+        _domRuntime = new XPath20ExpressionRuntime();
+        _domRuntime.initialize(new HashMap());
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put(NativeTreeBuilder.PROP_NATIVE_TREE, "true");
+        _nativeRuntime = new XPath20ExpressionRuntime();
+        _nativeRuntime.initialize(properties);
+
+        OProcess oprocess = new OProcess("2.0");
+        String bpelNS = Namespaces.WSBPEL2_0_FINAL_EXEC;
+        _oexpr = new OXPath20ExpressionBPEL20(oprocess,
+                new QName(bpelNS, Constants.EXT_FUNCTION_GETVARIABLEDATA),
+                new QName(bpelNS, Constants.EXT_FUNCTION_GETVARIABLEPROPERTY),
+                new QName(bpelNS, Constants.EXT_FUNCTION_GETLINKSTATUS),
+                new QName(bpelNS, Constants.EXT_FUNCTION_DOXSLTRANSFORM), false);
+        _oexpr.namespaceCtx = new NSContext();
+        _oexpr.xpath = expression;
+        _variable = new OScope.Variable(oprocess, new OElementVarType(oprocess, new QName(null, "order")));
+        _variable.name = "order";
+        _oexpr.vars.put(_variable.name, _variable);
+
+        _snapshots = new VariableSnapshotCache();
+    }
+
+    @Benchmark
+    public String dom() throws Exception {
+        return _domRuntime.evaluateAsString(_oexpr, this);
+    }
+
+    @Benchmark
+    public String nativeTree() throws Exception {
+        return _nativeRuntime.evaluateAsString(_oexpr, this);
+    }
+
+    @Benchmark
+    public String nativeTreeRebuilt() throws Exception {
+        _snapshots.invalidate(1L, _variable.name);
+        return _nativeRuntime.evaluateAsString(_oexpr, this);
+    }
+
+    // SnapshotEvaluationContext, the expressions only read $order
+
+    public Object readVariableSnapshot(OScope.Variable variable, OMessageVarType.Part part, SnapshotBuilder builder) {
+        Object snapshot = _snapshots.get(1L, variable.name, null, builder);
+        if (snapshot == null) {
+            snapshot = builder.build(_order);
+            _snapshots.put(1L, variable.name, null, builder, snapshot);
+        }
+        return snapshot;
+    }
+
+    public Node readVariable(OScope.Variable variable, OMessageVarType.Part part) {
+        return _order;
+    }
+
+    public Node getRootNode() {
+        return null;
+    }
+
+    public Node getPartData(Element message, OMessageVarType.Part part) {
+        throw new UnsupportedOperationException();
+    }
+
+    public String readMessageProperty(OScope.Variable variable, OProcess.OProperty property) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean isLinkActive(OLink olink) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Node evaluateQuery(Node root, OExpression expr) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Long getProcessId() {
+        return 1L;
+    }
+
+    public QName getProcessQName() {
+        return new QName("urn:ode:bench", "XPath20NativeTreeBenchmark");
+    }
+
+    public boolean narrowTypes() {
+        return true;
+    }
+
+    public URI getBaseResourceURI() {
+        return null;
+    }
+
+    public Node getPropertyValue(QName propertyName) {
+        return null;
+    }
+
+    public Date getCurrentEventDateTime() {
+        return new Date();
+    }
+}
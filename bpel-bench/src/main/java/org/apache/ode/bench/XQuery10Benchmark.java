@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bench;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+import javax.xml.xquery.XQConnection;
+import javax.xml.xquery.XQConstants;
+import javax.xml.xquery.XQPreparedExpression;
+import javax.xml.xquery.XQResultSequence;
+import javax.xml.xquery.XQStaticContext;
+
+import net.sf.saxon.Configuration;
+import net.sf.saxon.om.Validation;
+import net.sf.saxon.xqj.SaxonXQConnection;
+import net.sf.saxon.xqj.SaxonXQDataSource;
+
+import org.apache.ode.bpel.elang.xpath20.compiler.Constants;
+import org.apache.ode.bpel.elang.xquery10.o.OXQuery10ExpressionBPEL20;
+import org.apache.ode.bpel.elang.xquery10.runtime.XQuery10ExpressionRuntime;
+import org.apache.ode.bpel.explang.EvaluationContext;
+import org.apache.ode.bpel.o.OExpression;
+import org.apache.ode.bpel.o.OLink;
+import org.apache.ode.bpel.o.OMessageVarType;
+import org.apache.ode.bpel.o.OProcess;
+import org.apache.ode.bpel.o.OScope;
+import org.apache.ode.utils.DOMUtils;
+import org.apache.ode.utils.NSContext;
+import org.apache.ode.utils.Namespaces;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * XQuery 1.0 evaluation through {@link XQuery10ExpressionRuntime}, which keeps
+ * prepared expressions on a shared Saxon configuration, against the legacy
+ * setup creating a data source, a configuration and a prepared expression for
+ * every evaluation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class XQuery10Benchmark implements EvaluationContext {
+
+    @Param({
+        "count(/order/item[price > 10])",
+        "string-join(for $i in /order/item where $i/qty > 1 return string($i/@sku), ',')" })
+    public String expression;
+
+    @Param({ "100" })
+    public int items;
+
+    private XQuery10ExpressionRuntime _runtime;
+    private OXQuery10ExpressionBPEL20 _oexpr;
+    private Element _root;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        StringBuilder doc = new StringBuilder("<order>");
+        for (int i = 0; i < items; i++) {
+            doc.append("<item sku='sku-").append(i).append("'><price>").append(i % 20)
+                    .append("</price><qty>").append(1 + i % 3).append("</qty></item>");
+        }
+        _root = DOMUtils.stringToDOM(doc.append("</order>").toString());
+
+        _runtime = new XQuery10ExpressionRuntime();
+        _runtime.initialize(new HashMap());
+
+        String bpelNS = Namespaces.WSBPEL2_0_FINAL_EXEC;
+        _oexpr = new OXQuery10ExpressionBPEL20(new OProcess("2.0"),
+                new QName(bpelNS, Constants.EXT_FUNCTION_GETVARIABLEDATA),
+                new QName(bpelNS, Constants.EXT_FUNCTION_GETVARIABLEPROPERTY),
+                new QName(bpelNS, Constants.EXT_FUNCTION_GETLINKSTATUS),
+                new QName(bpelNS, Constants.EXT_FUNCTION_DOXSLTRANSFORM), false);
+        _oexpr.namespaceCtx = new NSContext();
+        _oexpr.namespaceCtx.register("bpel", bpelNS);
+        _oexpr.xquery = expression;
+    }
+
+    @Benchmark
+    public String runtime() throws Exception {
+        return _runtime.evaluateAsString(_oexpr, this);
+    }
+
+    @Benchmark
+    public String legacy() throws Exception {
+        XQConnection xqconn = new SaxonXQDataSource().getConnection();
+        Configuration configuration = ((SaxonXQConnection) xqconn).getConfiguration();
+        configuration.setAllNodesUntyped(true);
+        configuration.setHostLanguage(Configuration.XQUERY);
+        XQStaticContext staticEnv = xqconn.getStaticContext();
+        for (String prefix : _oexpr.namespaceCtx.getPrefixes()) {
+            staticEnv.declareNamespace(prefix, _oexpr.namespaceCtx.getNamespaceURI(prefix));
+        }
+        configuration.setSchemaValidationMode(Validation.SKIP);
+        xqconn.setStaticContext(staticEnv);
+
+        XQPreparedExpression exp = xqconn.prepareExpression(_oexpr.xquery.replaceFirst(
+                Constants.XQUERY_FUNCTION_HANDLER_COMPILER, Constants.XQUERY_FUNCTION_HANDLER_RUNTIME));
+        exp.bindItem(XQConstants.CONTEXT_ITEM, xqconn.createItemFromNode(_root, xqconn.createNodeType()));
+        XQResultSequence result = exp.executeQuery();
+        return result.next() ? result.getItemAsString(null) : null;
+    }
+
+    // EvaluationContext, only the context node is used by the expressions above
+
+    public Node getRootNode() {
+        return _root;
+    }
+
+    public Node readVariable(OScope.Variable variable, OMessageVarType.Part part) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Node getPartData(Element message, OMessageVarType.Part part) {
+        throw new UnsupportedOperationException();
+    }
+
+    public String readMessageProperty(OScope.Variable variable, OProcess.OProperty property) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean isLinkActive(OLink olink) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Node evaluateQuery(Node root, OExpression expr) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Long getProcessId() {
+        return 1L;
+    }
+
+    public QName getProcessQName() {
+        return new QName("urn:ode:bench", "XQuery10Benchmark");
+    }
+
+    public boolean narrowTypes() {
+        return true;
+    }
+
+    public URI getBaseResourceURI() {
+        return null;
+    }
+
+    public Node getPropertyValue(QName propertyName) {
+        return null;
+    }
+
+    public Date getCurrentEventDateTime() {
+        return new Date();
+    }
+}
@@ -112,6 +112,16 @@ public interface BpelDAOConnection {
      */
     MessageExchangeDAO createMessageExchange(char dir);
 
+    /**
+     * Create a message exchange with a given identifier, to persist an exchange that was
+     * first kept in memory. The identifier must be numeric and out of the range of the
+     * generated ones, such as those of the in-memory DAO.
+     * @param mexId identifier of the message exchange
+     * @param dir type of message exchange
+     * @return
+     */
+    MessageExchangeDAO createMessageExchange(String mexId, char dir);
+
     MessageExchangeDAO getMessageExchange(String mexid);
 
     /**
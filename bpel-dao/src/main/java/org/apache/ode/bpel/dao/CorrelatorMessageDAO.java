@@ -20,10 +20,19 @@
 package org.apache.ode.bpel.dao;
 
 import org.apache.ode.bpel.common.CorrelationKey;
+import org.apache.ode.bpel.common.CorrelationKeySet;
 
 public interface CorrelatorMessageDAO {
 
     CorrelationKey getCorrelationKey();
 
     void setCorrelationKey(CorrelationKey ckey);
+
+    /**
+     * Returns the correlation key set the message is queued under
+     * @return
+     */
+    CorrelationKeySet getCorrelationKeySet();
+
+    void setCorrelationKeySet(CorrelationKeySet keySet);
 }
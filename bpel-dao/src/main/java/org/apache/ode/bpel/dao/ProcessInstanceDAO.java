@@ -86,6 +86,18 @@ public interface ProcessInstanceDAO {
      */
     void setExecutionState(byte[] execState);
 
+    /**
+     * Get the delta to apply to the execution state to get the current one.
+     * @return opaque delta, <code>null</code> if the execution state is current
+     */
+    byte[] getExecutionStateDelta();
+
+    /**
+     * Set the delta to apply to the execution state to get the current one.
+     * @param delta opaque delta, <code>null</code> if the execution state is current
+     */
+    void setExecutionStateDelta(byte[] delta);
+
     /**
      * Get the process.
      *
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.dao;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.namespace.QName;
+
+import org.apache.ode.bpel.iapi.ProcessStoreEvent;
+import org.apache.ode.bpel.iapi.ProcessStoreListener;
+
+/**
+ * Primary keys of the process and correlator rows by process id and correlator id,
+ * shared by the connections of a DAO connection factory. These rows hardly ever
+ * change once a process is deployed, so the DAOs can load them by key, usually from
+ * the persistence context of the current transaction, instead of querying for them.
+ *
+ * Cached keys are hints: the DAOs check that the row they load still matches and
+ * {@link #invalidate(QName)} the process otherwise, which covers rows created by a
+ * transaction that rolled back and processes deleted behind the engine's back. Keys
+ * are only published when no invalidation happened since the lookup started (see
+ * {@link #generation()}), so a lookup racing with a redeployment can't put back a
+ * stale key. Deployments and undeployments invalidate the process when the cache is
+ * registered as a {@link ProcessStoreListener}.
+ *
+ * Only the keys are cached, not the rows: each transaction still loads the process
+ * row and every correlator row it touches once, by primary key. What goes away is the
+ * lookup by name and its repetition within a transaction. The rows themselves aren't
+ * kept across transactions because they hold state that other nodes of a cluster
+ * update, such as the active and retired flags and the correlator queues.
+ */
+public class ProcessMetadataCache implements ProcessStoreListener {
+
+    private final ConcurrentMap<QName, ProcessEntry> _processes = new ConcurrentHashMap<QName, ProcessEntry>();
+    private final AtomicLong _generation = new AtomicLong();
+
+    private static class ProcessEntry {
+        final Long id;
+        final ConcurrentMap<String, Long> correlators = new ConcurrentHashMap<String, Long>();
+
+        ProcessEntry(Long id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * @return a stamp to take before looking up a row and pass back when caching its key
+     */
+    public long generation() {
+        return _generation.get();
+    }
+
+    /**
+     * @return the primary key of the process row, null if unknown
+     */
+    public Long getProcessId(QName pid) {
+        ProcessEntry entry = _processes.get(pid);
+        return entry == null ? null : entry.id;
+    }
+
+    public void putProcessId(QName pid, Long id, long generation) {
+        if (id == null || _generation.get() != generation) return;
+        ProcessEntry entry = new ProcessEntry(id);
+        if (_processes.putIfAbsent(pid, entry) == null && _generation.get() != generation) {
+            // invalidated while we were putting it
+            _processes.remove(pid, entry);
+        }
+    }
+
+    /**
+     * @return the primary key of the correlator row of the given process row, null if unknown
+     */
+    public Long getCorrelatorId(QName pid, Long processId, String correlatorId) {
+        ProcessEntry entry = _processes.get(pid);
+        if (entry == null || !entry.id.equals(processId)) return null;
+        return entry.correlators.get(correlatorId);
+    }
+
+    public void putCorrelatorId(QName pid, Long processId, String correlatorId, Long id, long generation) {
+        if (id == null || _generation.get() != generation) return;
+        ProcessEntry entry = _processes.get(pid);
+        if (entry == null || !entry.id.equals(processId)) return;
+        entry.correlators.put(correlatorId, id);
+        if (_generation.get() != generation) entry.correlators.remove(correlatorId, id);
+    }
+
+    /**
+     * Forgets the keys of a process and its correlators.
+     */
+    public void invalidate(QName pid) {
+        _generation.incrementAndGet();
+        _processes.remove(pid);
+    }
+
+    public void clear() {
+        _generation.incrementAndGet();
+        _processes.clear();
+    }
+
+    public int size() {
+        return _processes.size();
+    }
+
+    public void onProcessStoreEvent(ProcessStoreEvent event) {
+        switch (event.type) {
+            case DEPLOYED:
+            case UNDEPLOYED:
+                invalidate(event.pid);
+                break;
+            default:
+                break;
+        }
+    }
+}
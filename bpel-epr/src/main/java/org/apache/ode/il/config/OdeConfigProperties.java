@@ -29,6 +29,10 @@ import java.util.Properties;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ode.utils.SystemUtils;
+import org.apache.ode.utils.concurrent.BackPressure;
+import org.apache.ode.utils.concurrent.BoundedExecutor;
+import org.apache.ode.utils.concurrent.ExecutorRegistry;
+import org.apache.ode.utils.metrics.Gauge;
 
 /**
  * Configuration object used for configuring the intergration layer. The propereties are those likely to be common to all layers.
@@ -46,6 +50,8 @@ public class OdeConfigProperties {
 
     public static final String PROP_DB_EMBEDDED_NAME = "db.emb.name";
 
+    public static final String PROP_DB_EMBEDDED_STATEMENT_CACHE = "db.emb.statement.cache.size";
+
     public static final String PROP_DB_INTERNAL_URL = "db.int.jdbcurl";
 
     public static final String PROP_DB_INTERNAL_DRIVER = "db.int.driver";
@@ -66,6 +72,17 @@ public class OdeConfigProperties {
 
     public static final String PROP_THREAD_POOL_SIZE = "threads.pool.size";
 
+    /** Per-pool settings, e.g. threads.outbound.size; see {@link org.apache.ode.utils.concurrent.ExecutorRegistry}. */
+    public static final String PROP_THREADS_PREFIX = "threads.";
+
+    public static final String PROP_THREADS_SIZE_SUFFIX = ".size";
+
+    public static final String PROP_THREADS_QUEUE_SUFFIX = ".queue";
+
+    public static final String PROP_THREADS_REJECTION_SUFFIX = ".rejection";
+
+    public static final String PROP_THREADS_VIRTUAL_SUFFIX = ".virtual";
+
     public static final String PROP_CONNECTOR_PORT = "jca.port";
 
     public static final String PROP_CONNECTOR_NAME = "jca.name";
@@ -80,6 +97,10 @@ public class OdeConfigProperties {
 
     public static final String PROP_MEX_INMEM_TTL = "mex.inmem.ttl";
 
+    public static final String PROP_INMEM_SPOOL_THRESHOLD = "inmem.variable.spool.threshold";
+
+    public static final String PROP_INMEM_INSTANCE_DATA_BUDGET = "inmem.instance.data.budget";
+
     public static final String PROP_PROCESS_DEHYDRATION = "process.dehydration";
 
     public static final String PROP_PROCESS_DEHYDRATION_MAXIMUM_AGE = "process.dehydration.maximum.age";
@@ -96,10 +117,50 @@ public class OdeConfigProperties {
 
     public static final String PROP_PROCESS_INSTANCE_THROTTLED_MAXIMUM_COUNT = "process.instance.throttled.maximum.count";
 
+    public static final String PROP_INSTANCE_COUNT_RECONCILE_INTERVAL = "instance.count.reconcile.interval";
+
     public static final String PROP_DAOCF = "dao.factory";
 
     public static final String PROP_MIGRATION_TRANSACTION_TIMEOUT = "migration.transaction.timeout";
 
+    public static final String PROP_METRICS_ENABLED = "metrics.enabled";
+
+    public static final String PROP_ENDPOINT_BREAKER_ENABLED = "endpoint.breaker.enabled";
+
+    public static final String PROP_ENDPOINT_BREAKER_MAX_ENDPOINTS = "endpoint.breaker.max.endpoints";
+
+    public static final String PROP_ENDPOINT_BREAKER_WINDOW = "endpoint.breaker.window";
+
+    public static final String PROP_ENDPOINT_BREAKER_MIN_CALLS = "endpoint.breaker.min.calls";
+
+    public static final String PROP_ENDPOINT_BREAKER_FAILURE_RATE = "endpoint.breaker.failure.rate";
+
+    public static final String PROP_ENDPOINT_BREAKER_OPEN_INTERVAL = "endpoint.breaker.open.interval";
+
+    public static final String PROP_ENDPOINT_TIMEOUT_ADAPTIVE = "endpoint.timeout.adaptive";
+
+    public static final String PROP_ENDPOINT_TIMEOUT_MIN = "endpoint.timeout.min";
+
+    public static final String PROP_ENDPOINT_TIMEOUT_LATENCY_FACTOR = "endpoint.timeout.latency.factor";
+
+    public static final String PROP_BACKPRESSURE_ENABLED = "backpressure.enabled";
+
+    public static final String PROP_BACKPRESSURE_SCHEDULER_RATIO = "backpressure.scheduler.ratio";
+
+    public static final String PROP_BACKPRESSURE_TRANSACTION_LATENCY = "backpressure.transaction.latency";
+
+    public static final String PROP_BACKPRESSURE_EXECUTOR_RATIO = "backpressure.executor.ratio";
+
+    public static final String PROP_BACKPRESSURE_RESUME_RATIO = "backpressure.resume.ratio";
+
+    public static final String PROP_BACKPRESSURE_RETRY_AFTER = "backpressure.retry.after";
+
+    public static final String PROP_BACKPRESSURE_MAX_DELAY = "backpressure.max.delay";
+
+    public static final String PROP_CRON_MISFIRE_THRESHOLD = "cron.misfire.threshold";
+
+    public static final String PROP_CRON_MISFIRE_POLICY = "cron.misfire.policy";
+
     public static final String DEFAULT_TX_FACTORY_CLASS_NAME = "org.apache.ode.il.EmbeddedGeronimoFactory";
 
     private File _cfgFile;
@@ -188,6 +249,13 @@ public class OdeConfigProperties {
 
     }
 
+    /**
+     * @return number of compiled statements the embedded database keeps across connections
+     */
+    public int getDbEmbeddedStatementCacheSize() {
+        return Integer.valueOf(getProperty(OdeConfigProperties.PROP_DB_EMBEDDED_STATEMENT_CACHE, "500"));
+    }
+
     public DatabaseMode getDbMode() {
         return DatabaseMode.valueOf(getProperty(OdeConfigProperties.PROP_DB_MODE, DatabaseMode.EMBEDDED.toString()).trim()
                 .toUpperCase());
@@ -238,6 +306,37 @@ public class OdeConfigProperties {
         return Integer.valueOf(getProperty(OdeConfigProperties.PROP_THREAD_POOL_SIZE, "0"));
     }
 
+    /**
+     * @return number of threads of the named pool; the job pool defaults to {@link #PROP_THREAD_POOL_SIZE}
+     */
+    public int getThreadPoolSize(String pool, int dflt) {
+        if (ExecutorRegistry.JOBS.equals(pool) && getThreadPoolMaxSize() > 0) dflt = getThreadPoolMaxSize();
+        return Integer.valueOf(getProperty(PROP_THREADS_PREFIX + pool + PROP_THREADS_SIZE_SUFFIX, String.valueOf(dflt)));
+    }
+
+    public int getThreadPoolQueueSize(String pool, int dflt) {
+        return Integer.valueOf(getProperty(PROP_THREADS_PREFIX + pool + PROP_THREADS_QUEUE_SUFFIX, String.valueOf(dflt)));
+    }
+
+    public BoundedExecutor.RejectionPolicy getThreadPoolRejectionPolicy(String pool, BoundedExecutor.RejectionPolicy dflt) {
+        String policy = getProperty(PROP_THREADS_PREFIX + pool + PROP_THREADS_REJECTION_SUFFIX);
+        if (policy == null) return dflt;
+        return BoundedExecutor.RejectionPolicy.valueOf(policy.trim().toUpperCase().replace('-', '_'));
+    }
+
+    public boolean isThreadPoolVirtual(String pool) {
+        return Boolean.valueOf(getProperty(PROP_THREADS_PREFIX + pool + PROP_THREADS_VIRTUAL_SUFFIX, "false"));
+    }
+
+    /**
+     * Creates the named pool in the registry from the threads.&lt;pool&gt;.* properties.
+     */
+    public BoundedExecutor createExecutor(ExecutorRegistry registry, String pool, int threads, int queueSize,
+                                          BoundedExecutor.RejectionPolicy policy) {
+        return registry.create(pool, getThreadPoolSize(pool, threads), getThreadPoolQueueSize(pool, queueSize),
+                getThreadPoolRejectionPolicy(pool, policy), isThreadPoolVirtual(pool));
+    }
+
     public int getPoolMaxSize() {
         return Integer.valueOf(getProperty(OdeConfigProperties.PROP_POOL_MAX, "10"));
     }
@@ -278,6 +377,20 @@ public class OdeConfigProperties {
         return Long.valueOf(getProperty(PROP_MEX_INMEM_TTL, ""+10*60*1000));
     }
 
+    /**
+     * @return serialized size in bytes over which stored variable values of in-memory processes are spooled to disk, 0 to never spool
+     */
+    public long getInMemSpoolThreshold() {
+        return Long.valueOf(getProperty(PROP_INMEM_SPOOL_THRESHOLD, "0"));
+    }
+
+    /**
+     * @return serialized bytes of stored variable values an in-memory instance keeps unspooled, 0 for no limit
+     */
+    public long getInMemInstanceDataBudget() {
+        return Long.valueOf(getProperty(PROP_INMEM_INSTANCE_DATA_BUDGET, "0"));
+    }
+
     public boolean isDehydrationEnabled() {
         return Boolean.valueOf(getProperty(OdeConfigProperties.PROP_PROCESS_DEHYDRATION, "false"));
     }
@@ -306,6 +419,10 @@ public class OdeConfigProperties {
         return Integer.valueOf(getProperty(OdeConfigProperties.PROP_PROCESS_INSTANCE_THROTTLED_MAXIMUM_COUNT, String.valueOf(Integer.MAX_VALUE)));
     }
 
+    public long getInstanceCountReconcileInterval() {
+        return Long.valueOf(getProperty(OdeConfigProperties.PROP_INSTANCE_COUNT_RECONCILE_INTERVAL, "60000"));
+    }
+
     public long getProcessThrottledMaximumSize() {
         return Long.valueOf(getProperty(OdeConfigProperties.PROP_PROCESS_HYDRATION_THROTTLED_MAXIMUM_SIZE, String.valueOf(Long.MAX_VALUE)));
     }
@@ -343,4 +460,107 @@ public class OdeConfigProperties {
         return Integer.valueOf(getProperty(PROP_MIGRATION_TRANSACTION_TIMEOUT, String.valueOf(0)));
     }
 
+    public boolean isMetricsEnabled() {
+        return Boolean.valueOf(getProperty(PROP_METRICS_ENABLED, "false"));
+    }
+
+    public boolean isEndpointBreakerEnabled() {
+        return Boolean.valueOf(getProperty(PROP_ENDPOINT_BREAKER_ENABLED, "false"));
+    }
+
+    public int getEndpointBreakerMaxEndpoints() {
+        return Integer.valueOf(getProperty(PROP_ENDPOINT_BREAKER_MAX_ENDPOINTS, "1000"));
+    }
+
+    public int getEndpointBreakerWindow() {
+        return Integer.valueOf(getProperty(PROP_ENDPOINT_BREAKER_WINDOW, "20"));
+    }
+
+    public int getEndpointBreakerMinCalls() {
+        return Integer.valueOf(getProperty(PROP_ENDPOINT_BREAKER_MIN_CALLS, "10"));
+    }
+
+    public double getEndpointBreakerFailureRate() {
+        return Double.valueOf(getProperty(PROP_ENDPOINT_BREAKER_FAILURE_RATE, "0.5"));
+    }
+
+    public long getEndpointBreakerOpenInterval() {
+        return Long.valueOf(getProperty(PROP_ENDPOINT_BREAKER_OPEN_INTERVAL, "30000"));
+    }
+
+    public boolean isEndpointTimeoutAdaptive() {
+        return Boolean.valueOf(getProperty(PROP_ENDPOINT_TIMEOUT_ADAPTIVE, "false"));
+    }
+
+    public long getEndpointTimeoutMin() {
+        return Long.valueOf(getProperty(PROP_ENDPOINT_TIMEOUT_MIN, "1000"));
+    }
+
+    public double getEndpointTimeoutLatencyFactor() {
+        return Double.valueOf(getProperty(PROP_ENDPOINT_TIMEOUT_LATENCY_FACTOR, "4"));
+    }
+
+    public boolean isBackPressureEnabled() {
+        return Boolean.valueOf(getProperty(PROP_BACKPRESSURE_ENABLED, "true"));
+    }
+
+    public double getBackPressureSchedulerRatio() {
+        return Double.valueOf(getProperty(PROP_BACKPRESSURE_SCHEDULER_RATIO, "0.9"));
+    }
+
+    public long getBackPressureTransactionLatency() {
+        return Long.valueOf(getProperty(PROP_BACKPRESSURE_TRANSACTION_LATENCY, "5000"));
+    }
+
+    public double getBackPressureExecutorRatio() {
+        return Double.valueOf(getProperty(PROP_BACKPRESSURE_EXECUTOR_RATIO, "0.9"));
+    }
+
+    public double getBackPressureResumeRatio() {
+        return Double.valueOf(getProperty(PROP_BACKPRESSURE_RESUME_RATIO, "0.8"));
+    }
+
+    public int getBackPressureRetryAfter() {
+        return Integer.valueOf(getProperty(PROP_BACKPRESSURE_RETRY_AFTER, "5"));
+    }
+
+    public long getBackPressureMaxDelay() {
+        return Long.valueOf(getProperty(PROP_BACKPRESSURE_MAX_DELAY, "2000"));
+    }
+
+    /**
+     * @return how late (ms) a cron fire time may start before it counts as a misfire, 0 to never misfire
+     */
+    public long getCronMisfireThreshold() {
+        return Long.valueOf(getProperty(PROP_CRON_MISFIRE_THRESHOLD, "0"));
+    }
+
+    /**
+     * @return what to do with a misfired cron fire time, fire_now or skip
+     */
+    public String getCronMisfirePolicy() {
+        return getProperty(PROP_CRON_MISFIRE_POLICY, "fire_now").trim().toUpperCase().replace('-', '_');
+    }
+
+    /**
+     * Creates the admission control of the inbound bindings from the backpressure.* properties,
+     * limiting the load of the jobs pool. The scheduler adds its own limits.
+     * @return null if back-pressure is disabled
+     */
+    public BackPressure createBackPressure(String name, ExecutorRegistry registry) {
+        if (!isBackPressureEnabled()) return null;
+        BackPressure backPressure = new BackPressure(name);
+        backPressure.setResumeRatio(getBackPressureResumeRatio());
+        backPressure.setRetryAfter(getBackPressureRetryAfter());
+        final BoundedExecutor jobs = registry.get(ExecutorRegistry.JOBS);
+        if (jobs != null) {
+            backPressure.addLimit("executor." + ExecutorRegistry.JOBS, new Gauge() {
+                public long getValue() {
+                    return jobs.getLoad();
+                }
+            }, getBackPressureExecutorRatio() * (jobs.getMaximumPoolSize() + jobs.getQueueCapacity()));
+        }
+        return backPressure;
+    }
+
 }
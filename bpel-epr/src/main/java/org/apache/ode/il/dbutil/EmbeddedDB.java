@@ -19,10 +19,17 @@
 
 package org.apache.ode.il.dbutil;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import org.apache.derby.jdbc.EmbeddedDriver;
 import org.apache.ode.il.config.OdeConfigProperties;
 
 public class EmbeddedDB extends InternalDB {
 
+    private static final String DERBY_STATEMENT_CACHE = "derby.language.statementCacheSize";
+
     public EmbeddedDB(OdeConfigProperties props) {
         super(props);
     }
@@ -37,8 +44,32 @@ public class EmbeddedDB extends InternalDB {
         String url = "jdbc:derby:" + _workRoot + "/" + db ;
         __log.info("Using Embedded Derby: " + url);
         _derbyUrl = url;
+        bootDatabase(url);
         initInternalDb(url, org.apache.derby.jdbc.EmbeddedDriver.class.getName(),"sa",null);
         _needDerbyShutdown = true;
     }
 
+    /**
+     * Derby shares compiled statements between connections by SQL text. Boots the database
+     * with a statement cache sized for the DAO layer's working set. Derby only reads the size
+     * as a system property when a database boots, so the property is set for the boot of this
+     * database and cleared right after, leaving other Derby databases of the JVM alone. A size
+     * set for the whole JVM is used as is.
+     */
+    private void bootDatabase(String url) {
+        if (System.getProperty(DERBY_STATEMENT_CACHE) != null)
+            return;
+
+        System.setProperty(DERBY_STATEMENT_CACHE, String.valueOf(_odeConfig.getDbEmbeddedStatementCacheSize()));
+        try {
+            Connection conn = new EmbeddedDriver().connect(url, new Properties());
+            if (conn != null)
+                conn.close();
+        } catch (SQLException ex) {
+            __log.debug("Couldn't boot " + url + " ahead of the connection pool", ex);
+        } finally {
+            System.clearProperty(DERBY_STATEMENT_CACHE);
+        }
+    }
+
 }
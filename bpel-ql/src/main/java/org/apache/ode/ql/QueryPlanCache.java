@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.ql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ode.ql.eval.skel.CommandEvaluator;
+import org.apache.ode.ql.tree.Builder;
+import org.apache.ode.ql.tree.BuilderFactory;
+import org.apache.ode.ql.tree.nodes.Query;
+
+/**
+ * Bounded LRU cache of compiled query plans, keyed by the query text. A query
+ * is parsed and compiled once and the resulting {@link CommandEvaluator} is
+ * reused by every later call with the same text, so evaluators handed out by
+ * this cache must not keep any state between evaluations.
+ *
+ * A fresh {@link Compiler} is created for each miss since compilers collect
+ * flags while walking the tree.
+ */
+public abstract class QueryPlanCache<R, PARAMC> {
+    public static final int DEFAULT_SIZE = 256;
+
+    private final Map<String, CommandEvaluator<R, PARAMC>> _plans;
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+
+    /**
+     * @param maxSize number of plans to keep, 0 disables caching
+     */
+    public QueryPlanCache(final int maxSize) {
+        if (maxSize < 0) throw new IllegalArgumentException("Plan cache size must not be negative: " + maxSize);
+        _plans = new LinkedHashMap<String, CommandEvaluator<R, PARAMC>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CommandEvaluator<R, PARAMC>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    protected abstract Compiler<R, PARAMC> createCompiler();
+
+    /**
+     * Returns the compiled plan of a query, parsing and compiling it on the
+     * first call.
+     */
+    public CommandEvaluator<R, PARAMC> getPlan(String expression) {
+        String key = expression.trim();
+        CommandEvaluator<R, PARAMC> plan;
+        synchronized (_plans) {
+            plan = _plans.get(key);
+        }
+        if (plan != null) {
+            _hits.incrementAndGet();
+            return plan;
+        }
+        _misses.incrementAndGet();
+
+        // compiled outside the lock, two threads racing on the same new query both compile it
+        Builder<String> builder = BuilderFactory.getInstance().createBuilder();
+        plan = createCompiler().compile((Query) builder.build(key));
+        synchronized (_plans) {
+            _plans.put(key, plan);
+        }
+        return plan;
+    }
+
+    public int size() {
+        synchronized (_plans) {
+            return _plans.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (_plans) {
+            _plans.clear();
+        }
+    }
+
+    public long getHits() {
+        return _hits.get();
+    }
+
+    public long getMisses() {
+        return _misses.get();
+    }
+}
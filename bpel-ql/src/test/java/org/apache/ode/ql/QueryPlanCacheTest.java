@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.ql;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.apache.ode.ql.eval.skel.CommandEvaluator;
+import org.apache.ode.ql.tree.nodes.Query;
+
+public class QueryPlanCacheTest extends TestCase {
+
+  private AtomicInteger compiled = new AtomicInteger();
+
+  private QueryPlanCache<Query, Object> cache(int size) {
+    return new QueryPlanCache<Query, Object>(size) {
+      protected Compiler<Query, Object> createCompiler() {
+        return new Compiler<Query, Object>() {
+          public CommandEvaluator<Query, Object> compile(final Query query) {
+            compiled.incrementAndGet();
+            return new CommandEvaluator<Query, Object>() {
+              public Query evaluate(Object paramValue) {
+                return query;
+              }
+            };
+          }
+        };
+      }
+    };
+  }
+
+  public void testReusesPlan() throws Exception {
+    QueryPlanCache<Query, Object> cache = cache(10);
+    CommandEvaluator<Query, Object> plan = cache.getPlan("pid = \"HelloWorld\" order by last-active desc limit 10");
+    assertSame(plan, cache.getPlan(" pid = \"HelloWorld\" order by last-active desc limit 10 "));
+    assertEquals(1, compiled.get());
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(10, plan.evaluate(null).getLimit().getNumber());
+  }
+
+  public void testEvictsLeastRecentlyUsed() throws Exception {
+    QueryPlanCache<Query, Object> cache = cache(2);
+    CommandEvaluator<Query, Object> a = cache.getPlan("pid = \"a\"");
+    cache.getPlan("pid = \"b\"");
+    cache.getPlan("pid = \"a\"");
+    cache.getPlan("pid = \"c\"");
+    assertEquals(2, cache.size());
+    assertSame(a, cache.getPlan("pid = \"a\""));
+    cache.getPlan("pid = \"b\"");
+    assertEquals(4, compiled.get());
+  }
+
+  public void testDisabled() throws Exception {
+    QueryPlanCache<Query, Object> cache = cache(0);
+    assertNotSame(cache.getPlan("pid = \"a\""), cache.getPlan("pid = \"a\""));
+    assertEquals(0, cache.size());
+  }
+
+}
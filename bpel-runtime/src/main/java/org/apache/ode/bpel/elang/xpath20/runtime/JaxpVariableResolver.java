@@ -37,6 +37,7 @@ import org.apache.ode.bpel.common.FaultException;
 import org.apache.ode.bpel.elang.xpath10.o.OXPath10ExpressionBPEL20;
 import org.apache.ode.bpel.elang.xpath20.compiler.WrappedResolverException;
 import org.apache.ode.bpel.explang.EvaluationContext;
+import org.apache.ode.bpel.explang.SnapshotEvaluationContext;
 import org.apache.ode.bpel.o.OLink;
 import org.apache.ode.bpel.o.OMessageVarType;
 import org.apache.ode.bpel.o.OScope;
@@ -55,11 +56,22 @@ public class JaxpVariableResolver implements XPathVariableResolver {
     private EvaluationContext _ectx;
     private OXPath10ExpressionBPEL20 _oxpath;
     private Configuration _config;
+    private NativeTreeBuilder _nativeTree;
 
     public JaxpVariableResolver(EvaluationContext ectx, OXPath10ExpressionBPEL20 oxpath, Configuration config) {
+        this(ectx, oxpath, config, null);
+    }
+
+    /**
+     * @param nativeTree when not null, variables are resolved to native copies whenever the
+     *   context keeps snapshots
+     */
+    public JaxpVariableResolver(EvaluationContext ectx, OXPath10ExpressionBPEL20 oxpath, Configuration config,
+                                NativeTreeBuilder nativeTree) {
         _ectx = ectx;
         _oxpath = oxpath;
         _config = config;
+        _nativeTree = nativeTree;
     }
 
     public Object resolveVariable(QName variableName) {
@@ -107,6 +119,11 @@ public class JaxpVariableResolver implements XPathVariableResolver {
             OMessageVarType.Part part = partName == null ? null : ((OMessageVarType) variable.type).parts.get(partName);
 
             try {
+                if (_nativeTree != null && _ectx instanceof SnapshotEvaluationContext && !isSimpleType(variable, part)) {
+                    Object snapshot = ((SnapshotEvaluationContext) _ectx).readVariableSnapshot(variable, part, _nativeTree);
+                    if (snapshot != null) return snapshot;
+                }
+
                 final Node variableNode = _ectx.readVariable(variable, part);
                 if (variableNode == null)
                     throw new FaultException(variable.getOwner().constants.qnSelectionFailure, "Unknown variable " + variableName.getLocalPart());
@@ -125,6 +142,12 @@ public class JaxpVariableResolver implements XPathVariableResolver {
         }
     }
 
+    private boolean isSimpleType(OScope.Variable variable, OMessageVarType.Part part) {
+        if (!_ectx.narrowTypes()) return false;
+        if (variable.type instanceof OXsdTypeVarType && ((OXsdTypeVarType) variable.type).simple) return true;
+        return part != null && part.type instanceof OXsdTypeVarType && ((OXsdTypeVarType) part.type).simple;
+    }
+
     public Value convertSimpleTypeToSaxon(QName type, String value) {
         int fp = _config.getNamePool().allocate("", type.getNamespaceURI(), type.getLocalPart());
         SchemaType type2 = _config.getSchemaType(fp);
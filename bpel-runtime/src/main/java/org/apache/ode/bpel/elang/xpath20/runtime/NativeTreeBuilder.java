@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.elang.xpath20.runtime;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import javax.xml.transform.dom.DOMSource;
+
+import net.sf.saxon.Configuration;
+import net.sf.saxon.dom.NodeOverNodeInfo;
+import net.sf.saxon.om.Axis;
+import net.sf.saxon.om.DocumentInfo;
+import net.sf.saxon.om.NodeInfo;
+import net.sf.saxon.om.VirtualNode;
+import net.sf.saxon.pattern.NodeKindTest;
+import net.sf.saxon.trans.XPathException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ode.bpel.elang.xpath10.o.OXPath10ExpressionBPEL20;
+import org.apache.ode.bpel.explang.SnapshotEvaluationContext;
+import org.apache.ode.bpel.o.OExpression;
+import org.apache.ode.utils.DOMUtils;
+import org.apache.ode.utils.NSContext;
+import org.apache.ode.utils.Namespaces;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * Builds Saxon native (TinyTree) copies of variables. Navigating a native tree
+ * is a lot cheaper than navigating DOM through Saxon's wrappers, so read-mostly
+ * variables are copied once per transaction and expressions run against the
+ * copy until the variable is written. Selected nodes are copied back to DOM.
+ *
+ * Only expressions that merely read variables qualify: the BPEL and ODE
+ * functions work on DOM arguments and stay on DOM, so do join conditions and
+ * expressions that insert missing data.
+ */
+public class NativeTreeBuilder implements SnapshotEvaluationContext.SnapshotBuilder {
+    private static final Log __log = LogFactory.getLog(NativeTreeBuilder.class);
+
+    /**
+     * Expression language property (or system property) turning native trees on, off by default.
+     */
+    public static final String PROP_NATIVE_TREE = "ode.saxon.nativeTree";
+
+    private static final String[] FUNCTION_NAMESPACES = new String[] {
+        Namespaces.WS_BPEL_20_NS, Namespaces.WSBPEL2_0_FINAL_EXEC,
+        Namespaces.ODE_EXTENSION_NS, Namespaces.DEPRECATED_XDT_NS };
+
+    private final Configuration _config;
+
+    /** Whether the text of each expression calls any of our functions. */
+    private final ConcurrentMap<OExpression, Boolean> _callsFunctions = new ConcurrentHashMap<OExpression, Boolean>();
+
+    public NativeTreeBuilder(Configuration config) {
+        _config = config;
+    }
+
+    /**
+     * @return true if the variables of the expression can be read from native copies
+     */
+    public boolean accepts(OXPath10ExpressionBPEL20 oexpr, String text) {
+        if (oexpr.isJoinExpression || oexpr.insertMissingData) return false;
+        Boolean calls = _callsFunctions.get(oexpr);
+        if (calls == null) {
+            calls = callsFunctions(oexpr.namespaceCtx, text);
+            _callsFunctions.put(oexpr, calls);
+        }
+        return !calls;
+    }
+
+    /**
+     * Copies an element into a native tree.
+     *
+     * @return the copy of the element, null for any other kind of node
+     */
+    public Object build(Node data) {
+        if (data.getNodeType() != Node.ELEMENT_NODE) return null;
+        try {
+            DocumentInfo doc = _config.buildDocument(new DOMSource(data));
+            // the copy is rooted at a document node, the variable is its element
+            return doc.iterateAxis(Axis.CHILD, NodeKindTest.ELEMENT).next();
+        } catch (XPathException e) {
+            __log.debug("Couldn't copy variable to a native tree, reading it as DOM", e);
+            return null;
+        }
+    }
+
+    /**
+     * Turns a node selected in a native tree into a DOM node of its own document,
+     * anything else is returned as is.
+     */
+    public static Object toDOM(Object item) {
+        Node node;
+        if (item instanceof NodeOverNodeInfo) {
+            node = (Node) item;
+        } else if (item instanceof NodeInfo && !(item instanceof VirtualNode)) {
+            node = NodeOverNodeInfo.wrap((NodeInfo) item);
+        } else {
+            return item;
+        }
+        if (node.getNodeType() == Node.DOCUMENT_NODE) {
+            node = ((Document) node).getDocumentElement();
+        }
+        Document document = DOMUtils.newDocument();
+        Node copy = document.importNode(node, true);
+        if (copy.getNodeType() == Node.ELEMENT_NODE) {
+            document.appendChild(copy);
+        }
+        return copy;
+    }
+
+    /**
+     * @param property value of {@link #PROP_NATIVE_TREE} in the expression language properties
+     */
+    public static boolean isEnabled(Object property) {
+        if (property == null) property = System.getProperty(PROP_NATIVE_TREE);
+        return property != null && Boolean.valueOf(property.toString());
+    }
+
+    /**
+     * Looks for calls to the functions resolved by {@link JaxpFunctionResolver}, that is
+     * prefixed names followed by a parenthesis. Variables are prefixed by $ and don't count.
+     */
+    static boolean callsFunctions(NSContext nsContext, String text) {
+        Set<String> prefixes = nsContext.getPrefixes();
+        for (String prefix : prefixes) {
+            if (prefix.length() == 0 || !isFunctionNamespace(nsContext.getNamespaceURI(prefix))) continue;
+            Pattern call = Pattern.compile("(?<![\\w$.-])" + Pattern.quote(prefix) + ":[\\w.-]+\\s*\\(");
+            if (call.matcher(text).find()) return true;
+        }
+        return false;
+    }
+
+    private static boolean isFunctionNamespace(String uri) {
+        for (String ns : FUNCTION_NAMESPACES) {
+            if (ns.equals(uri)) return true;
+        }
+        return false;
+    }
+}
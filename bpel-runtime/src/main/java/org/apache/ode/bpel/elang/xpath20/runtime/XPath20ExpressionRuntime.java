@@ -76,12 +76,18 @@ public class XPath20ExpressionRuntime implements ExpressionLanguageRuntime {
     
     private final XPathFactory _xpf = new XPathFactoryImpl();
 
+    /** Builds native copies of variables, null unless {@link NativeTreeBuilder#PROP_NATIVE_TREE} is set. */
+    private NativeTreeBuilder _nativeTree;
+
     public XPath20ExpressionRuntime(){
     }
 
     public void initialize(Map properties) throws ConfigurationException {
         TransformerFactory trsf = new net.sf.saxon.TransformerFactoryImpl();
         XslTransformHandler.getInstance().setTransformerFactory(trsf);
+        if (NativeTreeBuilder.isEnabled(properties == null ? null : properties.get(NativeTreeBuilder.PROP_NATIVE_TREE))) {
+            _nativeTree = new NativeTreeBuilder(((XPathFactoryImpl) _xpf).getConfiguration());
+        }
     }
 
     /**
@@ -116,6 +122,12 @@ public class XPath20ExpressionRuntime implements ExpressionLanguageRuntime {
         }
         if (someRes instanceof List) {
             result = (List) someRes;
+            if (_nativeTree != null) {
+                // nodes selected in native copies of variables
+                List converted = new ArrayList(result.size());
+                for (Object item : result) converted.add(NativeTreeBuilder.toDOM(item));
+                result = converted;
+            }
             if (__log.isDebugEnabled()) {
                 __log.debug("Returned list of size " + result.size());
             }
@@ -149,6 +161,7 @@ public class XPath20ExpressionRuntime implements ExpressionLanguageRuntime {
             result = new ArrayList(retVal.getLength());
             for(int m = 0; m < retVal.getLength(); ++m) {
                 Node val = retVal.item(m);
+                if (_nativeTree != null) val = (Node) NativeTreeBuilder.toDOM(val);
                 if (val.getNodeType() == Node.DOCUMENT_NODE) {
                     val = ((Document)val).getDocumentElement();
                 }
@@ -236,7 +249,8 @@ public class XPath20ExpressionRuntime implements ExpressionLanguageRuntime {
             OXPath20ExpressionBPEL20 oxpath20 = ((OXPath20ExpressionBPEL20) cexp);
 
             JaxpFunctionResolver funcResolver = new JaxpFunctionResolver(ctx, oxpath20);
-            JaxpVariableResolver varResolver = new JaxpVariableResolver(ctx, oxpath20, ((XPathFactoryImpl) _xpf).getConfiguration());
+            NativeTreeBuilder nativeTree = _nativeTree != null && _nativeTree.accepts(oxpath20, oxpath20.xpath) ? _nativeTree : null;
+            JaxpVariableResolver varResolver = new JaxpVariableResolver(ctx, oxpath20, ((XPathFactoryImpl) _xpf).getConfiguration(), nativeTree);
             XPath xpe = _xpf.newXPath();
             xpe.setXPathFunctionResolver(funcResolver);
             xpe.setXPathVariableResolver(varResolver);
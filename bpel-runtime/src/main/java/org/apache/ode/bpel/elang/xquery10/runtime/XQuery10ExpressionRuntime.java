@@ -18,6 +18,7 @@
  */
 package org.apache.ode.bpel.elang.xquery10.runtime;
 
+import java.io.Closeable;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.URI;
@@ -28,7 +29,11 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.namespace.QName;
 import javax.xml.transform.TransformerFactory;
@@ -47,6 +52,7 @@ import javax.xml.xquery.XQStaticContext;
 
 import net.sf.saxon.Configuration;
 import net.sf.saxon.om.Item;
+import net.sf.saxon.om.NodeInfo;
 import net.sf.saxon.om.Validation;
 import net.sf.saxon.trans.DynamicError;
 import net.sf.saxon.trans.XPathException;
@@ -63,6 +69,7 @@ import org.apache.ode.bpel.elang.xpath20.compiler.Constants;
 import org.apache.ode.bpel.elang.xpath20.compiler.WrappedResolverException;
 import org.apache.ode.bpel.elang.xpath20.runtime.JaxpFunctionResolver;
 import org.apache.ode.bpel.elang.xpath20.runtime.JaxpVariableResolver;
+import org.apache.ode.bpel.elang.xpath20.runtime.NativeTreeBuilder;
 import org.apache.ode.bpel.elang.xquery10.compiler.XQuery10BpelFunctions;
 import org.apache.ode.bpel.elang.xquery10.o.OXQuery10ExpressionBPEL20;
 import org.apache.ode.bpel.explang.ConfigurationException;
@@ -86,7 +93,7 @@ import org.w3c.dom.Text;
  * XQuery 1.0 Expression Language run-time subsytem. Saxon implementation.
  */
 @SuppressWarnings("deprecation")
-public class XQuery10ExpressionRuntime implements ExpressionLanguageRuntime {
+public class XQuery10ExpressionRuntime implements ExpressionLanguageRuntime, Closeable {
     static final short NODE_TYPE = 1;
     static final short NODESET_TYPE = 2;
     static final short STRING_TYPE = 3;
@@ -96,6 +103,28 @@ public class XQuery10ExpressionRuntime implements ExpressionLanguageRuntime {
     /** Class-level logger. */
     private static final Log __log = LogFactory.getLog(XQuery10ExpressionRuntime.class);
 
+    /** Prepared expressions kept per expression, i.e. concurrent evaluations served without preparing. */
+    static final int MAX_POOLED_EXPRESSIONS = 4;
+
+    /**
+     * Connection holding the Saxon configuration all expressions of the process are
+     * compiled against. The runtime lives as long as the process stays hydrated and is
+     * closed when it gets dehydrated.
+     */
+    private XQConnection _xqconn;
+
+    /**
+     * Prepared expressions ready for evaluation. A prepared expression holds its
+     * variable bindings, so it's only used by one evaluation at a time.
+     */
+    private final ConcurrentMap<OExpression, Queue<XQPreparedExpression>> _prepared =
+        new ConcurrentHashMap<OExpression, Queue<XQPreparedExpression>>();
+
+    private boolean _nativeTreeEnabled;
+
+    /** Builds native copies of variables against the connection's configuration, when enabled. */
+    private volatile NativeTreeBuilder _nativeTree;
+
     /**
      * Creates a new XQuery10ExpressionRuntime object.
      */
@@ -112,6 +141,8 @@ public class XQuery10ExpressionRuntime implements ExpressionLanguageRuntime {
     public void initialize(Map properties) throws ConfigurationException {
         TransformerFactory trsf = new net.sf.saxon.TransformerFactoryImpl();
         XslTransformHandler.getInstance().setTransformerFactory(trsf);
+        _nativeTreeEnabled = NativeTreeBuilder.isEnabled(
+            properties == null ? null : properties.get(NativeTreeBuilder.PROP_NATIVE_TREE));
     }
 
     /**
@@ -337,116 +368,63 @@ public class XQuery10ExpressionRuntime implements ExpressionLanguageRuntime {
         try {
             OXQuery10ExpressionBPEL20 oxquery10 = ((OXQuery10ExpressionBPEL20) cexp);
 
-            XQDataSource xqds = new SaxonXQDataSource();
-            XQConnection xqconn = xqds.getConnection();
-
+            XQConnection xqconn = getConnection();
             Configuration configuration = ((SaxonXQConnection) xqconn).getConfiguration();
-            configuration.setAllNodesUntyped(true);
-            configuration.setHostLanguage(Configuration.XQUERY);
-
-            XQStaticContext staticEnv = xqconn.getStaticContext();
-
-            NSContext nsContext = oxquery10.namespaceCtx;
-            Set<String> prefixes = nsContext.getPrefixes();
-            for (String prefix : prefixes) {
-                String uri = nsContext.getNamespaceURI(prefix);
-                staticEnv.declareNamespace(prefix, uri);
-            }
-
-            configuration.setSchemaValidationMode(Validation.SKIP);
-            xqconn.setStaticContext(staticEnv);
-
-            // Prepare expression, for starters
-            String xquery = oxquery10.xquery.replaceFirst(
-                    Constants.XQUERY_FUNCTION_HANDLER_COMPILER,
-                    Constants.XQUERY_FUNCTION_HANDLER_RUNTIME);
-            XQPreparedExpression exp = xqconn.prepareExpression(xquery);
-
-            JaxpFunctionResolver funcResolver = new JaxpFunctionResolver(ctx,
-                    oxquery10);
-            JaxpVariableResolver variableResolver = new JaxpVariableResolver(ctx,
-                    oxquery10, configuration);
-            // Bind external variables to runtime values
-            for (QName variable : exp.getAllUnboundExternalVariables()) {
-                // Evaluate referenced variable
-                Object value = variableResolver.resolveVariable(variable);
-
-                 if (value instanceof Value) {
-                     SaxonXQConnection saxonConn = (SaxonXQConnection) xqconn;
-                     try {
-                         Item item = ((Value) value).asItem();
-                         if (item == null) {
-                             exp.bindSequence(variable, xqconn.createSequence(Collections.EMPTY_LIST.iterator()));
-                         } else {
-                             XQItem item2 = new SaxonXQItem(item, saxonConn);
-                             exp.bindItem(variable, item2);
-                         }
-                     } catch (XPathException e) {
-                         __log.warn("", e);
-                     }
-                 } else {
 
-                     if (value instanceof Date) {
-                         Date d = (Date) value;
-                         value = org.apache.ode.utils.ISO8601DateParser.format(d);
-                     }
-
-                     // Figure out type of variable
-                     XQSequenceType xqType = getItemType(xqconn, value);
-
-                     // Saxon doesn't like binding sequences to variables
-                     if (value instanceof Node) {
-                         // a node is a node-list, but the inverse isn't true.
-                         // so, if the value is truly a node, leave it alone.
-                     } else if (value instanceof NodeList) {
-                         // So extract the first item from the node list
-                         NodeList nodeList = (NodeList) value;
-                         ArrayList nodeArray = new ArrayList();
-                         for (int i = 0; i < nodeList.getLength(); i++) {
-                             nodeArray.add(nodeList.item(i));
-                         }
-                         value = xqconn.createSequence(nodeArray.iterator());
-                     }
+            XQPreparedExpression exp = borrow(oxquery10);
+            boolean reusable = false;
+            Node contextNode = null;
+            Object previousResolver = null;
+            try {
+                JaxpFunctionResolver funcResolver = new JaxpFunctionResolver(ctx,
+                        oxquery10);
+                NativeTreeBuilder nativeTree = _nativeTree != null
+                    && _nativeTree.accepts(oxquery10, oxquery10.xquery) ? _nativeTree : null;
+                JaxpVariableResolver variableResolver = new JaxpVariableResolver(ctx,
+                        oxquery10, configuration, nativeTree);
+                if (!bindVariables(xqconn, exp, variableResolver)) {
+                    // a pooled expression would still hold the value of its previous
+                    // evaluation, let a fresh one fail on the unbound variable instead
+                    exp.close();
+                    exp = prepare(oxquery10);
+                    bindVariables(xqconn, exp, variableResolver);
+                }
 
-                     // Bind value with external variable
-                     if (value != null && xqType != null) {
-                         if (value instanceof XQSequence) {
-                             exp.bindSequence(variable, (XQSequence) value);
-                         } else {
-                             if (xqType instanceof XQItemType) {
-                                 exp.bindObject(variable, value, (XQItemType) xqType);
-                             }
-                         }
-                     }
-                  }
-            }
+                // Set context node
+                contextNode = (ctx.getRootNode() == null)
+                    ? DOMUtils.newDocument() : ctx.getRootNode();
+                previousResolver = contextNode.setUserData(XQuery10BpelFunctions.USER_DATA_KEY_FUNCTION_RESOLVER,
+                    funcResolver, null);
+                exp.bindItem(XQConstants.CONTEXT_ITEM,
+                    xqconn.createItemFromNode(contextNode, xqconn.createNodeType()));
 
-            // Set context node
-            Node contextNode = (ctx.getRootNode() == null)
-                ? DOMUtils.newDocument() : ctx.getRootNode();
-            contextNode.setUserData(XQuery10BpelFunctions.USER_DATA_KEY_FUNCTION_RESOLVER,
-                funcResolver, null);
-            exp.bindItem(XQConstants.CONTEXT_ITEM,
-                xqconn.createItemFromNode(contextNode, xqconn.createNodeType()));
+                // Execute query
+                XQResultSequence result = exp.executeQuery();
 
-            // Execute query
-            XQResultSequence result = exp.executeQuery();
+                // Cast Saxon result to Java result
+                Object evalResult = getResultValue(type, result);
 
-            // Cast Saxon result to Java result
-            Object evalResult = getResultValue(type, result);
+                if ((evalResult != null) && __log.isDebugEnabled()) {
+                    __log.debug("Expression " + cexp.toString() +
+                        " generated result " + evalResult + " - type=" +
+                        evalResult.getClass().getName());
 
-            if ((evalResult != null) && __log.isDebugEnabled()) {
-                __log.debug("Expression " + cexp.toString() +
-                    " generated result " + evalResult + " - type=" +
-                    evalResult.getClass().getName());
+                    if (ctx.getRootNode() != null) {
+                        __log.debug("Was using context node " +
+                            DOMUtils.domToString(ctx.getRootNode()));
+                    }
+                }
 
-                if (ctx.getRootNode() != null) {
-                    __log.debug("Was using context node " +
-                        DOMUtils.domToString(ctx.getRootNode()));
+                reusable = true;
+                return evalResult;
+            } finally {
+                // the resolver holds on to the evaluation context, don't leave it on the variable
+                if (contextNode != null) {
+                    contextNode.setUserData(XQuery10BpelFunctions.USER_DATA_KEY_FUNCTION_RESOLVER,
+                        previousResolver, null);
                 }
+                release(xqconn, oxquery10, exp, reusable);
             }
-
-            return evalResult;
         } catch (XQException xqe) {
             // Extracting the real cause from all this wrapping isn't a simple task
             Throwable cause = (xqe.getCause() != null) ? xqe.getCause() : xqe;
@@ -471,6 +449,186 @@ public class XQuery10ExpressionRuntime implements ExpressionLanguageRuntime {
         }
     }
 
+    /**
+     * Binds all the external variables of the expression to their runtime values.
+     *
+     * @return false if some variable couldn't be bound
+     */
+    private boolean bindVariables(XQConnection xqconn, XQPreparedExpression exp,
+        JaxpVariableResolver variableResolver) throws XQException {
+        boolean allBound = true;
+        for (QName variable : exp.getAllExternalVariables()) {
+            // Evaluate referenced variable
+            Object value = variableResolver.resolveVariable(variable);
+
+             if (value instanceof NodeInfo) {
+                 // native copy of a variable
+                 exp.bindItem(variable, new SaxonXQItem((NodeInfo) value, (SaxonXQConnection) xqconn));
+             } else if (value instanceof Value) {
+                 SaxonXQConnection saxonConn = (SaxonXQConnection) xqconn;
+                 try {
+                     Item item = ((Value) value).asItem();
+                     if (item == null) {
+                         exp.bindSequence(variable, xqconn.createSequence(Collections.EMPTY_LIST.iterator()));
+                     } else {
+                         XQItem item2 = new SaxonXQItem(item, saxonConn);
+                         exp.bindItem(variable, item2);
+                     }
+                 } catch (XPathException e) {
+                     __log.warn("", e);
+                     allBound = false;
+                 }
+             } else {
+
+                 if (value instanceof Date) {
+                     Date d = (Date) value;
+                     value = org.apache.ode.utils.ISO8601DateParser.format(d);
+                 }
+
+                 // Figure out type of variable
+                 XQSequenceType xqType = getItemType(xqconn, value);
+
+                 // Saxon doesn't like binding sequences to variables
+                 if (value instanceof Node) {
+                     // a node is a node-list, but the inverse isn't true.
+                     // so, if the value is truly a node, leave it alone.
+                 } else if (value instanceof NodeList) {
+                     // So extract the first item from the node list
+                     NodeList nodeList = (NodeList) value;
+                     ArrayList nodeArray = new ArrayList();
+                     for (int i = 0; i < nodeList.getLength(); i++) {
+                         nodeArray.add(nodeList.item(i));
+                     }
+                     value = xqconn.createSequence(nodeArray.iterator());
+                 }
+
+                 // Bind value with external variable
+                 if (value != null && xqType != null) {
+                     if (value instanceof XQSequence) {
+                         exp.bindSequence(variable, (XQSequence) value);
+                     } else if (xqType instanceof XQItemType) {
+                         exp.bindObject(variable, value, (XQItemType) xqType);
+                     } else {
+                         allBound = false;
+                     }
+                 } else {
+                     allBound = false;
+                 }
+              }
+        }
+        return allBound;
+    }
+
+    private synchronized XQConnection getConnection() throws XQException {
+        if (_xqconn == null) {
+            XQDataSource xqds = new SaxonXQDataSource();
+            XQConnection xqconn = xqds.getConnection();
+
+            Configuration configuration = ((SaxonXQConnection) xqconn).getConfiguration();
+            configuration.setAllNodesUntyped(true);
+            configuration.setHostLanguage(Configuration.XQUERY);
+            configuration.setSchemaValidationMode(Validation.SKIP);
+            if (_nativeTreeEnabled) {
+                _nativeTree = new NativeTreeBuilder(configuration);
+            }
+            _xqconn = xqconn;
+        }
+        return _xqconn;
+    }
+
+    /**
+     * Closes the pooled expressions and the connection they were prepared on. An evaluation
+     * coming after this opens a new connection.
+     */
+    public synchronized void close() {
+        for (Map.Entry<OExpression, Queue<XQPreparedExpression>> entry : _prepared.entrySet()) {
+            XQPreparedExpression exp;
+            while ((exp = entry.getValue().poll()) != null) {
+                try {
+                    exp.close();
+                } catch (XQException e) {
+                    __log.debug("Couldn't close prepared expression " + entry.getKey(), e);
+                }
+            }
+        }
+        _prepared.clear();
+        if (_xqconn != null) {
+            try {
+                _xqconn.close();
+            } catch (XQException e) {
+                __log.debug("Couldn't close XQuery connection", e);
+            }
+            _xqconn = null;
+            _nativeTree = null;
+        }
+    }
+
+    /**
+     * @return the prepared expressions pooled for an expression, null if it was never evaluated
+     */
+    Queue<XQPreparedExpression> getPool(OExpression cexp) {
+        return _prepared.get(cexp);
+    }
+
+    /**
+     * Takes a prepared expression from the pool of the expression, or prepares a new one.
+     */
+    private XQPreparedExpression borrow(OXQuery10ExpressionBPEL20 oxquery10) throws XQException {
+        Queue<XQPreparedExpression> pool = _prepared.get(oxquery10);
+        if (pool == null) {
+            pool = new ConcurrentLinkedQueue<XQPreparedExpression>();
+            Queue<XQPreparedExpression> existing = _prepared.putIfAbsent(oxquery10, pool);
+            if (existing != null) pool = existing;
+        }
+        XQPreparedExpression exp = pool.poll();
+        return exp != null ? exp : prepare(oxquery10);
+    }
+
+    private XQPreparedExpression prepare(OXQuery10ExpressionBPEL20 oxquery10) throws XQException {
+        XQConnection xqconn = getConnection();
+        // a copy of the connection's context, the namespaces are the expression's own
+        XQStaticContext staticEnv = xqconn.getStaticContext();
+
+        NSContext nsContext = oxquery10.namespaceCtx;
+        Set<String> prefixes = nsContext.getPrefixes();
+        for (String prefix : prefixes) {
+            String uri = nsContext.getNamespaceURI(prefix);
+            staticEnv.declareNamespace(prefix, uri);
+        }
+
+        String xquery = oxquery10.xquery.replaceFirst(
+                Constants.XQUERY_FUNCTION_HANDLER_COMPILER,
+                Constants.XQUERY_FUNCTION_HANDLER_RUNTIME);
+        return xqconn.prepareExpression(xquery, staticEnv);
+    }
+
+    /**
+     * Returns a prepared expression to the pool of the expression, or closes it. Pooled
+     * expressions are unbound first so they don't keep the context item and variable
+     * values of their last evaluation alive.
+     */
+    private void release(XQConnection xqconn, OXQuery10ExpressionBPEL20 oxquery10, XQPreparedExpression exp,
+        boolean reusable) {
+        Queue<XQPreparedExpression> pool = _prepared.get(oxquery10);
+        if (reusable && pool != null && pool.size() < MAX_POOLED_EXPRESSIONS) {
+            try {
+                exp.bindString(XQConstants.CONTEXT_ITEM, "", null);
+                for (QName variable : exp.getAllExternalVariables()) {
+                    exp.bindSequence(variable, xqconn.createSequence(Collections.EMPTY_LIST.iterator()));
+                }
+                pool.offer(exp);
+                return;
+            } catch (XQException e) {
+                __log.debug("Couldn't unbind prepared expression " + oxquery10, e);
+            }
+        }
+        try {
+            exp.close();
+        } catch (XQException e) {
+            __log.debug("Couldn't close prepared expression " + oxquery10, e);
+        }
+    }
+
     /**
      * Return opaque object embedded in XQuery Item
      *
@@ -518,6 +676,10 @@ public class XQuery10ExpressionRuntime implements ExpressionLanguageRuntime {
 
         case XQItemType.XQBASETYPE_ANYTYPE:
             itemValue = item.getNode();
+            if (_nativeTree != null) {
+                // may be a read-only view of a native copy
+                itemValue = NativeTreeBuilder.toDOM(itemValue);
+            }
 
             break;
 
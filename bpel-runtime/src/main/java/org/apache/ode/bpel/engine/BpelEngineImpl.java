@@ -20,6 +20,7 @@
 package org.apache.ode.bpel.engine;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -105,11 +106,8 @@ public class BpelEngineImpl implements BpelEngine {
 
     private static final double PROCESS_OVERHEAD_MEMORY_FACTOR = 1.2;
 
-    /** Active processes, keyed by process id. */
-    public final HashMap<QName, BpelProcess> _activeProcesses = new HashMap<QName, BpelProcess>();
-
-    /** Mapping from myrole service name to active process. */
-    private final HashMap<QName, List<BpelProcess>> _serviceMap = new HashMap<QName, List<BpelProcess>>();
+    /** Active processes, indexed by process id, myrole service name and process type. */
+    public final ProcessRegistry _activeProcesses = new ProcessRegistry();
 
     /** Mapping from a potentially shared endpoint to its EPR */
     private SharedEndpoints _sharedEps;
@@ -170,7 +168,8 @@ public class BpelEngineImpl implements BpelEngine {
 
     private MyRoleMessageExchange createNewMyRoleMex(BpelProcess target, String clientKey, QName targetService, String operation, String pipedMexId) {
         MessageExchangeDAO dao;
-        if (target == null || target.isInMemory()) {
+        if (target == null || target.isInMemory() || target.getConf().isTransientMessageExchange(operation)) {
+            // transient exchanges of persistent processes are persisted later if they need to be
             dao = _contexts.inMemDao.getConnection().createMessageExchange(MessageExchangeDAO.DIR_PARTNER_INVOKES_MYROLE);
         } else {
             dao = _contexts.dao.getConnection().createMessageExchange(MessageExchangeDAO.DIR_PARTNER_INVOKES_MYROLE);
@@ -212,15 +211,24 @@ public class BpelEngineImpl implements BpelEngine {
     }
 
     private void setMessageExchangeProcess(String mexId, ProcessDAO processDao) {
-        MessageExchangeDAO mexdao = _contexts.inMemDao.getConnection().getMessageExchange(mexId);
-        if (mexdao == null) mexdao = _contexts.dao.getConnection().getMessageExchange(mexId);
+        MessageExchangeDAO mexdao = getMessageExchangeDAO(mexId);
         if (mexdao != null)
             mexdao.setProcess(processDao);
     }
 
-    public MessageExchange getMessageExchange(String mexId) {
+    /**
+     * Looks a message exchange up in memory first, then in the database. Besides the
+     * exchanges of in-memory processes, the memory holds the transient exchanges of
+     * persistent processes until they get persisted.
+     */
+    MessageExchangeDAO getMessageExchangeDAO(String mexId) {
         MessageExchangeDAO mexdao = _contexts.inMemDao.getConnection().getMessageExchange(mexId);
         if (mexdao == null) mexdao = _contexts.dao.getConnection().getMessageExchange(mexId);
+        return mexdao;
+    }
+
+    public MessageExchange getMessageExchange(String mexId) {
+        MessageExchangeDAO mexdao = getMessageExchangeDAO(mexId);
         if (mexdao == null)
             return null;
 
@@ -277,7 +285,7 @@ public class BpelEngineImpl implements BpelEngine {
     }
 
     BpelProcess unregisterProcess(QName process) {
-        BpelProcess p = _activeProcesses.remove(process);
+        BpelProcess p = _activeProcesses.unregister(process);
         if (__log.isDebugEnabled()) {
             __log.debug("Unregister process: serviceId=" + process + ", process=" + p);
         }
@@ -285,17 +293,6 @@ public class BpelEngineImpl implements BpelEngine {
             if (__log.isDebugEnabled())
                 __log.debug("Deactivating process " + p.getPID());
 
-            Iterator<List<BpelProcess>> serviceIter = _serviceMap.values().iterator();
-            while (serviceIter.hasNext()) {
-                Iterator<BpelProcess> entryProcesses = serviceIter.next().iterator();
-                while (entryProcesses.hasNext()) {
-                    BpelProcess entryProcess = entryProcesses.next();
-                    if (entryProcess.getPID().equals(process)) {
-                        entryProcesses.remove();
-                    }
-                }
-            }
-
             // unregister the services provided by the process
             p.deactivate();
             // release the resources held by this process
@@ -307,7 +304,7 @@ public class BpelEngineImpl implements BpelEngine {
     }
 
     boolean isProcessRegistered(QName pid) {
-        return _activeProcesses.containsKey(pid);
+        return _activeProcesses.contains(pid);
     }
 
     public BpelProcess getProcess(QName pid) {
@@ -319,15 +316,23 @@ public class BpelEngineImpl implements BpelEngine {
      * @param process the process to register
      */
     void registerProcess(BpelProcess process) {
-        _activeProcesses.put(process.getPID(), process);
+        synchronized (_activeProcesses) {
+            doRegisterProcess(process);
+        }
+    }
+
+    private void doRegisterProcess(BpelProcess process) {
+        // routing changes are collected and published together with the process
+        Map<QName, List<BpelProcess>> services = new HashMap<QName, List<BpelProcess>>();
         for (Endpoint e : process.getServiceNames()) {
             if (__log.isDebugEnabled()) {
                 __log.debug("Register process: serviceId=" + e + ", process=" + process);
             }
-            List<BpelProcess> processes = _serviceMap.get(e.serviceName);
+            List<BpelProcess> processes = services.get(e.serviceName);
             if (processes == null) {
-                processes = new ArrayList<BpelProcess>();
-                _serviceMap.put(e.serviceName, processes);
+                List<BpelProcess> current = _activeProcesses.getByService(e.serviceName);
+                processes = current == null ? new ArrayList<BpelProcess>() : new ArrayList<BpelProcess>(current);
+                services.put(e.serviceName, processes);
             }
             // Remove any older version of the process from the list
             Iterator<BpelProcess> processesIter = processes.iterator();
@@ -345,6 +350,7 @@ public class BpelEngineImpl implements BpelEngine {
                     //Check for versions to retain newer one
                     if (cachedVersion.getVersion() > process.getVersion()) {
                         __log.debug("removing current version");
+                        _activeProcesses.register(process, services);
                         process.activate(this);
                         process.deactivate();
                         return;
@@ -358,6 +364,7 @@ public class BpelEngineImpl implements BpelEngine {
             }
             processes.add(process);
         }
+        _activeProcesses.register(process, services);
         process.activate(this);
     }
 
@@ -374,7 +381,7 @@ public class BpelEngineImpl implements BpelEngine {
     List<BpelProcess> route(QName service, Message request) {
         // TODO: use the message to route to the correct service if more than
         // one service is listening on the same endpoint.
-        List<BpelProcess> routed = _serviceMap.get(service);
+        List<BpelProcess> routed = _activeProcesses.getByService(service);
         if (__log.isDebugEnabled())
             __log.debug("Routed: svcQname " + service + " --> " + routed);
         return routed;
@@ -388,28 +395,16 @@ public class BpelEngineImpl implements BpelEngine {
         return process.getOProcess();
     }
 
-    private List<BpelProcess> getAllProcesses(QName processId) {
-        String qName =  processId.toString();
-        if(qName.lastIndexOf("-") > 0) {
-            qName = qName.substring(0, qName.lastIndexOf("-"));
-        }
-        List<BpelProcess> ret = new ArrayList<BpelProcess>();
-        Iterator<Map.Entry<QName, BpelProcess>> it = _activeProcesses.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<QName, BpelProcess> pairs = it.next();
-            if(pairs.getKey().toString().startsWith(qName)) {
-                ret.add(pairs.getValue());
-            }
-        }
-        return ret;
-    }
 
     public void acquireInstanceLock(final Long iid) {
         // We lock the instance to prevent concurrent transactions and prevent unnecessary rollbacks,
         // Note that we don't want to wait too long here to get our lock, since we are likely holding
         // on to scheduler's locks of various sorts.
+        EngineMetrics metrics = _contexts.metrics;
+        long start = metrics.isEnabled() ? System.nanoTime() : 0;
         try {
             _instanceLockManager.lock(iid, 1, TimeUnit.MICROSECONDS);
+            metrics.instanceLockAcquired(start);
             _contexts.scheduler.registerSynchronizer(new Scheduler.Synchronizer() {
                 public void afterCompletion(boolean success) {
                     _instanceLockManager.unlock(iid);
@@ -422,10 +417,12 @@ public class BpelEngineImpl implements BpelEngine {
             throw new Scheduler.JobProcessorException(true);
         } catch (org.apache.ode.bpel.engine.InstanceLockManager.TimeoutException e) {
             __log.debug("Instance " + iid + " is busy, rescheduling job.");
+            metrics.instanceLockTimedOut();
             throw new Scheduler.JobProcessorException(true);
         }
     }
 
+    @SuppressWarnings("unchecked")
     public void onScheduledJob(Scheduler.JobInfo jobInfo) throws Scheduler.JobProcessorException {
         final JobDetails we = jobInfo.jobDetail;
 
@@ -468,9 +465,14 @@ public class BpelEngineImpl implements BpelEngine {
             try {
                 Thread.currentThread().setContextClassLoader(process._classLoader);
                 if (we.getType().equals(JobType.INVOKE_CHECK)) {
-                    if (__log.isDebugEnabled()) __log.debug("handleJobDetails: InvokeCheck event for mexid " + we.getMexId());
+                    // invokes dispatched together share their check, see BpelRuntimeContextImpl.dispatchInvokes()
+                    List<String> mexIds = (List<String>) we.getDetailsExt().get("mexIds");
+                    if (mexIds == null) mexIds = Collections.singletonList(we.getMexId());
+                    if (__log.isDebugEnabled()) __log.debug("handleJobDetails: InvokeCheck event for mexids " + mexIds);
 
-                    sendPartnerRoleFailure(we, MessageExchange.FailureType.COMMUNICATION_ERROR);
+                    for (String mexId : mexIds) {
+                        sendPartnerRoleFailure(mexId, MessageExchange.FailureType.COMMUNICATION_ERROR);
+                    }
                     return;
                 } else if (we.getType().equals(JobType.INVOKE_INTERNAL)) {
                     if (__log.isDebugEnabled()) __log.debug("handleJobDetails: InvokeInternal event for mexid " + we.getMexId());
@@ -491,7 +493,8 @@ public class BpelEngineImpl implements BpelEngine {
                     }
                 }
                 if (we.getType() == JobType.INVOKE_INTERNAL || we.getType() == JobType.MEX_MATCHER) {
-                    List<BpelProcess> processes = getAllProcesses(we.getProcessId());
+                    // every version of the process may hold instances waiting for the message
+                    List<BpelProcess> processes = _activeProcesses.getByType(process.getProcessType());
                     boolean routed = false;
                     jobInfo.jobDetail.detailsExt.put("enqueue", false);
                     for(BpelProcess proc : processes) {
@@ -601,7 +604,7 @@ public class BpelEngineImpl implements BpelEngine {
 
     public long getTotalBpelFootprint() {
         long bpelFootprint = 0;
-        for (BpelProcess process : _activeProcesses.values()) {
+        for (BpelProcess process : _activeProcesses.getAll()) {
             Long size = _hydratedSizes.get(process.getPID());
             if (size == null) {
                 size = _unhydratedSizes.get(process.getPID());
@@ -615,7 +618,7 @@ public class BpelEngineImpl implements BpelEngine {
 
     public long getHydratedFootprint() {
         long hydratedFootprint = 0;
-        for (BpelProcess process : _activeProcesses.values()) {
+        for (BpelProcess process : _activeProcesses.getAll()) {
             if (!process.hintIsHydrated()) {
                 continue;
             }
@@ -657,7 +660,7 @@ public class BpelEngineImpl implements BpelEngine {
 
     public int getHydratedProcessCount(QName processName) {
         int processCount = 0;
-        for (BpelProcess process : _activeProcesses.values()) {
+        for (BpelProcess process : _activeProcesses.getAll()) {
             if (process.hintIsHydrated() || process.getPID().equals(processName)) {
                 processCount++;
             }
@@ -725,7 +728,7 @@ public class BpelEngineImpl implements BpelEngine {
     public boolean dehydrateLastUnusedProcess() {
         BpelProcess lastUnusedProcess = null;
         long lastUsedMinimum = Long.MAX_VALUE;
-        for (BpelProcess process : _activeProcesses.values()) {
+        for (BpelProcess process : _activeProcesses.getAll()) {
             if (process.hintIsHydrated()
                     && process.getLastUsed() < lastUsedMinimum
                     && process.getInstanceInUseCount() == 0) {
@@ -768,9 +771,8 @@ public class BpelEngineImpl implements BpelEngine {
             case InvalidProcessException.RETIRED_CAUSE_CODE:
                 // we're invoking a target process, trying to see if we can retarget the message
                 // to the current version (only applies when it's a new process creation)
-                for (BpelProcess activeProcess : _activeProcesses.values()) {
-                    if (activeProcess.getConf().getState().equals(org.apache.ode.bpel.iapi.ProcessState.ACTIVE)
-                            && activeProcess.getConf().getType().equals(process.getConf().getType())) {
+                for (BpelProcess activeProcess : _activeProcesses.getByType(process.getProcessType())) {
+                    if (activeProcess.getConf().getState().equals(org.apache.ode.bpel.iapi.ProcessState.ACTIVE)) {
                         we.setProcessId(activeProcess._pid);
                         ((MyRoleMessageExchangeImpl) mex)._process = activeProcess;
                         process.handleJobDetails(we);
@@ -789,11 +791,11 @@ public class BpelEngineImpl implements BpelEngine {
         }
     }
 
-    private void sendPartnerRoleFailure(JobDetails we, FailureType failureType) {
-        MessageExchange mex = (MessageExchange) getMessageExchange(we.getMexId());
+    private void sendPartnerRoleFailure(String mexId, FailureType failureType) {
+        MessageExchange mex = (MessageExchange) getMessageExchange(mexId);
         if (mex instanceof PartnerRoleMessageExchange) {
             if (mex.getStatus() == MessageExchange.Status.ASYNC || mex.getStatus() == MessageExchange.Status.REQUEST) {
-                String msg = "No response received for invoke (mexId=" + we.getMexId() + "), forcing it into a failed state.";
+                String msg = "No response received for invoke (mexId=" + mexId + "), forcing it into a failed state.";
                 if (__log.isDebugEnabled()) __log.debug(msg);
                 MexDaoUtil.setFailure((PartnerRoleMessageExchangeImpl) mex, failureType, msg, null);
             }
@@ -801,15 +803,7 @@ public class BpelEngineImpl implements BpelEngine {
     }
 
     public BpelProcess getNewestProcessByType(QName processType) {
-        long v = -1;
-        BpelProcess q = null;
-        for (BpelProcess p : _activeProcesses.values()) {
-            if (p.getProcessType().equals(processType) && v < p.getVersion()) {
-                v = p.getVersion();
-                q = p;
-            }
-        }
-        return q;
+        return _activeProcesses.getNewest(processType);
     }
 }
 
@@ -28,6 +28,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -48,6 +50,7 @@ import org.apache.ode.bpel.engine.BpelProcess;
 import org.apache.ode.bpel.engine.MyRoleMessageExchangeImpl;
 import org.apache.ode.bpel.engine.extvar.ExternalVariableConf;
 import org.apache.ode.bpel.engine.extvar.ExternalVariableManager;
+import org.apache.ode.bpel.evt.BpelEvent;
 import org.apache.ode.bpel.evt.ProcessInstanceEvent;
 import org.apache.ode.bpel.explang.ConfigurationException;
 import org.apache.ode.bpel.explang.EvaluationException;
@@ -67,6 +70,7 @@ import org.apache.ode.bpel.iapi.Scheduler.JobType;
 import org.apache.ode.bpel.intercept.InstanceCountThrottler;
 import org.apache.ode.bpel.intercept.InterceptorInvoker;
 import org.apache.ode.bpel.intercept.MessageExchangeInterceptor;
+import org.apache.ode.bpel.intercept.RateLimitInterceptor;
 import org.apache.ode.bpel.o.OElementVarType;
 import org.apache.ode.bpel.o.OExpressionLanguage;
 import org.apache.ode.bpel.o.OMessageVarType;
@@ -74,6 +78,7 @@ import org.apache.ode.bpel.o.OPartnerLink;
 import org.apache.ode.bpel.o.OProcess;
 import org.apache.ode.bpel.o.Serializer;
 import org.apache.ode.bpel.runtime.BpelRuntimeContext;
+import org.apache.ode.bpel.runtime.EventFilter;
 import org.apache.ode.bpel.runtime.ExpressionLanguageRuntimeRegistry;
 import org.apache.ode.bpel.runtime.InvalidProcessException;
 import org.apache.ode.bpel.runtime.PROCESS;
@@ -126,6 +131,7 @@ public class BpelProcess {
     ClassLoader _classLoader = getClass().getClassLoader();
 
     DebuggerSupport _debugger;
+    private volatile EventFilter _eventFilter;
     ExpressionLanguageRuntimeRegistry _expLangRuntimeRegistry;
     private ReplacementMap _replacementMap;
     final ProcessConf _pconf;
@@ -141,6 +147,19 @@ public class BpelProcess {
 
     private ExternalVariableManager _evm;
 
+    /** Instances of this process by status, in-memory processes start with none. */
+    private final InstanceCounters _instanceCounters;
+
+    /**
+     * Exchanges whose asynchronous response has been committed, by instance. The first
+     * INVOKE_RESPONSE job to get hold of an instance delivers them all.
+     */
+    private final ConcurrentHashMap<Long, ConcurrentLinkedQueue<String>> _arrivedResponses =
+        new ConcurrentHashMap<Long, ConcurrentLinkedQueue<String>>();
+
+    /** Upper bound on the number of instances tracked in {@link #_arrivedResponses}. */
+    private static final int MAX_ARRIVED_RESPONSE_INSTANCES = 10000;
+
     public static final QName PROP_PATH = new QName("PATH");
     public static final QName PROP_SVG = new QName("SVG");
     public static final QName PROP_LAZY_HYDRATE = new QName("process.hydration.lazy");
@@ -153,6 +172,7 @@ public class BpelProcess {
         _pid = conf.getProcessId();
         _pconf = conf;
         _hydrationLatch = new HydrationLatch();
+        _instanceCounters = new InstanceCounters(conf.isTransient());
     }
 
 
@@ -267,6 +287,11 @@ public class BpelProcess {
                     mex.setStatus(MessageExchange.Status.ASYNC);
                 }
 
+                // the reply will come in a later transaction, a transient exchange must outlive this one
+                if (routed && mex.getStatus() == MessageExchange.Status.ASYNC && mex.getOperation().getOutput() != null) {
+                    mex.persist();
+                }
+
                 markused();
             }
         } finally {
@@ -453,6 +478,7 @@ public class BpelProcess {
                 // Instance level events
                 ProcessInstanceDAO procInstance = getProcessDAO().getInstance(we.getInstanceId());
                 if (procInstance == null) {
+                    _arrivedResponses.remove(we.getInstanceId());
                     if (__log.isDebugEnabled()) {
                         __log.debug("handleJobDetails: no ProcessInstance found with iid " + we.getInstanceId() + "; ignoring.");
                     }
@@ -477,8 +503,19 @@ public class BpelProcess {
                         if (__log.isDebugEnabled()) {
                             __log.debug("InvokeResponse event for iid " + we.getInstanceId());
                         }
-                        processInstance.invocationResponse(we.getMexId(), we.getChannel());
-                        processInstance.execute();
+                        int delivered = processInstance.deliverInvocationResponse(we.getMexId()) ? 1 : 0;
+                        ConcurrentLinkedQueue<String> arrived = _arrivedResponses.remove(we.getInstanceId());
+                        if (arrived != null) {
+                            for (String mexId : arrived) {
+                                if (processInstance.deliverInvocationResponse(mexId)) delivered++;
+                            }
+                        }
+                        if (delivered > 0) {
+                            if (__log.isDebugEnabled()) {
+                                __log.debug("Delivered " + delivered + " invoke responses to iid " + we.getInstanceId());
+                            }
+                            processInstance.execute();
+                        }
                         break;
                     case MATCHER:
                         if (__log.isDebugEnabled()) {
@@ -594,6 +631,9 @@ public class BpelProcess {
 
         if (getInstanceMaximumCount() < Integer.MAX_VALUE)
             registerMessageExchangeInterceptor(new InstanceCountThrottler());
+        RateLimitInterceptor rateLimiter = RateLimitInterceptor.forProcess(this);
+        if (rateLimiter != null)
+            registerMessageExchangeInterceptor(rateLimiter);
 
         if (__log.isDebugEnabled()) {
             __log.debug("Activating " + _pid);
@@ -718,16 +758,37 @@ public class BpelProcess {
     public void saveEvent(ProcessInstanceEvent event, ProcessInstanceDAO instanceDao, List<String> scopeNames) {
         markused();
         if (_pconf.isEventEnabled(scopeNames, event.getType())) {
-            // notify the listeners
-            _engine.fireEvent(event);
-
-            if (instanceDao != null && !event.isEventPersistingCancelled())
-                instanceDao.insertBpelEvent(event);
-            else
-                __log.debug("Couldn't find instance to save event, no event generated!");
+            recordEvent(event, instanceDao);
         }
     }
 
+    /**
+     * Notifies the listeners of an event that passed the filter and saves it.
+     */
+    void recordEvent(ProcessInstanceEvent event, ProcessInstanceDAO instanceDao) {
+        // notify the listeners
+        _engine.fireEvent(event);
+
+        if (instanceDao != null && !event.isEventPersistingCancelled())
+            instanceDao.insertBpelEvent(event);
+        else
+            __log.debug("Couldn't find instance to save event, no event generated!");
+    }
+
+    boolean isEventEnabled(List<String> scopeNames, BpelEvent.TYPE type) {
+        EventFilter filter = _eventFilter;
+        if (scopeNames == null && filter != null) return filter.isEnabled(type);
+        return _pconf.isEventEnabled(scopeNames, type);
+    }
+
+    /**
+     * @return the compiled event filter, or one letting all events through while debugging
+     */
+    EventFilter getEventFilter() {
+        EventFilter filter = _eventFilter;
+        return filter == null || _debugger.isWatching() ? EventFilter.ALL : filter;
+    }
+
     /**
      * Ask the process to dehydrate.
      */
@@ -821,6 +882,23 @@ public class BpelProcess {
         return _oprocess != null;
     }
 
+    /**
+     * Notes that the response of an invoke made by the given instance has been committed and
+     * can be delivered along with other responses to the same instance.
+     */
+    void invokeResponseArrived(Long iid, String mexId) {
+        ConcurrentLinkedQueue<String> arrived = _arrivedResponses.get(iid);
+        if (arrived == null) {
+            // only an optimization, every response has its own job anyway; forget
+            // entries left behind by responses whose job ran before they were noted
+            if (_arrivedResponses.size() >= MAX_ARRIVED_RESPONSE_INSTANCES) _arrivedResponses.clear();
+            ConcurrentLinkedQueue<String> created = new ConcurrentLinkedQueue<String>();
+            arrived = _arrivedResponses.putIfAbsent(iid, created);
+            if (arrived == null) arrived = created;
+        }
+        arrived.add(mexId);
+    }
+
     /** Keep track of the time the process was last used. */
     private final void markused() {
         _lastUsed = System.currentTimeMillis();
@@ -839,11 +917,14 @@ public class BpelProcess {
             _transitions[0] = new Runnable() {
                 public void run() {
                     doDehydrate();
+                    _engine._contexts.metrics.processDehydrated();
                 }
             };
             _transitions[1] = new Runnable() {
                 public void run() {
+                    long start = System.nanoTime();
                     doHydrate();
+                    _engine._contexts.metrics.processHydrated(start);
                 }
             };
         }
@@ -873,7 +954,11 @@ public class BpelProcess {
 //                _partnerEprs.clear();
 //            }
             _replacementMap = null;
-            _expLangRuntimeRegistry = null;
+            if (_expLangRuntimeRegistry != null) {
+                _expLangRuntimeRegistry.close();
+                _expLangRuntimeRegistry = null;
+            }
+            _eventFilter = null;
         }
 
         private void doHydrate() {
@@ -914,6 +999,7 @@ public class BpelProcess {
             }
 
             _replacementMap = new ReplacementMapImpl(_oprocess);
+            _eventFilter = EventFilter.compile(_pconf, _oprocess);
 
             // Create an expression language registry for this process
             _expLangRuntimeRegistry = new ExpressionLanguageRuntimeRegistry();
@@ -1147,6 +1233,25 @@ public class BpelProcess {
         return Integer.valueOf(getProcessProperty(PROP_MAX_INSTANCES, Integer.toString(_engine.getInstanceThrottledMaximumCount())));
     }
 
+    public InstanceCounters getInstanceCounters() {
+        return _instanceCounters;
+    }
+
+    /**
+     * Records an instance of this process changing state once the current transaction
+     * commits, {@link InstanceCounters#NO_STATE} standing for its creation or deletion.
+     */
+    void instanceStateChanged(final short from, final short to) {
+        if (InstanceCounters.statusOf(from) == InstanceCounters.statusOf(to)) return;
+        _engine._contexts.scheduler.registerSynchronizer(new Scheduler.Synchronizer() {
+            public void afterCompletion(boolean success) {
+                if (success) _instanceCounters.changed(from, to);
+            }
+            public void beforeCompletion() {
+            }
+        });
+    }
+
     public long getEstimatedHydratedSize() {
         return _pconf.getCBPFileSize() *
                     PROCESS_MEMORY_TO_SERIALIZED_SIZE_RATIO;
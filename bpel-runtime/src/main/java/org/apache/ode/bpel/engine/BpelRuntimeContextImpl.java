@@ -26,7 +26,10 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.wsdl.Operation;
 import javax.xml.namespace.QName;
@@ -75,6 +78,7 @@ import org.apache.ode.bpel.iapi.Scheduler;
 import org.apache.ode.bpel.iapi.Scheduler.JobDetails;
 import org.apache.ode.bpel.iapi.Scheduler.JobType;
 import org.apache.ode.bpel.memdao.ProcessInstanceDaoImpl;
+import org.apache.ode.bpel.o.OActivity;
 import org.apache.ode.bpel.o.OMessageVarType;
 import org.apache.ode.bpel.o.OPartnerLink;
 import org.apache.ode.bpel.o.OProcess;
@@ -83,11 +87,13 @@ import org.apache.ode.bpel.o.OScope.Variable;
 import org.apache.ode.bpel.runtime.BpelJacobRunnable;
 import org.apache.ode.bpel.runtime.BpelRuntimeContext;
 import org.apache.ode.bpel.runtime.CorrelationSetInstance;
+import org.apache.ode.bpel.runtime.EventFilter;
 import org.apache.ode.bpel.runtime.ExpressionLanguageRuntimeRegistry;
 import org.apache.ode.bpel.runtime.PROCESS;
 import org.apache.ode.bpel.runtime.PartnerLinkInstance;
 import org.apache.ode.bpel.runtime.Selector;
 import org.apache.ode.bpel.runtime.VariableInstance;
+import org.apache.ode.bpel.runtime.VariableSnapshotCache;
 import org.apache.ode.bpel.runtime.channels.ActivityRecovery;
 import org.apache.ode.bpel.runtime.channels.FaultData;
 import org.apache.ode.bpel.runtime.channels.InvokeResponse;
@@ -134,6 +140,12 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
     
     private boolean _forceFlush;
 
+    /** Partner invokes of the current reduction pass, dispatched together once the VPU runs out of work. */
+    private List<PartnerRoleMessageExchangeImpl> _pendingInvokes = new ArrayList<PartnerRoleMessageExchangeImpl>();
+
+    /** Copies of variables built by the expression languages, for this transaction only. */
+    private final VariableSnapshotCache _variableSnapshots = new VariableSnapshotCache();
+
     /** Five second maximum for continous execution. */
     private long _maxReductionTimeMs = 2000000;
 
@@ -160,7 +172,7 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
                 _vpu.setContext(_soup);
             }
         } else {
-            byte[] daoState = dao.getExecutionState();
+            byte[] daoState = ExecutionStateStore.read(dao);
             if (daoState != null) {
                 ByteArrayInputStream iis = new ByteArrayInputStream(daoState);
                 try {
@@ -168,6 +180,7 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
                 } catch (Exception ex) {
                     throw new RuntimeException(ex);
                 }
+                _bpelProcess._engine._contexts.metrics.executionStateRead(daoState.length);
                 _imaManager = (IMAManager2) _soup.getGlobalData();
             }
         }
@@ -229,7 +242,7 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
         // send event
         ProcessInstanceStateChangeEvent evt = new ProcessInstanceStateChangeEvent();
         evt.setOldState(_dao.getState());
-        _dao.setState(ProcessState.STATE_COMPLETED_WITH_FAULT);
+        setInstanceState(ProcessState.STATE_COMPLETED_WITH_FAULT);
         evt.setNewState(ProcessState.STATE_COMPLETED_WITH_FAULT);
         sendEvent(evt);
 
@@ -238,13 +251,7 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
 
         faultOutstandingMessageExchanges(faultData);
 
-        _bpelProcess._engine._contexts.scheduler.registerSynchronizer(new Scheduler.Synchronizer() {
-            public void afterCompletion(boolean success) {
-            }
-            public void beforeCompletion() {
-                _dao.delete(_bpelProcess.getCleanupCategories(false), false);
-            }
-        });
+        deleteOnCompletion(false);
     }
 
     /**
@@ -258,7 +265,7 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
         // send event
         ProcessInstanceStateChangeEvent evt = new ProcessInstanceStateChangeEvent();
         evt.setOldState(_dao.getState());
-        _dao.setState(ProcessState.STATE_COMPLETED_OK);
+        setInstanceState(ProcessState.STATE_COMPLETED_OK);
         evt.setNewState(ProcessState.STATE_COMPLETED_OK);
         sendEvent(evt);
 
@@ -267,15 +274,33 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
 
         completeOutstandingMessageExchanges();
 
+        deleteOnCompletion(true);
+    }
+
+    /**
+     * Cleans up the instance data as configured for its outcome, right before the
+     * transaction commits.
+     */
+    private void deleteOnCompletion(boolean instanceSucceeded) {
+        final Set<CLEANUP_CATEGORY> categories = _bpelProcess.getCleanupCategories(instanceSucceeded);
+        final short state = _dao.getState();
         _bpelProcess._engine._contexts.scheduler.registerSynchronizer(new Scheduler.Synchronizer() {
             public void afterCompletion(boolean success) {
+                if (success && categories.contains(CLEANUP_CATEGORY.INSTANCE)) {
+                    _bpelProcess.getInstanceCounters().changed(state, InstanceCounters.NO_STATE);
+                }
             }
             public void beforeCompletion() {
-                _dao.delete(_bpelProcess.getCleanupCategories(true), false);
+                _dao.delete(categories, false);
             }
         });
     }
 
+    private void setInstanceState(short state) {
+        _bpelProcess.instanceStateChanged(_dao.getState(), state);
+        _dao.setState(state);
+    }
+
     /**
      * @see BpelRuntimeContext#createScopeInstance(Long,
      *      org.apache.ode.bpel.o.OScope)
@@ -312,7 +337,7 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
             // available for opaque correlations. The myrole session id should
             // never be changed.
             if (partnerLink.hasMyRole())
-                pdao.setMySessionId(new GUID().toString());
+                pdao.setMySessionId(GUID.nextId());
         }
     }
 
@@ -331,7 +356,7 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
             // send event
             ProcessInstanceStateChangeEvent evt = new ProcessInstanceStateChangeEvent();
             evt.setOldState(ProcessState.STATE_NEW);
-            _dao.setState(ProcessState.STATE_READY);
+            setInstanceState(ProcessState.STATE_READY);
             evt.setNewState(ProcessState.STATE_READY);
             sendEvent(evt);
         }
@@ -495,6 +520,8 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
 
 
     public Node readVariable(Long scopeInstanceId, String varname, boolean forWriting) throws FaultException {
+        // the data is about to be changed in place
+        if (forWriting) _variableSnapshots.invalidate(scopeInstanceId, varname);
         ScopeDAO scopedao = _dao.getScope(scopeInstanceId);
         XmlDataDAO var = scopedao.getVariable(varname);
         return (var == null || var.isNull()) ? null : var.get();
@@ -504,6 +531,7 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
         ScopeDAO scopeDAO = _dao.getScope(variable.scopeInstance);
         XmlDataDAO dataDAO = scopeDAO.getVariable(variable.declaration.name);
         dataDAO.set(changes);
+        _variableSnapshots.invalidate(variable.scopeInstance, variable.declaration.name);
 
         writeProperties(variable, changes, dataDAO);
         return dataDAO.get();
@@ -536,7 +564,7 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
         evt.setOperation(opName);
         evt.setPortType(plinkInstnace.partnerLink.myRolePortType.getQName());
 
-        MessageExchangeDAO mex = _dao.getConnection().getMessageExchange(mexRef);
+        MessageExchangeDAO mex = getMyRoleMessageExchange(mexRef);
 
         MessageDAO message = mex.createMessage(plinkInstnace.partnerLink.getMyRoleOperation(opName).getOutput()
                 .getMessage().getQName());
@@ -625,6 +653,10 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
         return _bpelProcess._expLangRuntimeRegistry;
     }
 
+    public VariableSnapshotCache getVariableSnapshots() {
+        return _variableSnapshots;
+    }
+
     /**
      * @see BpelRuntimeContext#terminate()
      */
@@ -632,7 +664,7 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
         // send event
         ProcessInstanceStateChangeEvent evt = new ProcessInstanceStateChangeEvent();
         evt.setOldState(_dao.getState());
-        _dao.setState(ProcessState.STATE_TERMINATED);
+        setInstanceState(ProcessState.STATE_TERMINATED);
         evt.setNewState(ProcessState.STATE_TERMINATED);
         sendEvent(evt);
         sendEvent(new ProcessTerminationEvent());
@@ -640,13 +672,7 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
         _dao.finishCompletion();
         failOutstandingMessageExchanges();
 
-        _bpelProcess._engine._contexts.scheduler.registerSynchronizer(new Scheduler.Synchronizer() {
-            public void afterCompletion(boolean success) {
-            }
-            public void beforeCompletion() {
-                _dao.delete(_bpelProcess.getCleanupCategories(false), false);
-            }
-        });
+        deleteOnCompletion(false);
     }
 
     public void registerTimer(TimerResponse timerChannel, Date timeToFire) {
@@ -816,9 +842,11 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
                 checkInvokeExternalPermission();
                 mexDao.setEPR(partnerEpr.toXML().getDocumentElement());
                 mex.setStatus(MessageExchange.Status.REQUEST);
-                // Assuming an unreliable protocol, we schedule a task to check if recovery mode will be needed
-                scheduleInvokeCheck(mex, partnerLink.partnerLink, false);
-                _bpelProcess._engine._contexts.mexContext.invokePartner(mex);
+                // Handed to the integration layer along with the other invokes of this pass, see dispatchInvokes()
+                _pendingInvokes.add(mex);
+                evt.setMexId(mexDao.getMessageExchangeId());
+                sendEvent(evt);
+                return mexDao.getMessageExchangeId();
             } else {
                 __log.error("Couldn't find endpoint for partner EPR " + DOMUtils.domToString(partnerEPR));
                 mex.setFailure(FailureType.UNKNOWN_ENDPOINT, "UnknownEndpoint", partnerEPR);
@@ -827,7 +855,40 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
 
         evt.setMexId(mexDao.getMessageExchangeId());
         sendEvent(evt);
+        invokeDispatched(mex);
+        return mexDao.getMessageExchangeId();
+    }
 
+    /**
+     * Hands the partner invokes of the last reduction pass over to the integration layer. Invocation
+     * checks are scheduled as one job per partner link rather than one per invoke, so a parallel
+     * forEach of N invokes costs a single job.
+     *
+     * @return true if a synchronous answer was injected and the VPU has work again
+     */
+    private boolean dispatchInvokes() {
+        if (_pendingInvokes.isEmpty()) return false;
+        List<PartnerRoleMessageExchangeImpl> batch = _pendingInvokes;
+        _pendingInvokes = new ArrayList<PartnerRoleMessageExchangeImpl>();
+
+        if (__log.isDebugEnabled()) __log.debug("Dispatching " + batch.size() + " invokes for instance " + _iid);
+        scheduleInvokeChecks(batch);
+        boolean answered = false;
+        for (PartnerRoleMessageExchangeImpl mex : batch) {
+            _bpelProcess._engine._contexts.mexContext.invokePartner(mex);
+            answered |= invokeDispatched(mex);
+        }
+        return answered;
+    }
+
+    /**
+     * Continuation of {@link #invoke(int, PartnerLinkInstance, Operation, Element, InvokeResponse)}
+     * once the exchange has been handed to the partner.
+     *
+     * @return true if the partner answered synchronously
+     */
+    private boolean invokeDispatched(PartnerRoleMessageExchangeImpl mex) {
+        MessageExchangeDAO mexDao = mex.getDAO();
         // MEX pattern is request only, at this point the status can only be a one way
         if (mexDao.getPattern().equals(MessageExchangePattern.REQUEST_ONLY.toString())) {
             mexDao.setStatus(MessageExchange.Status.ASYNC.toString());
@@ -846,14 +907,14 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
             case FAULT:
             case FAILURE:
                 invocationResponse(mex);
-                break;
+                return true;
             default:
                 __log.error("Partner did not acknowledge message exchange: " + mex);
                 mex.setFailure(FailureType.NO_RESPONSE, "Partner did not acknowledge.", null);
                 invocationResponse(mex);
+                return true;
         }
-
-        return mexDao.getMessageExchangeId();
+        return false;
     }
 
     // enable extensibility
@@ -870,23 +931,58 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
     }
 
     private void scheduleInvokeCheck(PartnerRoleMessageExchangeImpl mex, OPartnerLink partnerLink, boolean p2p) {
-        boolean isTwoWay = mex.getMessageExchangePattern() ==
-                org.apache.ode.bpel.iapi.MessageExchange.MessageExchangePattern.REQUEST_RESPONSE;
-        if (!_bpelProcess.isInMemory() && isTwoWay) {
-            JobDetails event = new JobDetails();
-            event.setMexId(mex.getMessageExchangeId());
-            event.setProcessId(_bpelProcess.getPID());
-            event.setInMem(false);
-            event.setType(JobType.INVOKE_CHECK);
-            // use a greater timeout to make sure the check job does not get executed while the service invocation is still waiting for a response
-            long timeout = getBpelProcess().getTimeout(partnerLink, p2p);
-            if (__log.isDebugEnabled()) __log.debug("Creating invocation check event in "+timeout+"ms for mexid " + mex.getMessageExchangeId());
-            Date future = new Date(System.currentTimeMillis() + timeout);
-            String jobId = _bpelProcess._engine._contexts.scheduler.schedulePersistedJob(event, future);
-            mex.setProperty("invokeCheckJobId", jobId);
+        if (!_bpelProcess.isInMemory() && isTwoWay(mex)) {
+            scheduleInvokeCheck(Collections.singletonList(mex), getBpelProcess().getTimeout(partnerLink, p2p));
+        }
+    }
+
+    private void scheduleInvokeChecks(List<PartnerRoleMessageExchangeImpl> batch) {
+        if (_bpelProcess.isInMemory()) return;
+        Map<Integer, List<PartnerRoleMessageExchangeImpl>> byPartnerLink =
+            new LinkedHashMap<Integer, List<PartnerRoleMessageExchangeImpl>>();
+        for (PartnerRoleMessageExchangeImpl mex : batch) {
+            if (!isTwoWay(mex)) continue;
+            Integer plinkId = mex.getDAO().getPartnerLinkModelId();
+            List<PartnerRoleMessageExchangeImpl> mexs = byPartnerLink.get(plinkId);
+            if (mexs == null) {
+                mexs = new ArrayList<PartnerRoleMessageExchangeImpl>();
+                byPartnerLink.put(plinkId, mexs);
+            }
+            mexs.add(mex);
+        }
+        for (Map.Entry<Integer, List<PartnerRoleMessageExchangeImpl>> e : byPartnerLink.entrySet()) {
+            OPartnerLink partnerLink = (OPartnerLink) _bpelProcess.getOProcess().getChild(e.getKey());
+            scheduleInvokeCheck(e.getValue(), getBpelProcess().getTimeout(partnerLink, false));
         }
     }
 
+    /**
+     * Schedules a single invocation check for several exchanges, their ids are passed in the
+     * "mexIds" entry of the job details.
+     */
+    private void scheduleInvokeCheck(List<PartnerRoleMessageExchangeImpl> mexs, long timeout) {
+        JobDetails event = new JobDetails();
+        event.setMexId(mexs.get(0).getMessageExchangeId());
+        if (mexs.size() > 1) {
+            ArrayList<String> mexIds = new ArrayList<String>(mexs.size());
+            for (PartnerRoleMessageExchangeImpl mex : mexs) mexIds.add(mex.getMessageExchangeId());
+            event.getDetailsExt().put("mexIds", mexIds);
+        }
+        event.setProcessId(_bpelProcess.getPID());
+        event.setInMem(false);
+        event.setType(JobType.INVOKE_CHECK);
+        // use a greater timeout to make sure the check job does not get executed while the service invocation is still waiting for a response
+        if (__log.isDebugEnabled()) __log.debug("Creating invocation check event in "+timeout+"ms for " + mexs.size() + " mexids, first " + event.getMexId());
+        Date future = new Date(System.currentTimeMillis() + timeout);
+        String jobId = _bpelProcess._engine._contexts.scheduler.schedulePersistedJob(event, future);
+        for (PartnerRoleMessageExchangeImpl mex : mexs) mex.setProperty("invokeCheckJobId", jobId);
+    }
+
+    private static boolean isTwoWay(PartnerRoleMessageExchangeImpl mex) {
+        return mex.getMessageExchangePattern() ==
+                org.apache.ode.bpel.iapi.MessageExchange.MessageExchangePattern.REQUEST_RESPONSE;
+    }
+
     protected void buildOutgoingMessage(MessageDAO message, Element outgoingElmt) {
         if (outgoingElmt == null) return;
 
@@ -909,12 +1005,19 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
     }
 
     public void execute() {
+        EngineMetrics metrics = _bpelProcess._engine._contexts.metrics;
+        long start = metrics.isEnabled() ? System.nanoTime() : 0;
+        int reductions = 0;
         long maxTime = System.currentTimeMillis() + _maxReductionTimeMs;
         boolean canReduce = true;
         assert _outstandingRequests == null && _imaManager != null;
         while (ProcessState.canExecute(_dao.getState()) && System.currentTimeMillis() < maxTime && canReduce && !_forceFlush) {
             canReduce = _vpu.execute();
+            reductions++;
+            if (!canReduce) canReduce = dispatchInvokes();
         }
+        // invokes issued just before the instance completed or ran out of time
+        if (dispatchInvokes()) canReduce = true;
         _dao.setLastActiveTime(new Date());
         if (!ProcessState.isFinished(_dao.getState())) {
             if (__log.isDebugEnabled()) __log.debug("Setting execution state on instance " + _iid);
@@ -931,7 +1034,8 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
                 } catch (Exception ex) {
                     throw new RuntimeException(ex);
                 }
-                _dao.setExecutionState(bos.toByteArray());
+                int written = ExecutionStateStore.write(_dao, bos.toByteArray());
+                metrics.executionStateWritten(written);
             }
 
             if (ProcessState.canExecute(_dao.getState()) && canReduce) {
@@ -953,6 +1057,20 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
                 }
             }
         }
+        if (metrics.isEnabled()) {
+            metrics.processExecuted(_bpelProcess.getPID(), start, reductions);
+        }
+    }
+
+    public void activityCompleted(OActivity activity, long startTime) {
+        EngineMetrics metrics = _bpelProcess._engine._contexts.metrics;
+        if (metrics.isEnabled() && startTime > 0) {
+            metrics.activityExecuted(activity.getType(), System.currentTimeMillis() - startTime);
+        }
+    }
+
+    public boolean isMetricsEnabled() {
+        return _bpelProcess._engine._contexts.metrics.isEnabled();
     }
 
     public void inputMsgMatch(final String responsechannel, final int idx, MyRoleMessageExchangeImpl mex) {
@@ -963,7 +1081,7 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
                 BpelProcess.__log.debug("INPUTMSGMATCH: Changing process instance state from ready to active");
             }
 
-            _dao.setState(ProcessState.STATE_ACTIVE);
+            setInstanceState(ProcessState.STATE_ACTIVE);
 
             // send event
             ProcessInstanceStateChangeEvent evt = new ProcessInstanceStateChangeEvent();
@@ -1026,6 +1144,22 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
         invocationResponse(mex.getDAO().getMessageExchangeId(), mex.getDAO().getChannel());
     }
 
+    /**
+     * Delivers the asynchronous response of a partner invoke, unless it was already delivered
+     * along with the response of another invoke of this instance.
+     *
+     * @return true if the response was delivered
+     */
+    boolean deliverInvocationResponse(String mexid) {
+        MessageExchangeDAO mexDao = _dao.getConnection().getMessageExchange(mexid);
+        if (mexDao == null || mexDao.getChannel() == null) return false;
+        String responseChannelId = mexDao.getChannel();
+        // nobody waits on the exchange once its response is in, the job it scheduled is left with nothing to do
+        mexDao.setChannel(null);
+        invocationResponse(mexid, responseChannelId);
+        return true;
+    }
+
     public void invocationResponse(final String mexid, final String responseChannelId) {
         if (responseChannelId == null)
             throw new NullPointerException("Null responseChannelId");
@@ -1090,12 +1224,6 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
      * @see BpelRuntimeContext#sendEvent(org.apache.ode.bpel.evt.ProcessInstanceEvent)
      */
     public void sendEvent(ProcessInstanceEvent event) {
-        // fill in missing pieces
-        event.setProcessId(_dao.getProcess().getProcessId());
-        event.setProcessName(_dao.getProcess().getType());
-        event.setProcessInstanceId(_dao.getInstanceId());
-        _bpelProcess._debugger.onEvent(event);
-
         // filter scopes
         List<String> scopeNames = null;
         if (event instanceof ScopeEvent) {
@@ -1112,8 +1240,25 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
             }
         }
 
+        // nothing to do with a filtered out event unless the debugger is watching
+        boolean enabled = _bpelProcess.isEventEnabled(scopeNames, event.getType());
+        if (!enabled && !_bpelProcess._debugger.isWatching()) return;
+
+        // fill in missing pieces
+        event.setProcessId(_dao.getProcess().getProcessId());
+        event.setProcessName(_dao.getProcess().getType());
+        event.setProcessInstanceId(_dao.getInstanceId());
+        _bpelProcess._debugger.onEvent(event);
+
         // saving
-        _bpelProcess.saveEvent(event, _dao, scopeNames);
+        if (enabled) _bpelProcess.recordEvent(event, _dao);
+    }
+
+    /**
+     * @see BpelRuntimeContext#getEventFilter()
+     */
+    public EventFilter getEventFilter() {
+        return _bpelProcess.getEventFilter();
     }
 
     public static String debugInfoToString(org.apache.ode.bpel.o.DebugInfo debugInfo) {
@@ -1151,7 +1296,7 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
     private void completeOutstandingMessageExchanges() {
         String[] mexRefs = _imaManager.releaseAll();
         for (String mexId : mexRefs) {
-            MessageExchangeDAO mexDao = _dao.getConnection().getMessageExchange(mexId);
+            MessageExchangeDAO mexDao = getMyRoleMessageExchange(mexId);
             if (mexDao != null) {
                 MyRoleMessageExchangeImpl mex = new MyRoleMessageExchangeImpl(_bpelProcess, _bpelProcess._engine, mexDao);
                 switch (mex.getStatus()) {
@@ -1175,7 +1320,7 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
     private void faultOutstandingMessageExchanges(FaultData faultData) {
         String[] mexRefs = _imaManager.releaseAll();
         for (String mexId : mexRefs) {
-            MessageExchangeDAO mexDao = _dao.getConnection().getMessageExchange(mexId);
+            MessageExchangeDAO mexDao = getMyRoleMessageExchange(mexId);
             if (mexDao != null) {
                 MyRoleMessageExchangeImpl mex = new MyRoleMessageExchangeImpl(_bpelProcess, _bpelProcess._engine, mexDao);
                 _bpelProcess.initMyRoleMex(mex);
@@ -1195,7 +1340,7 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
     private void failOutstandingMessageExchanges() {
         String[] mexRefs = _imaManager.releaseAll();
         for (String mexId : mexRefs) {
-            MessageExchangeDAO mexDao = _dao.getConnection().getMessageExchange(mexId);
+            MessageExchangeDAO mexDao = getMyRoleMessageExchange(mexId);
             if (mexDao != null) {
                 MyRoleMessageExchangeImpl mex = new MyRoleMessageExchangeImpl(_bpelProcess, _bpelProcess._engine, mexDao);
                 _bpelProcess.initMyRoleMex(mex);
@@ -1205,12 +1350,20 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
         }
     }
 
+    /**
+     * The my-role exchanges of a persistent process can be transient, see
+     * {@link org.apache.ode.bpel.iapi.ProcessConf#isTransientMessageExchange(String)}.
+     */
+    private MessageExchangeDAO getMyRoleMessageExchange(String mexId) {
+        return _bpelProcess._engine.getMessageExchangeDAO(mexId);
+    }
+
     public Element getPartnerResponse(String mexId) {
         return mergeHeaders(_getPartnerResponse(mexId));
     }
 
     public Element getMyRequest(String mexId) {
-        MessageExchangeDAO dao = _dao.getConnection().getMessageExchange(mexId);
+        MessageExchangeDAO dao = getMyRoleMessageExchange(mexId);
         if (dao == null) {
             // this should not happen....
             String msg = "Engine requested non-existent message exchange: " + mexId;
@@ -1341,7 +1494,7 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
 
 
     public Element getSourceEPR(String mexId) {
-        MessageExchangeDAO dao = _dao.getConnection().getMessageExchange(mexId);
+        MessageExchangeDAO dao = getMyRoleMessageExchange(mexId);
         String epr = dao.getProperty(MessageExchange.PROPERTY_SEP_PARTNERROLE_EPR);
         if (epr == null)
             return null;
@@ -1356,7 +1509,7 @@ public class BpelRuntimeContextImpl implements BpelRuntimeContext {
     }
 
     public String getSourceSessionId(String mexId) {
-        MessageExchangeDAO dao = _dao.getConnection().getMessageExchange(mexId);
+        MessageExchangeDAO dao = getMyRoleMessageExchange(mexId);
         return dao.getProperty(MessageExchange.PROPERTY_SEP_PARTNERROLE_SESSIONID);
     }
 
@@ -27,6 +27,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -39,6 +40,7 @@ import org.apache.ode.bpel.dao.BpelDAOConnection;
 import org.apache.ode.bpel.dao.BpelDAOConnectionFactory;
 import org.apache.ode.bpel.dao.DeferredProcessInstanceCleanable;
 import org.apache.ode.bpel.dao.ProcessDAO;
+import org.apache.ode.bpel.dao.ProcessManagementDAO.InstanceSummaryKey;
 import org.apache.ode.bpel.engine.cron.CronScheduler;
 import org.apache.ode.bpel.engine.migration.MigrationHandler;
 import org.apache.ode.bpel.evar.ExternalVariableModule;
@@ -59,6 +61,7 @@ import org.apache.ode.bpel.iapi.Scheduler.MapSerializableRunnable;
 import org.apache.ode.bpel.iapi.Scheduler.Synchronizer;
 import org.apache.ode.bpel.intercept.MessageExchangeInterceptor;
 import org.apache.ode.bpel.o.OProcess;
+import org.apache.ode.utils.metrics.MetricsRegistry;
 import org.apache.ode.utils.msg.MessageBundle;
 import org.apache.ode.utils.stl.CollectionsX;
 import org.apache.ode.utils.stl.MemberOfFunction;
@@ -109,6 +112,8 @@ public class BpelServerImpl implements BpelServer, Scheduler.JobProcessor {
     private int _hydrationLazyMinimumSize;
     private int _migrationTransactionTimeout;
     private Thread processDefReaper;
+    private long _instanceCountReconcileInterval = 60000;
+    private Thread instanceCountReconciler;
 
     BpelEngineImpl _engine;
     protected BpelDatabase _db;
@@ -169,6 +174,11 @@ public class BpelServerImpl implements BpelServer, Scheduler.JobProcessor {
                 processDefReaper.setDaemon(true);
                 processDefReaper.start();
             }
+            if (_instanceCountReconcileInterval > 0) {
+                instanceCountReconciler = new Thread(new InstanceCountReconciler(), "InstanceCountReconciler");
+                instanceCountReconciler.setDaemon(true);
+                instanceCountReconciler.start();
+            }
         } finally {
             _mngmtLock.writeLock().unlock();
         }
@@ -225,6 +235,10 @@ public class BpelServerImpl implements BpelServer, Scheduler.JobProcessor {
                 processDefReaper.interrupt();
                 processDefReaper = null;
             }
+            if (instanceCountReconciler != null) {
+                instanceCountReconciler.interrupt();
+                instanceCountReconciler = null;
+            }
             _contexts.scheduler.stop();
             _engine = null;
             _state = State.INIT;
@@ -366,6 +380,7 @@ public class BpelServerImpl implements BpelServer, Scheduler.JobProcessor {
                 {
                     _registeredProcesses.remove(p);
                     XslTransformHandler.getInstance().clearXSLSheets(p.getProcessType());
+                    _contexts.metrics.processRemoved(pid);
                     __log.info(__msgs.msgProcessUnregistered(pid));
                 }
             }
@@ -491,6 +506,48 @@ public class BpelServerImpl implements BpelServer, Scheduler.JobProcessor {
         }
     }
 
+    /**
+     * Periodically resets the instance counters of the persistent processes from the
+     * database, correcting the drift of changes done outside of the engine.
+     */
+    private class InstanceCountReconciler implements Runnable {
+        public void run() {
+            __log.debug("Starting instance count reconciler thread.");
+            try {
+                while (true) {
+                    Thread.sleep(_instanceCountReconcileInterval);
+                    if (!_mngmtLock.readLock().tryLock(100L, TimeUnit.MILLISECONDS)) continue;
+                    final List<BpelProcess> processes = new ArrayList<BpelProcess>(_registeredProcesses.size());
+                    try {
+                        for (BpelProcess process : _registeredProcesses) {
+                            if (!process.isInMemory()) processes.add(process);
+                        }
+                    } finally {
+                        _mngmtLock.readLock().unlock();
+                    }
+                    if (processes.isEmpty()) continue;
+                    try {
+                        _db.exec(new BpelDatabase.Callable<Object>() {
+                            public Object run(BpelDAOConnection conn) throws Exception {
+                                Set<String> pids = new HashSet<String>();
+                                for (BpelProcess process : processes) pids.add(process.getPID().toString());
+                                Map<InstanceSummaryKey, Long> summary = conn.getProcessManagement().countInstancesSummary(pids);
+                                for (BpelProcess process : processes) {
+                                    process.getInstanceCounters().reconcile(process.getPID().toString(), summary);
+                                }
+                                return null;
+                            }
+                        });
+                    } catch (Exception e) {
+                        __log.warn("Could not reconcile the instance counters with the database.", e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                __log.debug(e.getMessage(), e);
+            }
+        }
+    }
+
     public void setDehydrationPolicy(DehydrationPolicy dehydrationPolicy) {
         _dehydrationPolicy = dehydrationPolicy;
     }
@@ -511,6 +568,14 @@ public class BpelServerImpl implements BpelServer, Scheduler.JobProcessor {
         _contexts.cronScheduler = cronScheduler;
     }
 
+    public void setManagementExecutor(ExecutorService managementExecutor) {
+        _contexts.managementExecutor = managementExecutor;
+    }
+
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        _contexts.metrics = new EngineMetrics(metricsRegistry);
+    }
+
     public void setEndpointReferenceContext(EndpointReferenceContext eprContext) throws BpelEngineException {
         _contexts.eprContext = eprContext;
     }
@@ -575,6 +640,14 @@ public class BpelServerImpl implements BpelServer, Scheduler.JobProcessor {
         _engine.setInstanceThrottledMaximumCount(instanceThrottledMaximumCount);
     }
 
+    /**
+     * @param instanceCountReconcileInterval milliseconds between two reconciliations of the
+     * instance counters with the database, 0 to disable them
+     */
+    public void setInstanceCountReconcileInterval(long instanceCountReconcileInterval) {
+        _instanceCountReconcileInterval = instanceCountReconcileInterval;
+    }
+
     /**
      * A polled runnable instance that implements this interface will be set
      * with the contexts before the run() method is called.
@@ -634,27 +707,35 @@ public class BpelServerImpl implements BpelServer, Scheduler.JobProcessor {
 
             if( toRetry ) {
                 // re-try
-                _polledRunnableExec.submit(new Runnable() {
-                    public void run() {
-                        try {
-                            MapSerializableRunnable runnable = (MapSerializableRunnable)jobInfo.jobDetail.getDetailsExt().get("runnable");
-                            runnable.restoreFromDetails(jobInfo.jobDetail);
-                            if( runnable instanceof ContextsAware ) {
-                                ((ContextsAware)runnable).setContexts(_contexts);
+                try {
+                    _polledRunnableExec.submit(new Runnable() {
+                        public void run() {
+                            try {
+                                MapSerializableRunnable runnable = (MapSerializableRunnable)jobInfo.jobDetail.getDetailsExt().get("runnable");
+                                runnable.restoreFromDetails(jobInfo.jobDetail);
+                                if( runnable instanceof ContextsAware ) {
+                                    ((ContextsAware)runnable).setContexts(_contexts);
+                                }
+                                runnable.run();
+                                synchronized( resultsByJobId ) {
+                                    resultsByJobId.put(jobInfo.jobName, new PolledRunnableResults(JOB_STATUS.COMPLETED, null));
+                                }
+                            } catch( Exception e) {
+                                __log.error("", e);
+                                synchronized( resultsByJobId ) {
+                                    resultsByJobId.put(jobInfo.jobName, new PolledRunnableResults(JOB_STATUS.FAILED, e));
+                                }
+                            } finally {
                             }
-                            runnable.run();
-                            synchronized( resultsByJobId ) {
-                                resultsByJobId.put(jobInfo.jobName, new PolledRunnableResults(JOB_STATUS.COMPLETED, null));
-                            }
-                        } catch( Exception e) {
-                            __log.error("", e);
-                            synchronized( resultsByJobId ) {
-                                resultsByJobId.put(jobInfo.jobName, new PolledRunnableResults(JOB_STATUS.FAILED, e));
-                            }
-                        } finally {
                         }
+                    });
+                } catch( RejectedExecutionException e ) {
+                    // the executor is saturated, leave it for the next poll
+                    __log.warn("Couldn't run polled runnable " + jobInfo.jobName + ": " + e.getMessage());
+                    synchronized( resultsByJobId ) {
+                        resultsByJobId.put(jobInfo.jobName, new PolledRunnableResults(JOB_STATUS.PENDING, null));
                     }
-                });
+                }
             }
 
             jobInfo.jobDetail.getDetailsExt().put("runnable_status", JOB_STATUS.IN_PROGRESS);
@@ -28,10 +28,12 @@ import org.apache.ode.bpel.iapi.Scheduler;
 import org.apache.ode.bpel.intercept.MessageExchangeInterceptor;
 import org.apache.ode.bpel.engine.cron.CronScheduler;
 import org.apache.ode.bpel.evar.ExternalVariableModule;
+import org.apache.ode.utils.metrics.MetricsRegistry;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 
 import javax.xml.namespace.QName;
 
@@ -46,6 +48,9 @@ public class Contexts {
 
     public CronScheduler cronScheduler;
 
+    /** Executor for management work such as bulk replays, may be null. */
+    public ExecutorService managementExecutor;
+
     EndpointReferenceContext eprContext;
 
     BindingContext bindingContext;
@@ -64,4 +69,6 @@ public class Contexts {
     
     public CustomProcessProperties customProcessProperties = new CustomProcessProperties(); 
 
+    public EngineMetrics metrics = new EngineMetrics(MetricsRegistry.DISABLED);
+
 }
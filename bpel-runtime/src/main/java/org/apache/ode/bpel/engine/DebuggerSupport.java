@@ -94,6 +94,14 @@ public class DebuggerSupport implements DebuggerContext {
         _enabled = enabled;
     }
 
+    /**
+     * @return false when no breakpoint is set and no instance is being stepped
+     * through, {@link #onEvent(BpelEvent)} won't do anything then
+     */
+    public boolean isWatching() {
+        return _enabled && (_globalBreakPoints.length != 0 || !_instanceBreakPoints.isEmpty() || !_step.isEmpty());
+    }
+
     public Breakpoint[] getGlobalBreakpoints(){
         return _globalBreakPoints;
     }
@@ -161,6 +169,7 @@ public class DebuggerSupport implements DebuggerContext {
                         evt.setOldState(ProcessState.STATE_SUSPENDED);
                         short previousState = instance.getPreviousState();
 
+                        _process.instanceStateChanged(instance.getState(), previousState);
                         instance.setState(previousState);
 
                         evt.setNewState(previousState);
@@ -241,6 +250,7 @@ public class DebuggerSupport implements DebuggerContext {
                         // send event
                         ProcessInstanceStateChangeEvent changeEvent = new ProcessInstanceStateChangeEvent();
                         changeEvent.setOldState(instance.getState());
+                        _process.instanceStateChanged(instance.getState(), ProcessState.STATE_SUSPENDED);
                         instance.setState(ProcessState.STATE_SUSPENDED);
                         changeEvent.setNewState(ProcessState.STATE_SUSPENDED);
                         changeEvent.setProcessInstanceId(instance.getInstanceId());
@@ -292,6 +302,7 @@ public class DebuggerSupport implements DebuggerContext {
                         evt.setOldState(ProcessState.STATE_SUSPENDED);
                         short previousState = instance.getPreviousState();
 
+                        _process.instanceStateChanged(instance.getState(), previousState);
                         instance.setState(previousState);
 
                         evt.setNewState(previousState);
@@ -336,6 +347,7 @@ public class DebuggerSupport implements DebuggerContext {
                         // send event
                         ProcessInstanceStateChangeEvent evt = new ProcessInstanceStateChangeEvent();
                         evt.setOldState(instance.getState());
+                        _process.instanceStateChanged(instance.getState(), ProcessState.STATE_SUSPENDED);
                         instance.setState(ProcessState.STATE_SUSPENDED);
                         evt.setNewState(ProcessState.STATE_SUSPENDED);
                         evt.setProcessInstanceId(iid);
@@ -367,6 +379,7 @@ public class DebuggerSupport implements DebuggerContext {
                     // send event
                     ProcessInstanceStateChangeEvent evt = new ProcessInstanceStateChangeEvent();
                     evt.setOldState(instance.getState());
+                    _process.instanceStateChanged(instance.getState(), ProcessState.STATE_TERMINATED);
                     instance.setState(ProcessState.STATE_TERMINATED);
                     evt.setNewState(ProcessState.STATE_TERMINATED);
                     evt.setProcessInstanceId(iid);
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.engine;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.namespace.QName;
+
+import org.apache.ode.utils.metrics.Counter;
+import org.apache.ode.utils.metrics.Histogram;
+import org.apache.ode.utils.metrics.MetricsRegistry;
+
+/**
+ * Runtime performance metrics of the BPEL engine, recorded into a
+ * {@link MetricsRegistry}. Durations are in microseconds, sizes in bytes. Activity
+ * execution and invoke latencies are the exception, in milliseconds: they may span
+ * transactions and restarts, so they're taken from the wall clock.
+ *
+ * Every recording method is a no-op when the registry is disabled; call
+ * {@link #isEnabled()} before doing any work (reading the clock, computing
+ * sizes) just for the sake of a metric.
+ */
+public class EngineMetrics {
+    public static final String GROUP_ENGINE = "engine";
+    public static final String GROUP_PROCESS = "process";
+    public static final String GROUP_ACTIVITY = "activity";
+    public static final String GROUP_INVOKE = "invoke";
+
+    private final MetricsRegistry _registry;
+    private final boolean _enabled;
+
+    private final Histogram _reductionsPerTx;
+    private final Histogram _stateBytesRead;
+    private final Histogram _stateBytesWritten;
+    private final Histogram _lockWait;
+    private final Counter _lockTimeouts;
+    private final Counter _hydrations;
+    private final Counter _dehydrations;
+    private final Histogram _hydrationTime;
+
+    /** Per-key histograms, kept here so the hot path doesn't build registry keys. */
+    private final ConcurrentMap<QName, Histogram> _processExecution = new ConcurrentHashMap<QName, Histogram>();
+    private final ConcurrentMap<String, Histogram> _activityExecution = new ConcurrentHashMap<String, Histogram>();
+    private final ConcurrentMap<String, Histogram> _invokeLatency = new ConcurrentHashMap<String, Histogram>();
+
+    public EngineMetrics(MetricsRegistry registry) {
+        _registry = registry;
+        _enabled = registry.isEnabled();
+        _reductionsPerTx = registry.histogram(GROUP_ENGINE, "reductionsPerTransaction");
+        _stateBytesRead = registry.histogram(GROUP_ENGINE, "executionStateBytesRead");
+        _stateBytesWritten = registry.histogram(GROUP_ENGINE, "executionStateBytesWritten");
+        _lockWait = registry.histogram(GROUP_ENGINE, "instanceLockWait");
+        _lockTimeouts = registry.counter(GROUP_ENGINE, "instanceLockTimeouts");
+        _hydrations = registry.counter(GROUP_ENGINE, "hydrations");
+        _dehydrations = registry.counter(GROUP_ENGINE, "dehydrations");
+        _hydrationTime = registry.histogram(GROUP_ENGINE, "hydrationTime");
+    }
+
+    public boolean isEnabled() {
+        return _enabled;
+    }
+
+    public MetricsRegistry getRegistry() {
+        return _registry;
+    }
+
+    /**
+     * Records one run of the JACOB VPU for an instance of the given process.
+     */
+    public void processExecuted(QName pid, long startNanos, int reductions) {
+        if (!_enabled) return;
+        Histogram h = _processExecution.get(pid);
+        if (h == null) {
+            h = _registry.histogram(GROUP_PROCESS, pid.toString());
+            _processExecution.putIfAbsent(pid, h);
+        }
+        h.recordSince(startNanos);
+        _reductionsPerTx.record(reductions);
+    }
+
+    /**
+     * Records the time, in milliseconds, between an activity being started and it completing.
+     */
+    public void activityExecuted(String activityType, long elapsedMillis) {
+        if (!_enabled) return;
+        Histogram h = _activityExecution.get(activityType);
+        if (h == null) {
+            h = _registry.histogram(GROUP_ACTIVITY, activityType);
+            _activityExecution.putIfAbsent(activityType, h);
+        }
+        h.record(elapsedMillis);
+    }
+
+    /**
+     * Records the time, in milliseconds, between an invoke being sent and the partner's answer.
+     */
+    public void invokeCompleted(String endpoint, long elapsedMillis) {
+        if (!_enabled) return;
+        Histogram h = _invokeLatency.get(endpoint);
+        if (h == null) {
+            h = _registry.histogram(GROUP_INVOKE, endpoint);
+            _invokeLatency.putIfAbsent(endpoint, h);
+        }
+        h.record(elapsedMillis);
+    }
+
+    public void executionStateRead(int bytes) {
+        _stateBytesRead.record(bytes);
+    }
+
+    public void executionStateWritten(int bytes) {
+        _stateBytesWritten.record(bytes);
+    }
+
+    public void instanceLockAcquired(long startNanos) {
+        if (_enabled) _lockWait.recordSince(startNanos);
+    }
+
+    public void instanceLockTimedOut() {
+        _lockTimeouts.inc();
+    }
+
+    public void processHydrated(long startNanos) {
+        if (!_enabled) return;
+        _hydrations.inc();
+        _hydrationTime.recordSince(startNanos);
+    }
+
+    public void processDehydrated() {
+        _dehydrations.inc();
+    }
+
+    /**
+     * Drops the per-process metrics of an undeployed process.
+     */
+    public void processRemoved(QName pid) {
+        if (!_enabled) return;
+        if (_processExecution.remove(pid) != null) {
+            _registry.remove(GROUP_PROCESS, pid.toString());
+        }
+    }
+}
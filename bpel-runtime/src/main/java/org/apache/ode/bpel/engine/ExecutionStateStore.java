@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.engine;
+
+import org.apache.ode.bpel.dao.ProcessInstanceDAO;
+import org.apache.ode.utils.BinaryDelta;
+
+/**
+ * Persists the serialized JACOB execution state of an instance as a base
+ * snapshot plus a delta against it. As long as the state stays close to the
+ * base only the (small) delta is written; once the delta grows past a
+ * fraction of the state, the state becomes the new base and the delta is
+ * dropped. There is never more than one delta to apply on read.
+ */
+public class ExecutionStateStore {
+
+    /** States smaller than this are always written in full, a delta wouldn't pay off. */
+    static final int MIN_DELTA_STATE_SIZE = 8 * 1024;
+
+    /** A delta larger than this fraction of the state triggers a new base. */
+    static final int MAX_DELTA_RATIO = 4;
+
+    private ExecutionStateStore() {
+    }
+
+    /**
+     * @return the current execution state of the instance, null if it has none
+     */
+    public static byte[] read(ProcessInstanceDAO dao) {
+        byte[] base = dao.getExecutionState();
+        if (base == null) return null;
+        byte[] delta = dao.getExecutionStateDelta();
+        return delta == null ? base : BinaryDelta.apply(base, delta);
+    }
+
+    /**
+     * Stores the execution state, as a delta against the stored base when it's worth it.
+     * @return number of bytes written
+     */
+    public static int write(ProcessInstanceDAO dao, byte[] state) {
+        byte[] base = state.length < MIN_DELTA_STATE_SIZE ? null : dao.getExecutionState();
+        if (base != null) {
+            byte[] delta = BinaryDelta.diff(base, state);
+            if (delta.length <= state.length / MAX_DELTA_RATIO) {
+                dao.setExecutionStateDelta(delta);
+                return delta.length;
+            }
+        }
+        writeFull(dao, state);
+        return state.length;
+    }
+
+    /**
+     * Stores the execution state as a new base.
+     */
+    public static void writeFull(ProcessInstanceDAO dao, byte[] state) {
+        dao.setExecutionState(state);
+        if (dao.getExecutionStateDelta() != null) dao.setExecutionStateDelta(null);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.engine;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.ode.bpel.common.InstanceFilter.StatusKeys;
+import org.apache.ode.bpel.common.ProcessState;
+import org.apache.ode.bpel.dao.ProcessManagementDAO.InstanceSummaryKey;
+
+/**
+ * Number of instances of a process in each status, maintained as instances are
+ * created, change state and are deleted, so that throttling doesn't have to count
+ * them in the database. Changes done outside of the engine (deletions through the
+ * management API, cleanup jobs, replays) and rolled back transactions make the
+ * counts drift; {@link #reconcile(Map)} resets them from the database.
+ */
+public class InstanceCounters {
+    /** Pseudo-state of an instance that doesn't exist (yet or anymore). */
+    public static final short NO_STATE = -1;
+
+    private final AtomicLongArray _counts = new AtomicLongArray(StatusKeys.values().length);
+    private volatile boolean _reconciled;
+
+    /**
+     * @param reconciled whether the counts start exact, which is the case when
+     * the process can't have instances yet
+     */
+    public InstanceCounters(boolean reconciled) {
+        _reconciled = reconciled;
+    }
+
+    /**
+     * @return the status an instance state counts under, null for {@link #NO_STATE}
+     */
+    public static StatusKeys statusOf(short state) {
+        switch (state) {
+            case NO_STATE:
+                return null;
+            case ProcessState.STATE_NEW:
+            case ProcessState.STATE_READY:
+            case ProcessState.STATE_ACTIVE:
+                return StatusKeys.ACTIVE;
+            case ProcessState.STATE_COMPLETED_OK:
+                return StatusKeys.COMPLETED;
+            case ProcessState.STATE_COMPLETED_WITH_FAULT:
+                return StatusKeys.FAILED;
+            case ProcessState.STATE_SUSPENDED:
+                return StatusKeys.SUSPENDED;
+            case ProcessState.STATE_TERMINATED:
+                return StatusKeys.TERMINATED;
+            default:
+                return StatusKeys.ERROR;
+        }
+    }
+
+    /**
+     * Records an instance going from one state to another, {@link #NO_STATE} standing
+     * for its creation or deletion.
+     */
+    public void changed(short from, short to) {
+        StatusKeys before = statusOf(from);
+        StatusKeys after = statusOf(to);
+        if (before == after) return;
+        if (before != null) decrement(before.ordinal());
+        if (after != null) _counts.incrementAndGet(after.ordinal());
+    }
+
+    private void decrement(int i) {
+        // an instance counted before the last reconciliation may leave twice, don't go below zero
+        long c;
+        do {
+            c = _counts.get(i);
+            if (c == 0) return;
+        } while (!_counts.compareAndSet(i, c, c - 1));
+    }
+
+    /**
+     * Replaces the counts with the ones found in the database, statuses missing
+     * from the map having no instance.
+     */
+    public void reconcile(Map<StatusKeys, Long> counts) {
+        for (StatusKeys status : StatusKeys.values()) {
+            Long c = counts.get(status);
+            _counts.set(status.ordinal(), c == null ? 0 : c);
+        }
+        _reconciled = true;
+    }
+
+    /**
+     * Replaces the counts with the ones of the given process in an instance summary
+     * as returned by {@link org.apache.ode.bpel.dao.ProcessManagementDAO#countInstancesSummary(java.util.Set)}.
+     */
+    public void reconcile(String pid, Map<InstanceSummaryKey, Long> summary) {
+        Map<StatusKeys, Long> counts = new EnumMap<StatusKeys, Long>(StatusKeys.class);
+        for (Map.Entry<InstanceSummaryKey, Long> entry : summary.entrySet()) {
+            if (pid.equals(entry.getKey().pid)) {
+                counts.put(StatusKeys.valueOf(entry.getKey().instanceStatus), entry.getValue());
+            }
+        }
+        reconcile(counts);
+    }
+
+    public boolean isReconciled() {
+        return _reconciled;
+    }
+
+    public long getCount(StatusKeys status) {
+        return _counts.get(status.ordinal());
+    }
+
+    /**
+     * @return the number of instances of the process, whatever their state
+     */
+    public long getTotal() {
+        long total = 0;
+        for (int i = 0; i < _counts.length(); i++) {
+            total += _counts.get(i);
+        }
+        return total;
+    }
+}
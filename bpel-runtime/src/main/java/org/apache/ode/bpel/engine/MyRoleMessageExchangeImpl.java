@@ -33,6 +33,7 @@ import javax.xml.namespace.QName;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.ode.bpel.dao.MessageDAO;
 import org.apache.ode.bpel.dao.MessageExchangeDAO;
 import org.apache.ode.bpel.engine.replayer.Replayer;
 import org.apache.ode.bpel.iapi.Message;
@@ -48,6 +49,7 @@ import org.apache.ode.bpel.intercept.FaultMessageExchangeException;
 import org.apache.ode.bpel.intercept.InterceptorInvoker;
 import org.apache.ode.bpel.intercept.MessageExchangeInterceptor;
 import org.apache.ode.bpel.intercept.MessageExchangeInterceptor.InterceptorContext;
+import org.apache.ode.bpel.memdao.MessageExchangeDAOImpl;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
@@ -151,7 +153,7 @@ public class MyRoleMessageExchangeImpl extends MessageExchangeImpl implements My
             setStatus(Status.ASYNC);
             Replayer replayer = Replayer.replayer.get();
             if (replayer == null) {
-                if (target.isInMemory())
+                if (target.isInMemory() || isTransient())
                     _engine._contexts.scheduler.scheduleVolatileJob(true, we);
                 else
                     _engine._contexts.scheduler.schedulePersistedJob(we, null);
@@ -165,6 +167,61 @@ public class MyRoleMessageExchangeImpl extends MessageExchangeImpl implements My
     public void complete() {
     }
 
+    /**
+     * @return <code>true</code> if this exchange is kept in memory even though its process is persistent
+     */
+    boolean isTransient() {
+        return _process != null && !_process.isInMemory()
+                && _dao instanceof MessageExchangeDAOImpl;
+    }
+
+    /**
+     * Copies a transient exchange to the database under the same identifier, so that it
+     * outlives the current transaction, and switches this exchange over to the copy. The
+     * in-memory DAO hands out identifiers that don't repeat across restarts and nodes.
+     * Does nothing if the exchange is persistent already.
+     */
+    void persist() {
+        if (!isTransient()) return;
+        MessageExchangeDAOImpl mem = (MessageExchangeDAOImpl) _dao;
+        if (__log.isDebugEnabled()) __log.debug("Persisting transient mex " + mem.getMessageExchangeId());
+
+        MessageExchangeDAO db = _engine._contexts.dao.getConnection()
+                .createMessageExchange(mem.getMessageExchangeId(), mem.getDirection());
+        db.setCreateTime(mem.getCreateTime());
+        db.setStatus(mem.getStatus());
+        db.setPattern(mem.getPattern());
+        db.setOperation(mem.getOperation());
+        db.setPortType(mem.getPortType());
+        db.setCallee(mem.getCallee());
+        db.setPartnerLinkModelId(mem.getPartnerLinkModelId());
+        db.setCorrelationId(mem.getCorrelationId());
+        db.setCorrelationStatus(mem.getCorrelationStatus());
+        db.setSubscriberCount(mem.getSubscriberCount());
+        if (mem.getPipedMessageExchangeId() != null) db.setPipedMessageExchangeId(mem.getPipedMessageExchangeId());
+        if (mem.getChannel() != null) db.setChannel(mem.getChannel());
+        if (mem.getEPR() != null) db.setEPR(mem.getEPR());
+        if (mem.getFault() != null) db.setFault(mem.getFault());
+        if (mem.getFaultExplanation() != null) db.setFaultExplanation(mem.getFaultExplanation());
+        if (mem.getProcess() != null) db.setProcess(mem.getProcess());
+        if (mem.getInstance() != null) db.setInstance(mem.getInstance());
+        for (String key : mem.getPropertyNames()) {
+            db.setProperty(key, mem.getProperty(key));
+        }
+        if (mem.getRequest() != null) db.setRequest(copyMessage(mem.getRequest(), db));
+        if (mem.getResponse() != null) db.setResponse(copyMessage(mem.getResponse(), db));
+
+        _dao = db;
+        mem.evict(_engine._contexts.scheduler);
+    }
+
+    private static MessageDAO copyMessage(MessageDAO from, MessageExchangeDAO to) {
+        MessageDAO copy = to.createMessage(from.getType());
+        copy.setData(from.getData());
+        if (from.getHeader() != null) copy.setHeader(from.getHeader());
+        return copy;
+    }
+
     public QName getServiceName() {
         return getDAO().getCallee();
     }
@@ -198,6 +198,7 @@ public class PartnerLinkMyRoleImpl extends PartnerLinkRoleImpl {
         }
 
         ProcessInstanceDAO newInstance = processDAO.createInstance(routing.correlator);
+        _process.instanceStateChanged(InstanceCounters.NO_STATE, org.apache.ode.bpel.common.ProcessState.STATE_NEW);
 
         BpelRuntimeContextImpl instance = _process
                 .createRuntimeContext(newInstance, new PROCESS(_process.getOProcess()), mex);
@@ -284,6 +285,7 @@ public class PartnerLinkMyRoleImpl extends PartnerLinkRoleImpl {
                 mex.setCorrelationStatus(MyRoleMessageExchange.CorrelationStatus.QUEUED);
 
                 // No match, means we add message exchange to the queue.
+                mex.persist();
                 routing.correlator.enqueueMessage(mex.getDAO(), routing.wholeKeySet);
                 
                 // Second matcher needs to be registered here
@@ -24,12 +24,16 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.ode.bpel.dao.MessageExchangeDAO;
 import org.apache.ode.bpel.engine.replayer.Replayer;
 import org.apache.ode.bpel.iapi.BpelEngineException;
+import org.apache.ode.bpel.iapi.Endpoint;
 import org.apache.ode.bpel.iapi.EndpointReference;
 import org.apache.ode.bpel.iapi.Message;
 import org.apache.ode.bpel.iapi.PartnerRoleChannel;
 import org.apache.ode.bpel.iapi.PartnerRoleMessageExchange;
+import org.apache.ode.bpel.iapi.Scheduler;
 import org.apache.ode.bpel.iapi.Scheduler.JobDetails;
 import org.apache.ode.bpel.iapi.Scheduler.JobType;
+import org.apache.ode.bpel.o.OBase;
+import org.apache.ode.bpel.o.OPartnerLink;
 import org.apache.ode.utils.DOMUtils;
 import org.w3c.dom.Element;
 
@@ -74,6 +78,7 @@ public class PartnerRoleMessageExchangeImpl extends MessageExchangeImpl implemen
             LOG.debug("replyWithFault mex=" + getMessageExchangeId());
         }
         boolean isAsync = isAsync();
+        recordInvokeLatency();
         setFault(faultType, outputFaultMessage);
         if (isAsync)
             continueAsync();
@@ -84,6 +89,7 @@ public class PartnerRoleMessageExchangeImpl extends MessageExchangeImpl implemen
             LOG.debug("reply mex=" + getMessageExchangeId());
         }
         boolean isAsync = isAsync();
+        recordInvokeLatency();
         setResponse(response);
         if (isAsync)
             continueAsync();
@@ -112,6 +118,7 @@ public class PartnerRoleMessageExchangeImpl extends MessageExchangeImpl implemen
             LOG.debug(msg);
         }
         boolean isAsync = isAsync();
+        recordInvokeLatency();
         setFailure(type, description, details);
         if (isAsync)
             continueAsync();
@@ -133,14 +140,24 @@ public class PartnerRoleMessageExchangeImpl extends MessageExchangeImpl implemen
         if (LOG.isDebugEnabled()) {
             LOG.debug("create work event for mex=" + getMessageExchangeId());
         }
-        JobDetails we = new JobDetails();
+        final BpelProcess process = _engine._activeProcesses.get(getDAO().getProcess().getProcessId());
+        final JobDetails we = new JobDetails();
         we.setInstanceId(getDAO().getInstance().getInstanceId());
         we.setType(JobType.INVOKE_RESPONSE);
-        we.setInMem(_engine._activeProcesses.get(getDAO().getProcess().getProcessId()).isInMemory());
+        we.setInMem(process.isInMemory());
         we.setChannel(getDAO().getChannel());
         we.setMexId(getDAO().getMessageExchangeId());
         Replayer replayer = Replayer.replayer.get();
         if (replayer == null) {
+            // once committed, the response can be picked up by whichever job gets to the instance first;
+            // registered ahead of the job so that it's noted before the job can start
+            _engine._contexts.scheduler.registerSynchronizer(new Scheduler.Synchronizer() {
+                public void afterCompletion(boolean success) {
+                    if (success) process.invokeResponseArrived(we.getInstanceId(), we.getMexId());
+                }
+                public void beforeCompletion() {
+                }
+            });
             if (we.getInMem())
                 _engine._contexts.scheduler.scheduleVolatileJob(true, we);
             else
@@ -150,6 +167,30 @@ public class PartnerRoleMessageExchangeImpl extends MessageExchangeImpl implemen
         }
     }
 
+    /**
+     * Records the time elapsed since the exchange was created against the partner
+     * endpoint it was sent to, or against its port type if the endpoint can't be told.
+     */
+    private void recordInvokeLatency() {
+        EngineMetrics metrics = _engine._contexts.metrics;
+        if (!metrics.isEnabled()) return;
+        try {
+            String endpoint = null;
+            BpelProcess process = _engine._activeProcesses.get(getDAO().getProcess().getProcessId());
+            if (process != null) {
+                OBase link = process.getOProcess().getChild(getDAO().getPartnerLinkModelId());
+                if (link instanceof OPartnerLink) {
+                    Endpoint initial = process.getInitialPartnerRoleEndpoint((OPartnerLink) link);
+                    if (initial != null) endpoint = initial.toString();
+                }
+            }
+            if (endpoint == null) endpoint = String.valueOf(getPortType().getQName());
+            metrics.invokeCompleted(endpoint, System.currentTimeMillis() - getDAO().getCreateTime().getTime());
+        } catch (Exception e) {
+            LOG.debug("Couldn't record invoke latency for mex=" + getMessageExchangeId(), e);
+        }
+    }
+
     /**
      * Check if we are in the ASYNC state.
      *
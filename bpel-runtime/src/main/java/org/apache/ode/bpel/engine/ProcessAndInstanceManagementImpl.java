@@ -56,6 +56,7 @@ import org.apache.ode.bpel.dao.ScopeDAO;
 import org.apache.ode.bpel.dao.XmlDataDAO;
 import org.apache.ode.bpel.dao.ProcessManagementDAO.FailedSummaryValue;
 import org.apache.ode.bpel.dao.ProcessManagementDAO.InstanceSummaryKey;
+import org.apache.ode.bpel.engine.replayer.BulkReplayer;
 import org.apache.ode.bpel.engine.replayer.Replayer;
 import org.apache.ode.bpel.evt.ActivityEvent;
 import org.apache.ode.bpel.evt.BpelEvent;
@@ -1470,6 +1471,19 @@ public class ProcessAndInstanceManagementImpl implements InstanceManagement, Pro
     }
 
     public ReplayResponseDocument replay(final Replay request) throws ManagementException {
+        if (request.isSetBatchSize()) {
+            // bulk mode, each batch is replayed in its own transaction
+            try {
+                ReplayResponseDocument responseDoc = ReplayResponseDocument.Factory.newInstance();
+                BulkReplayer replayer = new BulkReplayer(_db, _server.getEngine(), _server.getContexts().managementExecutor);
+                replayer.registerMetrics(_server.getContexts().metrics.getRegistry());
+                responseDoc.setReplayResponse(replayer.replay(request));
+                return responseDoc;
+            } catch (Throwable e2) {
+                throw new ManagementException("", e2);
+            }
+        }
+
         final Throwable[] e = new Throwable[1];
         try {
             ReplayResponseDocument response = _db.exec(new BpelDatabase.Callable<ReplayResponseDocument>() {
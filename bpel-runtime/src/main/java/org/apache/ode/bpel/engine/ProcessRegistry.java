@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+/**
+ * Registry of the processes active in the engine, indexed by process id, by
+ * myrole service and by process type (with its versions sorted). Readers go
+ * through an immutable snapshot without locking or allocating; writers are
+ * serialized, build a new snapshot and swap it in, so a redeploy becomes
+ * visible to scheduler threads all at once.
+ */
+public class ProcessRegistry {
+
+    private static final Comparator<BpelProcess> BY_VERSION = new Comparator<BpelProcess>() {
+        public int compare(BpelProcess p1, BpelProcess p2) {
+            long v1 = p1.getVersion();
+            long v2 = p2.getVersion();
+            return v1 < v2 ? -1 : (v1 == v2 ? 0 : 1);
+        }
+    };
+
+    private volatile Snapshot _snapshot = new Snapshot(new HashMap<QName, BpelProcess>(),
+            new HashMap<QName, List<BpelProcess>>());
+
+    /**
+     * @return the process with the given id, or null
+     */
+    public BpelProcess get(QName pid) {
+        return _snapshot._byPid.get(pid);
+    }
+
+    public boolean contains(QName pid) {
+        return _snapshot._byPid.containsKey(pid);
+    }
+
+    /**
+     * @return all active processes, unmodifiable
+     */
+    public Collection<BpelProcess> getAll() {
+        return _snapshot._all;
+    }
+
+    /**
+     * @return the processes routed to for the given myrole service, unmodifiable, or null if none
+     */
+    public List<BpelProcess> getByService(QName service) {
+        return _snapshot._byService.get(service);
+    }
+
+    /**
+     * @return all registered versions of a process type, oldest first, unmodifiable
+     */
+    public List<BpelProcess> getByType(QName processType) {
+        List<BpelProcess> versions = _snapshot._byType.get(processType);
+        return versions == null ? Collections.<BpelProcess>emptyList() : versions;
+    }
+
+    /**
+     * @return the given version of a process type, or null
+     */
+    public BpelProcess getByTypeAndVersion(QName processType, long version) {
+        List<BpelProcess> versions = _snapshot._byType.get(processType);
+        if (versions == null) return null;
+        int low = 0;
+        int high = versions.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long v = versions.get(mid).getVersion();
+            if (v < version) low = mid + 1;
+            else if (v > version) high = mid - 1;
+            else return versions.get(mid);
+        }
+        return null;
+    }
+
+    /**
+     * @return the most recent version of a process type, or null
+     */
+    public BpelProcess getNewest(QName processType) {
+        List<BpelProcess> versions = _snapshot._byType.get(processType);
+        return versions == null ? null : versions.get(versions.size() - 1);
+    }
+
+    /**
+     * Adds a process and replaces the routing of the given services in a single step.
+     * @param services new process lists of the services whose routing changed
+     */
+    public synchronized void register(BpelProcess process, Map<QName, List<BpelProcess>> services) {
+        Snapshot current = _snapshot;
+        HashMap<QName, BpelProcess> byPid = new HashMap<QName, BpelProcess>(current._byPid);
+        byPid.put(process.getPID(), process);
+        HashMap<QName, List<BpelProcess>> byService = new HashMap<QName, List<BpelProcess>>(current._byService);
+        for (Map.Entry<QName, List<BpelProcess>> e : services.entrySet()) {
+            byService.put(e.getKey(), Collections.unmodifiableList(new ArrayList<BpelProcess>(e.getValue())));
+        }
+        _snapshot = new Snapshot(byPid, byService);
+    }
+
+    /**
+     * Removes a process and drops it from the routing of all services.
+     * @return the removed process, or null if it wasn't registered
+     */
+    public synchronized BpelProcess unregister(QName pid) {
+        Snapshot current = _snapshot;
+        BpelProcess removed = current._byPid.get(pid);
+        if (removed == null) return null;
+
+        HashMap<QName, BpelProcess> byPid = new HashMap<QName, BpelProcess>(current._byPid);
+        byPid.remove(pid);
+        HashMap<QName, List<BpelProcess>> byService = new HashMap<QName, List<BpelProcess>>();
+        for (Map.Entry<QName, List<BpelProcess>> e : current._byService.entrySet()) {
+            List<BpelProcess> processes = e.getValue();
+            if (containsPid(processes, pid)) {
+                ArrayList<BpelProcess> remaining = new ArrayList<BpelProcess>(processes.size());
+                for (BpelProcess p : processes) {
+                    if (!p.getPID().equals(pid)) remaining.add(p);
+                }
+                processes = Collections.unmodifiableList(remaining);
+            }
+            // services left without processes keep an empty list, as they always did
+            byService.put(e.getKey(), processes);
+        }
+        _snapshot = new Snapshot(byPid, byService);
+        return removed;
+    }
+
+    private static boolean containsPid(List<BpelProcess> processes, QName pid) {
+        for (BpelProcess p : processes) {
+            if (p.getPID().equals(pid)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Immutable view of the registry; the process type index is derived from the process ids.
+     */
+    private static final class Snapshot {
+        final Map<QName, BpelProcess> _byPid;
+        final Collection<BpelProcess> _all;
+        final Map<QName, List<BpelProcess>> _byService;
+        final Map<QName, List<BpelProcess>> _byType;
+
+        Snapshot(HashMap<QName, BpelProcess> byPid, HashMap<QName, List<BpelProcess>> byService) {
+            _byPid = byPid;
+            _all = Collections.unmodifiableCollection(byPid.values());
+            _byService = byService;
+            HashMap<QName, List<BpelProcess>> byType = new HashMap<QName, List<BpelProcess>>();
+            for (BpelProcess p : byPid.values()) {
+                List<BpelProcess> versions = byType.get(p.getProcessType());
+                if (versions == null) {
+                    versions = new ArrayList<BpelProcess>(2);
+                    byType.put(p.getProcessType(), versions);
+                }
+                versions.add(p);
+            }
+            for (Map.Entry<QName, List<BpelProcess>> e : byType.entrySet()) {
+                Collections.sort(e.getValue(), BY_VERSION);
+                e.setValue(Collections.unmodifiableList(e.getValue()));
+            }
+            _byType = byType;
+        }
+    }
+}
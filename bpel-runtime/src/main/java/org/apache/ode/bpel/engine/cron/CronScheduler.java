@@ -24,10 +24,15 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.Callable;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.namespace.QName;
 
@@ -41,20 +46,36 @@ import org.apache.ode.bpel.iapi.ProcessConf.CronJob;
 import org.apache.ode.bpel.iapi.Scheduler.JobDetails;
 import org.apache.ode.bpel.iapi.Scheduler.MapSerializableRunnable;
 import org.apache.ode.utils.CronExpression;
+import org.apache.ode.utils.metrics.Gauge;
+import org.apache.ode.utils.metrics.MetricsRegistry;
 
 public class CronScheduler {
     static final Log __log = LogFactory.getLog(CronScheduler.class);
 
     // minimum interval of the cron job(1 second)
     private final long MIN_INTERVAL = 0;
-    // if the work is schedule too late from the due time, skip it
-    private final long TOLERABLE_SCHEDULE_DELAY = 0;
+    // cron expressions have a one second resolution, a 100ms tick keeps the fire lag well below that
+    private static final long WHEEL_TICK = 100;
+    private static final int WHEEL_SIZE = 64;
 
     private ExecutorService _scheduledTaskExec;
+    private ExecutorService _ownedTaskExec;
+    private static final int OWNED_POOL_SIZE = 4;
+    private static final String METRICS_GROUP = "cron";
+
+    private long _misfireThreshold = 0;
+    private MisfirePolicy _misfirePolicy = MisfirePolicy.FIRE_NOW;
 
     private Contexts _contexts;
 
-    private final Timer _schedulerTimer = new Timer("CronScheduler", true);
+    private final TimingWheel _wheel = new TimingWheel("CronScheduler", WHEEL_TICK, WHEEL_SIZE);
+
+    private final AtomicLong _fired = new AtomicLong();
+    private final AtomicLong _overlapSkips = new AtomicLong();
+    private final AtomicLong _misfires = new AtomicLong();
+    private final AtomicLong _totalFireLag = new AtomicLong();
+    private final AtomicLong _lagSamples = new AtomicLong();
+    private final AtomicLong _maxFireLag = new AtomicLong();
 
     private final Collection<TerminationListener> _systemTerminationListeners = new ArrayList<TerminationListener>();
 
@@ -62,17 +83,150 @@ public class CronScheduler {
 
     private volatile boolean _shuttingDown = false;
 
+    public CronScheduler() {
+        _wheel.start();
+    }
+
+    /**
+     * Sets the executor the cron jobs run on, its size bounds how many jobs run at
+     * once. If none is set, the scheduler creates a small pool of its own.
+     */
     public void setScheduledTaskExec(ExecutorService taskExec) {
         _scheduledTaskExec = taskExec;
     }
 
+    /**
+     * Fire times older than this many milliseconds by the time the job runs are
+     * misfires and are handled according to the misfire policy; 0 disables the check.
+     */
+    public void setMisfireThreshold(long misfireThreshold) {
+        _misfireThreshold = misfireThreshold;
+    }
+
+    public void setMisfirePolicy(MisfirePolicy misfirePolicy) {
+        _misfirePolicy = misfirePolicy;
+    }
+
+    private synchronized ExecutorService getTaskExec() {
+        if( _scheduledTaskExec == null ) {
+            ThreadPoolExecutor exec = new ThreadPoolExecutor(OWNED_POOL_SIZE, OWNED_POOL_SIZE,
+                    60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(OWNED_POOL_SIZE * 16),
+                    new ThreadFactory() {
+                        private final AtomicInteger _threadNumber = new AtomicInteger();
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "CronScheduler-" + _threadNumber.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            exec.allowCoreThreadTimeOut(true);
+            _scheduledTaskExec = _ownedTaskExec = exec;
+        }
+        return _scheduledTaskExec;
+    }
+
+    private void recordFireLag(long lag) {
+        if( lag < 0 ) lag = 0;
+        _totalFireLag.addAndGet(lag);
+        _lagSamples.incrementAndGet();
+        long max;
+        while( lag > (max = _maxFireLag.get()) && !_maxFireLag.compareAndSet(max, lag) );
+    }
+
+    /**
+     * @return number of cron job runs so far
+     */
+    public long getFiredCount() {
+        return _fired.get();
+    }
+
+    /**
+     * @return number of fire times dropped because the job was still running
+     */
+    public long getOverlapSkipCount() {
+        return _overlapSkips.get();
+    }
+
+    /**
+     * @return number of fire times that were late beyond the threshold or rejected by the executor
+     */
+    public long getMisfireCount() {
+        return _misfires.get();
+    }
+
+    /**
+     * @return average delay in milliseconds between a fire time and the job actually starting
+     */
+    public long getAverageFireLag() {
+        long samples = _lagSamples.get();
+        return samples == 0 ? 0 : _totalFireLag.get() / samples;
+    }
+
+    /**
+     * @return worst delay in milliseconds between a fire time and the job actually starting
+     */
+    public long getMaxFireLag() {
+        return _maxFireLag.get();
+    }
+
+    /**
+     * @return number of fire times waiting in the timing wheel
+     */
+    public int getScheduledCount() {
+        return _wheel.size();
+    }
+
+    /**
+     * Publishes the fire counters and lags as gauges of the "cron" group.
+     */
+    public void registerMetrics(MetricsRegistry registry) {
+        if (!registry.isEnabled()) return;
+        registry.gauge(METRICS_GROUP, "fired", new Gauge() {
+            public long getValue() {
+                return getFiredCount();
+            }
+        });
+        registry.gauge(METRICS_GROUP, "overlapSkips", new Gauge() {
+            public long getValue() {
+                return getOverlapSkipCount();
+            }
+        });
+        registry.gauge(METRICS_GROUP, "misfires", new Gauge() {
+            public long getValue() {
+                return getMisfireCount();
+            }
+        });
+        registry.gauge(METRICS_GROUP, "averageFireLag", new Gauge() {
+            public long getValue() {
+                return getAverageFireLag();
+            }
+        });
+        registry.gauge(METRICS_GROUP, "maxFireLag", new Gauge() {
+            public long getValue() {
+                return getMaxFireLag();
+            }
+        });
+        registry.gauge(METRICS_GROUP, "scheduled", new Gauge() {
+            public long getValue() {
+                return getScheduledCount();
+            }
+        });
+    }
+
     public void setContexts(Contexts _contexts) {
         this._contexts = _contexts;
     }
 
     public void shutdown() {
         _shuttingDown = true;
-        _schedulerTimer.cancel();
+        _wheel.stop();
+        synchronized( this ) {
+            if( _ownedTaskExec != null ) {
+                _ownedTaskExec.shutdownNow();
+                _ownedTaskExec = null;
+                _scheduledTaskExec = null;
+            }
+        }
 
         for( TerminationListener listener : _systemTerminationListeners ) {
             listener.terminate();
@@ -230,30 +384,9 @@ public class CronScheduler {
         assert cronExpression != null;
         assert runnable != null;
 
-        final Date nextScheduleTime = cronExpression.getNextValidTimeAfter(new Date(
-                System.currentTimeMillis() + MIN_INTERVAL));
-        final CronScheduledJob job = new CronScheduledJob(nextScheduleTime, runnable, runnableDetails, cronExpression, terminationListener);
-        if( __log.isDebugEnabled() ) __log.debug("CRON will run in " + (nextScheduleTime.getTime() - System.currentTimeMillis()) + "ms.");
-
+        final CronScheduledJob job = new CronScheduledJob(runnable, runnableDetails, cronExpression, terminationListener);
         try {
-            _schedulerTimer.schedule(new TimerTask() {
-                @Override
-                public void run() {
-                    if (__log.isDebugEnabled()) {
-                        __log.debug("Cron scheduling timer kicked in: " + cronExpression);
-                    }
-                    // run only if the current node is the coordinator,
-                    // with the SimpleScheduler, the node is always the coordinator
-                    if( !(_contexts.scheduler instanceof ClusterAware)
-                            || ((ClusterAware)_contexts.scheduler).amICoordinator() ) {
-                        // do not hold the timer thread too long, submit the work to an executorService
-                        _scheduledTaskExec.submit(job);
-                        if (__log.isDebugEnabled()) {
-                            __log.debug("CRON job scheduled " + runnable);
-                        }
-                    }
-                }
-            }, nextScheduleTime);
+            job.scheduleNext(System.currentTimeMillis() + MIN_INTERVAL);
         } catch( IllegalStateException ise ) {
             if( _shuttingDown ) {
                 __log.info("CRON Scheduler is being shut down. This new scheduling request is ignored.");
@@ -269,66 +402,137 @@ public class CronScheduler {
         void terminate();
     }
 
-    private class CronScheduledJob implements Callable<TerminationListener> {
+    /**
+     * What to do with a fire time that is already older than the misfire
+     * threshold when the job gets to run.
+     */
+    public enum MisfirePolicy {
+        /** run the late occurrence anyway */
+        FIRE_NOW,
+        /** drop the late occurrence and wait for the next fire time */
+        SKIP
+    }
+
+    private class CronScheduledJob implements Runnable {
         private volatile boolean terminated = false;
-        private Date nextScheduleTime;
+        private final AtomicBoolean running = new AtomicBoolean();
+        private volatile long nextScheduleTime;
+        private volatile TimingWheel.Timeout timeout;
         private Runnable runnable;
         private JobDetails runnableDetails;
         private CronExpression cronExpression;
         private TerminationListener terminationListener;
 
-        public CronScheduledJob(Date nextScheduleTime,
-                Runnable runnable, JobDetails runnableDetails,
-                CronExpression cronExpression, TerminationListener terminationListener) {
-            this.nextScheduleTime = nextScheduleTime;
+        public CronScheduledJob(Runnable runnable, JobDetails runnableDetails,
+                CronExpression cronExpression, final TerminationListener terminationListener) {
             this.runnable = runnable;
             this.runnableDetails = runnableDetails;
             this.cronExpression = cronExpression;
-            if( terminationListener == null ) {
-                terminationListener = new TerminationListener() {
-                    public void terminate() {
-                        terminated = true;
+            this.terminationListener = new TerminationListener() {
+                public void terminate() {
+                    terminated = true;
+                    TimingWheel.Timeout t = timeout;
+                    if( t != null ) {
+                        t.cancel();
                     }
-                };
+                    if( terminationListener != null ) {
+                        terminationListener.terminate();
+                    }
+                }
+            };
+        }
+
+        void scheduleNext(long after) {
+            if( _shuttingDown || terminated ) {
+                return;
             }
-            this.terminationListener = terminationListener;
+            Date next = cronExpression.getNextValidTimeAfter(new Date(after));
+            if( next == null ) {
+                if( __log.isDebugEnabled() ) __log.debug("CRON expression " + cronExpression + " has no more fire times.");
+                return;
+            }
+            nextScheduleTime = next.getTime();
+            if( __log.isDebugEnabled() ) __log.debug("CRON will run in " + (nextScheduleTime - System.currentTimeMillis()) + "ms.");
+            timeout = _wheel.schedule(this, nextScheduleTime);
         }
 
-        public TerminationListener call() throws Exception {
+        /**
+         * Fired by the timing wheel; keeps the wheel thread free by handing the
+         * work to the executor and lining up the next fire time right away, so
+         * a long running job doesn't shift its own schedule.
+         */
+        public void run() {
+            final long fireTime = nextScheduleTime;
+            if (__log.isDebugEnabled()) {
+                __log.debug("Cron scheduling timer kicked in: " + cronExpression);
+            }
+            scheduleNext(Math.max(fireTime, System.currentTimeMillis()));
+
+            // run only if the current node is the coordinator,
+            // with the SimpleScheduler, the node is always the coordinator
+            if( _contexts.scheduler instanceof ClusterAware
+                    && !((ClusterAware)_contexts.scheduler).amICoordinator() ) {
+                return;
+            }
+            if( !running.compareAndSet(false, true) ) {
+                _overlapSkips.incrementAndGet();
+                __log.warn("CRON job " + runnable + " is still running from an earlier fire time, skipping the one for " + new Date(fireTime));
+                return;
+            }
             try {
-                if( TOLERABLE_SCHEDULE_DELAY == 0 ||
-                    nextScheduleTime.getTime() < System.currentTimeMillis() + TOLERABLE_SCHEDULE_DELAY) {
-                    if( runnableDetails != null &&
-                            runnable instanceof MapSerializableRunnable ) {
-                        ((MapSerializableRunnable)runnable).restoreFromDetails(runnableDetails);
+                getTaskExec().execute(new Runnable() {
+                    public void run() {
+                        try {
+                            execute(fireTime);
+                        } finally {
+                            running.set(false);
+                        }
                     }
-                    if (runnable instanceof ContextsAware) {
-                        ((ContextsAware) runnable).setContexts(_contexts);
+                });
+                if (__log.isDebugEnabled()) {
+                    __log.debug("CRON job scheduled " + runnable);
+                }
+            } catch( RejectedExecutionException ree ) {
+                running.set(false);
+                _misfires.incrementAndGet();
+                if( !_shuttingDown ) {
+                    __log.warn("CRON executor is saturated, skipping " + runnable + " for " + new Date(fireTime));
+                }
+            }
+        }
+
+        private void execute(long fireTime) {
+            long lag = System.currentTimeMillis() - fireTime;
+            recordFireLag(lag);
+            try {
+                if( _misfireThreshold > 0 && lag > _misfireThreshold ) {
+                    _misfires.incrementAndGet();
+                    if( _misfirePolicy == MisfirePolicy.SKIP ) {
+                        __log.warn("CRON job " + runnable + " misfired by " + lag + "ms, skipping it.");
+                        return;
                     }
-                    if( !_shuttingDown && !terminated ) {
-                        if (__log.isDebugEnabled()) {
-                            __log.debug("Running CRON job: " + runnable + " for " + nextScheduleTime.getTime());
-                        }
-                        runnable.run();
+                }
+                if( runnableDetails != null &&
+                        runnable instanceof MapSerializableRunnable ) {
+                    ((MapSerializableRunnable)runnable).restoreFromDetails(runnableDetails);
+                }
+                if (runnable instanceof ContextsAware) {
+                    ((ContextsAware) runnable).setContexts(_contexts);
+                }
+                if( !_shuttingDown && !terminated ) {
+                    if (__log.isDebugEnabled()) {
+                        __log.debug("Running CRON job: " + runnable + " for " + fireTime);
                     }
-                } else {
-                    // ignore the scheduling.. it will be scheduled later
+                    _fired.incrementAndGet();
+                    runnable.run();
                 }
-            } catch( Exception e ) {
+            } catch( RuntimeException e ) {
                 if( _shuttingDown ) {
                     __log.info("A cron job threw an Exception during ODE shutdown: " + e.getMessage() + ", you can ignore the error.");
-                } else if( e instanceof RuntimeException ) {
-                    throw e;
                 } else {
-                    throw new RuntimeException("Exception during running cron scheduled job: " + runnable, e);
-                }
-            } finally {
-                if( !_shuttingDown && !terminated ) {
-                    schedule(cronExpression, runnable, runnableDetails, terminationListener);
+                    __log.error("Exception during running cron scheduled job: " + runnable, e);
                 }
             }
-
-            return terminationListener;
         }
     }
 }
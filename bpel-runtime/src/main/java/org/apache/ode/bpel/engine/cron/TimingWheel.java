@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.engine.cron;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Hierarchical timing wheel. Scheduling and cancelling are O(1) and lock free:
+ * new timeouts are queued and only the wheel thread touches the buckets. Each
+ * level covers wheelSize times the span of the level below; timeouts further
+ * away than the top level are parked in the top level and cascaded again
+ * until they get close enough.
+ *
+ * Expired tasks run on the wheel thread, so they must be short; hand off any
+ * real work to an executor.
+ */
+public class TimingWheel {
+    private static final Log __log = LogFactory.getLog(TimingWheel.class);
+
+    private static final int LEVELS = 4;
+
+    private final String _name;
+    private final long _tickMillis;
+    private final int _wheelSize;
+    /** Number of ticks spanned by one bucket of each level. */
+    private final long[] _levelTicks = new long[LEVELS];
+    private final List<List<Timeout>> _buckets = new ArrayList<List<Timeout>>(LEVELS * 64);
+
+    private final ConcurrentLinkedQueue<Timeout> _pending = new ConcurrentLinkedQueue<Timeout>();
+    private final AtomicInteger _size = new AtomicInteger();
+
+    private long _startTime;
+    private long _currentTick;
+    private volatile Thread _worker;
+    private volatile boolean _running;
+
+    public TimingWheel(String name, long tickMillis, int wheelSize) {
+        if (tickMillis <= 0) throw new IllegalArgumentException("tickMillis must be positive: " + tickMillis);
+        if (wheelSize < 2) throw new IllegalArgumentException("wheelSize must be at least 2: " + wheelSize);
+        _name = name;
+        _tickMillis = tickMillis;
+        _wheelSize = wheelSize;
+        long span = 1;
+        for (int l = 0; l < LEVELS; l++) {
+            _levelTicks[l] = span;
+            span *= wheelSize;
+        }
+        for (int i = 0; i < LEVELS * wheelSize; i++) {
+            _buckets.add(new ArrayList<Timeout>());
+        }
+    }
+
+    public synchronized void start() {
+        if (_running) return;
+        _running = true;
+        _startTime = System.currentTimeMillis();
+        _currentTick = 0;
+        _worker = new Thread(new Runnable() {
+            public void run() {
+                work();
+            }
+        }, _name);
+        _worker.setDaemon(true);
+        _worker.start();
+    }
+
+    public synchronized void stop() {
+        _running = false;
+        Thread worker = _worker;
+        _worker = null;
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join(10 * _tickMillis + 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        _pending.clear();
+        for (List<Timeout> bucket : _buckets) bucket.clear();
+        _size.set(0);
+    }
+
+    public boolean isRunning() {
+        return _running;
+    }
+
+    /**
+     * Schedules a task to run on the wheel thread once the deadline (in
+     * milliseconds since the epoch) has passed.
+     */
+    public Timeout schedule(Runnable task, long deadline) {
+        if (!_running) throw new IllegalStateException("Timing wheel " + _name + " is not running.");
+        Timeout t = new Timeout(task, deadline);
+        _size.incrementAndGet();
+        _pending.add(t);
+        return t;
+    }
+
+    /**
+     * @return number of scheduled timeouts that haven't expired yet, cancelled ones included
+     */
+    public int size() {
+        return _size.get();
+    }
+
+    private void work() {
+        while (_running) {
+            long deadline = _startTime + (_currentTick + 1) * _tickMillis;
+            long sleep = deadline - System.currentTimeMillis();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    if (!_running) return;
+                }
+            }
+            long nowTick = (System.currentTimeMillis() - _startTime) / _tickMillis;
+            while (_running && _currentTick < nowTick) {
+                _currentTick++;
+                drainPending();
+                advance(_currentTick);
+            }
+        }
+    }
+
+    private void drainPending() {
+        Timeout t;
+        while ((t = _pending.poll()) != null) {
+            place(t);
+        }
+    }
+
+    private void place(Timeout t) {
+        if (t._cancelled) {
+            _size.decrementAndGet();
+            return;
+        }
+        long deadlineTick = (t._deadline - _startTime + _tickMillis - 1) / _tickMillis;
+        long delta = deadlineTick - _currentTick;
+        if (delta <= 0) {
+            expire(t);
+            return;
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= _levelTicks[level] * _wheelSize) level++;
+        long slotTick = deadlineTick;
+        if (delta >= _levelTicks[level] * _wheelSize) {
+            // too far even for the top level, park it in the last slot before a full turn
+            slotTick = _currentTick + _levelTicks[level] * (_wheelSize - 1);
+        }
+        int index = (int) ((slotTick / _levelTicks[level]) % _wheelSize);
+        _buckets.get(level * _wheelSize + index).add(t);
+    }
+
+    private void advance(long tick) {
+        // cascade the higher levels first so that entries landing on this very tick expire right away
+        for (int level = LEVELS - 1; level > 0; level--) {
+            if (tick % _levelTicks[level] == 0) {
+                int index = (int) ((tick / _levelTicks[level]) % _wheelSize);
+                List<Timeout> bucket = _buckets.get(level * _wheelSize + index);
+                if (!bucket.isEmpty()) {
+                    List<Timeout> entries = new ArrayList<Timeout>(bucket);
+                    bucket.clear();
+                    for (Timeout t : entries) place(t);
+                }
+            }
+        }
+        List<Timeout> bucket = _buckets.get((int) (tick % _wheelSize));
+        if (!bucket.isEmpty()) {
+            List<Timeout> entries = new ArrayList<Timeout>(bucket);
+            bucket.clear();
+            for (Timeout t : entries) {
+                if (t._cancelled) _size.decrementAndGet();
+                else expire(t);
+            }
+        }
+    }
+
+    private void expire(Timeout t) {
+        _size.decrementAndGet();
+        if (t._cancelled) return;
+        t._expired = true;
+        try {
+            t._task.run();
+        } catch (Throwable e) {
+            __log.error("Timing wheel task failed: " + t._task, e);
+        }
+    }
+
+    /**
+     * Handle on a scheduled task.
+     */
+    public static class Timeout {
+        private final Runnable _task;
+        private final long _deadline;
+        private volatile boolean _cancelled;
+        private volatile boolean _expired;
+
+        Timeout(Runnable task, long deadline) {
+            _task = task;
+            _deadline = deadline;
+        }
+
+        /**
+         * Cancels the task; it will be dropped lazily when its bucket is visited.
+         * @return false if the task already ran
+         */
+        public boolean cancel() {
+            _cancelled = true;
+            return !_expired;
+        }
+
+        public long getDeadline() {
+            return _deadline;
+        }
+
+        public boolean isCancelled() {
+            return _cancelled;
+        }
+
+        public boolean isExpired() {
+            return _expired;
+        }
+    }
+}
@@ -20,6 +20,7 @@
 package org.apache.ode.bpel.engine.migration;
 
 import org.apache.ode.bpel.engine.BpelProcess;
+import org.apache.ode.bpel.engine.ExecutionStateStore;
 import org.apache.ode.bpel.engine.OutstandingRequestManager;
 import org.apache.ode.bpel.engine.ReplacementMapImpl;
 import org.apache.ode.bpel.dao.BpelDAOConnection;
@@ -168,7 +169,7 @@ public class CorrelationKeySetMigration implements Migration {
             ExecutionQueueImpl._classDescriptors.put("[Lorg.apache.ode.bpel.runtime.Selector;", osc);
 
             soup.setReplacementMap(new ReplacementMapImpl(oprocess));
-            ByteArrayInputStream iis = new ByteArrayInputStream(instance.getExecutionState());
+            ByteArrayInputStream iis = new ByteArrayInputStream(ExecutionStateStore.read(instance));
             soup.read(iis);
             return soup;
         } catch (Exception e) {
@@ -181,7 +182,7 @@ public class CorrelationKeySetMigration implements Migration {
             ByteArrayOutputStream bos = new ByteArrayOutputStream();
             soup.write(bos);
             bos.close();
-            instance.setExecutionState(bos.toByteArray());
+            ExecutionStateStore.writeFull(instance, bos.toByteArray());
             ExecutionQueueImpl._classDescriptors.clear();
         } catch (Exception e) {
             throw new RuntimeException(e);
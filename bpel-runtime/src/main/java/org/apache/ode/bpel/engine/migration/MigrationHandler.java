@@ -42,7 +42,7 @@ import org.apache.ode.bpel.engine.Contexts;
 public class MigrationHandler {
     private static final Log __log = LogFactory.getLog(MigrationHandler.class);
 
-    public static final int CURRENT_SCHEMA_VERSION = 7;
+    public static final int CURRENT_SCHEMA_VERSION = 8;
 
 
     private Contexts _contexts;
@@ -54,6 +54,7 @@ public class MigrationHandler {
         add(new MigrationLink(3, 5, new Migration[] { new CorrelationKeySetDataMigration() } ));
         add(new MigrationLink(5, 6, new Migration[] { new OutstandingRequestsMigration() } ));
         add(new MigrationLink(6, 7, new Migration[] { new IMAManagerMigration() } ));
+        add(new MigrationLink(7, 8, new Migration[] { new CorrelationKeyHashMigration() } ));
     }};
 
 
@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.engine.replayer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ode.bpel.dao.BpelDAOConnection;
+import org.apache.ode.bpel.engine.BpelDatabase;
+import org.apache.ode.bpel.iapi.BpelEngine;
+import org.apache.ode.bpel.pmapi.CommunicationType;
+import org.apache.ode.bpel.pmapi.Replay;
+import org.apache.ode.bpel.pmapi.ReplayFailedBatch;
+import org.apache.ode.bpel.pmapi.ReplayResponse;
+import org.apache.ode.utils.metrics.Gauge;
+import org.apache.ode.utils.metrics.MetricsRegistry;
+
+/**
+ * Replays a large {@link Replay} request in independent batches. Each batch is
+ * handed to a fresh {@link Replayer} in its own transaction, and batches run
+ * concurrently on a bounded number of workers. A failing batch doesn't abort the
+ * others; it's reported back in the response as a {@link ReplayFailedBatch}
+ * whose request can be submitted again to resume.
+ *
+ * Workers run on the executor given at construction, normally the server's
+ * management executor, with the calling thread acting as one of them. Without
+ * an executor a private pool is created for the duration of the replay.
+ *
+ * Instances in different batches must not talk to each other through live
+ * communication, since every batch only knows about its own contexts.
+ */
+public class BulkReplayer {
+    private static final Log __log = LogFactory.getLog(BulkReplayer.class);
+
+    public static final String METRICS_GROUP = "replay";
+
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    /** Upper bound on the workers of a single replay, whatever the request asks for. */
+    public static final int MAX_CONCURRENCY = 16;
+
+    private final BpelDatabase _db;
+    private final BpelEngine _engine;
+    private final ExecutorService _executor;
+
+    private final AtomicInteger _completedBatches = new AtomicInteger();
+    private final AtomicInteger _failedBatches = new AtomicInteger();
+    private final AtomicInteger _processedInstances = new AtomicInteger();
+    private final AtomicInteger _failedInstances = new AtomicInteger();
+    private final AtomicInteger _replayedInstances = new AtomicInteger();
+    private volatile int _totalBatches;
+    private volatile int _totalInstances;
+
+    public BulkReplayer(BpelDatabase db, BpelEngine engine) {
+        this(db, engine, null);
+    }
+
+    /**
+     * @param executor executor shared with the rest of the server, may be null
+     */
+    public BulkReplayer(BpelDatabase db, BpelEngine engine, ExecutorService executor) {
+        _db = db;
+        _engine = engine;
+        _executor = executor;
+    }
+
+    public ReplayResponse replay(Replay request) throws Exception {
+        final List<Replay> batches = partition(request, request.getBatchSize());
+        _totalBatches = batches.size();
+        int total = 0;
+        for (Replay batch : batches) total += size(batch);
+        _totalInstances = total;
+
+        int concurrency = request.isSetConcurrency() ? request.getConcurrency() : DEFAULT_CONCURRENCY;
+        concurrency = Math.max(1, Math.min(Math.min(concurrency, MAX_CONCURRENCY), batches.size()));
+        __log.info("Replaying " + total + " instances in " + batches.size() + " batches of up to "
+                + request.getBatchSize() + " instances on " + concurrency + " workers");
+
+        // workers pull batches by index, so only as many tasks as workers hit the executor
+        final AtomicInteger nextBatch = new AtomicInteger();
+        final AtomicReferenceArray<List<Long>> results = new AtomicReferenceArray<List<Long>>(batches.size());
+        final AtomicReferenceArray<Exception> failures = new AtomicReferenceArray<Exception>(batches.size());
+        Callable<Void> worker = new Callable<Void>() {
+            public Void call() {
+                for (int i = nextBatch.getAndIncrement(); i < batches.size(); i = nextBatch.getAndIncrement()) {
+                    try {
+                        results.set(i, replayBatch(batches.get(i)));
+                    } catch (Exception e) {
+                        __log.error("Replay of batch " + (i + 1) + "/" + batches.size() + " failed", e);
+                        failures.set(i, e);
+                    }
+                }
+                return null;
+            }
+        };
+
+        ExecutorService exec = _executor != null || concurrency == 1 ? _executor : createOwnedPool(concurrency - 1);
+        List<Future<Void>> workers = new ArrayList<Future<Void>>(concurrency - 1);
+        try {
+            try {
+                for (int i = 1; i < concurrency; i++) {
+                    workers.add(exec.submit(worker));
+                }
+            } catch (RejectedExecutionException e) {
+                __log.warn("Executor is saturated, replaying on " + (workers.size() + 1) + " workers only");
+            }
+            worker.call();
+            for (Future<Void> f : workers) {
+                f.get();
+            }
+        } finally {
+            // stops the other workers from picking up new batches if we're leaving early
+            nextBatch.set(batches.size());
+            if (exec != _executor) exec.shutdownNow();
+        }
+
+        ReplayResponse response = ReplayResponse.Factory.newInstance();
+        for (int i = 0; i < batches.size(); i++) {
+            Exception failure = failures.get(i);
+            if (failure != null) {
+                ReplayFailedBatch failed = response.addNewFailedBatch();
+                failed.setReplay(batches.get(i));
+                failed.setExplanation(String.valueOf(failure));
+            } else {
+                for (Long iid : results.get(i)) {
+                    response.addRestoredIID(iid);
+                }
+            }
+        }
+        return response;
+    }
+
+    private ExecutorService createOwnedPool(int threads) {
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger _threadNumber = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ODE-Replayer-" + _threadNumber.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    private List<Long> replayBatch(final Replay batch) throws Exception {
+        try {
+            List<Long> iids = _db.exec(new BpelDatabase.Callable<List<Long>>() {
+                public List<Long> run(BpelDAOConnection conn) throws Exception {
+                    return new Replayer().replayInstances(batch, _engine, conn);
+                }
+            });
+            int done = _completedBatches.incrementAndGet();
+            _processedInstances.addAndGet(size(batch));
+            _replayedInstances.addAndGet(iids.size());
+            __log.info("Replay progress: " + done + "/" + _totalBatches + " batches completed, "
+                    + _failedBatches.get() + " failed, " + getRemainingInstances() + " instances remaining");
+            return iids;
+        } catch (Exception e) {
+            _failedBatches.incrementAndGet();
+            _failedInstances.addAndGet(size(batch));
+            throw e;
+        }
+    }
+
+    /**
+     * Publishes the progress counters of this replay, replacing those of any previous one.
+     */
+    public void registerMetrics(MetricsRegistry registry) {
+        if (!registry.isEnabled()) return;
+        registerGauge(registry, "processedInstances", new Gauge() {
+            public long getValue() {
+                return getProcessedInstances();
+            }
+        });
+        registerGauge(registry, "failedInstances", new Gauge() {
+            public long getValue() {
+                return getFailedInstances();
+            }
+        });
+        registerGauge(registry, "remainingInstances", new Gauge() {
+            public long getValue() {
+                return getRemainingInstances();
+            }
+        });
+    }
+
+    private static void registerGauge(MetricsRegistry registry, String name, Gauge gauge) {
+        registry.remove(METRICS_GROUP, name);
+        registry.gauge(METRICS_GROUP, name, gauge);
+    }
+
+    /**
+     * Splits a replay request into requests of at most batchSize instances each. Upgraded,
+     * replaced and restored instances keep their relative order.
+     */
+    static List<Replay> partition(Replay request, int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("Replay batch size must be positive: " + batchSize);
+
+        List<Replay> batches = new ArrayList<Replay>();
+        Replay current = null;
+        int size = 0;
+        for (long iid : request.getUpgradeInstanceArray()) {
+            if (current == null || size == batchSize) { current = newBatch(batches); size = 0; }
+            current.addUpgradeInstance(iid);
+            size++;
+        }
+        for (long iid : request.getReplaceInstanceArray()) {
+            if (current == null || size == batchSize) { current = newBatch(batches); size = 0; }
+            current.addReplaceInstance(iid);
+            size++;
+        }
+        for (CommunicationType c : request.getRestoreInstanceArray()) {
+            if (current == null || size == batchSize) { current = newBatch(batches); size = 0; }
+            current.addNewRestoreInstance().set(c);
+            size++;
+        }
+        return batches;
+    }
+
+    private static Replay newBatch(List<Replay> batches) {
+        Replay batch = Replay.Factory.newInstance();
+        batches.add(batch);
+        return batch;
+    }
+
+    private static int size(Replay batch) {
+        return batch.sizeOfUpgradeInstanceArray() + batch.sizeOfReplaceInstanceArray() + batch.sizeOfRestoreInstanceArray();
+    }
+
+    public int getTotalBatches() {
+        return _totalBatches;
+    }
+
+    public int getCompletedBatches() {
+        return _completedBatches.get();
+    }
+
+    public int getFailedBatches() {
+        return _failedBatches.get();
+    }
+
+    public int getTotalInstances() {
+        return _totalInstances;
+    }
+
+    /**
+     * @return number of instances in the batches replayed successfully so far
+     */
+    public int getProcessedInstances() {
+        return _processedInstances.get();
+    }
+
+    /**
+     * @return number of instances in the batches that failed so far
+     */
+    public int getFailedInstances() {
+        return _failedInstances.get();
+    }
+
+    public int getRemainingInstances() {
+        return _totalInstances - _processedInstances.get() - _failedInstances.get();
+    }
+
+    /**
+     * @return number of instances restored by the batches replayed successfully so far
+     */
+    public int getReplayedInstances() {
+        return _replayedInstances.get();
+    }
+}
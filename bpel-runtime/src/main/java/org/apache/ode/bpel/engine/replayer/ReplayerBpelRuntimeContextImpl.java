@@ -266,7 +266,7 @@ public class ReplayerBpelRuntimeContextImpl extends BpelRuntimeContextImpl {
     }
 
     public static MyRoleMessageExchangeImpl createMyRoleMex(Exchange e, BpelEngineImpl engine) throws Exception {
-        MyRoleMessageExchangeImpl mex = (MyRoleMessageExchangeImpl) engine.createMessageExchange(new GUID().toString(), e.getService(), e.getOperation());
+        MyRoleMessageExchangeImpl mex = (MyRoleMessageExchangeImpl) engine.createMessageExchange(GUID.nextId(), e.getService(), e.getOperation());
         mex.getDAO().setCreateTime(e.getCreateTime().getTime());
 
         MessageImpl m2 = (MessageImpl) mex.createMessage(new QName("replayer", "replayer"));
@@ -356,7 +356,7 @@ class DbExternalVariable {
                 return isTimeStamp() ? new Timestamp(new Date().getTime())
                         : new Date();
             case uuid:
-                return new GUID().toString();
+                return GUID.nextId();
             case pid:
                 return evarId.pid.toString();
             case iid:
@@ -18,17 +18,18 @@
  */
 package org.apache.ode.bpel.intercept;
 
+import org.apache.ode.bpel.engine.InstanceCounters;
 import org.apache.ode.bpel.iapi.MyRoleMessageExchange;
-import org.w3c.dom.Node;
-import org.w3c.dom.Text;
 
-import javax.xml.namespace.QName;
-import java.util.Map;
+import java.util.Collections;
 
 /**
  * An example of a  simple interceptor providing a "throttling"  capability - that is an
  * ability to limit the number of instances created for a given process.
  *
+ * The instances are counted by the process {@link InstanceCounters} rather than in the
+ * database, which is only queried when the counters haven't been reconciled yet.
+ *
  * @author Maciej Szefler
  */
 public class InstanceCountThrottler extends NoOpInterceptor {
@@ -36,7 +37,12 @@ public class InstanceCountThrottler extends NoOpInterceptor {
     @Override
     public void onNewInstanceInvoked(MyRoleMessageExchange mex,
                                      InterceptorContext ic) throws FailMessageExchangeException {
-        if (ic.getProcessDAO().getNumInstances() >= ic.getBpelProcess().getInstanceMaximumCount())
+        InstanceCounters counters = ic.getBpelProcess().getInstanceCounters();
+        if (!counters.isReconciled()) {
+            String pid = ic.getBpelProcess().getPID().toString();
+            counters.reconcile(pid, ic.getConnection().getProcessManagement().countInstancesSummary(Collections.singleton(pid)));
+        }
+        if (counters.getTotal() >= ic.getBpelProcess().getInstanceMaximumCount())
             throw new FailMessageExchangeException("Too many instances.");
     }
 }
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.intercept;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.apache.ode.bpel.engine.BpelProcess;
+import org.apache.ode.bpel.iapi.Endpoint;
+import org.apache.ode.bpel.iapi.MyRoleMessageExchange;
+
+/**
+ * Interceptor limiting the rate at which a process creates instances and accepts
+ * messages, as a whole and per provided endpoint, with {@link TokenBucket}s. Rates
+ * are in events per second and configured with process properties in deploy.xml:
+ * <ul>
+ * <li><code>process.instance.rate</code> and <code>process.instance.rate.burst</code> for new instances,</li>
+ * <li><code>process.message.rate</code> and <code>process.message.rate.burst</code> for inbound messages,</li>
+ * <li><code>process.message.rate.<i>partnerLink</i></code> and <code>process.message.rate.<i>partnerLink</i>.burst</code>
+ * for the inbound messages of the endpoint provided for a partner link.</li>
+ * </ul>
+ * The burst defaults to one second worth of events. Exchanges over the limit are failed.
+ */
+public class RateLimitInterceptor extends NoOpInterceptor {
+    public static final String PROP_INSTANCE_RATE = "process.instance.rate";
+    public static final String PROP_MESSAGE_RATE = "process.message.rate";
+    public static final String BURST_SUFFIX = ".burst";
+
+    private final TokenBucket _instances;
+    private final TokenBucket _messages;
+    private final Map<QName, TokenBucket> _serviceMessages;
+
+    /**
+     * @param instances limit on instance creations, null for none
+     * @param messages limit on the messages of the whole process, null for none
+     * @param serviceMessages limits on the messages of each provided service
+     */
+    public RateLimitInterceptor(TokenBucket instances, TokenBucket messages, Map<QName, TokenBucket> serviceMessages) {
+        _instances = instances;
+        _messages = messages;
+        _serviceMessages = serviceMessages;
+    }
+
+    /**
+     * @return the interceptor configured by the properties of the process, null if it sets no rate
+     */
+    public static RateLimitInterceptor forProcess(BpelProcess process) {
+        TokenBucket instances = bucket(process, PROP_INSTANCE_RATE);
+        TokenBucket messages = bucket(process, PROP_MESSAGE_RATE);
+        Map<QName, TokenBucket> serviceMessages = new HashMap<QName, TokenBucket>();
+        for (Map.Entry<String, Endpoint> provide : process.getConf().getProvideEndpoints().entrySet()) {
+            TokenBucket b = bucket(process, PROP_MESSAGE_RATE + "." + provide.getKey());
+            if (b != null) serviceMessages.put(provide.getValue().serviceName, b);
+        }
+        if (instances == null && messages == null && serviceMessages.isEmpty()) return null;
+        return new RateLimitInterceptor(instances, messages,
+                serviceMessages.isEmpty() ? Collections.<QName, TokenBucket>emptyMap() : serviceMessages);
+    }
+
+    private static TokenBucket bucket(BpelProcess process, String rateProperty) {
+        String rate = process.getProcessProperty(new QName(rateProperty), null);
+        if (rate == null) return null;
+        double perSecond = Double.parseDouble(rate.trim());
+        String burst = process.getProcessProperty(new QName(rateProperty + BURST_SUFFIX), null);
+        return new TokenBucket(perSecond, burst == null ? (int) Math.max(1, Math.ceil(perSecond)) : Integer.parseInt(burst.trim()));
+    }
+
+    @Override
+    public void onProcessInvoked(MyRoleMessageExchange mex, InterceptorContext ic)
+            throws FailMessageExchangeException {
+        TokenBucket service = _serviceMessages.get(mex.getServiceName());
+        if (service != null && !service.tryAcquire())
+            throw new FailMessageExchangeException("Message rate of service " + mex.getServiceName() + " exceeded.");
+        if (_messages != null && !_messages.tryAcquire())
+            throw new FailMessageExchangeException("Message rate of process " + ic.getBpelProcess().getPID() + " exceeded.");
+    }
+
+    @Override
+    public void onNewInstanceInvoked(MyRoleMessageExchange mex, InterceptorContext ic)
+            throws FailMessageExchangeException {
+        if (_instances != null && !_instances.tryAcquire())
+            throw new FailMessageExchangeException("Instance creation rate of process " + ic.getBpelProcess().getPID() + " exceeded.");
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.intercept;
+
+/**
+ * Token bucket rate limiter: tokens accumulate at a fixed rate up to the burst
+ * size and each permitted event takes one. Refilling is computed lazily from the
+ * time elapsed since the last call, so an idle bucket costs nothing.
+ */
+public class TokenBucket {
+    private final double _tokensPerNano;
+    private final double _burst;
+    private double _tokens;
+    private long _lastRefill;
+
+    /**
+     * @param ratePerSecond sustained number of events allowed per second
+     * @param burst number of events allowed at once after an idle period, at least 1
+     */
+    public TokenBucket(double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0) throw new IllegalArgumentException("Rate must be positive: " + ratePerSecond);
+        if (burst < 1) throw new IllegalArgumentException("Burst must be at least 1: " + burst);
+        _tokensPerNano = ratePerSecond / 1e9;
+        _burst = burst;
+        _tokens = burst;
+        _lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes a token if one is available.
+     * @return false if the event exceeds the rate and should be rejected
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    synchronized boolean tryAcquire(long nanoTime) {
+        long elapsed = nanoTime - _lastRefill;
+        if (elapsed > 0) {
+            _tokens = Math.min(_burst, _tokens + elapsed * _tokensPerNano);
+            _lastRefill = nanoTime;
+        }
+        if (_tokens < 1) return false;
+        _tokens -= 1;
+        return true;
+    }
+}
@@ -36,6 +36,9 @@ public class BpelDAOConnectionFactoryImpl implements BpelDAOConnectionFactory {
 
     private Scheduler _scheduler;
     private long _mexTtl = 10*60*1000;
+    private long _spoolThreshold;
+    private long _instanceDataBudget;
+    private final IdGen.MessageExchangeIds _mexIds = new IdGen.MessageExchangeIds();
 
     public BpelDAOConnectionFactoryImpl(Scheduler sched) {
         _scheduler = sched;
@@ -46,7 +49,30 @@ public class BpelDAOConnectionFactoryImpl implements BpelDAOConnectionFactory {
     }
 
     public BpelDAOConnection getConnection() {
-        return new BpelDAOConnectionImpl(__StateStore, _scheduler, _mexTtl);
+        BpelDAOConnectionImpl conn = new BpelDAOConnectionImpl(__StateStore, _scheduler, _mexTtl, _mexIds);
+        conn._spoolThreshold = _spoolThreshold;
+        conn._instanceDataBudget = _instanceDataBudget;
+        return conn;
+    }
+
+    /**
+     * Stored variable values whose serialized size goes over the threshold (in
+     * bytes) are kept in a temporary file rather than as a DOM; 0, the default,
+     * keeps everything in memory. Messages and values read back while the
+     * instance runs are not affected.
+     */
+    public void setSpoolThreshold(long spoolThreshold) {
+        _spoolThreshold = spoolThreshold;
+    }
+
+    /**
+     * Caps the serialized bytes of stored variable values a single instance keeps
+     * as DOMs; once over, any new value is spooled whatever its size. This is not
+     * a bound on the memory an instance uses while running. 0, the default, means
+     * no cap.
+     */
+    public void setInstanceDataBudget(long instanceDataBudget) {
+        _instanceDataBudget = instanceDataBudget;
     }
 
     /**
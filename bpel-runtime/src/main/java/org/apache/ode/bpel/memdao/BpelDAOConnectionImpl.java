@@ -48,7 +48,6 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.ConcurrentHashMap;
 
 
@@ -62,16 +61,21 @@ class BpelDAOConnectionImpl implements BpelDAOConnection {
     private Map<QName, ProcessDaoImpl> _store;
     private List<BpelEvent> _events = new LinkedList<BpelEvent>();
     long _mexTtl;
+    long _spoolThreshold;
+    long _instanceDataBudget;
 
     private static Map<String,MessageExchangeDAO> _mexStore = Collections.synchronizedMap(new HashMap<String,MessageExchangeDAO>());
     protected static Map<String, Long> _mexAge = new ConcurrentHashMap<String, Long>();
-    private static AtomicLong counter = new AtomicLong(Long.MAX_VALUE / 2);
     private static volatile long _lastRemoval = 0;
 
-    BpelDAOConnectionImpl(Map<QName, ProcessDaoImpl> store, Scheduler scheduler, long mexTtl) {
+    private IdGen.MessageExchangeIds _mexIds;
+
+    BpelDAOConnectionImpl(Map<QName, ProcessDaoImpl> store, Scheduler scheduler, long mexTtl,
+                          IdGen.MessageExchangeIds mexIds) {
         _store = store;
         _scheduler = scheduler;
         _mexTtl = mexTtl;
+        _mexIds = mexIds;
     }
 
     public ProcessDAO getProcess(QName processId) {
@@ -195,7 +199,10 @@ class BpelDAOConnectionImpl implements BpelDAOConnection {
     }
 
     public MessageExchangeDAO createMessageExchange(char dir) {
-        final String id = Long.toString(counter.getAndIncrement());
+        return createMessageExchange(_mexIds.next(), dir);
+    }
+
+    public MessageExchangeDAO createMessageExchange(final String id, char dir) {
         MessageExchangeDAO mex = new MessageExchangeDAOImpl(dir,id);
         long now = System.currentTimeMillis();
         _mexStore.put(id,mex);
@@ -348,6 +355,12 @@ class BpelDAOConnectionImpl implements BpelDAOConnection {
         _mexAge.remove(mexId);
     }
 
+    static void restoreMessageExchange(MessageExchangeDAO mex) {
+        if (__log.isDebugEnabled()) __log.debug("Restoring mex " + mex.getMessageExchangeId() + " in memory store.");
+        _mexStore.put(mex.getMessageExchangeId(), mex);
+        _mexAge.put(mex.getMessageExchangeId(), System.currentTimeMillis());
+    }
+
     public void defer(final Runnable runnable) {
         _scheduler.registerSynchronizer(new Scheduler.Synchronizer() {
             public void afterCompletion(boolean success) {
@@ -357,6 +370,16 @@ class BpelDAOConnectionImpl implements BpelDAOConnection {
             }
         });
     }
+    void onCommit(final Runnable runnable) {
+        _scheduler.registerSynchronizer(new Scheduler.Synchronizer() {
+            public void afterCompletion(boolean success) {
+                if (success) runnable.run();
+            }
+            public void beforeCompletion() {
+            }
+        });
+    }
+
     public void onRollback(final Runnable runnable) {
         _scheduler.registerSynchronizer(new Scheduler.Synchronizer() {
             public void afterCompletion(boolean success) {
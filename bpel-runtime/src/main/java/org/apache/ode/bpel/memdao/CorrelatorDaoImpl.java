@@ -23,11 +23,14 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.ode.bpel.common.CorrelationKey;
 import org.apache.ode.bpel.common.CorrelationKeySet;
 import org.apache.ode.bpel.dao.*;
+import org.apache.ode.bpel.iapi.OdeGlobalConfig;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Collection;
+import java.util.Set;
 
 /**
  * A very simple, in-memory implementation of the {@link CorrelatorDAO} interface.
@@ -54,7 +57,8 @@ class CorrelatorDaoImpl extends DaoBaseImpl implements CorrelatorDAO {
         for (Iterator<MsgQueueEntry> i = _messages.iterator(); i.hasNext();) {
             MsgQueueEntry mqe = i.next();
             CorrelationKeySet aKeySet = mqe.keySet;
-            if (aKeySet.isRoutableTo(instanceKeySet, false)) {
+            if (aKeySet.isRoutableTo(instanceKeySet, false)
+                    && canonicalKeys(aKeySet).contains(instanceKeySet.toCanonicalString())) {
                 i.remove();
                 return mqe.message;
             }
@@ -73,11 +77,13 @@ class CorrelatorDaoImpl extends DaoBaseImpl implements CorrelatorDAO {
         if (__log.isDebugEnabled()) {
             __log.debug("findRoute: keySet=" + keySet);
         }
+        Set<String> keys = canonicalKeys(keySet);
         boolean routed = false;
         for (MessageRouteDaoImpl route : _routes) {
             assert route._ckeySet != null;
 
-            if(keySet.isRoutableTo(route._ckeySet, "all".equals(route.getRoute()))) {
+            if(keySet.isRoutableTo(route._ckeySet, "all".equals(route.getRoute()))
+                    && (keys.contains(route._ckeySet.toCanonicalString()) || keySet.isEmpty())) {
                 if ("all".equals(route.getRoute()))  {
                     routes.add(route);
                 } else {
@@ -138,6 +144,18 @@ class CorrelatorDaoImpl extends DaoBaseImpl implements CorrelatorDAO {
         return true;
     }
 
+    /**
+     * Canonical forms of the subsets a key set matches routes on, bounded the same way as in
+     * the persistent DAOs so that a process correlates alike whichever DAO it runs on.
+     */
+    private static Set<String> canonicalKeys(CorrelationKeySet keySet) {
+        Set<String> keys = new HashSet<String>();
+        for (CorrelationKeySet subSet : keySet.findSubSets(OdeGlobalConfig.correlationMaxSubSetSize())) {
+            keys.add(subSet.toCanonicalString());
+        }
+        return keys;
+    }
+
     void _removeRoutes(String routeGroupId, ProcessInstanceDaoImpl target) {
         for (Iterator<MessageRouteDaoImpl> i = _routes.iterator(); i.hasNext();) {
             MessageRouteDaoImpl we = i.next();
@@ -180,6 +198,14 @@ class CorrelatorDaoImpl extends DaoBaseImpl implements CorrelatorDAO {
             keySet = new CorrelationKeySet();
             keySet.add(ckey);
         }
+
+        public CorrelationKeySet getCorrelationKeySet() {
+            return keySet;
+        }
+
+        public void setCorrelationKeySet(CorrelationKeySet keySet) {
+            this.keySet = keySet;
+        }
     }
 
     public boolean checkRoute(CorrelationKeySet correlationKeySet) {
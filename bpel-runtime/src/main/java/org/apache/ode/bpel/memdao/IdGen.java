@@ -18,6 +18,7 @@
  */
 package org.apache.ode.bpel.memdao;
 
+import java.util.UUID;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -41,4 +42,31 @@ class IdGen {
     return CSET_ID.getAndIncrement();
   }
 
+  /**
+   * Generates message exchange ids. A transient exchange of a persistent process keeps its id
+   * when it's copied to the database, so ids mustn't repeat across restarts or cluster nodes:
+   * they're handed out in blocks, each starting at a random prefix, and all lie above the range
+   * the databases generate ids in.
+   */
+  static class MessageExchangeIds {
+    private static final int COUNTER_BITS = 22;
+    private static final long PREFIX_MASK = (1L << 40) - 1;
+
+    private long _block = newBlock();
+    private int _count;
+
+    synchronized String next() {
+      if (_count == 1 << COUNTER_BITS) {
+        _block = newBlock();
+        _count = 0;
+      }
+      return Long.toString(_block | _count++);
+    }
+
+    private static long newBlock() {
+      long prefix = UUID.randomUUID().getMostSignificantBits() & PREFIX_MASK;
+      return (1L << 62) | (prefix << COUNTER_BITS);
+    }
+  }
+
 }
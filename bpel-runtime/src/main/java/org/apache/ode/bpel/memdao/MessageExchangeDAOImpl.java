@@ -24,6 +24,7 @@ import org.apache.ode.bpel.dao.MessageExchangeDAO;
 import org.apache.ode.bpel.dao.PartnerLinkDAO;
 import org.apache.ode.bpel.dao.ProcessDAO;
 import org.apache.ode.bpel.dao.ProcessInstanceDAO;
+import org.apache.ode.bpel.iapi.Scheduler;
 import org.w3c.dom.Element;
 
 import javax.xml.namespace.QName;
@@ -297,6 +298,23 @@ public class MessageExchangeDAOImpl extends DaoBaseImpl implements MessageExchan
         BpelDAOConnectionImpl.removeMessageExchange(getMessageExchangeId());
     }
 
+    /**
+     * Takes this exchange out of the memory store once it has been copied to the database,
+     * without clearing it like {@link #release(boolean)} does. The exchange is put back if the
+     * current transaction rolls back.
+     */
+    public void evict(Scheduler scheduler) {
+        BpelDAOConnectionImpl.removeMessageExchange(messageExchangeId);
+        scheduler.registerSynchronizer(new Scheduler.Synchronizer() {
+            public void afterCompletion(boolean success) {
+                if (!success) BpelDAOConnectionImpl.restoreMessageExchange(MessageExchangeDAOImpl.this);
+            }
+
+            public void beforeCompletion() {
+            }
+        });
+    }
+
     public void releasePremieMessages() {
         // do nothing; early messages are deleted during CorrelatorDaoImpl().dequeueMessage()
     }
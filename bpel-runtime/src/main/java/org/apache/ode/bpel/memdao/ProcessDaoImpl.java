@@ -153,6 +153,12 @@ class ProcessDaoImpl extends DaoBaseImpl implements ProcessDAO {
           __log.debug("Removing completed process instance " + instance.getInstanceId() + " from in-memory store.");
         _instancesAge.remove(instance.getInstanceId());
         ProcessInstanceDAO removed = _instances.remove(instance.getInstanceId());
+        final ProcessInstanceDaoImpl completed = (ProcessInstanceDaoImpl) instance;
+        _conn.onCommit(new Runnable() {
+            public void run() {
+                completed.releaseData();
+            }
+        });
         if (removed == null) {
             // Checking for leftover instances that should be removed
             ArrayList<Long> removals = new ArrayList<Long>(_instancesToRemove);
@@ -245,7 +251,8 @@ class ProcessDaoImpl extends DaoBaseImpl implements ProcessDAO {
                     if (_instances.get(id) != null) {
                         __log.warn("Discarding in-memory instance "+id+" because it exceeded its time-to-live: "+_instances.get(id));
                     }
-                    _instances.remove(id);
+                    ProcessInstanceDAO discarded = _instances.remove(id);
+                    if (discarded != null) ((ProcessInstanceDaoImpl) discarded).releaseData();
                     _instancesAge.remove(id);
                 }
             }
@@ -64,7 +64,7 @@ public class ProcessInstanceDaoImpl extends DaoBaseImpl implements ProcessInstan
     private ScopeDAO _rootScope;
     private FaultDAO _fault;
     private CorrelatorDAO _instantiatingCorrelator;
-    private BpelDAOConnection _conn;
+    private BpelDAOConnectionImpl _conn;
     private int _failureCount;
     private Date _failureDateTime;
     private Map<String, ActivityRecoveryDAO> _activityRecoveries = new HashMap<String, ActivityRecoveryDAO>();
@@ -74,13 +74,20 @@ public class ProcessInstanceDaoImpl extends DaoBaseImpl implements ProcessInstan
     private Date _lastActive;
     private int _seq;
 
-    ProcessInstanceDaoImpl(BpelDAOConnection conn, ProcessDaoImpl processDao, CorrelatorDAO correlator) {
+    private final long _spoolThreshold;
+    private final long _dataBudget;
+    /** Serialized size of the stored variable values not spooled. */
+    private long _heapDataBytes;
+
+    ProcessInstanceDaoImpl(BpelDAOConnectionImpl conn, ProcessDaoImpl processDao, CorrelatorDAO correlator) {
         _state = 0;
         _processDao = processDao;
         _instantiatingCorrelator = correlator;
         _soup = null;
         _instanceId = IdGen.newProcessId();
         _conn = conn;
+        _spoolThreshold = conn._spoolThreshold;
+        _dataBudget = conn._instanceDataBudget;
     }
 
     public XmlDataDAO[] getVariables(String variableName, int scopeModelId) {
@@ -134,6 +141,14 @@ public class ProcessInstanceDaoImpl extends DaoBaseImpl implements ProcessInstan
         throw new IllegalStateException("In-memory instances are never serialized");
     }
 
+    public byte[] getExecutionStateDelta() {
+        throw new IllegalStateException("In-memory instances are never serialized");
+    }
+
+    public void setExecutionStateDelta(byte[] delta) {
+        throw new IllegalStateException("In-memory instances are never serialized");
+    }
+
     public Object getSoup() {
         return _soup;
     }
@@ -285,6 +300,11 @@ public class ProcessInstanceDaoImpl extends DaoBaseImpl implements ProcessInstan
 
     public void delete(Set<CLEANUP_CATEGORY> cleanupCategories, boolean deleteMyRoleMex) {
         _processDao._instances.remove(_instanceId);
+        _conn.onCommit(new Runnable() {
+            public void run() {
+                releaseData();
+            }
+        });
     }
 
     public Collection<ScopeDAO> getScopes() {
@@ -408,6 +428,35 @@ public class ProcessInstanceDaoImpl extends DaoBaseImpl implements ProcessInstan
         return _conn;
     }
 
+    /**
+     * @return the serialized size over which a new variable value should be spooled
+     * rather than kept as a DOM, -1 if values are never spooled
+     */
+    synchronized long getSpoolThreshold() {
+        if (_spoolThreshold <= 0 && _dataBudget <= 0) return -1;
+        long threshold = _spoolThreshold > 0 ? _spoolThreshold : Long.MAX_VALUE;
+        if (_dataBudget > 0) threshold = Math.min(threshold, Math.max(0, _dataBudget - _heapDataBytes));
+        return threshold;
+    }
+
+    synchronized void heapDataChanged(long delta) {
+        _heapDataBytes += delta;
+    }
+
+    synchronized long getHeapDataBytes() {
+        return _heapDataBytes;
+    }
+
+    /**
+     * Drops the spooled variable values of this instance, called once it's gone
+     * from the store.
+     */
+    void releaseData() {
+        for (ScopeDAO scope : _scopes.values()) {
+            ((ScopeDaoImpl) scope).releaseVariables();
+        }
+    }
+
     public String toString() {
         return "mem.instance(type=" + _processDao.getType() + " iid=" + _instanceId + ")";
     }
@@ -174,4 +174,13 @@ class ScopeDaoImpl extends DaoBaseImpl implements ScopeDAO {
         return _eprs.values();
     }
 
+    /**
+     * Frees whatever the variables of this scope keep outside of the heap.
+     */
+    void releaseVariables() {
+        for (XmlDataDAO v : _variables.values()) {
+            ((XmlDataDaoImpl) v).release();
+        }
+    }
+
 }
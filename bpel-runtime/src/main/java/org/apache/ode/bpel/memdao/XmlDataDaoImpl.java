@@ -21,19 +21,32 @@ package org.apache.ode.bpel.memdao;
 import org.apache.ode.bpel.dao.ScopeDAO;
 import org.apache.ode.bpel.dao.XmlDataDAO;
 import org.apache.ode.utils.DOMUtils;
+import org.apache.ode.utils.fs.SpooledContent;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Properties;
 
 
 /**
  * A very simple, in-memory implementation of the {@link XmlDataDAO} interface.
+ *
+ * When the store is configured with a spool threshold or a per-instance data
+ * budget, stored element values over the limit are serialized to a
+ * {@link SpooledContent} instead of being kept as a DOM. This only covers the
+ * value at rest: each {@link #get()} parses the spool into a new document that
+ * the caller holds like any other variable value while it uses it.
  */
 class XmlDataDaoImpl extends DaoBaseImpl implements XmlDataDAO {
 
     private Node _data;
+    private SpooledContent _spool;
+    /** Serialized size of _data, as accounted to the instance. */
+    private long _heapBytes;
     private Properties _properties = new Properties();
     private ScopeDaoImpl _scope;
     private String _name;
@@ -47,18 +60,20 @@ class XmlDataDaoImpl extends DaoBaseImpl implements XmlDataDAO {
      * @see XmlDataDAO#isNull()
      */
     public boolean isNull() {
-        return _data == null;
+        return _data == null && _spool == null;
     }
 
     /**
      * @see XmlDataDAO#get()
      */
     public Node get() {
-        if (_data == null) return null;
+        if (_spool != null) return load();
+        Node data = _data;
+        if (data == null) return null;
 
         Document doc = DOMUtils.newDocument();
-        Node copy = doc.importNode(_data, true);
-        if (_data instanceof Element) doc.appendChild(copy);
+        Node copy = doc.importNode(data, true);
+        if (data instanceof Element) doc.appendChild(copy);
         else {
             Element wrapper = doc.createElement("wrapper");
             wrapper.appendChild(copy);
@@ -70,13 +85,14 @@ class XmlDataDaoImpl extends DaoBaseImpl implements XmlDataDAO {
      * @see XmlDataDAO#remove()
      */
     public void remove() {
-        _data = null;
+        release();
     }
 
     /**
      * @see XmlDataDAO#set(org.w3c.dom.Node)
      */
     public void set(Node val) {
+        release();
         if (val == null || !(val instanceof Element)) {
             _data = val;
             return;
@@ -88,6 +104,69 @@ class XmlDataDaoImpl extends DaoBaseImpl implements XmlDataDAO {
         Document doc = DOMUtils.newDocument();
         _data = doc.importNode(val, true);
         doc.appendChild(_data);
+
+        long threshold = instance().getSpoolThreshold();
+        if (threshold >= 0) spool(threshold);
+    }
+
+    /**
+     * Drops the current value, deleting its spool file if it has one.
+     */
+    void release() {
+        if (_spool != null) {
+            _spool.dispose();
+            _spool = null;
+        }
+        if (_heapBytes != 0) {
+            instance().heapDataChanged(-_heapBytes);
+            _heapBytes = 0;
+        }
+        _data = null;
+    }
+
+    private void spool(long threshold) {
+        SpooledContent content = new SpooledContent("var-" + _name + "-", threshold);
+        try {
+            OutputStream out = content.getOutputStream();
+            try {
+                DOMUtils.serialize(_data, out, "UTF-8", true);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            content.dispose();
+            throw new RuntimeException("Couldn't spool variable " + _name, e);
+        }
+        if (content.isSpooled()) {
+            _spool = content;
+            _data = null;
+        } else {
+            // small enough, keep the DOM and only account for its size
+            _heapBytes = content.getSize();
+            instance().heapDataChanged(_heapBytes);
+            content.dispose();
+        }
+    }
+
+    /**
+     * Parses the spooled value; the document is new on every call so it's
+     * handed out as is rather than copied like _data.
+     */
+    private Node load() {
+        try {
+            InputStream in = _spool.getInputStream();
+            try {
+                return DOMUtils.parse(in).getDocumentElement();
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Couldn't read spooled variable " + _name, e);
+        }
+    }
+
+    private ProcessInstanceDaoImpl instance() {
+        return (ProcessInstanceDaoImpl) _scope.getProcessInstance();
     }
 
     /**
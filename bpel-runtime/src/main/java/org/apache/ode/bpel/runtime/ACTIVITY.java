@@ -26,8 +26,12 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ode.bpel.common.FaultException;
 import org.apache.ode.bpel.evt.ActivityEvent;
+import org.apache.ode.bpel.evt.BpelEvent;
 import org.apache.ode.bpel.evt.EventContext;
+import org.apache.ode.bpel.evt.ScopeCompletionEvent;
 import org.apache.ode.bpel.evt.ScopeEvent;
+import org.apache.ode.bpel.evt.ScopeFaultEvent;
+import org.apache.ode.bpel.evt.ScopeStartEvent;
 import org.apache.ode.bpel.evt.VariableReadEvent;
 import org.apache.ode.bpel.explang.EvaluationContext;
 import org.apache.ode.bpel.o.OActivity;
@@ -71,7 +75,15 @@ abstract class ACTIVITY extends BpelJacobRunnable implements IndexedObject {
     }
 
 
+    /**
+     * Checked before building an event, so that filtered out events cost next to nothing.
+     */
+    protected boolean isEventEnabled(BpelEvent.TYPE type) {
+        return _scopeFrame.isEventEnabled(getBpelRuntimeContext().getEventFilter(), type);
+    }
+
     protected void sendVariableReadEvent(VariableInstance var) {
+        if (!isEventEnabled(BpelEvent.TYPE.dataHandling)) return;
         VariableReadEvent vre = new VariableReadEvent();
         vre.setVarName(var.declaration.name);
         sendEvent(vre);
@@ -89,6 +101,9 @@ abstract class ACTIVITY extends BpelJacobRunnable implements IndexedObject {
     }
 
     protected void sendEvent(ScopeEvent event) {
+        // the scope's own lifecycle events also record its state, they always go through
+        if (!(event instanceof ScopeStartEvent || event instanceof ScopeCompletionEvent || event instanceof ScopeFaultEvent)
+                && !isEventEnabled(event.getType())) return;
         if (event.getLineNo() == -1 && _self.o.debugInfo != null) {
             event.setLineNo(_self.o.debugInfo.startLine);
         }
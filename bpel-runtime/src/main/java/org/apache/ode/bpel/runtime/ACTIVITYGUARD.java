@@ -33,6 +33,7 @@ import org.apache.ode.bpel.evt.ActivityExecEndEvent;
 import org.apache.ode.bpel.evt.ActivityExecStartEvent;
 import org.apache.ode.bpel.evt.ActivityFailureEvent;
 import org.apache.ode.bpel.evt.ActivityRecoveryEvent;
+import org.apache.ode.bpel.evt.BpelEvent;
 import org.apache.ode.bpel.explang.EvaluationException;
 import org.apache.ode.bpel.o.OActivity;
 import org.apache.ode.bpel.o.OExpression;
@@ -76,16 +77,16 @@ class ACTIVITYGUARD extends ACTIVITY {
     }
 
     public void run() {
+        boolean events = isEventEnabled(BpelEvent.TYPE.activityLifecycle);
         // Send a notification of the activity being enabled,
         if (_firstTime) {
-            sendEvent(new ActivityEnabledEvent());
+            if (events) sendEvent(new ActivityEnabledEvent());
             _firstTime = false;
         }
 
         if (_linkVals.keySet().containsAll(_oactivity.targetLinks)) {
             if (evaluateJoinCondition()) {
-                ActivityExecStartEvent aese = new ActivityExecStartEvent();
-                sendEvent(aese);
+                if (events) sendEvent(new ActivityExecStartEvent());
                 // intercept completion channel in order to execute transition conditions.
                 ActivityInfo activity = new ActivityInfo(genMonotonic(),_self.o,_self.self, newChannel(ParentScope.class));
                 instance(createActivity(activity));
@@ -192,9 +193,12 @@ class ACTIVITYGUARD extends ACTIVITY {
     private class TCONDINTERCEPT extends BpelJacobRunnable {
         private static final long serialVersionUID = 4014873396828400441L;
         ParentScope _in;
+        /** when the guarded activity was started, null when metrics are disabled (and for older states) */
+        Long _startTime;
 
         public TCONDINTERCEPT(ParentScope in) {
             _in = in;
+            if (getBpelRuntimeContext().isMetricsEnabled()) _startTime = System.currentTimeMillis();
         }
 
         public void run() {
@@ -207,7 +211,8 @@ class ACTIVITYGUARD extends ACTIVITY {
                 }
 
                 public void completed(FaultData faultData, Set<CompensationHandler> compensations) {
-                    sendEvent(new ActivityExecEndEvent());
+                    if (isEventEnabled(BpelEvent.TYPE.activityLifecycle)) sendEvent(new ActivityExecEndEvent());
+                    if (_startTime != null) getBpelRuntimeContext().activityCompleted(_oactivity, _startTime);
                     if (faultData != null) {
                         dpe(_oactivity.sourceLinks);
                         _self.parent.completed(faultData, compensations);
@@ -231,7 +236,8 @@ class ACTIVITYGUARD extends ACTIVITY {
                 }
 
                 public void cancelled() {
-                    sendEvent(new ActivityExecEndEvent());
+                    if (isEventEnabled(BpelEvent.TYPE.activityLifecycle)) sendEvent(new ActivityExecEndEvent());
+                    if (_startTime != null) getBpelRuntimeContext().activityCompleted(_oactivity, _startTime);
                     dpe(_oactivity.outgoingLinks);
                     dpe(_oactivity.sourceLinks);
                     // Implicit scope can tell the difference between cancelled and completed.
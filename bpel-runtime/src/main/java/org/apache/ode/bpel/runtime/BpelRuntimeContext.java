@@ -28,6 +28,7 @@ import javax.xml.namespace.QName;
 import org.apache.ode.bpel.common.CorrelationKey;
 import org.apache.ode.bpel.common.FaultException;
 import org.apache.ode.bpel.evt.ProcessInstanceEvent;
+import org.apache.ode.bpel.o.OActivity;
 import org.apache.ode.bpel.o.OPartnerLink;
 import org.apache.ode.bpel.o.OProcess;
 import org.apache.ode.bpel.o.OScope;
@@ -241,8 +242,34 @@ public interface BpelRuntimeContext {
      */
     void sendEvent(ProcessInstanceEvent event);
 
+    /**
+     * Event filter to check before building an event; lets everything through
+     * while the process is being debugged.
+     */
+    EventFilter getEventFilter();
+
+    /**
+     * Notification that an activity completed (or was cancelled), used for
+     * per-activity-type execution metrics.
+     * @param activity the activity
+     * @param startTime when the activity was started, 0 if unknown
+     */
+    void activityCompleted(OActivity activity, long startTime);
+
+    /**
+     * @return whether execution metrics are collected, activities only take their start time when they are
+     */
+    boolean isMetricsEnabled();
+
     ExpressionLanguageRuntimeRegistry getExpLangRuntime();
 
+    /**
+     * Immutable copies of variables kept for expression evaluation, invalidated
+     * when a variable is written.
+     * @return the copies, or <code>null</code> if variables are always read directly
+     */
+    VariableSnapshotCache getVariableSnapshots();
+
 
     /**
      * Generate a unique (and monotonic) ID in the context of this instance.
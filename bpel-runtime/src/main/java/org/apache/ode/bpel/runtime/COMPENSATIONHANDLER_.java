@@ -101,6 +101,7 @@ class COMPENSATIONHANDLER_ extends BpelJacobRunnable {
     }
 
     private void sendEvent(ScopeEvent event) {
+        if (!_self.compensated.isEventEnabled(getBpelRuntimeContext().getEventFilter(), event.getType())) return;
         _self.compensated.fillEventInfo(event);
         getBpelRuntimeContext().sendEvent(event);
     }
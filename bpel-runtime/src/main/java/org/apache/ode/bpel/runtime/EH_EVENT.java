@@ -26,6 +26,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.ode.bpel.common.CorrelationKey;
 import org.apache.ode.bpel.common.CorrelationKeySet;
 import org.apache.ode.bpel.common.FaultException;
+import org.apache.ode.bpel.evt.BpelEvent;
 import org.apache.ode.bpel.evt.VariableModificationEvent;
 import org.apache.ode.bpel.o.OEventHandler;
 import org.apache.ode.bpel.o.OScope;
@@ -236,12 +237,15 @@ class EH_EVENT extends BpelJacobRunnable {
                                         VariableInstance vinst = ehScopeFrame.resolve(_oevent.variable);
                                         getBpelRuntimeContext().writeVariable(vinst, msgEl);
 
-                                        VariableModificationEvent se = new VariableModificationEvent(vinst.declaration.name);
-                                        se.setNewValue(msgEl);
-                                        _scopeFrame.fillEventInfo(se);
-                                        if (_oevent.debugInfo != null)
-                                            se.setLineNo(_oevent.debugInfo.startLine);
-                                        getBpelRuntimeContext().sendEvent(se);
+                                        if (_scopeFrame.isEventEnabled(getBpelRuntimeContext().getEventFilter(),
+                                                BpelEvent.TYPE.dataHandling)) {
+                                            VariableModificationEvent se = new VariableModificationEvent(vinst.declaration.name);
+                                            se.setNewValue(msgEl);
+                                            _scopeFrame.fillEventInfo(se);
+                                            if (_oevent.debugInfo != null)
+                                                se.setLineNo(_oevent.debugInfo.startLine);
+                                            getBpelRuntimeContext().sendEvent(se);
+                                        }
                                     } catch (Exception ex) {
                                         __log.fatal(ex);
                                         throw new InvalidProcessException(ex);
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.runtime;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ode.bpel.evt.BpelEvent;
+import org.apache.ode.bpel.iapi.ProcessConf;
+import org.apache.ode.bpel.o.OBase;
+import org.apache.ode.bpel.o.OProcess;
+import org.apache.ode.bpel.o.OScope;
+
+/**
+ * The event filter of a process' deployment descriptor compiled into bitmasks
+ * of {@link BpelEvent.TYPE}s, one per scope. An activity generates the event
+ * types enabled for any of its enclosing scopes (see {@link ScopeFrame#getEventMask(EventFilter)}),
+ * and checks the mask before building an event, so that disabled events cost
+ * close to nothing.
+ */
+public class EventFilter {
+
+    private static final int ALL_TYPES = (1 << BpelEvent.TYPE.values().length) - 1;
+
+    /** Lets all events through, used while the process is being debugged. */
+    public static final EventFilter ALL = new EventFilter(ALL_TYPES, new int[0]);
+
+    private final int _processMask;
+
+    /** Event types enabled for each scope, indexed by id. */
+    private final int[] _scopeMasks;
+
+    private EventFilter(int processMask, int[] scopeMasks) {
+        _processMask = processMask;
+        _scopeMasks = scopeMasks;
+    }
+
+    /**
+     * Compiles the event filter of a process, looking up the event types of each of its scopes once.
+     */
+    public static EventFilter compile(ProcessConf conf, OProcess oprocess) {
+        int maxId = 0;
+        for (OBase child : oprocess.getChildren()) {
+            maxId = Math.max(maxId, child.getId());
+        }
+        int[] scopeMasks = new int[maxId + 1];
+        int processMask = mask(conf, null);
+        for (OBase child : oprocess.getChildren()) {
+            if (child instanceof OScope) {
+                scopeMasks[child.getId()] = mask(conf, Collections.singletonList(((OScope) child).name));
+            }
+        }
+        return new EventFilter(processMask, scopeMasks);
+    }
+
+    private static int mask(ProcessConf conf, List<String> scopeNames) {
+        int mask = 0;
+        for (BpelEvent.TYPE type : BpelEvent.TYPE.values()) {
+            if (conf.isEventEnabled(scopeNames, type)) mask |= bit(type);
+        }
+        return mask;
+    }
+
+    public static int bit(BpelEvent.TYPE type) {
+        return 1 << type.ordinal();
+    }
+
+    public static boolean isEnabled(int mask, BpelEvent.TYPE type) {
+        return (mask & bit(type)) != 0;
+    }
+
+    /**
+     * @return whether events of that type are enabled at the process level, regardless of scopes
+     */
+    public boolean isEnabled(BpelEvent.TYPE type) {
+        return isEnabled(_processMask, type);
+    }
+
+    /**
+     * @return event types enabled for the given scope, those enabled at the process level included
+     */
+    public int getScopeMask(OScope scope) {
+        int id = scope.getId();
+        return id < _scopeMasks.length ? _scopeMasks[id] | _processMask : _processMask;
+    }
+}
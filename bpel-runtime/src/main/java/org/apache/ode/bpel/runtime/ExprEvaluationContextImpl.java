@@ -27,10 +27,10 @@ import javax.xml.namespace.QName;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ode.bpel.common.FaultException;
-import org.apache.ode.bpel.evt.ScopeEvent;
+import org.apache.ode.bpel.evt.BpelEvent;
 import org.apache.ode.bpel.evt.VariableReadEvent;
-import org.apache.ode.bpel.explang.EvaluationContext;
 import org.apache.ode.bpel.explang.EvaluationException;
+import org.apache.ode.bpel.explang.SnapshotEvaluationContext;
 import org.apache.ode.bpel.o.OConstantVarType;
 import org.apache.ode.bpel.o.OExpression;
 import org.apache.ode.bpel.o.OLink;
@@ -46,7 +46,7 @@ import org.w3c.dom.Node;
  * the {@link org.apache.ode.bpel.o.OExpression} instances to provide access to
  * variables, link statuses, and the like.
  */
-public class ExprEvaluationContextImpl implements EvaluationContext {
+public class ExprEvaluationContextImpl implements SnapshotEvaluationContext {
     private static final Log __log = LogFactory
             .getLog(ExprEvaluationContextImpl.class);
 
@@ -90,14 +90,38 @@ public class ExprEvaluationContextImpl implements EvaluationContext {
             VariableInstance varInstance = _scopeInstance.resolve(variable);
             if (varInstance == null)
                 return null;
-            VariableReadEvent vre = new VariableReadEvent();
-            vre.setVarName(varInstance.declaration.name);
-            sendEvent(vre);
+            sendVariableReadEvent(varInstance);
             ret = _scopeInstance.fetchVariableData(_native,varInstance, part, false);
         }
         return ret;
     }
 
+    /**
+     * Snapshots are only handed out to expressions, queries get the data they're rooted at
+     * for writing.
+     */
+    public Object readVariableSnapshot(OScope.Variable variable, OMessageVarType.Part part,
+            SnapshotBuilder builder) throws FaultException {
+        VariableSnapshotCache snapshots = _native == null ? null : _native.getVariableSnapshots();
+        if (snapshots == null || _root != null
+                || variable.type instanceof OConstantVarType || variable.extVar != null)
+            return null;
+
+        VariableInstance varInstance = _scopeInstance.resolve(variable);
+        if (varInstance == null)
+            return null;
+        String partName = part == null ? null : part.name;
+        Object snapshot = snapshots.get(varInstance.scopeInstance, variable.name, partName, builder);
+        if (snapshot == null) {
+            Node data = _scopeInstance.fetchVariableData(_native, varInstance, part, false);
+            if (data == null || (snapshot = builder.build(data)) == null)
+                return null;
+            snapshots.put(varInstance.scopeInstance, variable.name, partName, builder, snapshot);
+        }
+        sendVariableReadEvent(varInstance);
+        return snapshot;
+    }
+
     public Node evaluateQuery(Node root, OExpression expr)
             throws FaultException, EvaluationException {
         return _native.getExpLangRuntime()
@@ -138,9 +162,12 @@ public class ExprEvaluationContextImpl implements EvaluationContext {
         return true;
     }
 
-    private void sendEvent(ScopeEvent se) {
-        _scopeInstance.fillEventInfo(se);
-        _native.sendEvent(se);
+    private void sendVariableReadEvent(VariableInstance varInstance) {
+        if (!_scopeInstance.isEventEnabled(_native.getEventFilter(), BpelEvent.TYPE.dataHandling)) return;
+        VariableReadEvent vre = new VariableReadEvent();
+        vre.setVarName(varInstance.declaration.name);
+        _scopeInstance.fillEventInfo(vre);
+        _native.sendEvent(vre);
     }
 
     public URI getBaseResourceURI() {
@@ -18,6 +18,8 @@
  */
 package org.apache.ode.bpel.runtime;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.apache.ode.bpel.common.FaultException;
 import org.apache.ode.bpel.explang.ConfigurationException;
 import org.apache.ode.bpel.explang.EvaluationContext;
@@ -28,6 +30,8 @@ import org.apache.ode.bpel.o.OExpressionLanguage;
 import org.apache.ode.utils.xsd.Duration;
 import org.w3c.dom.Node;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
@@ -38,6 +42,8 @@ import java.util.Map;
  * a given expression to the appropriate language runtime.
  */
 public class ExpressionLanguageRuntimeRegistry  {
+  private static final Log __log = LogFactory.getLog(ExpressionLanguageRuntimeRegistry.class);
+
   private final Map<OExpressionLanguage, ExpressionLanguageRuntime> _runtimes =
     new HashMap<OExpressionLanguage, ExpressionLanguageRuntime>();
 
@@ -92,6 +98,22 @@ public class ExpressionLanguageRuntimeRegistry  {
     return findRuntime(cexp).evaluateAsDuration(cexp, ctx);
   }
 
+  /**
+   * Releases what the runtimes hold on to (connections, pooled expressions) once the
+   * registry is dropped, i.e. when the process gets dehydrated.
+   */
+  public void close() {
+    for (ExpressionLanguageRuntime runtime : _runtimes.values()) {
+      if (runtime instanceof Closeable) {
+        try {
+          ((Closeable) runtime).close();
+        } catch (IOException e) {
+          __log.debug("Couldn't close expression language runtime " + runtime, e);
+        }
+      }
+    }
+  }
+
   private ExpressionLanguageRuntime findRuntime(OExpression cexp) {
     return _runtimes.get(cexp.expressionLanguage);
   }
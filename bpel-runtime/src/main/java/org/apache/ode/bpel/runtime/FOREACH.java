@@ -27,6 +27,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ode.bpel.common.FaultException;
 import org.apache.ode.bpel.evar.ExternalVariableModuleException;
+import org.apache.ode.bpel.evt.BpelEvent;
 import org.apache.ode.bpel.evt.VariableModificationEvent;
 import org.apache.ode.bpel.explang.EvaluationException;
 import org.apache.ode.bpel.o.OExpression;
@@ -236,11 +237,13 @@ public class FOREACH extends ACTIVITY {
         }
 
         // Generating event
-        VariableModificationEvent se = new VariableModificationEvent(vinst.declaration.name);
-        se.setNewValue(counterNode);
-        if (_oforEach.debugInfo != null)
-            se.setLineNo(_oforEach.debugInfo.startLine);
-        sendEvent(se);
+        if (isEventEnabled(BpelEvent.TYPE.dataHandling)) {
+            VariableModificationEvent se = new VariableModificationEvent(vinst.declaration.name);
+            se.setNewValue(counterNode);
+            if (_oforEach.debugInfo != null)
+                se.setLineNo(_oforEach.debugInfo.startLine);
+            sendEvent(se);
+        }
 
         instance(new SCOPE(child.activity, newFrame, _linkFrame));
     }
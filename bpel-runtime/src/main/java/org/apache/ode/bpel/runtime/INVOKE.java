@@ -27,6 +27,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ode.bpel.common.FaultException;
 import org.apache.ode.bpel.evar.ExternalVariableModuleException;
+import org.apache.ode.bpel.evt.BpelEvent;
 import org.apache.ode.bpel.evt.VariableModificationEvent;
 import org.apache.ode.bpel.o.OInvoke;
 import org.apache.ode.bpel.o.OScope;
@@ -124,11 +125,13 @@ public class INVOKE extends ACTIVITY {
                         }
 
                         // Generating event
-                        VariableModificationEvent se = new VariableModificationEvent(outputVar.declaration.name);
-                        se.setNewValue(response);
-                        if (_oinvoke.debugInfo != null)
-                            se.setLineNo(_oinvoke.debugInfo.startLine);
-                        sendEvent(se);
+                        if (isEventEnabled(BpelEvent.TYPE.dataHandling)) {
+                            VariableModificationEvent se = new VariableModificationEvent(outputVar.declaration.name);
+                            se.setNewValue(response);
+                            if (_oinvoke.debugInfo != null)
+                                se.setLineNo(_oinvoke.debugInfo.startLine);
+                            sendEvent(se);
+                        }
 
                         try {
                             for (OScope.CorrelationSet anInitCorrelationsOutput : _oinvoke.initCorrelationsOutput) {
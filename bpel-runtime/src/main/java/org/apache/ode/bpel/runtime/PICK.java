@@ -32,6 +32,7 @@ import org.apache.ode.bpel.common.CorrelationKey;
 import org.apache.ode.bpel.common.CorrelationKeySet;
 import org.apache.ode.bpel.common.FaultException;
 import org.apache.ode.bpel.evar.ExternalVariableModuleException;
+import org.apache.ode.bpel.evt.BpelEvent;
 import org.apache.ode.bpel.evt.VariableModificationEvent;
 import org.apache.ode.bpel.explang.EvaluationException;
 import org.apache.ode.bpel.iapi.BpelEngineException;
@@ -265,11 +266,13 @@ class PICK extends ACTIVITY {
         }
 
         // Generating event
-        VariableModificationEvent se = new VariableModificationEvent(vinst.declaration.name);
-        se.setNewValue(msgEl);
-        if (_opick.debugInfo != null)
-            se.setLineNo(_opick.debugInfo.startLine);
-        sendEvent(se);
+        if (isEventEnabled(BpelEvent.TYPE.dataHandling)) {
+            VariableModificationEvent se = new VariableModificationEvent(vinst.declaration.name);
+            se.setNewValue(msgEl);
+            if (_opick.debugInfo != null)
+                se.setLineNo(_opick.debugInfo.startLine);
+            sendEvent(se);
+        }
     }
 
     private class WAITING extends BpelJacobRunnable {
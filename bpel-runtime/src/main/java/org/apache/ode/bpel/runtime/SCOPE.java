@@ -30,6 +30,7 @@ import javax.xml.namespace.QName;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.ode.bpel.evt.BpelEvent;
 import org.apache.ode.bpel.evt.ScopeCompletionEvent;
 import org.apache.ode.bpel.evt.ScopeFaultEvent;
 import org.apache.ode.bpel.evt.ScopeStartEvent;
@@ -356,11 +357,13 @@ class SCOPE extends ACTIVITY {
                                 initializeVariable(vinst, _fault.getFaultMessage().cloneNode(true));
 
                                 // Generating event
-                                VariableModificationEvent se = new VariableModificationEvent(vinst.declaration.name);
-                                se.setNewValue(_fault.getFaultMessage());
-                                if (_oscope.debugInfo != null)
-                                    se.setLineNo(_oscope.debugInfo.startLine);
-                                sendEvent(se);
+                                if (isEventEnabled(BpelEvent.TYPE.dataHandling)) {
+                                    VariableModificationEvent se = new VariableModificationEvent(vinst.declaration.name);
+                                    se.setNewValue(_fault.getFaultMessage());
+                                    if (_oscope.debugInfo != null)
+                                        se.setLineNo(_oscope.debugInfo.startLine);
+                                    sendEvent(se);
+                                }
                             } catch (Exception ex) {
                                 __log.fatal(ex);
                                 throw new InvalidProcessException(ex);
@@ -21,6 +21,7 @@ package org.apache.ode.bpel.runtime;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ode.bpel.common.FaultException;
+import org.apache.ode.bpel.evt.BpelEvent;
 import org.apache.ode.bpel.evt.ScopeEvent;
 import org.apache.ode.bpel.iapi.BpelEngineException;
 import org.apache.ode.bpel.o.OElementVarType;
@@ -67,6 +68,10 @@ class ScopeFrame implements Serializable {
     
     final InstanceGlobals globals;
 
+    /** Event types enabled in this scope and the enclosing ones, for the filter below. */
+    private transient int _eventMask;
+    private transient EventFilter _eventFilter;
+
     /** Constructor used to create "fault" scopes. */
     ScopeFrame( OScope scopeDef,
                 Long scopeInstanceId,
@@ -146,6 +151,21 @@ class ScopeFrame implements Serializable {
         return null;
     }
 
+    /**
+     * @return event types enabled for activities in this frame, i.e. for any of its enclosing scopes
+     */
+    int getEventMask(EventFilter filter) {
+        if (_eventFilter != filter) {
+            _eventMask = filter.getScopeMask(oscope) | (parent == null ? 0 : parent.getEventMask(filter));
+            _eventFilter = filter;
+        }
+        return _eventMask;
+    }
+
+    boolean isEventEnabled(EventFilter filter, BpelEvent.TYPE type) {
+        return EventFilter.isEnabled(getEventMask(filter), type);
+    }
+
     public void fillEventInfo(ScopeEvent event) {
         ScopeFrame currentScope = this;
         ArrayList<String> parentNames = new ArrayList<String>();
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.runtime;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable copies of variables built by expression language runtimes, see
+ * {@link org.apache.ode.bpel.explang.SnapshotEvaluationContext}. Copies are
+ * kept per variable instance, part and builder, and dropped as soon as the
+ * variable is written or read for writing.
+ *
+ * Lives as long as the runtime context of an instance, so it isn't thread safe.
+ */
+public class VariableSnapshotCache {
+
+    /** Copies of each variable instance, by part and builder. */
+    private final Map<VariableKey, Map<SnapshotKey, Object>> _snapshots =
+        new HashMap<VariableKey, Map<SnapshotKey, Object>>();
+
+    private int _built;
+
+    public Object get(Long scopeInstanceId, String varname, String partName, Object builder) {
+        Map<SnapshotKey, Object> copies = _snapshots.get(new VariableKey(scopeInstanceId, varname));
+        return copies == null ? null : copies.get(new SnapshotKey(partName, builder));
+    }
+
+    public void put(Long scopeInstanceId, String varname, String partName, Object builder, Object snapshot) {
+        VariableKey key = new VariableKey(scopeInstanceId, varname);
+        Map<SnapshotKey, Object> copies = _snapshots.get(key);
+        if (copies == null) {
+            copies = new HashMap<SnapshotKey, Object>(4);
+            _snapshots.put(key, copies);
+        }
+        copies.put(new SnapshotKey(partName, builder), snapshot);
+        _built++;
+    }
+
+    /**
+     * Drops all the copies of a variable instance.
+     */
+    public void invalidate(Long scopeInstanceId, String varname) {
+        if (!_snapshots.isEmpty()) {
+            _snapshots.remove(new VariableKey(scopeInstanceId, varname));
+        }
+    }
+
+    /**
+     * @return number of copies stored since this cache was created
+     */
+    public int getBuiltCount() {
+        return _built;
+    }
+
+    private static class VariableKey {
+        private final Long _scopeInstanceId;
+        private final String _varname;
+
+        VariableKey(Long scopeInstanceId, String varname) {
+            _scopeInstanceId = scopeInstanceId;
+            _varname = varname;
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof VariableKey)) return false;
+            VariableKey other = (VariableKey) obj;
+            return _scopeInstanceId.equals(other._scopeInstanceId) && _varname.equals(other._varname);
+        }
+
+        public int hashCode() {
+            return _scopeInstanceId.hashCode() * 31 + _varname.hashCode();
+        }
+    }
+
+    private static class SnapshotKey {
+        private final String _partName;
+        private final Object _builder;
+
+        SnapshotKey(String partName, Object builder) {
+            _partName = partName;
+            _builder = builder;
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof SnapshotKey)) return false;
+            SnapshotKey other = (SnapshotKey) obj;
+            return _builder == other._builder
+                && (_partName == null ? other._partName == null : _partName.equals(other._partName));
+        }
+
+        public int hashCode() {
+            return System.identityHashCode(_builder) * 31 + (_partName == null ? 0 : _partName.hashCode());
+        }
+    }
+}
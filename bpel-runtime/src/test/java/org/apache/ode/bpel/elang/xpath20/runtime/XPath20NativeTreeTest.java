@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.elang.xpath20.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.apache.ode.bpel.common.FaultException;
+import org.apache.ode.bpel.compiler.bom.Expression;
+import org.apache.ode.bpel.elang.xpath20.compiler.XPath20ExpressionCompilerBPEL20;
+import org.apache.ode.bpel.elang.xpath20.o.OXPath20ExpressionBPEL20;
+import org.apache.ode.bpel.explang.SnapshotEvaluationContext;
+import org.apache.ode.bpel.o.OExpression;
+import org.apache.ode.bpel.o.OLink;
+import org.apache.ode.bpel.o.OMessageVarType.Part;
+import org.apache.ode.bpel.o.OProcess.OProperty;
+import org.apache.ode.bpel.o.OScope.Variable;
+import org.apache.ode.bpel.runtime.VariableSnapshotCache;
+import org.apache.ode.utils.DOMUtils;
+import org.apache.ode.utils.NSContext;
+import org.apache.ode.utils.Namespaces;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Evaluation of XPath 2.0 expressions against native copies of variables.
+ */
+public class XPath20NativeTreeTest implements SnapshotEvaluationContext {
+    private static final String NS = "http://foobar";
+
+    private XPath20ExpressionRuntime _runtime;
+    private XPath20ExpressionCompilerBPEL20 _compiler;
+    private VariableSnapshotCache _snapshots;
+    private Element _order;
+
+    @Before
+    public void setUp() throws Exception {
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put(NativeTreeBuilder.PROP_NATIVE_TREE, "true");
+        _runtime = new XPath20ExpressionRuntime();
+        _runtime.initialize(properties);
+
+        MockCompilerContext cc = new MockCompilerContext();
+        cc.registerElementVar("order", new QName(NS, "order"));
+        _compiler = new XPath20ExpressionCompilerBPEL20();
+        _compiler.setCompilerContext(cc);
+
+        _snapshots = new VariableSnapshotCache();
+        _order = DOMUtils.stringToDOM("<tns:order xmlns:tns='" + NS + "'>"
+                + "<tns:line id='1' qty='1'/><tns:line id='2' qty='5'/><tns:line id='3' qty='7'/></tns:order>");
+    }
+
+    @Test
+    public void testSelectionIsCopiedToDom() throws Exception {
+        List<?> lines = _runtime.evaluate(compile("$order/tns:line[@qty > 1]"), this);
+        assertEquals(2, lines.size());
+        Element line = (Element) lines.get(0);
+        assertEquals("2", line.getAttribute("id"));
+        assertNotSame(_order.getOwnerDocument(), line.getOwnerDocument());
+        // the copy is a regular DOM node, assigns may change it
+        line.setAttribute("qty", "6");
+        assertEquals("5", ((Element) _order.getElementsByTagNameNS(NS, "line").item(1)).getAttribute("qty"));
+    }
+
+    @Test
+    public void testCopyKeptUntilWritten() throws Exception {
+        OXPath20ExpressionBPEL20 count = compile("count($order/tns:line)");
+        assertEquals("3", _runtime.evaluateAsString(count, this));
+        assertEquals("3", _runtime.evaluateAsString(compile("sum($order/tns:line/@qty) - 10"), this));
+        assertEquals(1, _snapshots.getBuiltCount());
+
+        Element line = _order.getOwnerDocument().createElementNS(NS, "tns:line");
+        _order.appendChild(line);
+        _snapshots.invalidate(1L, "order");
+        assertEquals("4", _runtime.evaluateAsString(count, this));
+        assertEquals(2, _snapshots.getBuiltCount());
+    }
+
+    @Test
+    public void testFunctionCalls() throws Exception {
+        NSContext nsContext = new NSContext();
+        nsContext.register("ode", Namespaces.ODE_EXTENSION_NS);
+        nsContext.register("bpel", Namespaces.WSBPEL2_0_FINAL_EXEC);
+        nsContext.register("tns", NS);
+        assertTrue(NativeTreeBuilder.callsFunctions(nsContext, "ode:insert-as-last-into($order, $line)"));
+        assertTrue(NativeTreeBuilder.callsFunctions(nsContext, "count(bpel:getVariableProperty ('order', 'tns:id'))"));
+        assertFalse(NativeTreeBuilder.callsFunctions(nsContext, "$ode:pid + count($order/tns:line)"));
+        assertFalse(NativeTreeBuilder.callsFunctions(nsContext, "string($order/tns:line[1]/@id)"));
+    }
+
+    public Object readVariableSnapshot(Variable variable, Part part, SnapshotBuilder builder) throws FaultException {
+        Object snapshot = _snapshots.get(1L, variable.name, null, builder);
+        if (snapshot == null) {
+            snapshot = builder.build(readVariable(variable, part));
+            _snapshots.put(1L, variable.name, null, builder, snapshot);
+        }
+        return snapshot;
+    }
+
+    public Node readVariable(Variable variable, Part part) throws FaultException {
+        return _order;
+    }
+
+    public Node getPartData(Element message, Part part) throws FaultException {
+        return null;
+    }
+
+    public String readMessageProperty(Variable variable, OProperty property) throws FaultException {
+        return null;
+    }
+
+    public boolean isLinkActive(OLink olink) throws FaultException {
+        return false;
+    }
+
+    public Node getRootNode() {
+        return null;
+    }
+
+    public Node evaluateQuery(Node root, OExpression expr) throws FaultException {
+        return null;
+    }
+
+    public Long getProcessId() {
+        return null;
+    }
+
+    public QName getProcessQName() {
+        return null;
+    }
+
+    public boolean narrowTypes() {
+        return true;
+    }
+
+    public URI getBaseResourceURI() {
+        return null;
+    }
+
+    public Node getPropertyValue(QName propertyName) {
+        return null;
+    }
+
+    public Date getCurrentEventDateTime() {
+        return null;
+    }
+
+    private OXPath20ExpressionBPEL20 compile(String xpath) {
+        Document doc = DOMUtils.newDocument();
+        Element e = doc.createElementNS(null, "expression");
+        e.setAttributeNS(DOMUtils.NS_URI_XMLNS, "xmlns:tns", NS);
+        doc.appendChild(e);
+        e.appendChild(doc.createTextNode(xpath));
+        return (OXPath20ExpressionBPEL20) _compiler.compile(new Expression(e));
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.elang.xquery10.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Queue;
+
+import javax.xml.namespace.QName;
+import javax.xml.xquery.XQPreparedExpression;
+import javax.xml.xquery.XQResultSequence;
+
+import org.apache.ode.bpel.common.FaultException;
+import org.apache.ode.bpel.compiler.bom.Expression;
+import org.apache.ode.bpel.elang.xpath20.runtime.MockCompilerContext;
+import org.apache.ode.bpel.elang.xquery10.compiler.XQuery10ExpressionCompilerBPEL20;
+import org.apache.ode.bpel.elang.xquery10.o.OXQuery10ExpressionBPEL20;
+import org.apache.ode.bpel.explang.EvaluationContext;
+import org.apache.ode.bpel.o.OExpression;
+import org.apache.ode.bpel.o.OLink;
+import org.apache.ode.bpel.o.OMessageVarType.Part;
+import org.apache.ode.bpel.o.OProcess.OProperty;
+import org.apache.ode.bpel.o.OScope.Variable;
+import org.apache.ode.utils.DOMUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Reuse of the prepared expressions pooled by {@link XQuery10ExpressionRuntime}.
+ */
+public class XQuery10ExpressionRuntimeTest implements EvaluationContext {
+    private static final String NS = "http://foobar";
+
+    private XQuery10ExpressionRuntime _runtime;
+    private XQuery10ExpressionCompilerBPEL20 _compiler;
+    private Element _order;
+
+    @Before
+    public void setUp() throws Exception {
+        _runtime = new XQuery10ExpressionRuntime();
+        _runtime.initialize(new HashMap());
+
+        MockCompilerContext cc = new MockCompilerContext();
+        cc.registerElementVar("order", new QName(NS, "order"));
+        _compiler = new XQuery10ExpressionCompilerBPEL20();
+        _compiler.setCompilerContext(cc);
+        _order = order(3);
+    }
+
+    @After
+    public void tearDown() {
+        _runtime.close();
+    }
+
+    @Test
+    public void testPooledExpressionReused() throws Exception {
+        OXQuery10ExpressionBPEL20 count = compile("count($order/tns:line)");
+        assertEquals("3", _runtime.evaluateAsString(count, this));
+        Queue<XQPreparedExpression> pool = _runtime.getPool(count);
+        assertEquals(1, pool.size());
+        XQPreparedExpression pooled = pool.peek();
+
+        // the next evaluation takes the pooled expression and sees the new value of the variable
+        _order = order(5);
+        assertEquals("5", _runtime.evaluateAsString(count, this));
+        assertEquals(1, pool.size());
+        assertSame(pooled, pool.peek());
+    }
+
+    @Test
+    public void testBindingsClearedOnRelease() throws Exception {
+        OXQuery10ExpressionBPEL20 count = compile("count($order/tns:line)");
+        assertEquals("3", _runtime.evaluateAsString(count, this));
+
+        // the pooled expression doesn't hold on to the variable of the last evaluation
+        XQResultSequence result = _runtime.getPool(count).peek().executeQuery();
+        result.next();
+        assertEquals("0", result.getItemAsString(null));
+        result.close();
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        OXQuery10ExpressionBPEL20 count = compile("count($order/tns:line)");
+        assertEquals("3", _runtime.evaluateAsString(count, this));
+        XQPreparedExpression pooled = _runtime.getPool(count).peek();
+
+        _runtime.close();
+        assertTrue(pooled.isClosed());
+        assertNull(_runtime.getPool(count));
+        // evaluations go on with a new connection
+        assertEquals("3", _runtime.evaluateAsString(count, this));
+    }
+
+    public Node readVariable(Variable variable, Part part) throws FaultException {
+        return _order;
+    }
+
+    public Node getPartData(Element message, Part part) throws FaultException {
+        return null;
+    }
+
+    public String readMessageProperty(Variable variable, OProperty property) throws FaultException {
+        return null;
+    }
+
+    public boolean isLinkActive(OLink olink) throws FaultException {
+        return false;
+    }
+
+    public Node getRootNode() {
+        return null;
+    }
+
+    public Node evaluateQuery(Node root, OExpression expr) throws FaultException {
+        return null;
+    }
+
+    public Long getProcessId() {
+        return 1L;
+    }
+
+    public QName getProcessQName() {
+        return null;
+    }
+
+    public boolean narrowTypes() {
+        return true;
+    }
+
+    public URI getBaseResourceURI() {
+        return null;
+    }
+
+    public Node getPropertyValue(QName propertyName) {
+        return null;
+    }
+
+    public Date getCurrentEventDateTime() {
+        return null;
+    }
+
+    private static Element order(int lines) throws Exception {
+        StringBuilder xml = new StringBuilder("<tns:order xmlns:tns='" + NS + "'>");
+        for (int i = 1; i <= lines; i++) xml.append("<tns:line id='").append(i).append("'/>");
+        return DOMUtils.stringToDOM(xml.append("</tns:order>").toString());
+    }
+
+    private OXQuery10ExpressionBPEL20 compile(String xquery) {
+        Document doc = DOMUtils.newDocument();
+        Element e = doc.createElementNS(null, "expression");
+        e.setAttributeNS(DOMUtils.NS_URI_XMLNS, "xmlns:tns", NS);
+        doc.appendChild(e);
+        e.appendChild(doc.createTextNode(xquery));
+        return (OXQuery10ExpressionBPEL20) _compiler.compile(new Expression(e));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.engine;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.ode.bpel.dao.ProcessInstanceDAO;
+
+public class ExecutionStateStoreTest extends TestCase {
+    private byte[] _state;
+    private byte[] _delta;
+    private int _stateWrites;
+    private ProcessInstanceDAO _dao;
+
+    protected void setUp() throws Exception {
+        _dao = (ProcessInstanceDAO) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { ProcessInstanceDAO.class }, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("getExecutionState")) return _state;
+                if (name.equals("getExecutionStateDelta")) return _delta;
+                if (name.equals("setExecutionState")) {
+                    _state = (byte[]) args[0];
+                    _stateWrites++;
+                    return null;
+                }
+                if (name.equals("setExecutionStateDelta")) {
+                    _delta = (byte[]) args[0];
+                    return null;
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+
+    private static byte[] random(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    public void testSmallStatesAreWrittenInFull() {
+        byte[] state = random(1000);
+        assertEquals(state.length, ExecutionStateStore.write(_dao, state));
+        byte[] next = state.clone();
+        next[10] ^= 1;
+        assertEquals(next.length, ExecutionStateStore.write(_dao, next));
+        assertNull(_delta);
+        assertTrue(Arrays.equals(next, ExecutionStateStore.read(_dao)));
+    }
+
+    public void testDeltaAgainstBase() {
+        byte[] state = random(100000);
+        ExecutionStateStore.write(_dao, state);
+        assertEquals(1, _stateWrites);
+
+        for (int i = 0; i < 10; i++) {
+            state = state.clone();
+            state[i * 1000] ^= 1;
+            int written = ExecutionStateStore.write(_dao, state);
+            assertTrue("delta too large: " + written, written < 1000);
+            assertTrue(Arrays.equals(state, ExecutionStateStore.read(_dao)));
+        }
+        // the base was never rewritten
+        assertEquals(1, _stateWrites);
+    }
+
+    public void testRebaseWhenDeltaGrows() {
+        ExecutionStateStore.write(_dao, random(100000));
+        byte[] unrelated = random(100001);
+        assertEquals(unrelated.length, ExecutionStateStore.write(_dao, unrelated));
+        assertEquals(2, _stateWrites);
+        assertNull(_delta);
+        assertTrue(Arrays.equals(unrelated, ExecutionStateStore.read(_dao)));
+    }
+
+    public void testNoState() {
+        assertNull(ExecutionStateStore.read(_dao));
+    }
+}
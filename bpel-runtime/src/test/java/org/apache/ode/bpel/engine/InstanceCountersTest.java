@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.engine;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.ode.bpel.common.InstanceFilter.StatusKeys;
+import org.apache.ode.bpel.common.ProcessState;
+import org.apache.ode.bpel.dao.ProcessManagementDAO.InstanceSummaryKey;
+
+public class InstanceCountersTest extends TestCase {
+
+    public void testLifecycle() {
+        InstanceCounters c = new InstanceCounters(true);
+        c.changed(InstanceCounters.NO_STATE, ProcessState.STATE_NEW);
+        c.changed(InstanceCounters.NO_STATE, ProcessState.STATE_NEW);
+        c.changed(ProcessState.STATE_NEW, ProcessState.STATE_READY);
+        c.changed(ProcessState.STATE_READY, ProcessState.STATE_ACTIVE);
+        assertEquals(2, c.getCount(StatusKeys.ACTIVE));
+
+        c.changed(ProcessState.STATE_ACTIVE, ProcessState.STATE_COMPLETED_OK);
+        c.changed(ProcessState.STATE_NEW, ProcessState.STATE_COMPLETED_WITH_FAULT);
+        assertEquals(0, c.getCount(StatusKeys.ACTIVE));
+        assertEquals(1, c.getCount(StatusKeys.COMPLETED));
+        assertEquals(1, c.getCount(StatusKeys.FAILED));
+        assertEquals(2, c.getTotal());
+
+        c.changed(ProcessState.STATE_COMPLETED_OK, InstanceCounters.NO_STATE);
+        assertEquals(0, c.getCount(StatusKeys.COMPLETED));
+        assertEquals(1, c.getTotal());
+    }
+
+    public void testNeverNegative() {
+        InstanceCounters c = new InstanceCounters(false);
+        c.changed(ProcessState.STATE_ACTIVE, ProcessState.STATE_SUSPENDED);
+        assertEquals(0, c.getCount(StatusKeys.ACTIVE));
+        assertEquals(1, c.getCount(StatusKeys.SUSPENDED));
+        assertEquals(1, c.getTotal());
+    }
+
+    public void testReconcile() {
+        InstanceCounters c = new InstanceCounters(false);
+        assertFalse(c.isReconciled());
+        c.changed(InstanceCounters.NO_STATE, ProcessState.STATE_NEW);
+
+        Map<StatusKeys, Long> counts = new EnumMap<StatusKeys, Long>(StatusKeys.class);
+        counts.put(StatusKeys.TERMINATED, 3L);
+        c.reconcile(counts);
+        assertTrue(c.isReconciled());
+        assertEquals(0, c.getCount(StatusKeys.ACTIVE));
+        assertEquals(3, c.getTotal());
+    }
+
+    public void testReconcileFromSummary() {
+        Map<InstanceSummaryKey, Long> summary = new HashMap<InstanceSummaryKey, Long>();
+        summary.put(new InstanceSummaryKey("{ns}p-1", "ACTIVE"), 4L);
+        summary.put(new InstanceSummaryKey("{ns}p-1", "COMPLETED"), 2L);
+        summary.put(new InstanceSummaryKey("{ns}p-2", "ACTIVE"), 7L);
+
+        InstanceCounters c = new InstanceCounters(false);
+        c.reconcile("{ns}p-1", summary);
+        assertEquals(4, c.getCount(StatusKeys.ACTIVE));
+        assertEquals(2, c.getCount(StatusKeys.COMPLETED));
+        assertEquals(6, c.getTotal());
+    }
+}
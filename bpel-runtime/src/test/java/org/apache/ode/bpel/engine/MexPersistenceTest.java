@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.engine;
+
+import java.io.File;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.transaction.TransactionManager;
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import org.apache.ode.bpel.dao.BpelDAOConnection;
+import org.apache.ode.bpel.dao.MessageExchangeDAO;
+import org.apache.ode.bpel.iapi.Message;
+import org.apache.ode.bpel.iapi.MessageExchange;
+import org.apache.ode.bpel.iapi.MyRoleMessageExchange;
+import org.apache.ode.bpel.memdao.BpelDAOConnectionFactoryImpl;
+import org.apache.ode.bpel.runtime.MockBpelServer;
+import org.apache.ode.utils.DOMUtils;
+import org.apache.ode.utils.GUID;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Tests the transient message exchanges of a persistent process, see
+ * {@link org.apache.ode.bpel.iapi.ProcessConf#isTransientMessageExchange(String)}.
+ */
+public class MexPersistenceTest extends TestCase {
+    static final String NAMESPACE = "http://ode.apache.org/bpel/unit-test";
+    static final QName SERVICE = new QName(NAMESPACE, "EchoService");
+    // the maximum amount of time to wait for a reply or for the exchange to be persisted
+    static final int MAX_WAIT = 10000;
+
+    MockBpelServer _server;
+    BpelEngineImpl _engine;
+    TransactionManager _txm;
+
+    public void testReplyInRequestTransactionStaysInMemory() throws Exception {
+        MyRoleMessageExchange mex = invoke("echo");
+        String mexId = mex.getMessageExchangeId();
+
+        _txm.begin();
+        try {
+            assertNull("reply given in the request transaction, nothing to persist", db().getMessageExchange(mexId));
+            MessageExchangeDAO dao = mem().getMessageExchange(mexId);
+            assertNotNull(dao);
+            assertEquals(MessageExchange.Status.RESPONSE.toString(), dao.getStatus());
+            assertEquals("echo", DOMUtils.getTextContent(response(dao)));
+        } finally {
+            _txm.commit();
+        }
+    }
+
+    public void testAsyncReplyPersistsExchange() throws Exception {
+        String clientId = new GUID().toString();
+        _txm.begin();
+        MyRoleMessageExchange mex = _engine.createMessageExchange(clientId, SERVICE, "delayedEcho");
+        String mexId = mex.getMessageExchangeId();
+        Future future = mex.invoke(createRequest(mex));
+        _txm.commit();
+
+        // the process waits before replying, the exchange gets persisted when the request is routed
+        MessageExchangeDAO persisted = null;
+        for (long cutoff = System.currentTimeMillis() + MAX_WAIT; persisted == null && System.currentTimeMillis() < cutoff; ) {
+            _txm.begin();
+            try {
+                persisted = db().getMessageExchange(mexId);
+                if (persisted != null) {
+                    assertEquals(MessageExchange.Status.ASYNC.toString(), persisted.getStatus());
+                    assertNotNull(persisted.getRequest());
+                    assertNull("in-memory copy not dropped", mem().getMessageExchange(mexId));
+                }
+            } finally {
+                _txm.commit();
+            }
+            if (persisted == null) Thread.sleep(50);
+        }
+        assertNotNull("exchange not persisted", persisted);
+
+        future.get(MAX_WAIT, TimeUnit.MILLISECONDS);
+        _txm.begin();
+        try {
+            MessageExchangeDAO dao = db().getMessageExchange(mexId);
+            assertEquals(MessageExchange.Status.RESPONSE.toString(), dao.getStatus());
+            assertEquals("delayed", DOMUtils.getTextContent(response(dao)));
+        } finally {
+            _txm.commit();
+        }
+    }
+
+    public void testRollbackRestoresTransientExchange() throws Exception {
+        _txm.begin();
+        MyRoleMessageExchangeImpl mex = (MyRoleMessageExchangeImpl) _engine.createMessageExchange(new GUID().toString(), SERVICE, "delayedEcho");
+        String mexId = mex.getMessageExchangeId();
+        _txm.commit();
+
+        _txm.begin();
+        try {
+            assertTrue(mex.isTransient());
+            mex.persist();
+            assertFalse(mex.isTransient());
+            assertNotNull(db().getMessageExchange(mexId));
+            assertNull(mem().getMessageExchange(mexId));
+        } finally {
+            _txm.rollback();
+        }
+
+        _txm.begin();
+        try {
+            assertNull(db().getMessageExchange(mexId));
+            assertNotNull("in-memory copy not restored on rollback", mem().getMessageExchange(mexId));
+        } finally {
+            _txm.commit();
+        }
+    }
+
+    public void testPersistAfterRestart() throws Exception {
+        String before = persistTransient();
+        // the in-memory DAO of a restarted server, or of another node, starts its own id sequence
+        _engine._contexts.inMemDao = new BpelDAOConnectionFactoryImpl(_engine._contexts.scheduler);
+        String after = persistTransient();
+        assertFalse(before.equals(after));
+
+        _txm.begin();
+        try {
+            assertNotNull(db().getMessageExchange(before));
+            assertNotNull(db().getMessageExchange(after));
+        } finally {
+            _txm.commit();
+        }
+    }
+
+    protected void setUp() throws Exception {
+        _server = new MockBpelServer();
+        _server.deploy(new File(getClass().getResource("/mexpersistence").toURI()));
+        _engine = (BpelEngineImpl) _server.getBpelServer().getEngine();
+        _txm = _server.getTransactionManager();
+    }
+
+    protected void tearDown() throws Exception {
+        _server.shutdown();
+    }
+
+    /**
+     * Invokes a two-way operation and waits for its reply.
+     */
+    private MyRoleMessageExchange invoke(String operation) throws Exception {
+        _txm.begin();
+        MyRoleMessageExchange mex = _engine.createMessageExchange(new GUID().toString(), SERVICE, operation);
+        Future future = mex.invoke(createRequest(mex));
+        _txm.commit();
+        future.get(MAX_WAIT, TimeUnit.MILLISECONDS);
+        return mex;
+    }
+
+    /**
+     * Creates a transient exchange and copies it to the database.
+     */
+    private String persistTransient() throws Exception {
+        _txm.begin();
+        try {
+            MyRoleMessageExchangeImpl mex = (MyRoleMessageExchangeImpl) _engine.createMessageExchange(new GUID().toString(), SERVICE, "delayedEcho");
+            assertTrue(mex.isTransient());
+            mex.persist();
+            return mex.getMessageExchangeId();
+        } finally {
+            _txm.commit();
+        }
+    }
+
+    private Message createRequest(MyRoleMessageExchange mex) {
+        Document doc = DOMUtils.newDocument();
+        Element message = doc.createElementNS(null, "message");
+        Element main = doc.createElementNS(null, "main");
+        Element body = doc.createElementNS(NAMESPACE, "tns:RequestElement");
+        body.appendChild(doc.createTextNode("hello"));
+        main.appendChild(body);
+        message.appendChild(main);
+        Message request = mex.createMessage(mex.getOperation().getInput().getMessage().getQName());
+        request.setMessage(message);
+        return request;
+    }
+
+    private Element response(MessageExchangeDAO dao) {
+        return DOMUtils.getFirstChildElement(DOMUtils.getFirstChildElement(dao.getResponse().getData()));
+    }
+
+    private BpelDAOConnection db() {
+        return _engine._contexts.dao.getConnection();
+    }
+
+    private BpelDAOConnection mem() {
+        return _engine._contexts.inMemDao.getConnection();
+    }
+}
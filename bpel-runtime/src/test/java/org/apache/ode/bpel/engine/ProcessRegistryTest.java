@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.apache.ode.bpel.iapi.ProcessConf;
+import org.jmock.Mock;
+import org.jmock.MockObjectTestCase;
+
+public class ProcessRegistryTest extends MockObjectTestCase {
+    private static final String NS = "urn:ode:test";
+    private static final QName SERVICE = new QName(NS, "Service");
+
+    private ProcessRegistry _registry;
+
+    protected void setUp() throws Exception {
+        _registry = new ProcessRegistry();
+    }
+
+    private BpelProcess process(String name, int version) {
+        Mock conf = mock(ProcessConf.class);
+        conf.stubs().method("getProcessId").will(returnValue(new QName(NS, name + "-" + version)));
+        conf.stubs().method("getType").will(returnValue(new QName(NS, name)));
+        return new BpelProcess((ProcessConf) conf.proxy());
+    }
+
+    private void register(BpelProcess p, BpelProcess... routed) {
+        Map<QName, List<BpelProcess>> services = new HashMap<QName, List<BpelProcess>>();
+        List<BpelProcess> processes = new ArrayList<BpelProcess>();
+        Collections.addAll(processes, routed);
+        services.put(SERVICE, processes);
+        _registry.register(p, services);
+    }
+
+    public void testIndexes() {
+        BpelProcess foo1 = process("Foo", 1);
+        BpelProcess foo3 = process("Foo", 3);
+        BpelProcess foo2 = process("Foo", 2);
+        BpelProcess fooBar = process("FooBar", 1);
+        register(foo1, foo1);
+        register(foo3, foo3);
+        register(foo2, foo3);
+        register(fooBar, foo3);
+
+        assertSame(foo2, _registry.get(new QName(NS, "Foo-2")));
+        assertTrue(_registry.contains(new QName(NS, "FooBar-1")));
+        assertEquals(4, _registry.getAll().size());
+
+        // versions are sorted and a name prefix isn't mistaken for the same type
+        List<BpelProcess> versions = _registry.getByType(new QName(NS, "Foo"));
+        assertEquals(3, versions.size());
+        assertSame(foo1, versions.get(0));
+        assertSame(foo2, versions.get(1));
+        assertSame(foo3, versions.get(2));
+        assertSame(foo3, _registry.getNewest(new QName(NS, "Foo")));
+        assertSame(foo2, _registry.getByTypeAndVersion(new QName(NS, "Foo"), 2));
+        assertNull(_registry.getByTypeAndVersion(new QName(NS, "Foo"), 4));
+        assertTrue(_registry.getByType(new QName(NS, "Baz")).isEmpty());
+
+        assertEquals(Collections.singletonList(foo3), _registry.getByService(SERVICE));
+        assertNull(_registry.getByService(new QName(NS, "Other")));
+    }
+
+    public void testUnregister() {
+        BpelProcess foo1 = process("Foo", 1);
+        BpelProcess bar1 = process("Bar", 1);
+        register(foo1, foo1);
+        register(bar1, foo1, bar1);
+
+        List<BpelProcess> before = _registry.getByService(SERVICE);
+        assertSame(foo1, _registry.unregister(foo1.getPID()));
+        assertNull(_registry.unregister(foo1.getPID()));
+
+        assertNull(_registry.get(foo1.getPID()));
+        assertTrue(_registry.getByType(new QName(NS, "Foo")).isEmpty());
+        assertEquals(Collections.singletonList(bar1), _registry.getByService(SERVICE));
+        // readers holding the previous snapshot aren't affected
+        assertEquals(2, before.size());
+    }
+
+    public void testSnapshotsAreImmutable() {
+        BpelProcess foo1 = process("Foo", 1);
+        register(foo1, foo1);
+        try {
+            _registry.getByService(SERVICE).clear();
+            fail("Expected an UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            _registry.getAll().clear();
+            fail("Expected an UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+}
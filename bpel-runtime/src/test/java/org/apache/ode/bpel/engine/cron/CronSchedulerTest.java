@@ -38,6 +38,7 @@ import org.apache.ode.bpel.iapi.ProcessConf.CleanupInfo;
 import org.apache.ode.bpel.iapi.Scheduler.JobDetails;
 import org.apache.ode.daohib.bpel.BpelDAOConnectionImpl;
 import org.apache.ode.utils.CronExpression;
+import org.apache.ode.utils.metrics.MetricsRegistry;
 import org.jmock.Mock;
 import org.jmock.MockObjectTestCase;
 
@@ -86,6 +87,20 @@ public class CronSchedulerTest extends MockObjectTestCase {
 
     public void testNull() throws Exception {}
 
+    public void testMetrics() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry(true);
+        cronScheduler.registerMetrics(registry);
+        Map<String, Object> metrics = registry.getMetrics();
+        assertTrue(metrics.containsKey("cron/fired"));
+        assertTrue(metrics.containsKey("cron/misfires"));
+        assertTrue(metrics.containsKey("cron/averageFireLag"));
+        assertTrue(metrics.containsKey("cron/maxFireLag"));
+
+        MetricsRegistry disabled = new MetricsRegistry(false);
+        cronScheduler.registerMetrics(disabled);
+        assertTrue(disabled.getMetrics().isEmpty());
+    }
+
     public void _testCleanup() throws Exception {
         CronExpression cronExpr = new CronExpression("* * * * * ?");
         RuntimeDataCleanupRunnable runnable = new RuntimeDataCleanupRunnable();
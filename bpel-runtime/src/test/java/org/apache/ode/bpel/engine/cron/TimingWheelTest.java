@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.engine.cron;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import junit.framework.TestCase;
+
+/**
+ * Test case for {@link TimingWheel}.
+ */
+public class TimingWheelTest extends TestCase {
+
+    private TimingWheel _wheel;
+
+    protected void setUp() throws Exception {
+        // 4 slots of 10ms per level, so everything past 160ms cascades through the upper levels
+        _wheel = new TimingWheel("TimingWheelTest", 10, 4);
+        _wheel.start();
+    }
+
+    protected void tearDown() throws Exception {
+        _wheel.stop();
+    }
+
+    public void testFiresInOrderAcrossLevels() throws Exception {
+        long now = System.currentTimeMillis();
+        long[] delays = { 0, 25, 95, 300, 900, 3000 };
+        final long[] fired = new long[delays.length];
+        final CountDownLatch latch = new CountDownLatch(delays.length);
+        for (int i = 0; i < delays.length; i++) {
+            final int idx = i;
+            _wheel.schedule(new Runnable() {
+                public void run() {
+                    fired[idx] = System.currentTimeMillis();
+                    latch.countDown();
+                }
+            }, now + delays[i]);
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < delays.length; i++) {
+            assertTrue("fired early: " + i, fired[i] >= now + delays[i]);
+            assertTrue("fired too late: " + i, fired[i] < now + delays[i] + 1000);
+        }
+        assertEquals(0, _wheel.size());
+    }
+
+    public void testCancel() throws Exception {
+        final AtomicBoolean ran = new AtomicBoolean();
+        TimingWheel.Timeout t = _wheel.schedule(new Runnable() {
+            public void run() {
+                ran.set(true);
+            }
+        }, System.currentTimeMillis() + 50);
+        assertTrue(t.cancel());
+        Thread.sleep(200);
+        assertFalse(ran.get());
+        assertEquals(0, _wheel.size());
+    }
+}
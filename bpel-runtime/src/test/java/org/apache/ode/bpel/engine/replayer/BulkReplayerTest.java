@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.engine.replayer;
+
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import org.apache.ode.bpel.pmapi.Replay;
+
+/**
+ * Test case for {@link BulkReplayer} request partitioning.
+ */
+public class BulkReplayerTest extends TestCase {
+
+    public void testPartition() throws Exception {
+        Replay request = Replay.Factory.newInstance();
+        for (long i = 1; i <= 5; i++) request.addUpgradeInstance(i);
+        for (long i = 6; i <= 7; i++) request.addReplaceInstance(i);
+        request.addNewRestoreInstance().setProcessType(new QName("urn:test", "p"));
+
+        List<Replay> batches = BulkReplayer.partition(request, 3);
+        assertEquals(3, batches.size());
+        assertEquals(3, batches.get(0).sizeOfUpgradeInstanceArray());
+        assertEquals(2, batches.get(1).sizeOfUpgradeInstanceArray());
+        assertEquals(1, batches.get(1).sizeOfReplaceInstanceArray());
+        assertEquals(6L, batches.get(1).getReplaceInstanceArray(0));
+        assertEquals(1, batches.get(2).sizeOfReplaceInstanceArray());
+        assertEquals(1, batches.get(2).sizeOfRestoreInstanceArray());
+        assertEquals("p", batches.get(2).getRestoreInstanceArray(0).getProcessType().getLocalPart());
+    }
+
+    public void testPartitionEmpty() throws Exception {
+        assertTrue(BulkReplayer.partition(Replay.Factory.newInstance(), 10).isEmpty());
+    }
+
+    public void testInvalidBatchSize() throws Exception {
+        try {
+            BulkReplayer.partition(Replay.Factory.newInstance(), 0);
+            fail("Should have rejected batch size");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.intercept;
+
+import junit.framework.TestCase;
+
+public class TokenBucketTest extends TestCase {
+
+    public void testBurstThenRate() {
+        TokenBucket b = new TokenBucket(10, 3);
+        long now = System.nanoTime();
+        assertTrue(b.tryAcquire(now));
+        assertTrue(b.tryAcquire(now));
+        assertTrue(b.tryAcquire(now));
+        assertFalse(b.tryAcquire(now));
+
+        // 10 per second, one token every 100ms
+        assertFalse(b.tryAcquire(now + 50000000L));
+        assertTrue(b.tryAcquire(now + 100000000L));
+        assertFalse(b.tryAcquire(now + 100000000L));
+    }
+
+    public void testRefillCappedAtBurst() {
+        TokenBucket b = new TokenBucket(100, 2);
+        long now = System.nanoTime() + 60000000000L;
+        assertTrue(b.tryAcquire(now));
+        assertTrue(b.tryAcquire(now));
+        assertFalse(b.tryAcquire(now));
+    }
+
+    public void testInvalidArguments() {
+        try {
+            new TokenBucket(0, 1);
+            fail("Rate must be positive");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            new TokenBucket(1, 0);
+            fail("Burst must be positive");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.runtime;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import org.apache.ode.bpel.engine.BpelManagementFacadeImpl;
+import org.apache.ode.bpel.engine.replayer.BulkReplayer;
+import org.apache.ode.bpel.pmapi.Replay;
+import org.apache.ode.bpel.pmapi.ReplayResponse;
+import org.apache.ode.bpel.pmapi.TInstanceInfo;
+import org.apache.ode.utils.DOMUtils;
+import org.apache.ode.utils.metrics.Gauge;
+import org.apache.ode.utils.metrics.MetricsRegistry;
+
+/**
+ * Test bulk replay of process instances, see {@link BulkReplayer}.
+ */
+public class BulkReplayTest extends TestCase {
+
+    static final String NAMESPACE = "http://ode.apache.org/bpel/unit-test";
+    static final QName SERVICE = new QName(NAMESPACE, "EchoService");
+
+    MockBpelServer _server;
+    BpelManagementFacadeImpl _management;
+    MetricsRegistry _metrics;
+    ExecutorService _executor;
+
+    public void testUpgradeInBatches() throws Exception {
+        echo();
+        echo();
+        Set<Long> iids = listInstances();
+        assertEquals(2, iids.size());
+
+        Replay request = Replay.Factory.newInstance();
+        for (Long iid : iids) request.addUpgradeInstance(iid);
+        request.setBatchSize(1);
+        request.setConcurrency(2);
+        ReplayResponse response = _management.replay(request).getReplayResponse();
+
+        assertEquals(0, response.sizeOfFailedBatchArray());
+        assertEquals(2, response.sizeOfRestoredIIDArray());
+        Set<Long> restored = new HashSet<Long>();
+        for (long iid : response.getRestoredIIDArray()) restored.add(iid);
+        assertEquals("upgraded instances replace the old ones", restored, listInstances());
+        assertFalse(restored.removeAll(iids));
+
+        assertEquals(2, metric("processedInstances"));
+        assertEquals(0, metric("failedInstances"));
+        assertEquals(0, metric("remainingInstances"));
+    }
+
+    public void testFailedBatchDoesNotAbortOthers() throws Exception {
+        echo();
+        Set<Long> iids = listInstances();
+        assertEquals(1, iids.size());
+
+        Replay request = Replay.Factory.newInstance();
+        request.addUpgradeInstance(iids.iterator().next());
+        request.addUpgradeInstance(-1);
+        request.setBatchSize(1);
+        ReplayResponse response = _management.replay(request).getReplayResponse();
+
+        assertEquals(1, response.sizeOfRestoredIIDArray());
+        assertEquals(1, response.sizeOfFailedBatchArray());
+        Replay failed = response.getFailedBatchArray(0).getReplay();
+        assertEquals(1, failed.sizeOfUpgradeInstanceArray());
+        assertEquals(-1L, failed.getUpgradeInstanceArray(0));
+
+        assertEquals(1, metric("processedInstances"));
+        assertEquals(1, metric("failedInstances"));
+        assertEquals(0, metric("remainingInstances"));
+    }
+
+    protected void setUp() throws Exception {
+        _server = new MockBpelServer();
+        _server.deploy(new File(getClass().getResource("/bulkreplay").toURI()));
+        _metrics = new MetricsRegistry(true);
+        _server._server.setMetricsRegistry(_metrics);
+        _executor = Executors.newFixedThreadPool(2);
+        _server._server.setManagementExecutor(_executor);
+        _management = new BpelManagementFacadeImpl(_server._server, _server._store);
+    }
+
+    protected void tearDown() throws Exception {
+        _management.delete(null);
+        _server.shutdown();
+        _executor.shutdownNow();
+    }
+
+    private void echo() throws Exception {
+        _server.invoke(SERVICE, "echo", DOMUtils.newDocument().createElementNS(NAMESPACE, "tns:RequestElement"));
+        _server.waitForBlocking();
+    }
+
+    private Set<Long> listInstances() {
+        Set<Long> iids = new HashSet<Long>();
+        for (TInstanceInfo info : _management.listInstances("", "", 1000).getInstanceInfoList().getInstanceInfoArray()) {
+            iids.add(Long.valueOf(info.getIid()));
+        }
+        return iids;
+    }
+
+    private long metric(String name) {
+        Map<String, Object> metrics = _metrics.getMetrics();
+        return ((Gauge) metrics.get(BulkReplayer.METRICS_GROUP + "/" + name)).getValue();
+    }
+}
@@ -35,6 +35,7 @@ import org.apache.ode.bpel.common.FaultException;
 import org.apache.ode.bpel.evar.ExternalVariableModuleException;
 import org.apache.ode.bpel.evt.ProcessInstanceEvent;
 import org.apache.ode.bpel.iapi.ProcessConf.PartnerRoleConfig;
+import org.apache.ode.bpel.o.OActivity;
 import org.apache.ode.bpel.o.OCatch;
 import org.apache.ode.bpel.o.OEmpty;
 import org.apache.ode.bpel.o.OFaultHandler;
@@ -162,10 +163,25 @@ public class CoreBpelTest extends TestCase implements BpelRuntimeContext {
     public void sendEvent(ProcessInstanceEvent event) {
     }
 
+    public EventFilter getEventFilter() {
+        return EventFilter.ALL;
+    }
+
+    public void activityCompleted(OActivity activity, long startTime) {
+    }
+
+    public boolean isMetricsEnabled() {
+        return false;
+    }
+
     public ExpressionLanguageRuntimeRegistry getExpLangRuntime() {
         return null;
     }
 
+    public VariableSnapshotCache getVariableSnapshots() {
+        return null;
+    }
+
     public void initializePartnerLinks(Long parentScopeId, Collection<OPartnerLink> partnerLinks) {
     }
 
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.bpel.runtime;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.ode.bpel.evt.BpelEvent;
+import org.apache.ode.bpel.iapi.ProcessConf;
+import org.apache.ode.bpel.o.OProcess;
+import org.apache.ode.bpel.o.OScope;
+
+/**
+ * Test case for {@link EventFilter}: activity lifecycle events enabled for the
+ * process, data handling events only in the "audited" scope.
+ */
+public class EventFilterTest extends TestCase {
+
+    private OProcess _oprocess;
+    private OScope _processScope;
+    private OScope _audited;
+    private OScope _inner;
+    private EventFilter _filter;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        _oprocess = new OProcess("2.0");
+        _processScope = scope("process");
+        _audited = scope("audited");
+        _inner = scope("inner");
+        _filter = EventFilter.compile(conf(), _oprocess);
+    }
+
+    private OScope scope(String name) {
+        OScope scope = new OScope(_oprocess, null);
+        scope.name = name;
+        return scope;
+    }
+
+    private static ProcessConf conf() {
+        return (ProcessConf) Proxy.newProxyInstance(ProcessConf.class.getClassLoader(), new Class[] { ProcessConf.class },
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (!method.getName().equals("isEventEnabled")) throw new UnsupportedOperationException();
+                        List<?> scopeNames = (List<?>) args[0];
+                        BpelEvent.TYPE type = (BpelEvent.TYPE) args[1];
+                        if (type == BpelEvent.TYPE.activityLifecycle) return true;
+                        return type == BpelEvent.TYPE.dataHandling && scopeNames != null && scopeNames.contains("audited");
+                    }
+                });
+    }
+
+    public void testProcessMask() {
+        assertTrue(_filter.isEnabled(BpelEvent.TYPE.activityLifecycle));
+        assertFalse(_filter.isEnabled(BpelEvent.TYPE.dataHandling));
+        assertFalse(_filter.isEnabled(BpelEvent.TYPE.scopeHandling));
+    }
+
+    public void testScopeMask() {
+        int audited = _filter.getScopeMask(_audited);
+        assertTrue(EventFilter.isEnabled(audited, BpelEvent.TYPE.activityLifecycle));
+        assertTrue(EventFilter.isEnabled(audited, BpelEvent.TYPE.dataHandling));
+        assertFalse(EventFilter.isEnabled(_filter.getScopeMask(_inner), BpelEvent.TYPE.dataHandling));
+
+        // a scope the filter wasn't compiled for only gets the process-level events
+        OScope unknown = scope("audited");
+        assertEquals(EventFilter.bit(BpelEvent.TYPE.activityLifecycle), _filter.getScopeMask(unknown));
+    }
+
+    public void testEnclosingScopes() {
+        ScopeFrame process = new ScopeFrame(_processScope, 1L, null, null, (InstanceGlobals) null);
+        ScopeFrame audited = new ScopeFrame(_audited, 2L, process, null, (InstanceGlobals) null);
+        ScopeFrame inner = new ScopeFrame(_inner, 3L, audited, null, (InstanceGlobals) null);
+        ScopeFrame sibling = new ScopeFrame(_inner, 4L, process, null, (InstanceGlobals) null);
+
+        assertTrue(inner.isEventEnabled(_filter, BpelEvent.TYPE.dataHandling));
+        assertFalse(sibling.isEventEnabled(_filter, BpelEvent.TYPE.dataHandling));
+        assertFalse(process.isEventEnabled(_filter, BpelEvent.TYPE.scopeHandling));
+
+        // while debugging everything goes through
+        assertTrue(sibling.isEventEnabled(EventFilter.ALL, BpelEvent.TYPE.dataHandling));
+        assertTrue(process.isEventEnabled(EventFilter.ALL, BpelEvent.TYPE.scopeHandling));
+        assertFalse(sibling.isEventEnabled(_filter, BpelEvent.TYPE.dataHandling));
+    }
+}
@@ -74,7 +74,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 
-class MockBpelServer {
+public class MockBpelServer {
 
     BpelServerImpl            _server;
     ProcessStoreImpl          _store;
@@ -156,6 +156,10 @@ class MockBpelServer {
         return _txManager;
     }
 
+    public BpelServerImpl getBpelServer() {
+        return _server;
+    }
+
     public void waitForBlocking() {
         try {
             long delay = 1000;
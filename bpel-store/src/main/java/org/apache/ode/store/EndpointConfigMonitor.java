@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.store;
+
+import java.io.File;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ode.utils.WatchDog;
+
+/**
+ * Reloads the endpoint properties of the deployed processes when their endpoint files change.
+ * A single background thread checks all processes of a store: the config directory and each
+ * deployment unit directory are listed once per check, however many processes share them, and
+ * the request path never touches the file system.
+ */
+class EndpointConfigMonitor implements Runnable {
+    private static final Log __log = LogFactory.getLog(EndpointConfigMonitor.class);
+
+    private final ProcessStoreImpl _store;
+    private final long _delay;
+    private ScheduledExecutorService _executor;
+
+    EndpointConfigMonitor(ProcessStoreImpl store) {
+        this(store, WatchDog.DEFAULT_DELAY);
+    }
+
+    EndpointConfigMonitor(ProcessStoreImpl store, long delay) {
+        _store = store;
+        _delay = delay;
+    }
+
+    synchronized void start() {
+        if (_executor != null) return;
+        _executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "EndpointConfigMonitor");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        _executor.scheduleWithFixedDelay(this, _delay, _delay, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void stop() {
+        if (_executor != null) {
+            _executor.shutdownNow();
+            _executor = null;
+        }
+    }
+
+    public void run() {
+        try {
+            check();
+        } catch (Throwable t) {
+            // an exception would cancel the periodic task
+            __log.error("Error while checking the endpoint configuration files.", t);
+        }
+    }
+
+    void check() {
+        List<File> systemFiles = ProcessConfImpl.listEndpointConfigFiles(_store.getConfigDir());
+        Map<DeploymentUnitDir, List<File>> duFiles = new IdentityHashMap<DeploymentUnitDir, List<File>>();
+        for (ProcessConfImpl pconf : _store.getProcessConfs()) {
+            DeploymentUnitDir du = pconf.getDeploymentUnit();
+            List<File> files = duFiles.get(du);
+            if (files == null) {
+                files = du.getEndpointConfigFiles();
+                duFiles.put(du, files);
+            }
+            pconf.refreshEndpointProperties(files, systemFiles);
+        }
+    }
+}
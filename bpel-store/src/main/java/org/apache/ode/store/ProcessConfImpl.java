@@ -36,6 +36,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.wsdl.Definition;
 import javax.xml.namespace.QName;
@@ -47,6 +49,7 @@ import org.apache.ode.bpel.dd.TCleanup;
 import org.apache.ode.bpel.dd.TDeployment;
 import org.apache.ode.bpel.dd.TInvoke;
 import org.apache.ode.bpel.dd.TMexInterceptor;
+import org.apache.ode.bpel.dd.TMexPersistence;
 import org.apache.ode.bpel.dd.TProcessEvents;
 import org.apache.ode.bpel.dd.TProvide;
 import org.apache.ode.bpel.dd.TSchedule;
@@ -62,11 +65,9 @@ import org.apache.ode.bpel.iapi.ProcessState;
 import org.apache.ode.bpel.iapi.Scheduler.JobDetails;
 import org.apache.ode.bpel.o.OFailureHandling;
 import org.apache.ode.store.DeploymentUnitDir.CBPInfo;
-import org.apache.ode.utils.CollectionUtils;
 import org.apache.ode.utils.CronExpression;
 import org.apache.ode.utils.DOMUtils;
 import org.apache.ode.utils.HierarchicalProperties;
-import org.apache.ode.utils.WatchDog;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
@@ -90,6 +91,8 @@ public class ProcessConfImpl implements ProcessConf {
     private final ArrayList<QName> _sharedServices = new ArrayList<QName>();
     private final Map<String, Set<BpelEvent.TYPE>> _events = new HashMap<String, Set<BpelEvent.TYPE>>();
     private final ArrayList<String> _mexi = new ArrayList<String>();
+    private final HashMap<String, Boolean> _transientMexOperations = new HashMap<String, Boolean>();
+    private boolean _transientMex = false;
     ProcessState _state;
     final TDeployment.Process _pinfo;
     final DeploymentUnitDir _du;
@@ -100,8 +103,9 @@ public class ProcessConfImpl implements ProcessConf {
     // cache the inMemory flag because XMLBeans objects are heavily synchronized (guarded by a coarse-grained lock)
     private volatile boolean _inMemory = false;
 
-    // monitor the IL property file and reload it if necessary
-    private WatchDog<Map<File, Long>, PropertiesObserver> propertiesWatchDog;
+    // endpoint properties, loaded on first use and swapped as a whole by the EndpointConfigMonitor
+    private volatile EndpointProperties _endpointProperties;
+    private final Object _endpointPropertiesLock = new Object();
 
     private EndpointReferenceContext eprContext;
 
@@ -124,11 +128,10 @@ public class ProcessConfImpl implements ProcessConf {
         this.generateProcessEventsAll = generateProcessEventsAll;
         this.eprContext = eprContext;
 
-        propertiesWatchDog = new WatchDog<Map<File, Long>, PropertiesObserver>(new PropertiesMutable(), new PropertiesObserver());
-
         initLinks();
         initMexInterceptors();
         initEventList();
+        initMexPersistence();
 
         processCleanupConfImpl = new ProcessCleanupConfImpl(pinfo);
 
@@ -136,15 +139,27 @@ public class ProcessConfImpl implements ProcessConf {
     }
 
     private List<File> collectEndpointConfigFiles() {
+        return collectEndpointConfigFiles(_du.getEndpointConfigFiles(), listEndpointConfigFiles(_configDir));
+    }
+
+    private static List<File> collectEndpointConfigFiles(List<File> duFiles, List<File> systemFiles) {
         // please mind the order: process-level files must be before system-level files
-        List<File> propFiles = new ArrayList<File>();
+        List<File> propFiles = new ArrayList<File>(duFiles.size() + systemFiles.size());
+        propFiles.addAll(duFiles);
+        propFiles.addAll(systemFiles);
+        return propFiles;
+    }
 
-        propFiles.addAll(_du.getEndpointConfigFiles());
-        if (_configDir == null) {
+    /**
+     * @return the sorted endpoint config files of the system-level config directory
+     */
+    static List<File> listEndpointConfigFiles(File configDir) {
+        List<File> propFiles = new ArrayList<File>();
+        if (configDir == null) {
             if (__log.isDebugEnabled()) __log.debug("No config directory set up.");
-        } else if (_configDir.isDirectory()) {
+        } else if (configDir.isDirectory()) {
             // list and sort endpoint config files
-            File[] files = _configDir.listFiles(new FileFilter() {
+            File[] files = configDir.listFiles(new FileFilter() {
                 public boolean accept(File path) {
                     return path.getName().endsWith(".endpoint") && path.isFile();
                 }
@@ -153,10 +168,10 @@ public class ProcessConfImpl implements ProcessConf {
                 Arrays.sort(files);
                 propFiles.addAll(Arrays.asList(files));
             } else {
-                if (__log.isErrorEnabled()) __log.error(_configDir + " does not exist or is not a directory");
+                if (__log.isErrorEnabled()) __log.error(configDir + " does not exist or is not a directory");
             }
         } else {
-            if (__log.isErrorEnabled()) __log.error(_configDir + " does not exist or is not a directory");
+            if (__log.isErrorEnabled()) __log.error(configDir + " does not exist or is not a directory");
         }
         return propFiles;
     }
@@ -468,10 +483,7 @@ public class ProcessConfImpl implements ProcessConf {
         final QName service = (QName) map.get("service");
         final String port = (String) map.get("port");
 
-        // update properties if necessary
-        // do it manually to save resources (instead of using a thread)
-        propertiesWatchDog.check();
-        final Map prop = propertiesWatchDog.getObserver().get().getProperties(service, port);
+        final Map prop = endpointProperties().get(service, port);
         if(!prop.isEmpty() && __log.isDebugEnabled()) {
             StringBuilder msg = new StringBuilder("Properties for ");
             if(service!=null) msg.append("service ").append(service);
@@ -488,39 +500,80 @@ public class ProcessConfImpl implements ProcessConf {
         return prop;
     }
 
-    private class PropertiesMutable implements WatchDog.Mutable<Map<File, Long>> {
-
-        public boolean exists() {
-            return true;
-        }
-
-        public boolean hasChangedSince(Map<File, Long> since) {
-            return !CollectionUtils.equals(lastModified(), since);
+    private EndpointProperties endpointProperties() {
+        EndpointProperties props = _endpointProperties;
+        if (props == null) {
+            synchronized (_endpointPropertiesLock) {
+                props = _endpointProperties;
+                if (props == null) {
+                    try {
+                        props = new EndpointProperties(collectEndpointConfigFiles());
+                    } catch (IOException e) {
+                        throw new ContextException("Integration-Layer Properties cannot be loaded!", e);
+                    }
+                    _endpointProperties = props;
+                }
+            }
         }
-
-        public Map<File, Long> lastModified() {
-            List<File> files = collectEndpointConfigFiles();
-            Map<File, Long> m = new HashMap<File, Long>(files.size() * 15 / 10);
-            for (File f : files) m.put(f, Long.valueOf(f.lastModified()));
-            return m;
+        return props;
+    }
+
+    /**
+     * Reloads the endpoint properties if an endpoint file was added, removed or modified since they
+     * were loaded. On failure the previous properties are kept.
+     *
+     * @param duFiles endpoint files of the deployment unit
+     * @param systemFiles endpoint files of the config directory
+     */
+    void refreshEndpointProperties(List<File> duFiles, List<File> systemFiles) {
+        synchronized (_endpointPropertiesLock) {
+            EndpointProperties current = _endpointProperties;
+            // never requested so far, the first request will load them
+            if (current == null) return;
+
+            List<File> files = collectEndpointConfigFiles(duFiles, systemFiles);
+            if (current._lastModified.equals(lastModified(files))) return;
+            try {
+                _endpointProperties = new EndpointProperties(files);
+                if (__log.isInfoEnabled()) __log.info("Endpoint properties of " + _pid + " reloaded.");
+            } catch (IOException e) {
+                __log.error("Endpoint properties of " + _pid + " cannot be reloaded, keeping the previous ones.", e);
+            }
         }
+    }
 
-        @Override
-        public String toString() {
-            return "Endpoint files for "+_du.toString();
-        }
+    private static Map<File, Long> lastModified(List<File> files) {
+        Map<File, Long> m = new HashMap<File, Long>(files.size() * 15 / 10);
+        for (File f : files) m.put(f, Long.valueOf(f.lastModified()));
+        return m;
     }
 
-    private class PropertiesObserver extends WatchDog.DefaultObserver<HierarchicalProperties> {
+    /**
+     * Endpoint properties as loaded from a set of files. The properties of each service/port are
+     * merged once and cached, so that the request path only does a map lookup.
+     */
+    private static class EndpointProperties {
+        final Map<File, Long> _lastModified;
+        private final HierarchicalProperties _properties;
+        private final ConcurrentMap<List<Object>, Map> _resolved = new ConcurrentHashMap<List<Object>, Map>();
 
-        public void init() {
-            try {
-                // do not hold a reference on the file list, so that changes are handled
-                // and always create a new instance of the HierarchicalProperties
-                object = new HierarchicalProperties(collectEndpointConfigFiles());
-            } catch (IOException e) {
-                throw new ContextException("Integration-Layer Properties cannot be loaded!", e);
+        EndpointProperties(List<File> files) throws IOException {
+            // take the timestamps first, so that a change during the load is caught by the next check
+            _lastModified = lastModified(files);
+            _properties = new HierarchicalProperties(files);
+        }
+
+        Map get(QName service, String port) {
+            List<Object> key = Arrays.<Object>asList(service, port);
+            Map props = _resolved.get(key);
+            if (props == null) {
+                // HierarchicalProperties caches its snapshots in a plain map
+                synchronized (_properties) {
+                    props = _properties.getProperties(service, port);
+                }
+                _resolved.putIfAbsent(key, props);
             }
+            return props;
         }
     }
 
@@ -532,6 +585,20 @@ public class ProcessConfImpl implements ProcessConf {
         return processCleanupConfImpl.getCleanupCategories(instanceSucceeded);
     }
 
+    private void initMexPersistence() {
+        if (!_pinfo.isSetMexPersistence()) return;
+        TMexPersistence mexPersistence = _pinfo.getMexPersistence();
+        _transientMex = mexPersistence.getTransient();
+        for (TMexPersistence.Operation operation : mexPersistence.getOperationArray()) {
+            _transientMexOperations.put(operation.getName(), operation.getTransient());
+        }
+    }
+
+    public boolean isTransientMessageExchange(String operation) {
+        Boolean t = _transientMexOperations.get(operation);
+        return t == null ? _transientMex : t;
+    }
+
     private void initSchedules() {
         for(TSchedule schedule : _pinfo.getScheduleArray()) {
             for(TCleanup cleanup : schedule.getCleanupArray()) {
@@ -101,6 +101,8 @@ public class ProcessStoreImpl implements ProcessStore {
      */
     private DataSource _inMemDs;
 
+    private final EndpointConfigMonitor _endpointConfigMonitor = new EndpointConfigMonitor(this);
+
     public ProcessStoreImpl() {
         this(null, null, "", new OdeConfigProperties(new Properties(), ""), true);
     }
@@ -126,6 +128,7 @@ public class ProcessStoreImpl implements ProcessStore {
             }
             _inMemDs = hsqlds;
         }
+        _endpointConfigMonitor.start();
     }
 
     /**
@@ -137,9 +140,11 @@ public class ProcessStoreImpl implements ProcessStore {
         //when in memory we always create the model as we are starting from scratch
         _cf = new org.apache.ode.store.jpa.DbConfStoreConnectionFactory(hsqlds, true, OdeConfigProperties.DEFAULT_TX_FACTORY_CLASS_NAME);
         _inMemDs = hsqlds;
+        _endpointConfigMonitor.start();
     }
 
     public void shutdown() {
+        _endpointConfigMonitor.stop();
         if (_inMemDs != null) {
             shutdownInternalDB(_inMemDs);
             _inMemDs = null;
@@ -577,6 +582,15 @@ public class ProcessStoreImpl implements ProcessStore {
         }
     }
 
+    List<ProcessConfImpl> getProcessConfs() {
+        _rw.readLock().lock();
+        try {
+            return new ArrayList<ProcessConfImpl>(_processes.values());
+        } finally {
+            _rw.readLock().unlock();
+        }
+    }
+
     public long getCurrentVersion() {
         long version = exec(new Callable<Long>() {
             public Long call(ConfStoreConnection conn) {
@@ -19,17 +19,29 @@
 package org.apache.ode.store;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.namespace.QName;
 
 import junit.framework.TestCase;
 
+import org.apache.ode.bpel.iapi.EndpointReference;
+import org.apache.ode.bpel.iapi.EndpointReferenceContext;
 import org.apache.ode.bpel.iapi.ProcessConf;
 import org.apache.ode.bpel.iapi.ProcessConf.CLEANUP_CATEGORY;
+import org.apache.ode.utils.fs.FileUtils;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 
 public class ProcessStoreTest extends TestCase {
 
@@ -108,4 +120,85 @@ public class ProcessStoreTest extends TestCase {
         assertNotNull(pconf.getCronJobs().get(0).getCronExpression());
         assertEquals(3, pconf.getCronJobs().get(0).getRunnableDetailList().size());
     }
+
+    public void testMexPersistence() {
+        Collection<QName> deployed = _ps.deploy(_testdd);
+        ProcessConf pconf = _ps.getProcessConfiguration(deployed.iterator().next());
+
+        assertTrue(pconf.isTransientMessageExchange("hello"));
+        assertFalse(pconf.isTransientMessageExchange("goodbye"));
+    }
+
+    public void testEndpointPropertiesReload() throws Exception {
+        File du = new File(System.getProperty("java.io.tmpdir"), "ode-store-test-" + System.currentTimeMillis());
+        assertTrue(du.mkdirs());
+        ProcessStoreImpl ps = new ProcessStoreImpl(new TestEprContext(), null);
+        try {
+            for (File f : _testdd.listFiles()) {
+                if (f.isFile()) copy(f, new File(du, f.getName()));
+            }
+            File endpoint = new File(du, "test.endpoint");
+            writeProperty(endpoint, "timeout=1000");
+
+            QName pname = ps.deploy(du).iterator().next();
+            ProcessConf pconf = ps.getProcessConfiguration(pname);
+            EndpointReference epr = new TestEpr();
+            assertEquals("1000", pconf.getEndpointProperties(epr).get("timeout"));
+
+            writeProperty(endpoint, "timeout=2000");
+            endpoint.setLastModified(endpoint.lastModified() + 10000);
+            // the request path keeps the loaded properties until the monitor sees the change
+            assertEquals("1000", pconf.getEndpointProperties(epr).get("timeout"));
+            new EndpointConfigMonitor(ps).check();
+            assertEquals("2000", pconf.getEndpointProperties(epr).get("timeout"));
+        } finally {
+            ps.shutdown();
+            FileUtils.deepDelete(du);
+        }
+    }
+
+    private static void writeProperty(File file, String property) throws Exception {
+        FileWriter w = new FileWriter(file);
+        try {
+            w.write(property + "\n");
+        } finally {
+            w.close();
+        }
+    }
+
+    private static void copy(File from, File to) throws Exception {
+        InputStream in = new FileInputStream(from);
+        try {
+            OutputStream out = new FileOutputStream(to);
+            try {
+                byte[] buf = new byte[4096];
+                int len;
+                while ((len = in.read(buf)) > 0) out.write(buf, 0, len);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static class TestEpr implements EndpointReference {
+        public Document toXML() {
+            return null;
+        }
+    }
+
+    private static class TestEprContext implements EndpointReferenceContext {
+        public EndpointReference resolveEndpointReference(Element epr) {
+            return null;
+        }
+
+        public EndpointReference convertEndpoint(QName targetType, Element sourceEndpoint) {
+            return null;
+        }
+
+        public Map getConfigLookup(EndpointReference epr) {
+            return Collections.EMPTY_MAP;
+        }
+    }
 }
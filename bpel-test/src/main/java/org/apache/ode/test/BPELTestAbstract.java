@@ -164,7 +164,7 @@ public abstract class BPELTestAbstract {
         _server.setMessageExchangeContext(mexContext);
         scheduler.setJobProcessor(_server);
         scheduler.setExecutorService(executorService);
-        store = new ProcessStoreImpl(null, _dataSource, "hib", new OdeConfigProperties(new Properties(), ""), true);
+        store = new ProcessStoreImpl(null, _dataSource, "hib", new OdeConfigProperties(props, ""), true);
         store.registerListener(new ProcessStoreListener() {
             public void onProcessStoreEvent(ProcessStoreEvent event) {
                 // bounce the process
@@ -51,6 +51,10 @@ public class StructuredActivities20Test extends BPELTestAbstract {
         // Test Flow with XPath10
         go("/bpel/2.0/TestForEach");
     }
+    @Test public void testParallelInvoke() throws Throwable {
+        // Invokes issued by the branches of a parallel forEach
+        go("/bpel/2.0/TestParallelInvoke");
+    }
     @Test public void testPickOneWay() throws Throwable {
         // Test Flow with XPath10
         go("/bpel/2.0/TestPickOneWay");
@@ -36,6 +36,12 @@ import org.hibernate.type.Type;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+/**
+ * Hi/lo identifier generator backed by a sequence when the dialect has them and by
+ * a table otherwise. Identifiers are handed out when an entity is saved, never by
+ * the insert itself, which lets Hibernate defer and batch inserts; don't fall back
+ * to an identity generator here.
+ */
 public class NativeHiLoGenerator implements IdentifierGenerator, PersistentIdentifierGenerator, Configurable {
     private static final Log __log = LogFactory.getLog(NativeHiLoGenerator.class);
     private IdentifierGenerator _proxy;
@@ -48,6 +54,10 @@ public class NativeHiLoGenerator implements IdentifierGenerator, PersistentIdent
         return _proxy.generate(session, object);
     }
 
+    IdentifierGenerator getDelegate() {
+        return _proxy;
+    }
+
     public Object generatorKey() {
         if (_proxy instanceof PersistentIdentifierGenerator)
             return ((PersistentIdentifierGenerator) _proxy).generatorKey();
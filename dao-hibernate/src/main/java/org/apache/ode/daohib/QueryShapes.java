@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.daohib;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.Query;
+
+/**
+ * Builds HQL for queries matching a column against a variable number of values
+ * so that they only come in a small, fixed set of shapes. Every distinct query
+ * string costs an HQL parse (Hibernate's query plan cache is bounded) and a new
+ * statement for the database, so IN-lists are padded to the next power of two
+ * and the extra parameters bound to a repeated value, which doesn't change the
+ * result.
+ */
+public final class QueryShapes {
+
+    /** IN-lists longer than this keep their exact arity and aren't cached. */
+    public static final int MAX_PADDED_ARITY = 64;
+
+    private static final ConcurrentMap<String, String> __shapes = new ConcurrentHashMap<String, String>();
+    private static final AtomicLong __built = new AtomicLong();
+
+    private QueryShapes() {
+    }
+
+    /**
+     * @return the number of parameters a query for the given number of values is built with
+     */
+    public static int arity(int values) {
+        if (values <= 1 || values > MAX_PADDED_ARITY) return values;
+        return Integer.highestOneBit(values - 1) << 1;
+    }
+
+    /**
+     * Appends to a query header a condition matching the path against the values
+     * bound to parameters prefix0 to prefixN. No values means no condition.
+     *
+     * @param header start of the query
+     * @param connector how the condition joins the header, " where " or " and "
+     * @param path the matched property
+     * @param prefix prefix of the named parameters
+     * @param values number of values that will be bound
+     */
+    public static String inCondition(String header, String connector, String path, String prefix, int values) {
+        int arity = arity(values);
+        if (arity > MAX_PADDED_ARITY) return build(header, connector, path, prefix, arity);
+
+        String key = new StringBuilder(header).append('\u0000').append(connector).append(path)
+                .append('\u0000').append(prefix).append(arity).toString();
+        String hql = __shapes.get(key);
+        if (hql == null) {
+            hql = build(header, connector, path, prefix, arity);
+            String existing = __shapes.putIfAbsent(key, hql);
+            if (existing != null) hql = existing;
+        }
+        return hql;
+    }
+
+    /**
+     * Binds the values of a query built by {@link #inCondition}, repeating the
+     * last one on the padding parameters.
+     */
+    public static void bindPadded(Query query, String prefix, List<?> values) {
+        int arity = arity(values.size());
+        for (int i = 0; i < arity; i++) {
+            query.setParameter(prefix + i, values.get(Math.min(i, values.size() - 1)));
+        }
+    }
+
+    /**
+     * @return the number of query strings built so far, i.e. of distinct shapes seen
+     */
+    public static long getShapesBuilt() {
+        return __built.get();
+    }
+
+    private static String build(String header, String connector, String path, String prefix, int arity) {
+        __built.incrementAndGet();
+        StringBuilder hql = new StringBuilder(header);
+        if (arity == 1) {
+            hql.append(connector).append(path).append(" = :").append(prefix).append('0');
+        } else if (arity > 1) {
+            hql.append(connector).append(path).append(" in(");
+            for (int i = 0; i < arity; i++) {
+                if (i > 0) hql.append(", ");
+                hql.append(':').append(prefix).append(i);
+            }
+            hql.append(')');
+        }
+        return hql.toString();
+    }
+}
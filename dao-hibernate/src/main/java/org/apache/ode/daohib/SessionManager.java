@@ -20,6 +20,7 @@ package org.apache.ode.daohib;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.ode.bpel.dao.ProcessMetadataCache;
 import org.apache.ode.daohib.bpel.hobj.*;
 import org.apache.ode.utils.uuid.UUID;
 import org.hibernate.HibernateException;
@@ -28,13 +29,18 @@ import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.cfg.Environment;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.PostInsertIdentifierGenerator;
 
 import javax.sql.DataSource;
 import javax.transaction.TransactionManager;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -60,6 +66,7 @@ public class SessionManager {
     private final TransactionManager _txManager;
     private final SessionFactory _sessionFactory;
     private boolean _canJoinForUpdate = true;
+    private final ProcessMetadataCache _metadataCache = new ProcessMetadataCache();
 
     /** Inaccessible constructor. */
     public SessionManager(Properties env, DataSource ds, TransactionManager tx) throws HibernateException {
@@ -87,6 +94,28 @@ public class SessionManager {
                 _canJoinForUpdate = false;
             }
         }
+
+        if (Integer.parseInt(env.getProperty(Environment.STATEMENT_BATCH_SIZE, "0")) > 0) {
+            List<String> unbatched = getUnbatchedEntities();
+            if (!unbatched.isEmpty()) {
+                __log.warn("Inserts of " + unbatched + " can't be batched, their identifiers are generated by the database.");
+            }
+        }
+    }
+
+    /**
+     * @return the entities whose inserts run one at a time even when JDBC batching is on,
+     * because their identifier is only known once the row is inserted
+     */
+    public List<String> getUnbatchedEntities() {
+        List<String> unbatched = new ArrayList<String>();
+        SessionFactoryImplementor sfi = (SessionFactoryImplementor) _sessionFactory;
+        for (Object name : _sessionFactory.getAllClassMetadata().keySet()) {
+            IdentifierGenerator generator = sfi.getEntityPersister((String) name).getIdentifierGenerator();
+            if (generator instanceof NativeHiLoGenerator) generator = ((NativeHiLoGenerator) generator).getDelegate();
+            if (generator instanceof PostInsertIdentifierGenerator) unbatched.add((String) name);
+        }
+        return unbatched;
     }
 
     TransactionManager getTransactionManager() {
@@ -97,6 +126,13 @@ public class SessionManager {
         _txManagers.put(uuid, txm);
     }
 
+    /**
+     * @return the keys of the process and correlator rows, shared by all the sessions
+     */
+    public ProcessMetadataCache getMetadataCache() {
+        return _metadataCache;
+    }
+
     /**
      * Get the current Hibernate Session.
      */
@@ -31,6 +31,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ode.bpel.dao.BpelDAOConnection;
 import org.apache.ode.bpel.dao.BpelDAOConnectionFactoryJDBC;
+import org.apache.ode.bpel.iapi.ProcessStoreEvent;
+import org.apache.ode.bpel.iapi.ProcessStoreListener;
 import org.apache.ode.daohib.DataSourceConnectionProvider;
 import org.apache.ode.daohib.HibernateTransactionManagerLookup;
 import org.apache.ode.daohib.SessionManager;
@@ -43,9 +45,14 @@ import org.hibernate.dialect.resolver.DialectFactory;
  * Hibernate-based {@link org.apache.ode.bpel.dao.BpelDAOConnectionFactory}
  * implementation.
  */
-public class BpelDAOConnectionFactoryImpl implements BpelDAOConnectionFactoryJDBC {
+public class BpelDAOConnectionFactoryImpl implements BpelDAOConnectionFactoryJDBC, ProcessStoreListener {
     private static final Log __log = LogFactory.getLog(BpelDAOConnectionFactoryImpl.class);
 
+    /** Set to false to turn off JDBC batching and ordered inserts/updates. */
+    public static final String PROP_BATCHING = "ode.hibernate.batching";
+
+    static final String DEFAULT_BATCH_SIZE = "50";
+
     protected SessionManager _sessionManager;
 
     private DataSource _ds;
@@ -108,6 +115,17 @@ public class BpelDAOConnectionFactoryImpl implements BpelDAOConnectionFactoryJDB
         String level = System.getProperty("ode.connection.isolation", "2");
         properties.put(Environment.ISOLATION, level);
 
+        // A transaction typically inserts scopes, variables, correlation sets, events and
+        // exchanges; ordering them by entity lets each type go in a single JDBC batch. Ids come
+        // from a hi/lo generator, so inserts can be deferred until flush. Explicit Hibernate
+        // settings win over these defaults. Batching of versioned updates is left to the
+        // dialect, as some drivers don't return reliable row counts for batches.
+        if (Boolean.valueOf(properties.getProperty(PROP_BATCHING, "true"))) {
+            setDefault(properties, Environment.STATEMENT_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+            setDefault(properties, Environment.ORDER_INSERTS, "true");
+            setDefault(properties, Environment.ORDER_UPDATES, "true");
+        }
+
         if (__log.isDebugEnabled()) {
             Enumeration<?> names = properties.propertyNames();
             __log.debug("Properties passed to Hibernate:");
@@ -119,6 +137,10 @@ public class BpelDAOConnectionFactoryImpl implements BpelDAOConnectionFactoryJDB
         _sessionManager = createSessionManager(properties, _ds, _tm);
     }
 
+    private static void setDefault(Properties properties, String key, String value) {
+        if (!properties.containsKey(key)) properties.put(key, value);
+    }
+
     protected SessionManager createSessionManager(Properties properties, DataSource ds, TransactionManager tm) {
         return new SessionManager(properties, ds, tm);
     }
@@ -129,6 +151,13 @@ public class BpelDAOConnectionFactoryImpl implements BpelDAOConnectionFactoryJDB
     	_sessionManager.shutdown();
     }
 
+    /**
+     * Drops the cached metadata of deployed and undeployed processes.
+     */
+    public void onProcessStoreEvent(ProcessStoreEvent event) {
+        if (_sessionManager != null) _sessionManager.getMetadataCache().onProcessStoreEvent(event);
+    }
+
     public void setDataSource(DataSource ds) {
         _ds = ds;
     }
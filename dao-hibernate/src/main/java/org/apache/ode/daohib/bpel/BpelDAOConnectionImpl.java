@@ -46,9 +46,11 @@ import org.apache.ode.bpel.dao.MessageExchangeDAO;
 import org.apache.ode.bpel.dao.ProcessDAO;
 import org.apache.ode.bpel.dao.ProcessInstanceDAO;
 import org.apache.ode.bpel.dao.ProcessManagementDAO;
+import org.apache.ode.bpel.dao.ProcessMetadataCache;
 import org.apache.ode.bpel.dao.ScopeDAO;
 import org.apache.ode.bpel.evt.BpelEvent;
 import org.apache.ode.bpel.evt.ScopeEvent;
+import org.apache.ode.bpel.iapi.OdeGlobalConfig;
 import org.apache.ode.bpel.iapi.ProcessConf.CLEANUP_CATEGORY;
 import org.apache.ode.daohib.SessionManager;
 import org.apache.ode.daohib.bpel.hobj.HBpelEvent;
@@ -58,16 +60,16 @@ import org.apache.ode.daohib.bpel.hobj.HProcess;
 import org.apache.ode.daohib.bpel.hobj.HProcessInstance;
 import org.apache.ode.daohib.bpel.hobj.HScope;
 import org.apache.ode.daohib.bpel.ql.HibernateInstancesQueryCompiler;
+import org.apache.ode.ql.Compiler;
+import org.apache.ode.ql.QueryPlanCache;
 import org.apache.ode.ql.eval.skel.CommandEvaluator;
-import org.apache.ode.ql.tree.Builder;
-import org.apache.ode.ql.tree.BuilderFactory;
-import org.apache.ode.ql.tree.nodes.Query;
 import org.apache.ode.utils.SerializableUtils;
 import org.apache.ode.utils.stl.CollectionsX;
 import org.apache.ode.utils.stl.UnaryFunctionEx;
 import org.hibernate.Criteria;
 import org.hibernate.FetchMode;
 import org.hibernate.HibernateException;
+import org.hibernate.ReplicationMode;
 import org.hibernate.Session;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Expression;
@@ -79,6 +81,14 @@ import org.hibernate.criterion.Projections;
 public class BpelDAOConnectionImpl implements BpelDAOConnection, FilteredInstanceDeletable {
     private static final Log __log = LogFactory.getLog(BpelDAOConnectionImpl.class);
 
+    /** Compiled instance queries, shared by all connections as the compiled plans hold no session state. */
+    private static final QueryPlanCache<List, Session> __queryPlans =
+        new QueryPlanCache<List, Session>(OdeGlobalConfig.queryPlanCacheSize()) {
+            protected Compiler<List, Session> createCompiler() {
+                return new HibernateInstancesQueryCompiler(OdeGlobalConfig.queryFetchSize());
+            }
+        };
+
     public SessionManager _sm;
 
     public BpelDAOConnectionImpl(SessionManager sm) {
@@ -97,6 +107,16 @@ public class BpelDAOConnectionImpl implements BpelDAOConnection, FilteredInstanc
         return new MessageExchangeDaoImpl(_sm, mex);
     }
 
+    public MessageExchangeDAO createMessageExchange(String mexId, char dir) {
+        HMessageExchange mex = new HMessageExchange();
+        mex.setId(new Long(mexId));
+        mex.setDirection(dir);
+        mex.setInsertTime(new Date(System.currentTimeMillis()));
+        // save() would generate a new id, replicate() keeps ours
+        getSession().replicate(mex, ReplicationMode.EXCEPTION);
+        return new MessageExchangeDaoImpl(_sm, mex);
+    }
+
     public MessageExchangeDAO getMessageExchange(String mexid) {
         HMessageExchange mex = (HMessageExchange) getSession().get(HMessageExchange.class, new Long(mexid));
         return mex == null ? null : new MessageExchangeDaoImpl(_sm, mex);
@@ -123,11 +143,23 @@ public class BpelDAOConnectionImpl implements BpelDAOConnection, FilteredInstanc
 
     public ProcessDAO getProcess(QName processId) {
         try {
+            ProcessMetadataCache cache = _sm.getMetadataCache();
+            Long id = cache.getProcessId(processId);
+            if (id != null) {
+                HProcess hprocess = (HProcess) getSession().get(HProcess.class, id);
+                if (hprocess != null && processId.toString().equals(hprocess.getProcessId()))
+                    return new ProcessDaoImpl(_sm, hprocess);
+                cache.invalidate(processId);
+            }
+
+            long generation = cache.generation();
             Criteria criteria = getSession().createCriteria(HProcess.class);
             criteria.add(Expression.eq("processId", processId.toString()));
             // For the moment we are expecting only one result.
             HProcess hprocess = (HProcess) criteria.uniqueResult();
-            return hprocess == null ? null : new ProcessDaoImpl(_sm, hprocess);
+            if (hprocess == null) return null;
+            cache.putProcessId(processId, hprocess.getId(), generation);
+            return new ProcessDaoImpl(_sm, hprocess);
         } catch (HibernateException e) {
             __log.error("DbError", e);
             throw e;
@@ -286,17 +318,12 @@ public class BpelDAOConnectionImpl implements BpelDAOConnection, FilteredInstanc
      */
     @SuppressWarnings("unchecked")
     public Collection<ProcessInstanceDAO> instanceQuery(String expression) {
-        Builder<String> builder = BuilderFactory.getInstance().createBuilder();
-        final org.apache.ode.ql.tree.nodes.Node rootNode = builder.build(expression);
-
-        HibernateInstancesQueryCompiler compiler = new HibernateInstancesQueryCompiler();
-
-        CommandEvaluator<List, Session> eval = compiler.compile((Query) rootNode);
+        CommandEvaluator<List, Session> eval = __queryPlans.getPlan(expression);
         List<HProcessInstance> instancesList = (List<HProcessInstance>) eval.evaluate(getSession());
 
         Collection<ProcessInstanceDAO> result = new ArrayList<ProcessInstanceDAO>(instancesList.size());
         for (HProcessInstance instance : instancesList) {
-            result.add(getInstance(instance.getId()));
+            result.add(new ProcessInstanceDaoImpl(_sm, instance));
         }
         return result;
     }
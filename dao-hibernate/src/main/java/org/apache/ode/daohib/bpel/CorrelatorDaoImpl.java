@@ -25,7 +25,9 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.ode.bpel.common.CorrelationKey;
 import org.apache.ode.bpel.common.CorrelationKeySet;
 import org.apache.ode.bpel.dao.*;
+import org.apache.ode.bpel.iapi.OdeGlobalConfig;
 import org.apache.ode.bpel.iapi.Scheduler;
+import org.apache.ode.daohib.QueryShapes;
 import org.apache.ode.daohib.SessionManager;
 import org.apache.ode.daohib.bpel.hobj.HCorrelator;
 import org.apache.ode.daohib.bpel.hobj.HCorrelatorMessage;
@@ -74,12 +76,11 @@ class CorrelatorDaoImpl extends HibernateDao implements CorrelatorDAO {
         String hdr = "dequeueMessage(" + keySet + "): ";
         __log.debug(hdr);
 
-        List<CorrelationKeySet> subSets = keySet.findSubSets();
+        Set<String> keys = canonicalKeys(keySet);
+        List<Long> hashes = canonicalHashes(keys);
         Query qry = getSession().createFilter(_hobj.getMessageCorrelations(),
-                generateUnmatchedQuery(subSets));
-        for( int i = 0; i < subSets.size(); i++ ) {
-            qry.setString("s" + i, subSets.get(i).toCanonicalString());
-        }
+                QueryShapes.inCondition("", " where ", "this.correlationKeyHash", "s", hashes.size()));
+        QueryShapes.bindPadded(qry, "s", hashes);
 
         // We really should consider the possibility of multiple messages matching a criteria.
         // When the message is handled, its not too convenient to attempt to determine if the
@@ -91,15 +92,16 @@ class CorrelatorDaoImpl extends HibernateDao implements CorrelatorDAO {
             throw new Scheduler.JobProcessorException(e, true);
         }
         try {
-            if (!mcors.hasNext()) {
-                if (__log.isDebugEnabled())
-                    __log.debug(hdr + "did not find a MESSAGE entry.");
-            } else {
+            while (mex == null && mcors.hasNext()) {
                 HCorrelatorMessage mcor = (HCorrelatorMessage) mcors.next();
+                // the hash only narrows down the candidates
+                if (!keys.contains(mcor.getCorrelationKey())) continue;
                 if (__log.isDebugEnabled())
                     __log.debug(hdr + "found MESSAGE entry " + mcor.getMessageExchange());
                 mex = new MessageExchangeDaoImpl(_sm, mcor.getMessageExchange());
             }
+            if (mex == null && __log.isDebugEnabled())
+                __log.debug(hdr + "did not find a MESSAGE entry.");
         } finally {
             Hibernate.close(mcors);
         }
@@ -116,15 +118,14 @@ class CorrelatorDaoImpl extends HibernateDao implements CorrelatorDAO {
         if (__log.isDebugEnabled()) __log.debug(hdr);
 
         String processType = new QName(_hobj.getProcess().getTypeNamespace(), _hobj.getProcess().getTypeName()).toString();
-        List<CorrelationKeySet> subSets = keySet.findSubSets();
+        Set<String> keys = canonicalKeys(keySet);
+        List<Long> hashes = canonicalHashes(keys);
 
-        Query q = getSession().createQuery(generateSelectorQuery(_sm.canJoinForUpdate() ? FLTR_SELECTORS : FLTR_SELECTORS_SUBQUERY, subSets));
+        Query q = getSession().createQuery(QueryShapes.inCondition(_sm.canJoinForUpdate() ? FLTR_SELECTORS : FLTR_SELECTORS_SUBQUERY,
+                " and ", "hs.correlationKeyHash", "s", hashes.size()));
         q.setString("processType", processType);
         q.setString("correlatorId", _hobj.getCorrelatorId());
-
-        for( int i = 0; i < subSets.size(); i++ ) {
-            q.setString("s" + i, subSets.get(i).toCanonicalString());
-        }
+        QueryShapes.bindPadded(q, "s", hashes);
         // Make sure we obtain a lock for the selector we want to find.
         q.setLockMode("hs", LockMode.UPGRADE);
 
@@ -136,7 +137,7 @@ class CorrelatorDaoImpl extends HibernateDao implements CorrelatorDAO {
             throw new Scheduler.JobProcessorException(e, true);
         }
         for (HCorrelatorSelector selector : list) {
-            if (selector != null) {
+            if (selector != null && keys.contains(selector.getCorrelationKey())) {
                 boolean isRoutePolicyOne = selector.getRoute() == null || "one".equals(selector.getRoute());
                 if ("all".equals(selector.getRoute()) ||
                         (isRoutePolicyOne && !targets.contains(selector.getInstance()))) {
@@ -151,42 +152,24 @@ class CorrelatorDaoImpl extends HibernateDao implements CorrelatorDAO {
         return routes;
     }
 
-    private String generateUnmatchedQuery(List<CorrelationKeySet> subSets) {
-        StringBuffer filterQuery = new StringBuffer();
-
-        if( subSets.size() == 1 ) {
-            filterQuery.append(" where this.correlationKey = :s0");
-        } else if( subSets.size() > 1 ) {
-            filterQuery.append(" where this.correlationKey in(");
-            for( int i = 0; i < subSets.size(); i++ ) {
-                if( i > 0 ) {
-                    filterQuery.append(", ");
-                }
-                filterQuery.append(":s").append(i);
-            }
-            filterQuery.append(")");
+    /**
+     * Canonical forms of the subsets a key set is stored or looked up under.
+     */
+    private static Set<String> canonicalKeys(CorrelationKeySet keySet) {
+        Set<String> keys = new LinkedHashSet<String>();
+        for (CorrelationKeySet subSet : keySet.findSubSets(OdeGlobalConfig.correlationMaxSubSetSize())) {
+            keys.add(subSet.toCanonicalString());
         }
-
-        return filterQuery.toString();
+        return keys;
     }
 
-    private String generateSelectorQuery(String header, List<CorrelationKeySet> subSets) {
-        StringBuffer filterQuery = new StringBuffer(header);
-
-        if( subSets.size() == 1 ) {
-            filterQuery.append(" and hs.correlationKey = :s0");
-        } else if( subSets.size() > 1 ) {
-            filterQuery.append(" and hs.correlationKey in(");
-            for( int i = 0; i < subSets.size(); i++ ) {
-                if( i > 0 ) {
-                    filterQuery.append(", ");
-                }
-                filterQuery.append(":s").append(i);
-            }
-            filterQuery.append(")");
+    private static List<Long> canonicalHashes(Set<String> keys) {
+        List<Long> hashes = new ArrayList<Long>(keys.size());
+        for (String key : keys) {
+            Long hash = CorrelationKeySet.canonicalHash(key);
+            if (!hashes.contains(hash)) hashes.add(hash);
         }
-
-        return filterQuery.toString();
+        return hashes;
     }
 
     public void enqueueMessage(MessageExchangeDAO mex, CorrelationKeySet correlationKeySet) {
@@ -197,12 +180,13 @@ class CorrelatorDaoImpl extends HibernateDao implements CorrelatorDAO {
         if (__log.isDebugEnabled())
             __log.debug(hdr);
 
-        for( CorrelationKeySet aSubSet : correlationKeySet.findSubSets() ) {
+        for( String key : canonicalKeys(correlationKeySet) ) {
             HCorrelatorMessage mcor = new HCorrelatorMessage();
             mcor.setCorrelator(_hobj);
             mcor.setCreated(new Date());
             mcor.setMessageExchange((HMessageExchange) ((MessageExchangeDaoImpl) mex)._hobj);
-            mcor.setCorrelationKey(aSubSet.toCanonicalString());
+            mcor.setCorrelationKey(key);
+            mcor.setCorrelationKeyHash(CorrelationKeySet.canonicalHash(key));
             getSession().save(mcor);
 
             if (__log.isDebugEnabled())
@@ -221,7 +205,9 @@ class CorrelatorDaoImpl extends HibernateDao implements CorrelatorDAO {
         hsel.setGroupId(routeGroupId);
         hsel.setIndex(idx);
         hsel.setLock(0);
-        hsel.setCorrelationKey(correlationKeySet.toCanonicalString());
+        String key = correlationKeySet.toCanonicalString();
+        hsel.setCorrelationKey(key);
+        hsel.setCorrelationKeyHash(CorrelationKeySet.canonicalHash(key));
         hsel.setInstance((HProcessInstance) ((ProcessInstanceDaoImpl) target).getHibernateObj());
         hsel.setProcessType(target.getProcess().getType().toString());
         hsel.setCorrelator(_hobj);
@@ -241,7 +227,9 @@ class CorrelatorDaoImpl extends HibernateDao implements CorrelatorDAO {
         entering("CorrelatorDaoImpl.checkRoute");
         Query q = getSession().getNamedQuery(HCorrelatorSelector.SELECT_MESSAGE_ROUTE);
         q.setEntity("corr",_hobj);
-        q.setString("ckey", correlationKeySet.toCanonicalString());
+        String key = correlationKeySet.toCanonicalString();
+        q.setLong("ckeyHash", CorrelationKeySet.canonicalHash(key));
+        q.setString("ckey", key);
         q.setReadOnly(true);
         return q.list().isEmpty();
     }
@@ -21,6 +21,7 @@ package org.apache.ode.daohib.bpel;
 
 import org.apache.ode.bpel.dao.CorrelatorMessageDAO;
 import org.apache.ode.bpel.common.CorrelationKey;
+import org.apache.ode.bpel.common.CorrelationKeySet;
 import org.apache.ode.daohib.bpel.hobj.HCorrelatorMessage;
 import org.apache.ode.daohib.SessionManager;
 
@@ -39,6 +40,19 @@ public class CorrelatorMessageDaoImpl extends HibernateDao implements Correlator
     }
 
     public void setCorrelationKey(CorrelationKey ckey) {
-        _hobj.setCorrelationKey(ckey.toCanonicalString());
+        setCorrelationKey(ckey.toCanonicalString());
+    }
+
+    public CorrelationKeySet getCorrelationKeySet() {
+        return new CorrelationKeySet(_hobj.getCorrelationKey());
+    }
+
+    public void setCorrelationKeySet(CorrelationKeySet keySet) {
+        setCorrelationKey(keySet.toCanonicalString());
+    }
+
+    private void setCorrelationKey(String key) {
+        _hobj.setCorrelationKey(key);
+        _hobj.setCorrelationKeyHash(CorrelationKeySet.canonicalHash(key));
     }
 }
@@ -316,12 +316,12 @@ public class MessageExchangeDaoImpl extends HibernateDao implements
 
     public String getProperty(String key) {
         entering("MessageExchangeDaoImpl.getProperty");
-        return _hself.getProperties().get(key);
+        return _hself.readProperties().get(key);
     }
 
     public void setProperty(String key, String value) {
         entering("MessageExchangeDaoImpl.setProperty");
-        _hself.getProperties().put(key, value);
+        _hself.writeProperty(key, value);
         update();
     }
 
@@ -338,7 +338,7 @@ public class MessageExchangeDaoImpl extends HibernateDao implements
 
     public Set<String> getPropertyNames() {
         entering("MessageExchangeDaoImpl.getPropertyNames");
-        return Collections.unmodifiableSet(_hself.getProperties().keySet());
+        return Collections.unmodifiableSet(_hself.readProperties().keySet());
     }
 
     public String getPipedMessageExchangeId() {
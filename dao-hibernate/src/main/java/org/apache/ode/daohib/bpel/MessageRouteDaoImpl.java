@@ -81,13 +81,18 @@ class MessageRouteDaoImpl extends HibernateDao implements MessageRouteDAO {
     }
 
     public void setCorrelationKeySet(CorrelationKeySet keySet) {
-        _selector.setCorrelationKey(keySet.toCanonicalString());
+        setCorrelationKey(keySet.toCanonicalString());
     }
 
     public void setCorrelationKey(CorrelationKey key) {
-         _selector.setCorrelationKey(key.toCanonicalString());
+         setCorrelationKey(key.toCanonicalString());
      }
 
+    private void setCorrelationKey(String key) {
+        _selector.setCorrelationKey(key);
+        _selector.setCorrelationKeyHash(CorrelationKeySet.canonicalHash(key));
+    }
+
      public CorrelationKey getCorrelationKey() {
          return new CorrelationKey(_selector.getCorrelationKey());
      }
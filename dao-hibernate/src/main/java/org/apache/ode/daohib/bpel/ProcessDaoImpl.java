@@ -35,6 +35,7 @@ import org.apache.ode.bpel.dao.CorrelatorDAO;
 import org.apache.ode.bpel.dao.DeferredProcessInstanceCleanable;
 import org.apache.ode.bpel.dao.ProcessDAO;
 import org.apache.ode.bpel.dao.ProcessInstanceDAO;
+import org.apache.ode.bpel.dao.ProcessMetadataCache;
 import org.apache.ode.bpel.iapi.ProcessConf.CLEANUP_CATEGORY;
 import org.apache.ode.daohib.SessionManager;
 import org.apache.ode.daohib.bpel.hobj.HActivityRecovery;
@@ -97,6 +98,20 @@ public class ProcessDaoImpl extends HibernateDao implements ProcessDAO, Deferred
     @SuppressWarnings("unchecked")
     public CorrelatorDAO getCorrelator(String  corrId) {
         entering("ProcessDaoImpl.getCorrelator");
+        ProcessMetadataCache cache = _sm.getMetadataCache();
+        QName pid = _process.getProcessId() == null ? null : getProcessId();
+        if (pid != null) {
+            Long id = cache.getCorrelatorId(pid, _process.getId(), corrId);
+            if (id != null) {
+                HCorrelator hcorrelator = (HCorrelator) getSession().get(HCorrelator.class, id);
+                if (hcorrelator != null && corrId.equals(hcorrelator.getCorrelatorId())
+                        && _process.getId().equals(hcorrelator.getProcess().getId()))
+                    return new CorrelatorDaoImpl(_sm, hcorrelator);
+                cache.invalidate(pid);
+            }
+        }
+
+        long generation = cache.generation();
         Iterator results;
         Query q = getSession().createFilter(_process.getCorrelators(),
                 QRY_CORRELATOR);
@@ -107,7 +122,9 @@ public class ProcessDaoImpl extends HibernateDao implements ProcessDAO, Deferred
             throw new IllegalArgumentException(msg);
         }
         try {
-            return new CorrelatorDaoImpl(_sm, (HCorrelator)results.next());
+            HCorrelator hcorrelator = (HCorrelator) results.next();
+            if (pid != null) cache.putCorrelatorId(pid, _process.getId(), corrId, hcorrelator.getId(), generation);
+            return new CorrelatorDaoImpl(_sm, hcorrelator);
         } finally {
             Hibernate.close(results);
         }
@@ -159,6 +176,7 @@ public class ProcessDaoImpl extends HibernateDao implements ProcessDAO, Deferred
 
         // delete process dao
   //      deleteByIds(HCorrelator.class, getSession().getNamedQuery(HCorrelator.SELECT_CORRELATOR_IDS_BY_PROCESS).setParameter("process", _process).list());
+        _sm.getMetadataCache().invalidate(getProcessId());
         try {
             getSession().refresh(_process);
             getSession().delete(_process); // this deletes HCorrelator -> HCorrelatorSelector
@@ -162,6 +162,23 @@ public class ProcessInstanceDaoImpl extends HibernateDao implements ProcessInsta
     getSession().update(_instance);
   }
 
+  /**
+   * @see org.apache.ode.bpel.dao.ProcessInstanceDAO#getExecutionStateDelta()
+   */
+  public byte[] getExecutionStateDelta() {
+        entering("ProcessInstanceDaoImpl.getExecutionStateDelta");
+    return _instance.getJacobStateDelta();
+  }
+
+  /**
+   * @see org.apache.ode.bpel.dao.ProcessInstanceDAO#setExecutionStateDelta(byte[])
+   */
+  public void setExecutionStateDelta(byte[] delta) {
+        entering("ProcessInstanceDaoImpl.setExecutionStateDelta");
+    _instance.setJacobStateDelta(delta);
+    getSession().update(_instance);
+  }
+
   /**
    * @see org.apache.ode.bpel.dao.ProcessInstanceDAO#getProcess()
    */
@@ -361,6 +378,9 @@ public class ProcessInstanceDaoImpl extends HibernateDao implements ProcessInsta
     if( _instance.getJacobState() != null ) {
         _instance.setJacobState(null);
     }
+    if( _instance.getJacobStateDelta() != null ) {
+        _instance.setJacobStateDelta(null);
+    }
 
     HProcessInstance[] instances = new HProcessInstance[] {_instance};
 
@@ -56,12 +56,12 @@ public class ScopeDaoImpl extends HibernateDao implements ScopeDAO {
     private static final String QRY_VARIABLE = "from " + HXmlData.class.getName() +
             " as x where x.name = ? and x.scope.id = ?";
 
-    private static final String QRY_CSET = "from " + HCorrelationSet.class.getName() +
-            " as c where c.name = ? and c.scope.id = ?";
-
     private static final String QRY_SCOPE_EPR = "from " + HPartnerLink.class.getName() +
             " as e where e.modelId = ? and e.scope = ?";
 
+    private static final String QRY_CHILD_SCOPES = "from " + HScope.class.getName() +
+            " as x where x.parentScope=?";
+
     private HScope _scope;
 
     private HashMap<String,XmlDataDAO> _variables = new HashMap<String,XmlDataDAO>();
@@ -77,20 +77,15 @@ public class ScopeDaoImpl extends HibernateDao implements ScopeDAO {
      */
     public CorrelationSetDAO getCorrelationSet(String corrSetName) {
         entering("ScopeDaoImpl.getCorrelationSet");
-        Query qry = getSession().createQuery(QRY_CSET);
-        qry.setString(0,corrSetName);
-        qry.setLong(1,_scope.getId());
-        HCorrelationSet cs;
-        List res = qry.list();
-
-        if(res.size() == 0){
-            // if it doesn't exist, we make it
-            cs = new HCorrelationSet(_scope, corrSetName);
-//            _scope.addCorrelationSet(cs);
-            getSession().save(cs);
-        } else {
-            cs = (HCorrelationSet)res.get(0);
+        // Walking the collection rather than querying doesn't flush the session, which
+        // would cut the JDBC batches of the transaction short.
+        for (HCorrelationSet cs : _scope.getCorrelationSets()) {
+            if (cs.getName().equals(corrSetName)) return new CorrelationSetDaoImpl(_sm, cs);
         }
+        // if it doesn't exist, we make it
+        HCorrelationSet cs = new HCorrelationSet(_scope, corrSetName);
+        getSession().save(cs);
+        _scope.getCorrelationSets().add(cs);
         return new CorrelationSetDaoImpl(_sm, cs);
     }
     /**
@@ -221,7 +216,7 @@ public class ScopeDaoImpl extends HibernateDao implements ScopeDAO {
     @SuppressWarnings("unchecked")
     public Collection<ScopeDAO> getChildScopes() {
         entering("ScopeDaoImpl.getChildScopes");
-        Query q = getSession().createQuery("from " + HScope.class.getName() + " as x where x.parentScope=?");
+        Query q = getSession().createQuery(QRY_CHILD_SCOPES);
         q.setEntity(0, _scope);
         Collection<HScope> hscopes = q.list();
         return CollectionsX.transform(new LinkedList<ScopeDAO>(), hscopes, new UnaryFunction<HScope,ScopeDAO>() {
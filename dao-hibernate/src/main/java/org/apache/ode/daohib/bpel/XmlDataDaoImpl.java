@@ -96,7 +96,7 @@ public class XmlDataDaoImpl extends HibernateDao implements XmlDataDAO {
             }
         } else if (val instanceof Element) {
             _data.setSimpleType(false);
-            _data.setData(DOMUtils.domToString(_node).getBytes());
+            _data.setData(DOMUtils.domToBytes(_node));
             _data.setSimpleValue(null);
         } else {
             _data.setSimpleType(true);
@@ -176,9 +176,8 @@ public class XmlDataDaoImpl extends HibernateDao implements XmlDataDAO {
         } else {
             if(_data.getData() == null || _data.getData().length == 0)
                 return null;
-            String data = new String(_data.getData());
             try{
-                return DOMUtils.stringToDOM(data);
+                return DOMUtils.stringToDOM(_data.getData());
             }catch(Exception e){
                 throw new RuntimeException(e);
             }
@@ -33,6 +33,7 @@ public class HCorrelatorMessage extends HObject {
     private HMessageExchange _messageExchange;
     private HCorrelator _correlator;
     private String _correlationKey;
+    private Long _correlationKeyHash;
 
     /**
      * @hibernate.many-to-one column="MEX" foreign-key="none"
@@ -65,6 +66,21 @@ public class HCorrelatorMessage extends HObject {
         _correlationKey = correlationKey;
     }
 
+    /**
+     * Hash of the correlation key, see {@link org.apache.ode.bpel.common.CorrelationKeySet#canonicalHash(String)}.
+     *
+     * @hibernate.property column="CORRELATION_KEY_HASH"
+     * @hibernate.column name="CORRELATION_KEY_HASH"
+     *                   index="IDX_UNMATCHED_CKEY_HASH"
+     */
+    public Long getCorrelationKeyHash() {
+        return _correlationKeyHash;
+    }
+
+    public void setCorrelationKeyHash(Long correlationKeyHash) {
+        _correlationKeyHash = correlationKeyHash;
+    }
+
     /**
      * @hibernate.many-to-one foreign-key="none"
      * @hibernate.column name="CORRELATOR" index="IDX_UNMATCHED_CORRELATOR" not-null="true"
@@ -19,6 +19,11 @@
 package org.apache.ode.daohib.bpel.hobj;
 
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -78,8 +83,15 @@ public class HMessageExchange extends HObject {
 
     private int _subscriberCount;
 
+    /** Legacy properties, kept in BPEL_MEX_PROPS rows before they moved to {@link #_propertiesData}. */
     private Map<String, String> _properties = new HashMap<String, String>();
 
+    /** Serialized properties, an empty map for new exchanges and null for exchanges still using the legacy rows. */
+    private byte[] _propertiesData = encodeProperties(new HashMap<String, String>());
+
+    /** Properties decoded from {@link #_propertiesData}, not persistent. */
+    private transient Map<String, String> _decodedProperties;
+
     /**
      *
      */
@@ -309,6 +321,8 @@ public class HMessageExchange extends HObject {
     }
 
     /**
+     * Legacy properties, use {@link #readProperties()} and {@link #writeProperty(String, String)}.
+     *
      * @hibernate.map name="properties" table="BPEL_MEX_PROPS" lazy="true" cascade="delete"
      * @hibernate.collection-key name="mex" column="MEX" foreign-key="none"
      * @hibernate.collection-index column="NAME" type="string"
@@ -322,6 +336,113 @@ public class HMessageExchange extends HObject {
         _properties = props;
     }
 
+    /**
+     * Stored as is, the map is a few dozen bytes that compression wouldn't shrink.
+     *
+     * @hibernate.property type="binary"
+     *
+     * @hibernate.column name="PROPERTIES" sql-type="blob(2G)"
+     */
+    public byte[] getPropertiesData() {
+        return _propertiesData;
+    }
+
+    public void setPropertiesData(byte[] propertiesData) {
+        _propertiesData = propertiesData;
+        _decodedProperties = null;
+    }
+
+    /**
+     * @return the properties of the exchange, must not be modified
+     */
+    public Map<String, String> readProperties() {
+        if (_decodedProperties == null) {
+            if (_propertiesData == null) {
+                // exchange created before the properties moved to a column, they get moved on the next write
+                _decodedProperties = new HashMap<String, String>(_properties);
+            } else {
+                _decodedProperties = decodeProperties(_propertiesData);
+            }
+        }
+        return _decodedProperties;
+    }
+
+    /**
+     * Sets a property. Only the serialized column gets dirty, so however many properties are
+     * set the exchange is written once, when the session gets flushed.
+     */
+    public void writeProperty(String key, String value) {
+        Map<String, String> props = readProperties();
+        props.put(key, value);
+        if (_propertiesData == null && !_properties.isEmpty()) {
+            // deletes the legacy rows
+            _properties.clear();
+        }
+        _propertiesData = encodeProperties(props);
+    }
+
+    static byte[] encodeProperties(Map<String, String> props) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(16 + props.size() * 32);
+        DataOutputStream out = new DataOutputStream(bos);
+        try {
+            out.writeInt(props.size());
+            for (Map.Entry<String, String> e : props.entrySet()) {
+                writeString(out, e.getKey());
+                writeString(out, e.getValue());
+            }
+            out.close();
+        } catch (IOException e) {
+            // can't happen with a byte array
+            throw new RuntimeException(e);
+        }
+        return bos.toByteArray();
+    }
+
+    static Map<String, String> decodeProperties(byte[] data) {
+        if (isGZipped(data)) {
+            // written while the column went through GZipDataType
+            data = GZipDataType.gunzip(new ByteArrayInputStream(data, GZipDataType.GZIP_PREFIX.length,
+                    data.length - GZipDataType.GZIP_PREFIX.length));
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        try {
+            int size = in.readInt();
+            Map<String, String> props = new HashMap<String, String>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                props.put(readString(in), readString(in));
+            }
+            return props;
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt message exchange properties.", e);
+        }
+    }
+
+    private static boolean isGZipped(byte[] data) {
+        if (data.length < GZipDataType.GZIP_PREFIX.length) return false;
+        for (int i = 0; i < GZipDataType.GZIP_PREFIX.length; i++) {
+            if (data[i] != GZipDataType.GZIP_PREFIX[i]) return false;
+        }
+        return true;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
     public void setPartnerLink(HPartnerLink link) {
         _partnerLink = link;
     }
@@ -63,6 +63,8 @@ public class HProcessInstance extends HObject {
 
     private byte[] _jacobState;
 
+    private byte[] _jacobStateDelta;
+
     private short _previousState;
 
     private short _state;
@@ -119,6 +121,19 @@ public class HProcessInstance extends HObject {
         _jacobState = jacobState;
     }
 
+    /**
+     * @hibernate.property type="org.apache.ode.daohib.bpel.hobj.GZipDataType"
+     *
+     * @hibernate.column name="JACOB_STATE_DELTA" sql-type="blob(2G)"
+     */
+    public byte[] getJacobStateDelta() {
+        return _jacobStateDelta;
+    }
+
+    public void setJacobStateDelta(byte[] jacobStateDelta) {
+        _jacobStateDelta = jacobStateDelta;
+    }
+
     /**
      * @hibernate.bag lazy="true" inverse="true"
      * @hibernate.collection-key column="IID" foreign-key="none"
@@ -21,6 +21,7 @@ package org.apache.ode.daohib.bpel.ql;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.ode.bpel.common.ProcessState;
+import org.apache.ode.daohib.bpel.hobj.HCorrelationSet;
 import org.apache.ode.daohib.bpel.hobj.HProcessInstance;
 import org.apache.ode.ql.Compiler;
 import org.apache.ode.ql.eval.skel.AbstractConjunction;
@@ -45,9 +46,12 @@ import org.hibernate.Criteria;
 import org.hibernate.Session;
 import org.hibernate.criterion.Conjunction;
 import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Disjunction;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.criterion.Subqueries;
 
 import java.text.ParseException;
 import java.util.ArrayList;
@@ -126,6 +130,8 @@ public class HibernateInstancesQueryCompiler extends Compiler<List, Session> {
 
   private final static String PROPERTY_VALUE_DB_FIELD = "property.value";
 
+  private final static String PROPERTY_INSTANCE_DB_FIELD = "property.instance.id";
+
   private final static String INSTANCE_STARTED_DB_FIELD = "created";
 
   private final static String INSTANCE_LAST_ACTIVE_DB_FIELD = "lastActiveTime";
@@ -144,11 +150,6 @@ public class HibernateInstancesQueryCompiler extends Compiler<List, Session> {
   private final static String STATUS_FAULTED = "failed";
 
   private final static Map<String, String> nodeIdentifierToDBField = new HashMap<String, String>(20);
-  //Whether property is used in query
-  private boolean propertyInQuery;
-  //Whether ordering by status used
-  private boolean orderByStatus;
-  private boolean orderByStatusDesc;
 
   static {
     nodeIdentifierToDBField.put(INSTANCE_ID_FIELD, INSTANCE_ID_DB_FIELD);
@@ -170,33 +171,36 @@ public class HibernateInstancesQueryCompiler extends Compiler<List, Session> {
     return dbField;
   }
 
-  private void init() {
-    propertyInQuery = false;
-    orderByStatus = false;
-    orderByStatusDesc = false;
+  private final int fetchSize;
+
+  public HibernateInstancesQueryCompiler() {
+    this(0);
   }
 
+  /**
+   * @param fetchSize number of rows the JDBC driver should fetch at a time, 0 to use its default
+   */
+  public HibernateInstancesQueryCompiler(int fetchSize) {
+    this.fetchSize = fetchSize;
+  }
+
+  /**
+   * The returned evaluator keeps no state between evaluations and can be cached and shared
+   * between sessions. The whole query, ordering and limit included, runs in the database.
+   */
   @Override
   public CommandEvaluator<List, Session> compile(final Query node) {
-    init();
-
     final OrderByEvaluator<Collection<Order>, Object> orderEvaluator = (node.getOrder() != null) ? compileOrderBy(node
         .getOrder()) : null;
 
     final CommandEvaluator<Criterion, Object> selectionEvaluator = node.getChilds().size() == 0 ? null
         : compileEvaluator(node.getChilds().iterator().next());
 
-    final boolean joinCorrelationSet = propertyInQuery;
-    final boolean sortByStatus = orderByStatus;
-    final boolean sortByStatusDesc = orderByStatusDesc;
     final Limit limit = node.getLimit();
 
     return new CommandEvaluator<List, Session>() {
       public List evaluate(Session session) {
         Criteria criteria = session.createCriteria(HProcessInstance.class).createAlias("process", "process");
-        if(joinCorrelationSet) {
-            criteria = criteria.createAlias("correlationSets", "property");
-        }
         if(selectionEvaluator!=null) {
           criteria.add(selectionEvaluator.evaluate(null));
         }
@@ -206,22 +210,39 @@ public class HibernateInstancesQueryCompiler extends Compiler<List, Session> {
             criteria.addOrder(order);
           }
         }
+        // ties are broken on the id so that a limited result is stable between calls
+        criteria.addOrder(Order.asc(INSTANCE_ID_DB_FIELD));
         // setting limit
         if (limit != null) {
           criteria.setMaxResults(limit.getNumber());
         }
-
-        List result = criteria.list();
-        //check whether ordering by status
-        if(sortByStatus) {
-          Collections.sort(result, sortByStatusDesc?StateComparator.DESC:StateComparator.ASC);
+        if (fetchSize > 0) {
+          criteria.setFetchSize(limit != null ? Math.min(fetchSize, limit.getNumber()) : fetchSize);
         }
 
-        return result;
+        return criteria.list();
       };
     };
   }
 
+  /**
+   * Restricts the instances to those having a correlation set of the property's name whose value
+   * matches. Compiled to a semi-join on the indexed set name rather than a join of each instance
+   * with all of its correlation sets, so every instance shows up once and the limit counts
+   * instances, not sets.
+   */
+  private static Criterion propertyCriterion(Property property, Criterion valueRestriction) {
+    DetachedCriteria sets = DetachedCriteria.forClass(HCorrelationSet.class, "property")
+        .add(Restrictions.eq(PROPERTY_NAME_DB_FIELD, property.getName()))
+        .add(valueRestriction)
+        .setProjection(Projections.property(PROPERTY_INSTANCE_DB_FIELD));
+    Criterion inSets = Subqueries.propertyIn(INSTANCE_ID_DB_FIELD, sets);
+    if (StringUtils.isEmpty(property.getNamespace())) {
+      return inSets;
+    }
+    return Restrictions.and(Restrictions.eq(PROPERTY_NS_DB_FIELD, property.getNamespace()), inSets);
+  }
+
   protected ConjunctionEvaluator<Criterion, Object> compileConjunction(Collection<CommandEvaluator> childs) {
     return new AbstractConjunction<Criterion, Object>(childs) {
       public Criterion evaluate(Object arg) {
@@ -248,18 +269,10 @@ public class HibernateInstancesQueryCompiler extends Compiler<List, Session> {
 
   protected EqualityEvaluator<String, Criterion, Object> compileEqual(final Equality eq) {
     if (eq.getIdentifier() instanceof Property) {
-      propertyInQuery = true;
       final Property property = (Property) eq.getIdentifier();
       return new EqualityEvaluator<String, Criterion, Object>() {
         public Criterion evaluate(Object paramValue) {
-          Conjunction conj = Restrictions.conjunction();
-          if (!StringUtils.isEmpty(property.getNamespace())) {
-            conj.add(Restrictions.eq(PROPERTY_NS_DB_FIELD, property.getNamespace()));
-          }
-          conj.add(Restrictions.eq(PROPERTY_NAME_DB_FIELD, property.getName()));
-          conj.add(Restrictions.eq(PROPERTY_VALUE_DB_FIELD, eq.getValue().getValue()));
-
-          return conj;
+          return propertyCriterion(property, Restrictions.eq(PROPERTY_VALUE_DB_FIELD, eq.getValue().getValue()));
         };
 
         public String getIdentifier() {
@@ -281,19 +294,19 @@ public class HibernateInstancesQueryCompiler extends Compiler<List, Session> {
             short noState = 200; // TODO move to constants
             Disjunction disj = Restrictions.disjunction();
 
-            if (STATUS_ACTIVE.equals(paramValue)) {
+            if (STATUS_ACTIVE.equals(value)) {
               disj.add(Restrictions.eq(dbField, ProcessState.STATE_NEW));
               disj.add(Restrictions.eq(dbField, ProcessState.STATE_ACTIVE));
               disj.add(Restrictions.eq(dbField, ProcessState.STATE_READY));
-            } else if (STATUS_SUSPENDED.equals(paramValue)) {
+            } else if (STATUS_SUSPENDED.equals(value)) {
               disj.add(Restrictions.eq(dbField, ProcessState.STATE_SUSPENDED));
             } else if (STATUS_ERROR.equals(value)) {
               disj.add(Restrictions.eq(dbField, noState)); // Error instance state doesn't exist yet
-            } else if (STATUS_COMPLETED.equals(paramValue)) {
+            } else if (STATUS_COMPLETED.equals(value)) {
               disj.add(Restrictions.eq(dbField, ProcessState.STATE_COMPLETED_OK));
-            } else if (STATUS_TERMINATED.equals(paramValue)) {
+            } else if (STATUS_TERMINATED.equals(value)) {
               disj.add(Restrictions.eq(dbField, ProcessState.STATE_TERMINATED));
-            } else if (STATUS_FAULTED.equals(paramValue)) {
+            } else if (STATUS_FAULTED.equals(value)) {
               disj.add(Restrictions.eq(dbField, ProcessState.STATE_COMPLETED_WITH_FAULT));
             } else {
               disj.add(Restrictions.eq(dbField, noState)); // Non existent state
@@ -358,18 +371,10 @@ public class HibernateInstancesQueryCompiler extends Compiler<List, Session> {
 
   protected GEEvaluator<String, Criterion, Object> compileGE(final GE ge) {
     if (ge.getIdentifier() instanceof Property) {
-      propertyInQuery = true;
       final Property property = (Property) ge.getIdentifier();
       return new GEEvaluator<String, Criterion, Object>() {
         public Criterion evaluate(Object paramValue) {
-          Conjunction conj = Restrictions.conjunction();
-          if (!StringUtils.isEmpty(property.getNamespace())) {
-            conj.add(Restrictions.ge(PROPERTY_NS_DB_FIELD, property.getNamespace()));
-          }
-          conj.add(Restrictions.ge(PROPERTY_NAME_DB_FIELD, property.getName()));
-          conj.add(Restrictions.ge(PROPERTY_VALUE_DB_FIELD, ge.getValue().getValue()));
-
-          return conj;
+          return propertyCriterion(property, Restrictions.ge(PROPERTY_VALUE_DB_FIELD, ge.getValue().getValue()));
         };
 
         public String getIdentifier() {
@@ -400,18 +405,10 @@ public class HibernateInstancesQueryCompiler extends Compiler<List, Session> {
 
   protected GreaterEvaluator<String, Criterion, Object> compileGreater(final Greater gt) {
     if (gt.getIdentifier() instanceof Property) {
-      propertyInQuery = true;
       final Property property = (Property) gt.getIdentifier();
       return new GreaterEvaluator<String, Criterion, Object>() {
         public Criterion evaluate(Object paramValue) {
-          Conjunction conj = Restrictions.conjunction();
-          if (!StringUtils.isEmpty(property.getNamespace())) {
-            conj.add(Restrictions.gt(PROPERTY_NS_DB_FIELD, property.getNamespace()));
-          }
-          conj.add(Restrictions.gt(PROPERTY_NAME_DB_FIELD, property.getName()));
-          conj.add(Restrictions.gt(PROPERTY_VALUE_DB_FIELD, gt.getValue().getValue()));
-
-          return conj;
+          return propertyCriterion(property, Restrictions.gt(PROPERTY_VALUE_DB_FIELD, gt.getValue().getValue()));
         };
 
         public String getIdentifier() {
@@ -442,26 +439,11 @@ public class HibernateInstancesQueryCompiler extends Compiler<List, Session> {
 
   protected INEvaluator<String, Criterion, Object> compileIn(final In in) {
     if (in.getIdentifier() instanceof Property) {
-      propertyInQuery = true;
       final Property property = (Property) in.getIdentifier();
+      final Collection values = ValuesHelper.extract((Collection<Value>) in.getValues());
       return new INEvaluator<String, Criterion, Object>() {
         public Criterion evaluate(Object paramValue) {
-          Disjunction disj = Restrictions.disjunction();
-
-          String propertyNS = property.getNamespace();
-          String propertyName = property.getName();
-
-          for (Value value : in.getValues()) {
-            Conjunction conj = Restrictions.conjunction();
-            if (!StringUtils.isEmpty(property.getNamespace())) {
-              conj.add(Restrictions.gt(PROPERTY_NS_DB_FIELD, propertyNS));
-            }
-            conj.add(Restrictions.gt(PROPERTY_NAME_DB_FIELD, propertyName));
-            conj.add(Restrictions.gt(PROPERTY_VALUE_DB_FIELD, value.getValue()));
-
-            disj.add(conj);
-          }
-          return disj;
+          return propertyCriterion(property, Restrictions.in(PROPERTY_VALUE_DB_FIELD, values));
         };
 
         public String getIdentifier() {
@@ -472,34 +454,11 @@ public class HibernateInstancesQueryCompiler extends Compiler<List, Session> {
       final String fieldName = in.getIdentifier().getName();
 
       if (INSTANCE_STATUS_FIELD.equals(fieldName)) {
-        short noState = 200; // TODO move to constants
-        final Disjunction disj = Restrictions.disjunction();
-
         final Collection values = ValuesHelper.extract((Collection<Value>) in.getValues());
 
-        if (values.contains(STATUS_ACTIVE)) {
-          disj.add(Restrictions.eq(INSTANCE_STATUS_DB_FIELD, ProcessState.STATE_NEW));
-          disj.add(Restrictions.eq(INSTANCE_STATUS_DB_FIELD, ProcessState.STATE_ACTIVE));
-          disj.add(Restrictions.eq(INSTANCE_STATUS_DB_FIELD, ProcessState.STATE_READY));
-        }
-        if (values.contains(STATUS_SUSPENDED)) {
-          disj.add(Restrictions.eq(INSTANCE_STATUS_DB_FIELD, ProcessState.STATE_SUSPENDED));
-        }
-        if (values.contains(STATUS_ERROR)) {
-          disj.add(Restrictions.eq(INSTANCE_STATUS_DB_FIELD, noState)); // Error instance state doesn't exist yet
-        }
-        if (values.contains(STATUS_COMPLETED)) {
-          disj.add(Restrictions.eq(INSTANCE_STATUS_DB_FIELD, ProcessState.STATE_COMPLETED_OK));
-        }
-        if (values.contains(STATUS_TERMINATED)) {
-          disj.add(Restrictions.eq(INSTANCE_STATUS_DB_FIELD, ProcessState.STATE_TERMINATED));
-        }
-        if (values.contains(STATUS_FAULTED)) {
-          disj.add(Restrictions.eq(INSTANCE_STATUS_DB_FIELD, ProcessState.STATE_COMPLETED_WITH_FAULT));
-        }
         return new INEvaluator<String, Criterion, Object>() {
           public Criterion evaluate(Object paramValue) {
-            return disj;
+            return statusIn(values);
           };
 
           public String getIdentifier() {
@@ -547,19 +506,39 @@ public class HibernateInstancesQueryCompiler extends Compiler<List, Session> {
     }
   }
 
+  private static Criterion statusIn(Collection values) {
+    short noState = 200; // TODO move to constants
+    Disjunction disj = Restrictions.disjunction();
+
+    if (values.contains(STATUS_ACTIVE)) {
+      disj.add(Restrictions.eq(INSTANCE_STATUS_DB_FIELD, ProcessState.STATE_NEW));
+      disj.add(Restrictions.eq(INSTANCE_STATUS_DB_FIELD, ProcessState.STATE_ACTIVE));
+      disj.add(Restrictions.eq(INSTANCE_STATUS_DB_FIELD, ProcessState.STATE_READY));
+    }
+    if (values.contains(STATUS_SUSPENDED)) {
+      disj.add(Restrictions.eq(INSTANCE_STATUS_DB_FIELD, ProcessState.STATE_SUSPENDED));
+    }
+    if (values.contains(STATUS_ERROR)) {
+      disj.add(Restrictions.eq(INSTANCE_STATUS_DB_FIELD, noState)); // Error instance state doesn't exist yet
+    }
+    if (values.contains(STATUS_COMPLETED)) {
+      disj.add(Restrictions.eq(INSTANCE_STATUS_DB_FIELD, ProcessState.STATE_COMPLETED_OK));
+    }
+    if (values.contains(STATUS_TERMINATED)) {
+      disj.add(Restrictions.eq(INSTANCE_STATUS_DB_FIELD, ProcessState.STATE_TERMINATED));
+    }
+    if (values.contains(STATUS_FAULTED)) {
+      disj.add(Restrictions.eq(INSTANCE_STATUS_DB_FIELD, ProcessState.STATE_COMPLETED_WITH_FAULT));
+    }
+    return disj;
+  }
+
   protected LEEvaluator<String, Criterion, Object> compileLE(final LE le) {
     if (le.getIdentifier() instanceof Property) {
       final Property property = (Property) le.getIdentifier();
       return new LEEvaluator<String, Criterion, Object>() {
         public Criterion evaluate(Object paramValue) {
-          Conjunction conj = Restrictions.conjunction();
-          if (!StringUtils.isEmpty(property.getNamespace())) {
-            conj.add(Restrictions.le(PROPERTY_NS_DB_FIELD, property.getNamespace()));
-          }
-          conj.add(Restrictions.le(PROPERTY_NAME_DB_FIELD, property.getName()));
-          conj.add(Restrictions.le(PROPERTY_VALUE_DB_FIELD, le.getValue().getValue()));
-
-          return conj;
+          return propertyCriterion(property, Restrictions.le(PROPERTY_VALUE_DB_FIELD, le.getValue().getValue()));
         };
 
         public String getIdentifier() {
@@ -590,18 +569,10 @@ public class HibernateInstancesQueryCompiler extends Compiler<List, Session> {
 
   protected LessEvaluator<String, Criterion, Object> compileLess(final Less less) {
     if (less.getIdentifier() instanceof Property) {
-      propertyInQuery = true;
       final Property property = (Property) less.getIdentifier();
       return new LessEvaluator<String, Criterion, Object>() {
         public Criterion evaluate(Object paramValue) {
-          Conjunction conj = Restrictions.conjunction();
-          if (!StringUtils.isEmpty(property.getNamespace())) {
-            conj.add(Restrictions.lt(PROPERTY_NS_DB_FIELD, property.getNamespace()));
-          }
-          conj.add(Restrictions.lt(PROPERTY_NAME_DB_FIELD, property.getName()));
-          conj.add(Restrictions.lt(PROPERTY_VALUE_DB_FIELD, less.getValue().getValue()));
-
-          return conj;
+          return propertyCriterion(property, Restrictions.lt(PROPERTY_VALUE_DB_FIELD, less.getValue().getValue()));
         };
 
         public String getIdentifier() {
@@ -632,18 +603,10 @@ public class HibernateInstancesQueryCompiler extends Compiler<List, Session> {
 
   protected LikeEvaluator<String, Criterion, Object> compileLike(final Like like) {
     if (like.getIdentifier() instanceof Property) {
-      propertyInQuery = true;
       final Property property = (Property) like.getIdentifier();
       return new LikeEvaluator<String, Criterion, Object>() {
         public Criterion evaluate(Object paramValue) {
-          Conjunction conj = Restrictions.conjunction();
-          if (!StringUtils.isEmpty(property.getNamespace())) {
-            conj.add(Restrictions.like(PROPERTY_NS_DB_FIELD, property.getNamespace()));
-          }
-          conj.add(Restrictions.like(PROPERTY_NAME_DB_FIELD, property.getName()));
-          conj.add(Restrictions.like(PROPERTY_VALUE_DB_FIELD, like.getValue().getValue()));
-
-          return conj;
+          return propertyCriterion(property, Restrictions.like(PROPERTY_VALUE_DB_FIELD, like.getValue().getValue()));
         };
 
         public String getIdentifier() {
@@ -687,9 +650,12 @@ public class HibernateInstancesQueryCompiler extends Compiler<List, Session> {
           //TODO throw appropriate exception
           throw new RuntimeException("Status field should be used alone in <order by> construction.");
         }
-        orderByStatus = true;
-        orderByStatusDesc = idOrder.getType()==OrderByType.DESC;
-        return null;
+        final boolean asc = idOrder.getType() != OrderByType.DESC;
+        return new OrderByEvaluator<Collection<Order>, Object>() {
+          public Collection<Order> evaluate(Object paramValue) {
+            return Collections.<Order>singletonList(new StateOrder(INSTANCE_STATUS_DB_FIELD, asc));
+          }
+        };
       }
       String dbField = getDBField(idName);
 
@@ -16,17 +16,21 @@
  * specific language governing permissions and limitations
  * under the License.
  */
-
 package org.apache.ode.daohib.bpel.ql;
 
-import java.util.Comparator;
-
-import org.apache.commons.lang.ArrayUtils;
-
 import org.apache.ode.bpel.common.ProcessState;
-import org.apache.ode.daohib.bpel.hobj.HProcessInstance;
+import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Order;
 
-class StateComparator implements Comparator<HProcessInstance> {
+/**
+ * Orders instances by status name, the way they're listed to users, rather
+ * than by the numeric state code. Rendered as a CASE expression so the
+ * ordering, and any limit, is applied by the database.
+ */
+class StateOrder extends Order {
+  private static final long serialVersionUID = 1L;
 
   private static final short[] order = {
     //"active" status
@@ -45,19 +49,28 @@ class StateComparator implements Comparator<HProcessInstance> {
     //"terminated"
     ProcessState.STATE_TERMINATED};
 
-  private final int multiplier;
-
-  public final static StateComparator ASC = new StateComparator(true);
-  public final static StateComparator DESC = new StateComparator(false);
+  private final String propertyName;
+  private final boolean asc;
 
-  protected StateComparator(boolean asc) {
-    multiplier = asc?1:-1;
+  StateOrder(String propertyName, boolean asc) {
+    super(propertyName, asc);
+    this.propertyName = propertyName;
+    this.asc = asc;
   }
+
   /**
-   * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+   * @see org.hibernate.criterion.Order#toSqlString(org.hibernate.Criteria, org.hibernate.criterion.CriteriaQuery)
    */
-  public int compare(HProcessInstance o1, HProcessInstance o2) {
-    return multiplier * (ArrayUtils.indexOf(order, o1.getState()) - ArrayUtils.indexOf(order, o2.getState()));
+  @Override
+  public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+    String column = criteriaQuery.getColumnsUsingProjection(criteria, propertyName)[0];
+    StringBuilder sql = new StringBuilder("case ").append(column);
+    for (int i = 0; i < order.length; i++) {
+      sql.append(" when ").append(order[i]).append(" then ").append(i);
+    }
+    // unknown states first, as they used to be sorted in memory
+    sql.append(" else -1 end ").append(asc ? "asc" : "desc");
+    return sql.toString();
   }
 
 }
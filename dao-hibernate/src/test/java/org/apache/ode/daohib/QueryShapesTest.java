@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.daohib;
+
+import junit.framework.TestCase;
+
+public class QueryShapesTest extends TestCase {
+
+    public void testArityIsPaddedToPowerOfTwo() {
+        assertEquals(0, QueryShapes.arity(0));
+        assertEquals(1, QueryShapes.arity(1));
+        assertEquals(2, QueryShapes.arity(2));
+        assertEquals(4, QueryShapes.arity(3));
+        assertEquals(8, QueryShapes.arity(5));
+        assertEquals(64, QueryShapes.arity(64));
+        assertEquals(65, QueryShapes.arity(65));
+    }
+
+    public void testCondition() {
+        assertEquals("from X as x", QueryShapes.inCondition("from X as x", " where ", "x.key", "s", 0));
+        assertEquals("from X as x where x.key = :s0", QueryShapes.inCondition("from X as x", " where ", "x.key", "s", 1));
+        assertEquals("from X as x where x.key in(:s0, :s1, :s2, :s3)",
+                QueryShapes.inCondition("from X as x", " where ", "x.key", "s", 3));
+    }
+
+    public void testShapesAreShared() {
+        String header = "from Y as y where y.a = :a";
+        long built = QueryShapes.getShapesBuilt();
+        String three = QueryShapes.inCondition(header, " and ", "y.key", "k", 3);
+        assertSame(three, QueryShapes.inCondition(header, " and ", "y.key", "k", 4));
+        assertEquals(built + 1, QueryShapes.getShapesBuilt());
+        assertNotSame(three, QueryShapes.inCondition(header, " and ", "y.other", "k", 3));
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.daohib.bpel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.transaction.TransactionManager;
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import org.apache.ode.bpel.common.CorrelationKey;
+import org.apache.ode.bpel.common.ProcessState;
+import org.apache.ode.bpel.dao.BpelDAOConnection;
+import org.apache.ode.bpel.dao.CorrelatorDAO;
+import org.apache.ode.bpel.dao.ProcessDAO;
+import org.apache.ode.bpel.dao.ProcessInstanceDAO;
+import org.apache.ode.bpel.dao.ScopeDAO;
+import org.apache.ode.il.EmbeddedGeronimoFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.hibernate.cfg.Environment;
+
+/**
+ * Checks the results of instance queries compiled by
+ * {@link org.apache.ode.daohib.bpel.ql.HibernateInstancesQueryCompiler} against a small
+ * set of instances. Properties match correlation sets by name and their canonical value.
+ */
+public class InstanceQueryTest extends TestCase {
+
+    private static final QName PID = new QName("urn:ode:query", "process");
+
+    private TransactionManager _txm;
+    private BpelDAOConnectionFactoryImpl _factory;
+
+    /** active, order a in two scopes, customer x */
+    private Long _i1;
+    /** completed, order b, customer x */
+    private Long _i2;
+    /** suspended, order c */
+    private Long _i3;
+    /** active, no correlation set */
+    private Long _i4;
+
+    protected void setUp() throws Exception {
+        _txm = new EmbeddedGeronimoFactory().getTransactionManager();
+        org.springframework.mock.jndi.SimpleNamingContextBuilder.emptyActivatedContextBuilder()
+                .bind("java:comp/UserTransaction", _txm);
+
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:query;DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        ds.setPassword("");
+        _factory = new BpelDAOConnectionFactoryImpl();
+        _factory.setTransactionManager(_txm);
+        _factory.setDataSource(ds);
+        Properties props = new Properties();
+        props.put(Environment.HBM2DDL_AUTO, "create-drop");
+        props.put(Environment.DIALECT, "org.hibernate.dialect.H2Dialect");
+        _factory.init(props);
+
+        _txm.begin();
+        ProcessDAO process = _factory.getConnection().createProcess(PID, PID, "guid", 1);
+        CorrelatorDAO correlator = process.addCorrelator("plink.op");
+        _i1 = createInstance(process, correlator, ProcessState.STATE_ACTIVE, "a", "x", true);
+        _i2 = createInstance(process, correlator, ProcessState.STATE_COMPLETED_OK, "b", "x", false);
+        _i3 = createInstance(process, correlator, ProcessState.STATE_SUSPENDED, "c", null, false);
+        _i4 = createInstance(process, correlator, ProcessState.STATE_ACTIVE, null, null, false);
+        _txm.commit();
+    }
+
+    protected void tearDown() throws Exception {
+        _factory.shutdown();
+    }
+
+    public void testPropertyComparisons() throws Exception {
+        assertEquals(set(_i1), set(query("$order = \"k~a\"")));
+        assertEquals(set(_i2, _i3), set(query("$order >= \"k~b\"")));
+        assertEquals(set(_i3), set(query("$order > \"k~b\"")));
+        assertEquals(set(_i1, _i2), set(query("$order <= \"k~b\"")));
+        assertEquals(set(_i1), set(query("$order < \"k~b\"")));
+        assertEquals(set(_i1, _i2, _i3), set(query("$order like \"k~%\"")));
+        assertEquals(set(_i2), set(query("$order >= \"k~b\" and $customer = \"k~x\"")));
+    }
+
+    public void testPropertyIn() throws Exception {
+        assertEquals(set(_i1, _i3), set(query("$order in (\"k~a\", \"k~c\")")));
+        assertEquals(set(), set(query("$order in (\"k~x\")")));
+    }
+
+    public void testStatus() throws Exception {
+        assertEquals(set(_i1, _i4), set(query("status = \"active\"")));
+        assertEquals(set(_i2), set(query("status = \"completed\"")));
+        assertEquals(set(_i2, _i3), set(query("status in (\"completed\", \"suspended\")")));
+        assertEquals(set(_i4), set(query("status = \"active\" and iid > \"" + _i1 + "\"")));
+    }
+
+    public void testOrderByStatusWithLimit() throws Exception {
+        // active first, ties broken on the id
+        assertEquals(Arrays.asList(_i1, _i4), query("order by status limit 2"));
+        assertEquals(Arrays.asList(_i1, _i4, _i2), query("order by status limit 3"));
+        assertEquals(Arrays.asList(_i3, _i2), query("order by status desc limit 2"));
+    }
+
+    public void testNoDuplicatesWithSeveralCorrelationSets() throws Exception {
+        // _i1 has a matching order set in two scopes, and matches both sides of the disjunction
+        assertEquals(Arrays.asList(_i1, _i2, _i3), query("$order like \"k~%\""));
+        assertEquals(Arrays.asList(_i1, _i2), query("$order = \"k~a\" or $customer = \"k~x\""));
+        // the limit counts instances, not correlation sets
+        assertEquals(Arrays.asList(_i1, _i2), query("$order like \"k~%\" limit 2"));
+    }
+
+    private Long createInstance(ProcessDAO process, CorrelatorDAO correlator, short state,
+                                String order, String customer, boolean nested) {
+        ProcessInstanceDAO instance = process.createInstance(correlator);
+        instance.setState(state);
+        ScopeDAO root = instance.createScope(null, "root", 0);
+        if (order != null) setValue(root, "order", order);
+        if (customer != null) setValue(root, "customer", customer);
+        if (nested) setValue(instance.createScope(root, "nested", 1), "order", order);
+        return instance.getInstanceId();
+    }
+
+    private void setValue(ScopeDAO scope, String cset, String value) {
+        scope.getCorrelationSet(cset).setValue(new QName[] { new QName("urn:ode:query", "id") },
+                new CorrelationKey("k", new String[] { value }));
+    }
+
+    private List<Long> query(String expression) throws Exception {
+        _txm.begin();
+        try {
+            BpelDAOConnection conn = _factory.getConnection();
+            List<Long> iids = new ArrayList<Long>();
+            for (ProcessInstanceDAO instance : conn.instanceQuery(expression)) {
+                iids.add(instance.getInstanceId());
+            }
+            return iids;
+        } finally {
+            _txm.commit();
+        }
+    }
+
+    private static Set<Long> set(Long... iids) {
+        return new HashSet<Long>(Arrays.asList(iids));
+    }
+
+    private static Set<Long> set(List<Long> iids) {
+        Set<Long> result = new HashSet<Long>(iids);
+        assertEquals("duplicate instances in " + iids, iids.size(), result.size());
+        return result;
+    }
+}
@@ -38,6 +38,7 @@ import org.apache.ode.bpel.dao.ProcessInstanceDAO;
 import org.apache.ode.bpel.iapi.ProcessConf.CLEANUP_CATEGORY;
 import org.apache.ode.daohib.SessionManager;
 import org.apache.ode.daohib.bpel.hobj.HCorrelator;
+import org.apache.ode.daohib.bpel.hobj.HMessageExchange;
 
 /**
  * Testing BpelDAOConnectionImpl.listInstance. We're just producing a lot of
@@ -81,7 +82,9 @@ public class MexTest extends BaseTestDAO {
 
         txm.commit();
         txm.begin();
-        assertEquals(1, sm.getSession().createSQLQuery("select count(*) from BPEL_MEX_PROPS").list().get(0));
+        // properties are stored in the exchange row
+        assertEquals(0, sm.getSession().createSQLQuery("select count(*) from BPEL_MEX_PROPS").list().get(0));
+        assertEquals("def", daoConn.getMessageExchange(mex.getMessageExchangeId()).getProperty("abc"));
         
         Set<CLEANUP_CATEGORY> cleanupCategories = EnumSet.allOf(CLEANUP_CATEGORY.class);
         instance.delete(cleanupCategories);
@@ -90,4 +93,46 @@ public class MexTest extends BaseTestDAO {
 
         assertEquals(0, sm.getSession().createSQLQuery("select count(*) from BPEL_MEX_PROPS").list().get(0));
     }
+
+    public void testLegacyProperties() throws Exception {
+        SessionManager sm = ((BpelDAOConnectionImpl) daoConn)._sm;
+        HMessageExchange hmex = new HMessageExchange();
+        hmex.setDirection('M');
+        hmex.setPropertiesData(null);
+        hmex.getProperties().put("abc", "def");
+        sm.getSession().save(hmex);
+        String mexId = hmex.getId().toString();
+
+        txm.commit();
+        txm.begin();
+        assertEquals(1, sm.getSession().createSQLQuery("select count(*) from BPEL_MEX_PROPS").list().get(0));
+
+        MessageExchangeDAO mex = daoConn.getMessageExchange(mexId);
+        assertEquals("def", mex.getProperty("abc"));
+        mex.setProperty("ghi", "jkl");
+        txm.commit();
+        txm.begin();
+
+        // the legacy rows got moved to the column on write
+        assertEquals(0, sm.getSession().createSQLQuery("select count(*) from BPEL_MEX_PROPS").list().get(0));
+        mex = daoConn.getMessageExchange(mexId);
+        assertEquals("def", mex.getProperty("abc"));
+        assertEquals("jkl", mex.getProperty("ghi"));
+        assertEquals(2, mex.getPropertyNames().size());
+    }
+
+    public void testPropertiesEncoding() {
+        Map<String, String> props = new HashMap<String, String>();
+        props.put("a", "\u00e9t\u00e9");
+        props.put("b", null);
+        props.put("c", "");
+        HMessageExchange hmex = new HMessageExchange();
+        hmex.setPropertiesData(null);
+        assertTrue(hmex.readProperties().isEmpty());
+        for (Map.Entry<String, String> e : props.entrySet()) hmex.writeProperty(e.getKey(), e.getValue());
+
+        HMessageExchange loaded = new HMessageExchange();
+        loaded.setPropertiesData(hmex.getPropertiesData());
+        assertEquals(props, loaded.readProperties());
+    }
 }
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.daohib.bpel;
+
+import java.util.Properties;
+
+import javax.transaction.TransactionManager;
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import org.apache.ode.bpel.dao.BpelDAOConnection;
+import org.apache.ode.bpel.dao.CorrelatorDAO;
+import org.apache.ode.bpel.dao.ProcessDAO;
+import org.apache.ode.bpel.iapi.ProcessStoreEvent;
+import org.apache.ode.il.EmbeddedGeronimoFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.hibernate.cfg.Environment;
+
+/**
+ * Checks that process and correlator lookups are served by key from the metadata cache
+ * once warm, and that the cache never hands out a row that isn't there anymore.
+ */
+public class ProcessMetadataCacheTest extends TestCase {
+
+    private static final QName PID = new QName("urn:ode:metadata", "process");
+
+    private TransactionManager _txm;
+    private StatementBatchingTest.StatementCounter _counter;
+    private BpelDAOConnectionFactoryImpl _factory;
+
+    protected void setUp() throws Exception {
+        _txm = new EmbeddedGeronimoFactory().getTransactionManager();
+        org.springframework.mock.jndi.SimpleNamingContextBuilder.emptyActivatedContextBuilder()
+                .bind("java:comp/UserTransaction", _txm);
+
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:metadata;DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        ds.setPassword("");
+        _counter = new StatementBatchingTest.StatementCounter();
+        _factory = new BpelDAOConnectionFactoryImpl();
+        _factory.setTransactionManager(_txm);
+        _factory.setDataSource(_counter.wrap(ds));
+        Properties props = new Properties();
+        props.put(Environment.HBM2DDL_AUTO, "create-drop");
+        props.put(Environment.DIALECT, "org.hibernate.dialect.H2Dialect");
+        _factory.init(props);
+
+        _txm.begin();
+        ProcessDAO process = _factory.getConnection().createProcess(PID, PID, "guid", 1);
+        process.addCorrelator("plink.op");
+        _txm.commit();
+    }
+
+    protected void tearDown() throws Exception {
+        _factory.shutdown();
+    }
+
+    public void testLookupStatements() throws Exception {
+        // warm up
+        _txm.begin();
+        _factory.getConnection().getProcess(PID).getCorrelator("plink.op");
+        _txm.commit();
+
+        _counter.reset();
+        _txm.begin();
+        for (int i = 0; i < 5; i++) {
+            BpelDAOConnection conn = _factory.getConnection();
+            ProcessDAO process = conn.getProcess(PID);
+            assertEquals(PID, process.getProcessId());
+            CorrelatorDAO correlator = process.getCorrelator("plink.op");
+            assertEquals("plink.op", correlator.getCorrelatorId());
+        }
+        _txm.commit();
+        // one load of the process and one of the correlator, the rest comes from the session
+        assertTrue("lookups ran " + _counter, _counter.statements <= 2);
+    }
+
+    public void testLookupStatementsAcrossTransactions() throws Exception {
+        // warm up
+        _txm.begin();
+        _factory.getConnection().getProcess(PID).getCorrelator("plink.op");
+        _txm.commit();
+
+        _counter.reset();
+        for (int tx = 0; tx < 5; tx++) {
+            _txm.begin();
+            for (int i = 0; i < 3; i++) {
+                ProcessDAO process = _factory.getConnection().getProcess(PID);
+                assertEquals("plink.op", process.getCorrelator("plink.op").getCorrelatorId());
+            }
+            _txm.commit();
+        }
+        // only keys are cached: every transaction loads both rows once, by key
+        assertTrue("lookups ran " + _counter, _counter.statements <= 2 * 5);
+    }
+
+    public void testRedeployment() throws Exception {
+        _txm.begin();
+        _factory.getConnection().getProcess(PID).getCorrelator("plink.op");
+        _txm.commit();
+        Long first = _factory._sessionManager.getMetadataCache().getProcessId(PID);
+        assertNotNull(first);
+
+        // the process is replaced behind the cache's back
+        _txm.begin();
+        _factory.getConnection().getProcess(PID).deleteProcessAndRoutes();
+        _factory.getConnection().createProcess(PID, PID, "guid2", 2);
+        _txm.commit();
+
+        _txm.begin();
+        ProcessDAO process = _factory.getConnection().getProcess(PID);
+        assertEquals("guid2", process.getGuid());
+        _txm.commit();
+        Long second = _factory._sessionManager.getMetadataCache().getProcessId(PID);
+        assertNotNull(second);
+        assertFalse(first.equals(second));
+
+        _factory.onProcessStoreEvent(new ProcessStoreEvent(ProcessStoreEvent.Type.UNDEPLOYED, PID, "du"));
+        assertNull(_factory._sessionManager.getMetadataCache().getProcessId(PID));
+    }
+
+    public void testRolledBackProcess() throws Exception {
+        QName pid = new QName("urn:ode:metadata", "rolledBack");
+        _txm.begin();
+        _factory.getConnection().createProcess(pid, pid, "guid", 1);
+        assertNotNull(_factory.getConnection().getProcess(pid));
+        _txm.rollback();
+
+        _txm.begin();
+        assertNull(_factory.getConnection().getProcess(pid));
+        _txm.commit();
+        assertNull(_factory._sessionManager.getMetadataCache().getProcessId(pid));
+    }
+}
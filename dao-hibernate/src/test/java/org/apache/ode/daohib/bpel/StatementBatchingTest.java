@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.daohib.bpel;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+import javax.transaction.TransactionManager;
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import org.apache.derby.jdbc.EmbeddedXADataSource;
+import org.apache.ode.bpel.common.CorrelationKey;
+import org.apache.ode.bpel.dao.BpelDAOConnection;
+import org.apache.ode.bpel.dao.CorrelatorDAO;
+import org.apache.ode.bpel.dao.MessageExchangeDAO;
+import org.apache.ode.bpel.dao.ProcessDAO;
+import org.apache.ode.bpel.dao.ProcessInstanceDAO;
+import org.apache.ode.bpel.dao.ScopeDAO;
+import org.apache.ode.daohib.SessionManager;
+import org.apache.ode.il.EmbeddedGeronimoFactory;
+import org.apache.ode.utils.DOMUtils;
+import org.h2.jdbcx.JdbcDataSource;
+import org.hibernate.cfg.Environment;
+
+/**
+ * Counts the statements and database round trips of a transaction that creates
+ * an instance with its scopes, variables, correlation sets and message exchanges,
+ * with JDBC batching on and off.
+ */
+public class StatementBatchingTest extends TestCase {
+
+    private static final int SCOPES = 20;
+
+    private TransactionManager _txm;
+    private int _run;
+
+    protected void setUp() throws Exception {
+        _txm = new EmbeddedGeronimoFactory().getTransactionManager();
+        org.springframework.mock.jndi.SimpleNamingContextBuilder.emptyActivatedContextBuilder()
+                .bind("java:comp/UserTransaction", _txm);
+    }
+
+    public void testDerby() throws Exception {
+        EmbeddedXADataSource ds = new EmbeddedXADataSource();
+        ds.setCreateDatabase("create");
+        ds.setDatabaseName("target/batchingdb");
+        ds.setUser("sa");
+        ds.setPassword("");
+        assertBatched(ds, "org.hibernate.dialect.DerbyDialect");
+    }
+
+    public void testH2() throws Exception {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:batching;DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        ds.setPassword("");
+        assertBatched(ds, "org.hibernate.dialect.H2Dialect");
+    }
+
+    private void assertBatched(DataSource ds, String dialect) throws Exception {
+        StatementCounter unbatched = run(ds, dialect, false);
+        StatementCounter batched = run(ds, dialect, true);
+
+        // same work either way
+        assertEquals(unbatched.statements, batched.statements);
+        assertEquals(0, unbatched.batches);
+        assertTrue("no batch executed: " + batched, batched.batches > 0);
+        assertTrue("batched " + batched + " vs unbatched " + unbatched,
+                batched.roundTrips * 2 < unbatched.roundTrips);
+    }
+
+    private StatementCounter run(DataSource ds, String dialect, boolean batching) throws Exception {
+        StatementCounter counter = new StatementCounter();
+        BpelDAOConnectionFactoryImpl factory = new BpelDAOConnectionFactoryImpl();
+        factory.setTransactionManager(_txm);
+        factory.setDataSource(counter.wrap(ds));
+        Properties props = new Properties();
+        props.put(Environment.HBM2DDL_AUTO, "create-drop");
+        props.put(Environment.DIALECT, dialect);
+        props.put(BpelDAOConnectionFactoryImpl.PROP_BATCHING, String.valueOf(batching));
+        factory.init(props);
+        try {
+            if (batching) assertTrue(factory._sessionManager.getUnbatchedEntities().isEmpty());
+
+            // allocate the hi/lo blocks ahead so that only the work below gets counted
+            _txm.begin();
+            createInstance(factory.getConnection(), 1);
+            _txm.commit();
+
+            counter.reset();
+            _txm.begin();
+            createInstance(factory.getConnection(), SCOPES);
+            _txm.commit();
+            return counter;
+        } finally {
+            factory.shutdown();
+        }
+    }
+
+    private void createInstance(BpelDAOConnection conn, int scopes) {
+        QName pid = new QName("urn:ode:batching", "process" + (_run++));
+        ProcessDAO process = conn.createProcess(pid, pid, "guid-" + _run, 1);
+        CorrelatorDAO correlator = process.addCorrelator("correlator");
+        ProcessInstanceDAO instance = process.createInstance(correlator);
+        ScopeDAO root = instance.createScope(null, "root", 0);
+        for (int i = 0; i < scopes; i++) {
+            ScopeDAO scope = instance.createScope(root, "scope" + i, i + 1);
+            scope.getVariable("request").set(DOMUtils.newDocument().createElement("request"));
+            scope.getVariable("response").set(DOMUtils.newDocument().createElement("response"));
+            scope.getCorrelationSet("order").setValue(new QName[] { new QName("urn:ode:batching", "id") },
+                    new CorrelationKey("order", new String[] { "order-" + i }));
+            MessageExchangeDAO mex = conn.createMessageExchange('P');
+            mex.setInstance(instance);
+            mex.setOperation("op" + i);
+        }
+    }
+
+    /**
+     * Wraps a data source and counts what goes through the statements of its connections.
+     */
+    static class StatementCounter {
+        /** Statements run, individually or as part of a batch. */
+        int statements;
+        /** Calls going to the database. */
+        int roundTrips;
+        int batches;
+
+        void reset() {
+            statements = roundTrips = batches = 0;
+        }
+
+        DataSource wrap(DataSource ds) {
+            return (DataSource) proxy(ds, DataSource.class);
+        }
+
+        private Object proxy(final Object target, Class<?> iface) {
+            return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { iface }, new InvocationHandler() {
+                public Object invoke(Object p, Method method, Object[] args) throws Throwable {
+                    String name = method.getName();
+                    if (target instanceof Statement) {
+                        if (name.equals("addBatch")) {
+                            statements++;
+                        } else if (name.equals("executeBatch")) {
+                            roundTrips++;
+                            batches++;
+                        } else if (name.startsWith("execute")) {
+                            statements++;
+                            roundTrips++;
+                        }
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof Connection) return proxy(result, Connection.class);
+                    // Statement, PreparedStatement or CallableStatement
+                    if (result instanceof Statement) return proxy(result, method.getReturnType());
+                    return result;
+                }
+            });
+        }
+
+        public String toString() {
+            return statements + " statements in " + roundTrips + " round trips (" + batches + " batches)";
+        }
+    }
+}
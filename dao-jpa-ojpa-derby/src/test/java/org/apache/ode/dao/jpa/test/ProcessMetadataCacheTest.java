@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.dao.jpa.test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+import javax.transaction.TransactionManager;
+import javax.xml.namespace.QName;
+
+import junit.framework.TestCase;
+
+import org.apache.ode.bpel.dao.ProcessDAO;
+import org.apache.ode.dao.jpa.BPELDAOConnectionFactoryImpl;
+import org.apache.ode.il.EmbeddedGeronimoFactory;
+import org.apache.ode.utils.GUID;
+import org.hsqldb.jdbc.jdbcDataSource;
+
+/**
+ * Checks that process and correlator lookups cost one load by key per row and transaction
+ * once the metadata cache is warm, however often they're repeated.
+ */
+public class ProcessMetadataCacheTest extends TestCase {
+
+    private static final QName PID = new QName("urn:ode:metadata", "process");
+
+    TransactionManager _txm;
+    BPELDAOConnectionFactoryImpl factory;
+    int _statements;
+
+    @Override
+    protected void setUp() throws Exception {
+        jdbcDataSource hsqlds = new jdbcDataSource();
+        hsqlds.setDatabase("jdbc:hsqldb:mem:" + new GUID().toString());
+        hsqlds.setUser("sa");
+        hsqlds.setPassword("");
+
+        _txm = new EmbeddedGeronimoFactory().getTransactionManager();
+
+        factory = new BPELDAOConnectionFactoryImpl();
+        factory.setDataSource((DataSource) count(hsqlds, DataSource.class));
+        factory.setTransactionManager(_txm);
+        Properties props = new Properties();
+        props.put("openjpa.jdbc.SynchronizeMappings", "buildSchema(ForeignKeys=false)");
+        factory.init(props);
+
+        _txm.begin();
+        ProcessDAO process = factory.getConnection().createProcess(PID, PID, "guid", 1);
+        process.addCorrelator("plink.op");
+        _txm.commit();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        factory.shutdown();
+    }
+
+    public void testLookupStatementsAcrossTransactions() throws Exception {
+        // warm up
+        _txm.begin();
+        factory.getConnection().getProcess(PID).getCorrelator("plink.op");
+        _txm.commit();
+
+        _statements = 0;
+        for (int tx = 0; tx < 5; tx++) {
+            _txm.begin();
+            for (int i = 0; i < 3; i++) {
+                ProcessDAO process = factory.getConnection().getProcess(PID);
+                assertEquals(PID, process.getProcessId());
+                assertEquals("plink.op", process.getCorrelator("plink.op").getCorrelatorId());
+            }
+            _txm.commit();
+        }
+        // only keys are cached: every transaction loads both rows once, by key
+        assertTrue("lookups ran " + _statements + " statements", _statements <= 2 * 5);
+    }
+
+    private Object count(final Object target, Class<?> iface) {
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { iface }, new InvocationHandler() {
+            public Object invoke(Object p, Method method, Object[] args) throws Throwable {
+                if (target instanceof Statement && method.getName().startsWith("execute")) _statements++;
+                Object result;
+                try {
+                    result = method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                if (result instanceof Connection) return count(result, Connection.class);
+                if (result instanceof Statement) return count(result, method.getReturnType());
+                return result;
+            }
+        });
+    }
+}
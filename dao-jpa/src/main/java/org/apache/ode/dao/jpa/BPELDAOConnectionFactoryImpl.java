@@ -22,6 +22,9 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ode.bpel.dao.BpelDAOConnection;
 import org.apache.ode.bpel.dao.BpelDAOConnectionFactoryJDBC;
+import org.apache.ode.bpel.dao.ProcessMetadataCache;
+import org.apache.ode.bpel.iapi.ProcessStoreEvent;
+import org.apache.ode.bpel.iapi.ProcessStoreListener;
 import org.apache.openjpa.ee.ManagedRuntime;
 import org.apache.openjpa.util.GeneralException;
 
@@ -42,13 +45,14 @@ import java.util.Properties;
 /**
  * @author Matthieu Riou <mriou at apache dot org>
  */
-public class BPELDAOConnectionFactoryImpl implements BpelDAOConnectionFactoryJDBC {
+public class BPELDAOConnectionFactoryImpl implements BpelDAOConnectionFactoryJDBC, ProcessStoreListener {
     static final Log __log = LogFactory.getLog(BPELDAOConnectionFactoryImpl.class);
 
     protected EntityManagerFactory _emf;
     private TransactionManager _tm;
     private DataSource _ds;
     private Object _dbdictionary;
+    protected final ProcessMetadataCache _metadataCache = new ProcessMetadataCache();
 
     static ThreadLocal<BPELDAOConnectionImpl> _connections = new ThreadLocal<BPELDAOConnectionImpl>();
 
@@ -85,7 +89,14 @@ public class BPELDAOConnectionFactoryImpl implements BpelDAOConnectionFactoryJDB
     }
 
     protected BPELDAOConnectionImpl createBPELDAOConnection(EntityManager em) {
-        return new BPELDAOConnectionImpl(em);
+        return new BPELDAOConnectionImpl(em, _metadataCache);
+    }
+
+    /**
+     * Drops the cached metadata of deployed and undeployed processes.
+     */
+    public void onProcessStoreEvent(ProcessStoreEvent event) {
+        _metadataCache.onProcessStoreEvent(event);
     }
 
     @SuppressWarnings("unchecked")
@@ -46,6 +46,7 @@ import org.apache.ode.bpel.dao.MessageExchangeDAO;
 import org.apache.ode.bpel.dao.ProcessDAO;
 import org.apache.ode.bpel.dao.ProcessInstanceDAO;
 import org.apache.ode.bpel.dao.ProcessManagementDAO;
+import org.apache.ode.bpel.dao.ProcessMetadataCache;
 import org.apache.ode.bpel.dao.ScopeDAO;
 import org.apache.ode.bpel.evt.BpelEvent;
 import org.apache.ode.bpel.evt.ScopeEvent;
@@ -60,9 +61,23 @@ public class BPELDAOConnectionImpl implements BpelDAOConnection {
     static final Log __log = LogFactory.getLog(BPELDAOConnectionImpl.class);
 
     protected EntityManager _em;
+    protected ProcessMetadataCache _metadataCache;
 
     public BPELDAOConnectionImpl(EntityManager em) {
+        this(em, null);
+    }
+
+    /**
+     * @param metadataCache keys of the process and correlator rows shared by the connections
+     * of the factory, null to always query for them
+     */
+    public BPELDAOConnectionImpl(EntityManager em, ProcessMetadataCache metadataCache) {
         _em = em;
+        _metadataCache = metadataCache;
+    }
+
+    public ProcessMetadataCache getMetadataCache() {
+        return _metadataCache;
     }
 
     public List<BpelEvent> bpelEventQuery(InstanceFilter ifilter,
@@ -92,6 +107,12 @@ public class BPELDAOConnectionImpl implements BpelDAOConnection {
         return ret;
     }
 
+    public MessageExchangeDAO createMessageExchange(String mexId, char dir) {
+        MessageExchangeDAOImpl ret = new MessageExchangeDAOImpl(mexId, dir);
+        _em.persist(ret);
+        return ret;
+    }
+
     public ProcessDAO createProcess(QName pid, QName type, String guid, long version) {
         ProcessDAOImpl ret = new ProcessDAOImpl(pid,type,guid,version);
         _em.persist(ret);
@@ -107,10 +128,21 @@ public class BPELDAOConnectionImpl implements BpelDAOConnection {
 
     @SuppressWarnings("unchecked")
     public ProcessDAO getProcess(QName processId) {
+        long generation = 0;
+        if (_metadataCache != null) {
+            Long id = _metadataCache.getProcessId(processId);
+            if (id != null) {
+                ProcessDAOImpl p = _em.find(ProcessDAOImpl.class, id);
+                if (p != null && processId.equals(p.getProcessId())) return p;
+                _metadataCache.invalidate(processId);
+            }
+            generation = _metadataCache.generation();
+        }
         List l = _em.createQuery("select x from ProcessDAOImpl x where x._processId = ?1")
                 .setParameter(1, processId.toString()).getResultList();
         if (l.size() == 0) return null;
         ProcessDAOImpl p = (ProcessDAOImpl) l.get(0);
+        if (_metadataCache != null) _metadataCache.putProcessId(processId, (Long) p.getId(), generation);
         return p;
     }
 
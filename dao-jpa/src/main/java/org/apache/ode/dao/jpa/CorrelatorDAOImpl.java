@@ -23,12 +23,15 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ode.bpel.common.CorrelationKeySet;
 import org.apache.ode.bpel.dao.*;
+import org.apache.ode.bpel.iapi.OdeGlobalConfig;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 @Entity
 @Table(name = "ODE_CORRELATOR")
@@ -41,7 +44,6 @@ public class CorrelatorDAOImpl extends OpenJPADAO implements CorrelatorDAO {
     @Id
     @Column(name = "CORRELATOR_ID")
     @GeneratedValue(strategy = GenerationType.AUTO)
-    @SuppressWarnings("unused")
     private Long _correlatorId;
     @Basic
     @Column(name = "CORRELATOR_KEY")
@@ -99,20 +101,32 @@ public class CorrelatorDAOImpl extends OpenJPADAO implements CorrelatorDAO {
         if (__log.isDebugEnabled()) {
             __log.debug("findRoute " + correlationKeySet);
         }
-        List<CorrelationKeySet> subSets = correlationKeySet.findSubSets();
-        Query qry = getEM().createQuery(generateSelectorQuery(ROUTE_BY_CKEY_HEADER, subSets));
+        Set<String> keys = new LinkedHashSet<String>();
+        for (CorrelationKeySet subSet : correlationKeySet.findSubSets(OdeGlobalConfig.correlationMaxSubSetSize())) {
+            keys.add(subSet.toCanonicalString());
+        }
+        List<Long> hashes = new ArrayList<Long>(keys.size());
+        for (String key : keys) {
+            Long hash = CorrelationKeySet.canonicalHash(key);
+            if (!hashes.contains(hash)) hashes.add(hash);
+        }
+        Query qry = getEM().createQuery(generateSelectorQuery(ROUTE_BY_CKEY_HEADER, hashes.size()));
         qry.setParameter("ptype", _process.getType().toString());
         qry.setParameter("corrkey", _correlatorKey);
-        for (int i = 0; i < subSets.size(); i++) {
-            qry.setParameter("s" + i, subSets.get(i).toCanonicalString());
+        for (int i = 0; i < hashes.size(); i++) {
+            qry.setParameter("s" + i, hashes.get(i));
         }
 
-        List<MessageRouteDAO> candidateRoutes = (List<MessageRouteDAO>) qry.getResultList();
+        List<MessageRouteDAOImpl> candidateRoutes = (List<MessageRouteDAOImpl>) qry.getResultList();
         if (candidateRoutes.size() > 0) {
             List<MessageRouteDAO> matchingRoutes = new ArrayList<MessageRouteDAO>();
             boolean routed = false;
             for (int i = 0; i < candidateRoutes.size(); i++) {
-                MessageRouteDAO route = candidateRoutes.get(i);
+                MessageRouteDAOImpl route = candidateRoutes.get(i);
+                // the hash only narrows down the candidates
+                if (!keys.contains(route.getCanonicalCorrelationKey())) {
+                    continue;
+                }
                 if ("all".equals(route.getRoute())) {
                     matchingRoutes.add(route);
                 } else {
@@ -125,7 +139,7 @@ public class CorrelatorDAOImpl extends OpenJPADAO implements CorrelatorDAO {
             if (__log.isDebugEnabled()) {
                 __log.debug("findRoute found " + matchingRoutes);
             }
-            return matchingRoutes;
+            return matchingRoutes.isEmpty() ? null : matchingRoutes;
         } else {
             if (__log.isDebugEnabled()) {
                 __log.debug("findRoute found nothing");
@@ -134,14 +148,14 @@ public class CorrelatorDAOImpl extends OpenJPADAO implements CorrelatorDAO {
         }
     }
 
-    private String generateSelectorQuery(String header, List<CorrelationKeySet> subSets) {
+    private String generateSelectorQuery(String header, int hashes) {
         StringBuffer filterQuery = new StringBuffer(header);
 
-        if (subSets.size() == 1) {
-            filterQuery.append(" and route._correlationKey = :s0");
-        } else if (subSets.size() > 1) {
-            filterQuery.append(" and route._correlationKey in(");
-            for (int i = 0; i < subSets.size(); i++) {
+        if (hashes == 1) {
+            filterQuery.append(" and route._correlationKeyHash = :s0");
+        } else if (hashes > 1) {
+            filterQuery.append(" and route._correlationKeyHash in(");
+            for (int i = 0; i < hashes; i++) {
                 if (i > 0) {
                     filterQuery.append(", ");
                 }
@@ -157,6 +171,14 @@ public class CorrelatorDAOImpl extends OpenJPADAO implements CorrelatorDAO {
         return _correlatorKey;
     }
 
+    Long getId() {
+        return _correlatorId;
+    }
+
+    ProcessDAOImpl getProcess() {
+        return _process;
+    }
+
     public void setCorrelatorId(String newId) {
         _correlatorKey = newId;
     }
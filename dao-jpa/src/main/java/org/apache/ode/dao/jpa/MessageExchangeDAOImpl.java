@@ -126,6 +126,11 @@ public class MessageExchangeDAOImpl extends OpenJPADAO implements MessageExchang
         _id = new UUID().toString();
     }
 
+    public MessageExchangeDAOImpl(String id, char direction){
+        _direction = direction;
+        _id = id;
+    }
+
     public MessageDAO createMessage(QName type) {
         MessageDAOImpl ret = new MessageDAOImpl(type,this);
         getEM().persist(ret);
@@ -322,11 +327,11 @@ public class MessageExchangeDAOImpl extends OpenJPADAO implements MessageExchang
         _pipedMessageExchangeId = pipedMessageExchangeId;
     }
 
-    void setCorrelationKeySet(CorrelationKeySet correlationKeySet) {
+    public void setCorrelationKeySet(CorrelationKeySet correlationKeySet) {
         _correlationKeys = correlationKeySet.toCanonicalString();
     }
 
-    CorrelationKeySet getCorrelationKeySet() {
+    public CorrelationKeySet getCorrelationKeySet() {
         return new CorrelationKeySet(_correlationKeys);
     }
 
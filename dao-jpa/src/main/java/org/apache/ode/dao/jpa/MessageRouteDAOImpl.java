@@ -37,6 +37,8 @@ import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 
+import org.apache.openjpa.persistence.jdbc.Index;
+
 @Entity
 @Table(name="ODE_MESSAGE_ROUTE")
 @NamedQueries ({
@@ -56,6 +58,9 @@ public class MessageRouteDAOImpl implements MessageRouteDAO {
     private int _index;
     @Basic @Column(name="CORRELATION_KEY")
     private String _correlationKey;
+    @Basic @Column(name="CORRELATION_KEY_HASH")
+    @Index(name="IDX_MESSAGE_ROUTE_CKEY_HASH")
+    private Long _correlationKeyHash;
     @Basic @Column(name="ROUTE_POLICY", length=16)
     private String _routePolicy;
 
@@ -72,7 +77,7 @@ public class MessageRouteDAOImpl implements MessageRouteDAO {
     public MessageRouteDAOImpl() {}
     public MessageRouteDAOImpl(CorrelationKeySet keySet, String groupId, int index,
                                ProcessInstanceDAOImpl processInst, CorrelatorDAOImpl correlator, String routePolicy) {
-        _correlationKey = keySet.toCanonicalString();
+        setCorrelationKey(keySet.toCanonicalString());
         _groupId = groupId;
         _index = index;
         _processInst = processInst;
@@ -89,7 +94,16 @@ public class MessageRouteDAOImpl implements MessageRouteDAO {
     }
 
     public void setCorrelationKey(CorrelationKey key) {
-        _correlationKey = key.toCanonicalString();
+        setCorrelationKey(key.toCanonicalString());
+    }
+
+    String getCanonicalCorrelationKey() {
+        return _correlationKey;
+    }
+
+    private void setCorrelationKey(String key) {
+        _correlationKey = key;
+        _correlationKeyHash = CorrelationKeySet.canonicalHash(key);
     }
 
     public String getGroupId() {
@@ -113,6 +127,6 @@ public class MessageRouteDAOImpl implements MessageRouteDAO {
     }
 
     public void setCorrelationKeySet(CorrelationKeySet keySet) {
-        _correlationKey = keySet.toCanonicalString();
+        setCorrelationKey(keySet.toCanonicalString());
     }
 }
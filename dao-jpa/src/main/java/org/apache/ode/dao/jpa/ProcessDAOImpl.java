@@ -27,6 +27,7 @@ import org.apache.ode.bpel.dao.CorrelatorDAO;
 import org.apache.ode.bpel.dao.MessageExchangeDAO;
 import org.apache.ode.bpel.dao.ProcessDAO;
 import org.apache.ode.bpel.dao.ProcessInstanceDAO;
+import org.apache.ode.bpel.dao.ProcessMetadataCache;
 
 import javax.persistence.*;
 import javax.xml.namespace.QName;
@@ -89,12 +90,29 @@ public class ProcessDAOImpl extends OpenJPADAO implements ProcessDAO {
 
     @SuppressWarnings("unchecked")
     public CorrelatorDAO getCorrelator(String correlatorId) {
+        BPELDAOConnectionImpl conn = getConn();
+        ProcessMetadataCache cache = conn == null || _processId == null ? null : conn.getMetadataCache();
+        long generation = 0;
+        if (cache != null) {
+            QName pid = getProcessId();
+            Long id = cache.getCorrelatorId(pid, _id, correlatorId);
+            if (id != null) {
+                CorrelatorDAOImpl corr = getEM().find(CorrelatorDAOImpl.class, id);
+                if (corr != null && correlatorId.equals(corr.getCorrelatorId()) && corr.getProcess() == this)
+                    return corr;
+                cache.invalidate(pid);
+            }
+            generation = cache.generation();
+        }
+
         Query qry = getEM().createNamedQuery("CorrelatorByKey");
         qry.setParameter("ckey", correlatorId);
         qry.setParameter("process", this);
         List res = qry.getResultList();
         if (res.size() == 0) return null;
-        return (CorrelatorDAO) res.get(0);
+        CorrelatorDAOImpl corr = (CorrelatorDAOImpl) res.get(0);
+        if (cache != null) cache.putCorrelatorId(getProcessId(), _id, correlatorId, corr.getId(), generation);
+        return corr;
     }
 
     public ProcessInstanceDAO createInstance(CorrelatorDAO instantiatingCorrelator) {
@@ -137,6 +155,9 @@ public class ProcessDAOImpl extends OpenJPADAO implements ProcessDAO {
 
         deleteInstances(Integer.MAX_VALUE);
 
+        BPELDAOConnectionImpl conn = getConn();
+        if (conn != null && conn.getMetadataCache() != null) conn.getMetadataCache().invalidate(getProcessId());
+
         // delete process dao
         getEM().remove(this); // This deletes CorrelatorDAO
         getEM().flush();
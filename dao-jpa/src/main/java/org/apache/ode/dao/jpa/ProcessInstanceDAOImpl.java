@@ -99,6 +99,8 @@ public class ProcessInstanceDAOImpl extends OpenJPADAO implements ProcessInstanc
     private short _previousState;
     @Lob @Column(name="EXECUTION_STATE")
     private byte[] _executionState;
+    @Lob @Column(name="EXECUTION_STATE_DELTA")
+    private byte[] _executionStateDelta;
     @Basic @Column(name="SEQUENCE")
     private long _sequence;
     @Basic @Column(name="DATE_CREATED")
@@ -167,6 +169,7 @@ public class ProcessInstanceDAOImpl extends OpenJPADAO implements ProcessInstanc
 
         // remove jacob state
         setExecutionState(null);
+        setExecutionStateDelta(null);
         if (getEM() != null) {
             if( !cleanupCategories.isEmpty() ) {
                 // by default, we do not flush before select; flush it, so we can delete no matter if an entity is loaded up
@@ -377,6 +380,14 @@ public class ProcessInstanceDAOImpl extends OpenJPADAO implements ProcessInstanc
         _executionState = execState;
     }
 
+    public byte[] getExecutionStateDelta() {
+        return _executionStateDelta;
+    }
+
+    public void setExecutionStateDelta(byte[] delta) {
+        _executionStateDelta = delta;
+    }
+
     public void setFault(FaultDAO fault) {
         _fault = (FaultDAOImpl)fault;
     }
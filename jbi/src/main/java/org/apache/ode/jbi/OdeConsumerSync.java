@@ -19,6 +19,9 @@
 
 package org.apache.ode.jbi;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
 import javax.jbi.messaging.InOnly;
 import javax.jbi.messaging.InOut;
 import javax.jbi.messaging.MessagingException;
@@ -26,6 +29,8 @@ import javax.jbi.messaging.MessagingException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ode.bpel.iapi.PartnerRoleMessageExchange;
+import org.apache.ode.bpel.iapi.MessageExchange.FailureType;
+import org.apache.ode.utils.concurrent.ExecutorRegistry;
 
 /**
  * Completes {@link OdeConsumer} implementation using the synchronous invocation style (sendSync).
@@ -43,7 +48,15 @@ class OdeConsumerSync extends OdeConsumer {
 
 
     protected void doSendTwoWay(final PartnerRoleMessageExchange odeMex, final InOut inout) {
-        _ode._executorService.submit(new Runnable() {
+        try {
+            submitTwoWay(odeMex, inout);
+        } catch (RejectedExecutionException e) {
+            replyWithRejection(odeMex, e);
+        }
+    }
+
+    private void submitTwoWay(final PartnerRoleMessageExchange odeMex, final InOut inout) {
+        _ode._executors.get(ExecutorRegistry.OUTBOUND).submit(new Runnable() {
             public void run() {
                 try {
                     _outstandingExchanges.put(inout.getExchangeId(), odeMex);
@@ -61,7 +74,16 @@ class OdeConsumerSync extends OdeConsumer {
     }
 
     protected void doSendOneWay(final PartnerRoleMessageExchange odeMex, final InOnly inonly) {
-        _ode._executorService.submit(new Runnable() {
+        try {
+            submitOneWay(odeMex, inonly);
+        } catch (RejectedExecutionException e) {
+            // the exchange was already completed when the transaction committed, nothing to fail
+            __log.error("Outbound executor saturated, request-only message not sent for ODE mex " + odeMex, e);
+        }
+    }
+
+    private void submitOneWay(final PartnerRoleMessageExchange odeMex, final InOnly inonly) {
+        _ode._executors.get(ExecutorRegistry.OUTBOUND).submit(new Runnable() {
             public void run() {
                 try {
                     boolean sendOk = _ode.getChannel().sendSync(inonly, _responseTimeout);
@@ -77,6 +99,25 @@ class OdeConsumerSync extends OdeConsumer {
         });
     }
 
+    /**
+     * Fails a two-way mex whose invocation the outbound executor refused. We're past the commit
+     * of the invoking transaction at that point, so the reply gets a transaction of its own.
+     */
+    private void replyWithRejection(final PartnerRoleMessageExchange odeMex, RejectedExecutionException e) {
+        final String errmsg = "Outbound executor saturated, message not sent for ODE mex " + odeMex;
+        __log.warn(errmsg, e);
+        try {
+            _ode._scheduler.execIsolatedTransaction(new Callable<Void>() {
+                public Void call() throws Exception {
+                    odeMex.replyWithFailure(FailureType.COMMUNICATION_ERROR, errmsg, null);
+                    return null;
+                }
+            });
+        } catch (Exception ex) {
+            __log.error("Error executing replyWithFailure transaction; reply will be lost.", ex);
+        }
+    }
+
     protected void inOutDone(InOut inout) {
         // nothing
     }
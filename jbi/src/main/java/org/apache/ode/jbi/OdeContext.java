@@ -23,7 +23,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
 
 import javax.jbi.JBIException;
 import javax.jbi.component.ComponentContext;
@@ -55,6 +54,9 @@ import org.apache.ode.jbi.msgmap.Mapper;
 import org.apache.ode.jbi.util.WSDLFlattener;
 import org.apache.ode.scheduler.simple.SimpleScheduler;
 import org.apache.ode.store.ProcessStoreImpl;
+import org.apache.ode.utils.concurrent.BackPressure;
+import org.apache.ode.utils.metrics.MetricsRegistry;
+import org.apache.ode.utils.concurrent.ExecutorRegistry;
 import org.w3c.dom.Document;
 
 /**
@@ -98,7 +100,12 @@ final public class OdeContext {
 
     SimpleScheduler _scheduler;
 
-    ExecutorService _executorService;
+    ExecutorRegistry _executors;
+
+    MetricsRegistry _metrics;
+
+    /** Admission control of the provided endpoints, null if disabled. */
+    BackPressure _backPressure;
 
     BpelDAOConnectionFactory _daocf;
 
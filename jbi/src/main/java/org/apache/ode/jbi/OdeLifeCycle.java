@@ -21,7 +21,7 @@ package org.apache.ode.jbi;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.concurrent.Executors;
+import java.lang.management.ManagementFactory;
 
 import javax.jbi.JBIException;
 import javax.jbi.component.ComponentContext;
@@ -40,6 +40,7 @@ import org.apache.ode.bpel.engine.BpelServerImpl;
 import org.apache.ode.bpel.engine.ProcessAndInstanceManagementMBean;
 import org.apache.ode.bpel.extvar.jdbc.JdbcExternalVariableModule;
 import org.apache.ode.bpel.iapi.BpelEventListener;
+import org.apache.ode.bpel.iapi.ProcessStoreListener;
 import org.apache.ode.bpel.intercept.MessageExchangeInterceptor;
 import org.apache.ode.il.dbutil.Database;
 import org.apache.ode.il.dbutil.DatabaseConfigException;
@@ -48,7 +49,10 @@ import org.apache.ode.scheduler.simple.JdbcDelegate;
 import org.apache.ode.scheduler.simple.SimpleScheduler;
 import org.apache.ode.store.ProcessStoreImpl;
 import org.apache.ode.utils.GUID;
+import org.apache.ode.utils.concurrent.BoundedExecutor;
+import org.apache.ode.utils.concurrent.ExecutorRegistry;
 import org.apache.ode.utils.fs.TempFileManager;
+import org.apache.ode.utils.metrics.MetricsRegistry;
 
 /**
  * This class implements ComponentLifeCycle. The JBI framework will start this engine class automatically when JBI framework starts
@@ -239,21 +243,41 @@ public class OdeLifeCycle implements ComponentLifeCycle {
         // we'll do that explcitly
         _ode._eprContext = new EndpointReferenceContextImpl(_ode);
         _ode._mexContext = new MessageExchangeContextImpl(_ode);
-        if (_ode._config.getThreadPoolMaxSize() == 0)
-            _ode._executorService = Executors.newCachedThreadPool();
-        else
-            _ode._executorService = Executors.newFixedThreadPool(_ode._config.getThreadPoolMaxSize());
+        _ode._metrics = new MetricsRegistry(_ode._config.isMetricsEnabled());
+        if (_ode._metrics.isEnabled()) {
+            _ode._metrics.register(ManagementFactory.getPlatformMBeanServer());
+        }
+        _ode._executors = new ExecutorRegistry(_ode._metrics);
+        _ode._config.createExecutor(_ode._executors, ExecutorRegistry.JOBS, 50, 1000, BoundedExecutor.RejectionPolicy.BLOCK);
+        _ode._config.createExecutor(_ode._executors, ExecutorRegistry.OUTBOUND, 50, 500, BoundedExecutor.RejectionPolicy.ABORT);
         _ode._scheduler = new SimpleScheduler(new GUID().toString(),new JdbcDelegate(_ode._dataSource), _ode._config.getProperties());
         _ode._scheduler.setJobProcessor(_ode._server);
-        _ode._scheduler.setExecutorService(_ode._executorService);
+        _ode._scheduler.setExecutorService(_ode._executors.get(ExecutorRegistry.JOBS));
         _ode._scheduler.setTransactionManager((TransactionManager) _ode.getContext().getTransactionManager());
+        if (_ode._metrics.isEnabled()) {
+            _ode._server.setMetricsRegistry(_ode._metrics);
+            _ode._scheduler.setMetricsRegistry(_ode._metrics);
+        }
+        _ode._backPressure = _ode._config.createBackPressure("jbi", _ode._executors);
+        if (_ode._backPressure != null) {
+            _ode._scheduler.addBackPressureLimits(_ode._backPressure, _ode._config.getBackPressureSchedulerRatio(),
+                    _ode._config.getBackPressureTransactionLatency());
+            _ode._backPressure.registerMetrics(_ode._metrics);
+        }
 
         _ode._store = new ProcessStoreImpl(_ode._eprContext , _ode._dataSource, _ode._config.getDAOConnectionFactory(), _ode._config, false);
+        if (_ode._daocf instanceof ProcessStoreListener) {
+            // drops the cached metadata of redeployed processes
+            _ode._store.registerListener((ProcessStoreListener) _ode._daocf);
+        }
         registerExternalVariableModules();
         _ode._store.loadAll();
 
-        _ode._server.setInMemDaoConnectionFactory(new org.apache.ode.bpel.memdao.BpelDAOConnectionFactoryImpl(
-                _ode._scheduler, _ode._config.getInMemMexTtl()));
+        org.apache.ode.bpel.memdao.BpelDAOConnectionFactoryImpl inMemCF =
+            new org.apache.ode.bpel.memdao.BpelDAOConnectionFactoryImpl(_ode._scheduler, _ode._config.getInMemMexTtl());
+        inMemCF.setSpoolThreshold(_ode._config.getInMemSpoolThreshold());
+        inMemCF.setInstanceDataBudget(_ode._config.getInMemInstanceDataBudget());
+        _ode._server.setInMemDaoConnectionFactory(inMemCF);
         _ode._server.setDaoConnectionFactory(_ode._daocf);
         _ode._server.setEndpointReferenceContext(_ode._eprContext);
         _ode._server.setMessageExchangeContext(_ode._mexContext);
@@ -475,6 +499,15 @@ public class OdeLifeCycle implements ComponentLifeCycle {
 
             }
 
+            if (_ode._executors != null) {
+                _ode._executors.shutdownNow();
+            }
+
+            if (_ode._metrics != null) {
+                _ode._metrics.unregister();
+                _ode._metrics = null;
+            }
+
             try {
                 _db.shutdown();
             } catch (Exception ex) {
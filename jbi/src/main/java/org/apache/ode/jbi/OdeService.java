@@ -28,6 +28,7 @@ import org.apache.ode.bpel.iapi.Scheduler.Synchronizer;
 import org.apache.ode.bpel.iapi.MyRoleMessageExchange;
 import org.apache.ode.jbi.msgmap.Mapper;
 import org.apache.ode.jbi.msgmap.MessageTranslationException;
+import org.apache.ode.utils.concurrent.BackPressure;
 import org.w3c.dom.Element;
 
 import javax.jbi.JBIException;
@@ -136,6 +137,8 @@ public class OdeService extends ServiceBridge implements JbiMessageExchangeProce
                                                 + " endpoint=" + _endpoint);
         }
 
+        if (!admit(jbiMex)) return;
+
         if (jbiMex.getPattern().equals(org.apache.ode.jbi.MessageExchangePattern.IN_ONLY)) {
             boolean success = false;
             Exception err = null;
@@ -187,6 +190,26 @@ public class OdeService extends ServiceBridge implements JbiMessageExchangeProce
 
     }
 
+    /**
+     * Holds the exchange back while the server is saturated, which also holds up the
+     * delivery of the following ones, and fails it if the server is still saturated
+     * after the configured delay.
+     */
+    private boolean admit(javax.jbi.messaging.MessageExchange jbiMex) throws MessagingException {
+        BackPressure backPressure = _ode._backPressure;
+        if (backPressure == null) return true;
+        try {
+            if (backPressure.awaitAdmission(_ode._config.getBackPressureMaxDelay())) return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (__log.isDebugEnabled()) __log.debug("Server busy, rejecting JBI message exchange " + jbiMex.getExchangeId());
+        jbiMex.setStatus(ExchangeStatus.ERROR);
+        jbiMex.setError(new MessagingException("Server busy, retry in " + backPressure.getRetryAfter() + " seconds."));
+        _ode.getChannel().send(jbiMex);
+        return false;
+    }
+
     /**
      * Called from
      * {@link MessageExchangeContextImpl#onAsyncReply(MyRoleMessageExchange)}
@@ -20,13 +20,14 @@ package org.apache.ode.jbi;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.ode.utils.concurrent.BoundedExecutor;
+import org.apache.ode.utils.concurrent.ExecutorRegistry;
 
 import javax.jbi.messaging.DeliveryChannel;
 import javax.jbi.messaging.MessageExchange;
 import javax.jbi.messaging.MessagingException;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -69,7 +70,9 @@ public class Receiver implements Runnable {
     public Receiver(OdeContext context) {
         _odeContext = context;
         _thread = new Thread(this);
-        _executorService = Executors.newFixedThreadPool(THREADPOOL_SIZE);
+        // a saturated pool makes the receiver thread dispatch itself, which slows down accepting
+        _executorService = context._config.createExecutor(context._executors, ExecutorRegistry.INBOUND,
+                THREADPOOL_SIZE, 100, BoundedExecutor.RejectionPolicy.CALLER_RUNS);
     }
 
     /**
@@ -263,7 +263,7 @@ public class ServiceMixMapper extends BaseXmlMapper implements Mapper {
                     __log.debug("toODE() header " + header + " := " + DOMUtils.domToString(headers.get(header)) );
                 }
                 try {
-                    odeMsg.setHeaderPart(header.getLocalPart(), DOMUtils.stringToDOM(DOMUtils.domToString(headers.get(header))));
+                    odeMsg.setHeaderPart(header.getLocalPart(), DOMUtils.stringToDOM(DOMUtils.domToBytes(headers.get(header))));
                 } catch (Exception e) {
                     __log.error("Can't copy input header " + header);
                 }
@@ -39,7 +39,7 @@ class Job extends Task {
     boolean persisted = true;
 
     public Job(long when, boolean transacted, JobDetails jobDetail) {
-        this(when, new GUID().toString(),transacted,jobDetail);
+        this(when, GUID.nextId(),transacted,jobDetail);
     }
 
     public Job(long when, String jobId, boolean transacted, JobDetails jobDetail) {
@@ -31,7 +31,6 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -45,6 +44,12 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ode.bpel.iapi.ContextException;
 import org.apache.ode.bpel.iapi.Scheduler;
+import org.apache.ode.utils.concurrent.BackPressure;
+import org.apache.ode.utils.concurrent.BoundedExecutor;
+import org.apache.ode.utils.concurrent.ExecutorRegistry;
+import org.apache.ode.utils.metrics.Gauge;
+import org.apache.ode.utils.metrics.Histogram;
+import org.apache.ode.utils.metrics.MetricsRegistry;
 
 /**
  * A reliable and relatively simple scheduler that uses a database to persist information about
@@ -147,6 +152,26 @@ public class SimpleScheduler implements Scheduler, TaskRunner {
 
     private DateFormat debugDateFormatter = new SimpleDateFormat("HH:mm:ss,SSS");
 
+    /** Time between a job's scheduled date and it actually starting, in microseconds. */
+    private Histogram _jobLag = MetricsRegistry.DISABLED.histogram("scheduler", "jobLag");
+
+    /** Duration of the transactions started by the scheduler, in microseconds. */
+    private Histogram _transactionTime = MetricsRegistry.DISABLED.histogram("scheduler", "transactionTime");
+
+    /** Weight of the latest transaction in the moving average of the transaction latency. */
+    private static final double LATENCY_WEIGHT = 0.1;
+
+    /** The latency average is considered stale, and ignored, when no transaction ended for this long. */
+    private static final long LATENCY_STALE_MILLIS = 10000;
+
+    /** Exponentially weighted moving average of the transaction latency, in milliseconds. */
+    private volatile double _transactionLatency;
+
+    private volatile long _lastTransactionEnd;
+
+    /** Whether anyone reads the transaction timings, set when metrics or back-pressure get attached. */
+    private volatile boolean _timeTransactions;
+
     public SimpleScheduler(String nodeId, DatabaseDelegate del, Properties conf) {
         _nodeId = nodeId;
         _db = del;
@@ -211,6 +236,57 @@ public class SimpleScheduler implements Scheduler, TaskRunner {
         _exec = executorService;
     }
 
+    public void setMetricsRegistry(MetricsRegistry registry) {
+        _jobLag = registry.histogram("scheduler", "jobLag");
+        _transactionTime = registry.histogram("scheduler", "transactionTime");
+        _timeTransactions |= registry.isEnabled();
+        registry.gauge("scheduler", "queueDepth", new Gauge() {
+            public long getValue() {
+                SchedulerThread todo = _todo;
+                return todo == null ? 0 : todo.size();
+            }
+        });
+        registry.gauge("scheduler", "outstandingJobs", new Gauge() {
+            public long getValue() {
+                return _outstandingJobs.size();
+            }
+        });
+    }
+
+    public int getOutstandingJobs() {
+        return _outstandingJobs.size();
+    }
+
+    public int getQueueLength() {
+        return _todoLimit;
+    }
+
+    /**
+     * @return moving average of the duration of the scheduler's transactions in milliseconds, 0 if none ended lately
+     */
+    public long getTransactionLatency() {
+        if (System.currentTimeMillis() - _lastTransactionEnd > LATENCY_STALE_MILLIS) return 0;
+        return Math.round(_transactionLatency);
+    }
+
+    /**
+     * Adds the scheduler's limits to the back-pressure of the inbound bindings: the
+     * outstanding jobs against a ratio of the queue length and the transaction latency.
+     */
+    public void addBackPressureLimits(BackPressure backPressure, double queueRatio, long maxTransactionLatency) {
+        backPressure.addLimit("scheduler.outstandingJobs", new Gauge() {
+            public long getValue() {
+                return getOutstandingJobs();
+            }
+        }, queueRatio * _todoLimit);
+        backPressure.addLimit("scheduler.transactionLatency", new Gauge() {
+            public long getValue() {
+                return getTransactionLatency();
+            }
+        }, maxTransactionLatency);
+        _timeTransactions = true;
+    }
+
     public void setPolledRunnableProcesser(JobProcessor polledRunnableProcessor) {
         _polledRunnableProcessor = polledRunnableProcessor;
     }
@@ -274,6 +350,7 @@ public class SimpleScheduler implements Scheduler, TaskRunner {
 
         _txm.setTransactionTimeout(timeout);
         if(__log.isDebugEnabled() && timeout!=0) __log.debug("Custom transaction timeout: "+timeout);
+        long start = _timeTransactions ? System.nanoTime() : 0;
         try {
             do {
                 try {
@@ -309,6 +386,10 @@ public class SimpleScheduler implements Scheduler, TaskRunner {
                 }
             } while( immediateRetryCount-- > 0 );
         } finally {
+            if (_timeTransactions) {
+                _transactionTime.recordSince(start);
+                transactionEnded((System.nanoTime() - start) / 1000000.0);
+            }
             // 0 restores the default value
             _txm.setTransactionTimeout(0);
         }
@@ -316,6 +397,12 @@ public class SimpleScheduler implements Scheduler, TaskRunner {
         throw ex;
     }
 
+    private void transactionEnded(double millis) {
+        // racy updates only lose a sample now and then, fine for an average
+        _transactionLatency += LATENCY_WEIGHT * (millis - _transactionLatency);
+        _lastTransactionEnd = System.currentTimeMillis();
+    }
+
     public void setRollbackOnly() throws Exception {
         TransactionManager txm = _txm;
         if( txm == null ) {
@@ -456,8 +543,10 @@ public class SimpleScheduler implements Scheduler, TaskRunner {
             __log.debug("no DeleteJobsOnStart");
         }
 
-        if (_exec == null)
-            _exec = Executors.newCachedThreadPool();
+        if (_exec == null) {
+            // bounded, so that a backlog blocks the scheduler thread instead of piling up threads
+            _exec = new BoundedExecutor(ExecutorRegistry.JOBS, 50, 1000, BoundedExecutor.RejectionPolicy.BLOCK);
+        }
 
         _todo.clearTasks(UpgradeJobsTask.class);
         _todo.clearTasks(LoadImmediateTask.class);
@@ -531,6 +620,7 @@ public class SimpleScheduler implements Scheduler, TaskRunner {
         }
 
         public Void call() throws Exception {
+            _jobLag.record(Math.max(0, System.currentTimeMillis() - job.schedDate) * 1000);
             try {
                 final Scheduler.JobInfo jobInfo = new Scheduler.JobInfo(job.jobId, job.detail,
                         job.detail.getRetryCount());
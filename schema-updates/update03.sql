@@ -0,0 +1,5 @@
+alter table BPEL_INSTANCE add JACOB_STATE_DELTA blob;
+
+alter table ODE_PROCESS_INSTANCE add EXECUTION_STATE_DELTA blob;
+
+alter table BPEL_MESSAGE_EXCHANGE add PROPERTIES blob;
@@ -0,0 +1,8 @@
+alter table BPEL_SELECTORS add CORRELATION_KEY_HASH bigint;
+create index IDX_SELECTOR_CKEY_HASH on BPEL_SELECTORS (CORRELATION_KEY_HASH);
+
+alter table BPEL_UNMATCHED add CORRELATION_KEY_HASH bigint;
+create index IDX_UNMATCHED_CKEY_HASH on BPEL_UNMATCHED (CORRELATION_KEY_HASH);
+
+alter table ODE_MESSAGE_ROUTE add CORRELATION_KEY_HASH bigint;
+create index IDX_MESSAGE_ROUTE_CKEY_HASH on ODE_MESSAGE_ROUTE (CORRELATION_KEY_HASH);
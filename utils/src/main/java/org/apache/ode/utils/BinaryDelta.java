@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Binary delta between two versions of a byte array, encoded as a sequence of
+ * copy (from the base) and insert (literal bytes) instructions. Matches are
+ * found with a rolling hash over fixed-size blocks of the base and extended in
+ * both directions, so content that merely moved is still copied.
+ */
+public class BinaryDelta {
+    private static final byte VERSION = 1;
+    private static final byte COPY = 1;
+    private static final byte INSERT = 2;
+
+    /** Size of the blocks of the base that get indexed. */
+    private static final int BLOCK = 16;
+    private static final int PRIME = 0x01000193;
+
+    private BinaryDelta() {
+    }
+
+    /**
+     * @return the delta turning base into target
+     */
+    public static byte[] diff(byte[] base, byte[] target) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(64, target.length / 8));
+        DataOutputStream out = new DataOutputStream(bos);
+        try {
+            out.writeByte(VERSION);
+            out.writeInt(target.length);
+            if (base.length < BLOCK || target.length < BLOCK) {
+                writeInsert(out, target, 0, target.length);
+            } else {
+                encode(out, base, target);
+            }
+            out.close();
+        } catch (IOException e) {
+            // can't happen with a byte array
+            throw new RuntimeException(e);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * @return the target the delta was computed for
+     * @throws IllegalArgumentException if the delta is corrupt or doesn't match the base
+     */
+    public static byte[] apply(byte[] base, byte[] delta) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(delta));
+        try {
+            if (in.readByte() != VERSION) throw new IllegalArgumentException("Unsupported delta version.");
+            byte[] target = new byte[in.readInt()];
+            int pos = 0;
+            while (pos < target.length) {
+                byte op = in.readByte();
+                if (op == COPY) {
+                    int offset = in.readInt();
+                    int length = in.readInt();
+                    if (offset < 0 || length < 0 || offset + length > base.length || pos + length > target.length)
+                        throw new IllegalArgumentException("Delta doesn't match its base.");
+                    System.arraycopy(base, offset, target, pos, length);
+                    pos += length;
+                } else if (op == INSERT) {
+                    int length = in.readInt();
+                    if (length < 0 || pos + length > target.length)
+                        throw new IllegalArgumentException("Corrupt delta.");
+                    in.readFully(target, pos, length);
+                    pos += length;
+                } else {
+                    throw new IllegalArgumentException("Corrupt delta, unknown instruction " + op);
+                }
+            }
+            return target;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Corrupt delta, truncated.", e);
+        }
+    }
+
+    private static void encode(DataOutputStream out, byte[] base, byte[] target) throws IOException {
+        // one candidate offset per slot, collisions just lose candidates
+        int blocks = base.length / BLOCK;
+        int size = Integer.highestOneBit(blocks) << 2;
+        int mask = size - 1;
+        int[] index = new int[size];
+        for (int b = blocks - 1; b >= 0; b--) {
+            index[slot(hash(base, b * BLOCK), mask)] = b * BLOCK + 1;
+        }
+
+        int outFactor = 1;
+        for (int i = 1; i < BLOCK; i++) outFactor *= PRIME;
+
+        int literal = 0;
+        int p = 0;
+        int h = hash(target, 0);
+        while (p + BLOCK <= target.length) {
+            int candidate = index[slot(h, mask)] - 1;
+            if (candidate >= 0 && equal(base, candidate, target, p, BLOCK)) {
+                int s = candidate;
+                int t = p;
+                while (t > literal && s > 0 && base[s - 1] == target[t - 1]) {
+                    s--;
+                    t--;
+                }
+                int e = candidate + BLOCK;
+                int u = p + BLOCK;
+                while (u < target.length && e < base.length && base[e] == target[u]) {
+                    e++;
+                    u++;
+                }
+                writeInsert(out, target, literal, t - literal);
+                out.writeByte(COPY);
+                out.writeInt(s);
+                out.writeInt(u - t);
+                p = u;
+                literal = u;
+                if (p + BLOCK <= target.length) h = hash(target, p);
+            } else {
+                if (p + BLOCK < target.length) {
+                    h = (h - (target[p] & 0xff) * outFactor) * PRIME + (target[p + BLOCK] & 0xff);
+                }
+                p++;
+            }
+        }
+        writeInsert(out, target, literal, target.length - literal);
+    }
+
+    private static int hash(byte[] data, int offset) {
+        int h = 0;
+        for (int i = offset; i < offset + BLOCK; i++) h = h * PRIME + (data[i] & 0xff);
+        return h;
+    }
+
+    private static int slot(int hash, int mask) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static boolean equal(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[aOffset + i] != b[bOffset + i]) return false;
+        }
+        return true;
+    }
+
+    private static void writeInsert(DataOutputStream out, byte[] data, int offset, int length) throws IOException {
+        if (length == 0) return;
+        out.writeByte(INSERT);
+        out.writeInt(length);
+        out.write(data, offset, length);
+    }
+}
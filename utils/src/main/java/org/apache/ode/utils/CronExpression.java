@@ -255,6 +255,9 @@ public class CronExpression implements Serializable, Cloneable {
     protected transient boolean nearestWeekday = false;
     protected transient boolean expressionParsed = false;
 
+    /** Result of the last next-fire-time lookup, replaced as a whole so it's safe to share. */
+    private transient volatile NextFireTime nextFireTime;
+
     /**
      * Constructs a new <CODE>CronExpression</CODE> based on the specified
      * parameter.
@@ -306,7 +309,19 @@ public class CronExpression implements Serializable, Cloneable {
      * @return the next valid date/time
      */
     public Date getNextValidTimeAfter(Date date) {
-        return getTimeAfter(date);
+        // the next valid time r after a is also the next valid time after any
+        // t in [floor-second(a), r), which covers the common case of a job
+        // asking again shortly after the previous lookup
+        long time = date.getTime();
+        NextFireTime cached = nextFireTime;
+        if (cached != null && time >= cached.from && time < cached.next.getTime()) {
+            return new Date(cached.next.getTime());
+        }
+        Date next = getTimeAfter(date);
+        if (next != null) {
+            nextFireTime = new NextFireTime(time - (time % 1000 + 1000) % 1000, next);
+        }
+        return next == null ? null : new Date(next.getTime());
     }
 
     /**
@@ -364,6 +379,7 @@ public class CronExpression implements Serializable, Cloneable {
      */
     public void setTimeZone(TimeZone timeZone) {
         this.timeZone = timeZone;
+        this.nextFireTime = null;
     }
 
     /**
@@ -1594,6 +1610,16 @@ public class CronExpression implements Serializable, Cloneable {
     }
 }
 
+class NextFireTime {
+    final long from;
+    final Date next;
+
+    NextFireTime(long from, Date next) {
+        this.from = from;
+        this.next = next;
+    }
+}
+
 class ValueSet {
     public int value;
 
@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.utils;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Writes a DOM tree to a non-repairing {@link XMLStreamWriter} in a single pass.
+ * In-scope namespaces are kept on a flat stack, and those the tree uses without
+ * declaring them are declared where they're first needed, so that an element
+ * taken out of its document still comes out namespace-well-formed.
+ *
+ * Not thread-safe, use one instance per serialization.
+ */
+class DOMStreamWriter {
+    private final XMLStreamWriter _out;
+
+    /** In-scope bindings as prefix/uri pairs, innermost last. */
+    private String[] _bindings = new String[32];
+    private int _size;
+    private int _generated;
+
+    DOMStreamWriter(XMLStreamWriter out) {
+        _out = out;
+        push(XMLConstants.XML_NS_PREFIX, XMLConstants.XML_NS_URI);
+        push("", "");
+    }
+
+    /**
+     * Writes a node, a document or an element usually.
+     * @param encoding encoding named in the XML declaration
+     * @param declaration whether to start with an XML declaration
+     */
+    void write(Node node, String encoding, boolean declaration) throws XMLStreamException {
+        if (declaration) _out.writeStartDocument(encoding, "1.0");
+        if (node.getNodeType() == Node.DOCUMENT_NODE) {
+            writeChildren(node);
+        } else {
+            writeNode(node);
+        }
+        if (declaration) _out.writeEndDocument();
+        _out.flush();
+    }
+
+    private void writeChildren(Node node) throws XMLStreamException {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            writeNode(child);
+        }
+    }
+
+    private void writeNode(Node node) throws XMLStreamException {
+        switch (node.getNodeType()) {
+        case Node.ELEMENT_NODE:
+            writeElement((Element) node);
+            break;
+        case Node.TEXT_NODE:
+            _out.writeCharacters(node.getNodeValue());
+            break;
+        case Node.CDATA_SECTION_NODE:
+            writeCData(node.getNodeValue());
+            break;
+        case Node.COMMENT_NODE:
+            _out.writeComment(node.getNodeValue());
+            break;
+        case Node.PROCESSING_INSTRUCTION_NODE:
+            _out.writeProcessingInstruction(node.getNodeName(), node.getNodeValue());
+            break;
+        case Node.ENTITY_REFERENCE_NODE:
+            _out.writeEntityRef(node.getNodeName());
+            break;
+        case Node.DOCUMENT_FRAGMENT_NODE:
+            writeChildren(node);
+            break;
+        case Node.ATTRIBUTE_NODE:
+            _out.writeCharacters(node.getNodeValue());
+            break;
+        default:
+            // document types and entities have no place in a payload
+            break;
+        }
+    }
+
+    private void writeElement(Element elmt) throws XMLStreamException {
+        int mark = _size;
+        boolean empty = elmt.getFirstChild() == null;
+        String localName = elmt.getLocalName();
+        if (localName == null) {
+            // DOM level 1 element, its name is all there is
+            if (empty) _out.writeEmptyElement(elmt.getNodeName());
+            else _out.writeStartElement(elmt.getNodeName());
+            if (elmt.hasAttributes()) writeAttributes(elmt.getAttributes());
+        } else {
+            String prefix = elmt.getPrefix();
+            if (prefix == null) prefix = "";
+            String uri = elmt.getNamespaceURI();
+            if (uri == null) uri = "";
+            if (empty) _out.writeEmptyElement(prefix, localName, uri);
+            else _out.writeStartElement(prefix, localName, uri);
+
+            if (elmt.hasAttributes()) {
+                NamedNodeMap attrs = elmt.getAttributes();
+                writeDeclarations(attrs);
+                if (!uri.equals(lookup(prefix))) declare(prefix, uri);
+                writeAttributes(attrs);
+            } else if (!uri.equals(lookup(prefix))) {
+                declare(prefix, uri);
+            }
+        }
+
+        if (!empty) {
+            Node first = elmt.getFirstChild();
+            if (first.getNextSibling() == null && first.getNodeType() == Node.TEXT_NODE) {
+                // the most common shape of all, a leaf with some text
+                _out.writeCharacters(first.getNodeValue());
+            } else {
+                writeChildren(elmt);
+            }
+            _out.writeEndElement();
+        }
+        _size = mark;
+    }
+
+    private void writeDeclarations(NamedNodeMap attrs) throws XMLStreamException {
+        for (int i = 0, len = attrs.getLength(); i < len; i++) {
+            Attr attr = (Attr) attrs.item(i);
+            String name = attr.getNodeName();
+            if (name.equals("xmlns")) {
+                declare("", attr.getValue());
+            } else if (name.startsWith("xmlns:")) {
+                declare(name.substring(6), attr.getValue());
+            }
+        }
+    }
+
+    private void writeAttributes(NamedNodeMap attrs) throws XMLStreamException {
+        for (int i = 0, len = attrs.getLength(); i < len; i++) {
+            Attr attr = (Attr) attrs.item(i);
+            String name = attr.getNodeName();
+            if (name.equals("xmlns") || name.startsWith("xmlns:")) continue;
+
+            String localName = attr.getLocalName();
+            String uri = attr.getNamespaceURI();
+            if (localName == null) {
+                _out.writeAttribute(name, attr.getValue());
+            } else if (uri == null || uri.length() == 0) {
+                _out.writeAttribute(localName, attr.getValue());
+            } else {
+                String prefix = attr.getPrefix();
+                if (prefix == null || prefix.length() == 0 || !uri.equals(lookup(prefix))) {
+                    // attributes can't use the default namespace, they need a prefix bound to theirs
+                    String bound = lookupPrefix(uri);
+                    if (bound != null) {
+                        prefix = bound;
+                    } else {
+                        if (prefix == null || prefix.length() == 0 || lookup(prefix) != null) prefix = newPrefix();
+                        declare(prefix, uri);
+                    }
+                }
+                _out.writeAttribute(prefix, uri, localName, attr.getValue());
+            }
+        }
+    }
+
+    private void writeCData(String data) throws XMLStreamException {
+        // a CDATA section can't contain its own end marker, split it in two sections around it
+        int start = 0;
+        int end;
+        while ((end = data.indexOf("]]>", start)) >= 0) {
+            _out.writeCData(data.substring(start, end + 2));
+            start = end + 2;
+        }
+        _out.writeCData(start == 0 ? data : data.substring(start));
+    }
+
+    private void declare(String prefix, String uri) throws XMLStreamException {
+        push(prefix, uri);
+        if (prefix.length() == 0) _out.writeDefaultNamespace(uri);
+        else _out.writeNamespace(prefix, uri);
+    }
+
+    private void push(String prefix, String uri) {
+        if (_size + 2 > _bindings.length) {
+            String[] bindings = new String[_bindings.length * 2];
+            System.arraycopy(_bindings, 0, bindings, 0, _size);
+            _bindings = bindings;
+        }
+        _bindings[_size++] = prefix;
+        _bindings[_size++] = uri;
+    }
+
+    private String lookup(String prefix) {
+        for (int i = _size - 2; i >= 0; i -= 2) {
+            if (_bindings[i].equals(prefix)) return _bindings[i + 1];
+        }
+        return null;
+    }
+
+    private String lookupPrefix(String uri) {
+        for (int i = _size - 2; i >= 0; i -= 2) {
+            String prefix = _bindings[i];
+            if (prefix.length() > 0 && _bindings[i + 1].equals(uri) && uri.equals(lookup(prefix))) return prefix;
+        }
+        return null;
+    }
+
+    private String newPrefix() {
+        String prefix;
+        do {
+            prefix = "ns" + _generated++;
+        } while (lookup(prefix) != null);
+        return prefix;
+    }
+}
@@ -18,6 +18,8 @@
  */
 package org.apache.ode.utils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -30,14 +32,18 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
@@ -83,11 +89,19 @@ public class DOMUtils {
     public static final String NS_URI_XMLNS = "http://www.w3.org/2000/xmlns/";
 
     private static ThreadLocal<Transformer> __txers = new ThreadLocal();
-    private static ThreadLocal<DocumentBuilder> __builders = new ThreadLocal();
     private static TransformerFactory _transformerFactory = TransformerFactory.newInstance();
 
     private static DocumentBuilderFactory __documentBuilderFactory ;
 
+    /** Maximum number of idle document builders and serialization buffers kept around. */
+    private static final int POOL_SIZE = 32;
+    /** Serialization buffers that grew larger than this are left to the garbage collector. */
+    private static final int MAX_POOLED_BUFFER = 256 * 1024;
+
+    private static final BlockingQueue<DocumentBuilder> __builders = new ArrayBlockingQueue<DocumentBuilder>(POOL_SIZE);
+    private static final BlockingQueue<PooledBuffer> __buffers = new ArrayBlockingQueue<PooledBuffer>(POOL_SIZE);
+    private static final XMLOutputFactory __outputFactory = XMLOutputFactory.newInstance();
+
     static {
         initDocumentBuilderFactory();
     }
@@ -468,6 +482,10 @@ public class DOMUtils {
         return value;
     }
 
+    /**
+     * Serialize an element straight to a byte stream, with an XML declaration, in the
+     * encoding of its document or UTF-8.
+     */
     public static void serialize(Element elmt, OutputStream ostr) {
         String usedEncoding = "UTF-8";
         Document parent = elmt.getOwnerDocument();
@@ -477,13 +495,28 @@ public class DOMUtils {
                 usedEncoding = parentEncoding;
             }
         }
+        serialize(elmt, ostr, usedEncoding, true);
+    }
 
-        DOMOutputImpl out = new DOMOutputImpl();
-        out.setEncoding(usedEncoding);
-
-        DOMSerializerImpl ser = new DOMSerializerImpl();
-        out.setByteStream(ostr);
-        ser.write(elmt, out);
+    /**
+     * Serialize a node straight to a byte stream, without any intermediate string.
+     * Namespaces used but not declared in the node are declared in the output.
+     * @param node node to serialize, usually an element or a document
+     * @param ostr stream to write to, flushed but not closed
+     * @param encoding character encoding
+     * @param xmlDeclaration whether to start with an XML declaration
+     */
+    public static void serialize(Node node, OutputStream ostr, String encoding, boolean xmlDeclaration) {
+        try {
+            XMLStreamWriter writer = __outputFactory.createXMLStreamWriter(ostr, encoding);
+            try {
+                new DOMStreamWriter(writer).write(node, encoding, xmlDeclaration);
+            } finally {
+                writer.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new RuntimeException("Couldn't serialize node " + node.getNodeName(), e);
+        }
     }
 
     /**
@@ -609,8 +642,12 @@ public class DOMUtils {
     }
 
     public static Document newDocument() {
-        DocumentBuilder db = getBuilder();
-        return db.newDocument();
+        DocumentBuilder db = borrowBuilder();
+        try {
+            return db.newDocument();
+        } finally {
+            releaseBuilder(db, false);
+        }
     }
 
     /**
@@ -627,8 +664,12 @@ public class DOMUtils {
      * pooled document builder.
      */
     public static Document parse(InputSource inputSource) throws SAXException,IOException{
-        DocumentBuilder db = getBuilder();
-        return db.parse(inputSource);
+        DocumentBuilder db = borrowBuilder();
+        try {
+            return db.parse(inputSource);
+        } finally {
+            releaseBuilder(db, true);
+        }
     }
 
     /**
@@ -667,7 +708,11 @@ public class DOMUtils {
             }
             DOMResult domresult = new DOMResult(newDocument());
             Transformer txer = getTransformer();
-            txer.transform(inputSource, domresult);
+            try {
+                txer.transform(inputSource, domresult);
+            } finally {
+                txer.reset();
+            }
             return (Document) domresult.getNode();
         } catch (SAXException e) {
             throwIOException(e);
@@ -911,17 +956,16 @@ public class DOMUtils {
     }
 
     public static Document toDocumentFromStream(StreamSource source) throws IOException, SAXException {
-        DocumentBuilder builder = getBuilder();
         Document document = null;
         Reader reader = source.getReader();
         if (reader != null) {
-            document = builder.parse(new InputSource(reader));
+            document = parse(new InputSource(reader));
         } else {
             InputStream inputStream = source.getInputStream();
             if (inputStream != null) {
                 InputSource inputsource = new InputSource(inputStream);
                 inputsource.setSystemId( source.getSystemId() );
-                document = builder.parse(inputsource);
+                document = parse(inputsource);
             }
             else {
                 throw new IOException("No input stream or reader available");
@@ -1050,8 +1094,8 @@ public class DOMUtils {
         return txer;
     }
 
-    private static DocumentBuilder getBuilder() {
-        DocumentBuilder builder = __builders.get();
+    private static DocumentBuilder borrowBuilder() {
+        DocumentBuilder builder = __builders.poll();
         if (builder == null) {
             synchronized (__documentBuilderFactory) {
                 try {
@@ -1062,11 +1106,52 @@ public class DOMUtils {
                     throw new RuntimeException(e);
                 }
             }
-            __builders.set(builder);
         }
         return builder;
     }
 
+    /**
+     * Puts a builder back in the pool, reset first if it parsed something so that
+     * no state leaks from one document to the next.
+     */
+    private static void releaseBuilder(DocumentBuilder builder, boolean reset) {
+        if (reset) {
+            try {
+                builder.reset();
+                builder.setErrorHandler(new LoggingErrorHandler());
+            } catch (UnsupportedOperationException e) {
+                // can't be reused safely
+                return;
+            }
+        }
+        __builders.offer(builder);
+    }
+
+    private static PooledBuffer borrowBuffer() {
+        PooledBuffer buffer = __buffers.poll();
+        return buffer == null ? new PooledBuffer() : buffer;
+    }
+
+    private static void releaseBuffer(PooledBuffer buffer) {
+        if (buffer.capacity() <= MAX_POOLED_BUFFER) {
+            buffer.reset();
+            __buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * A byte array stream whose buffer survives a reset, to be used again.
+     */
+    private static class PooledBuffer extends ByteArrayOutputStream {
+        PooledBuffer() {
+            super(4096);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+
     public static List<Element> findChildrenByName(Element parent, QName name) {
         if (parent == null)
             throw new IllegalArgumentException("null parent");
@@ -1276,12 +1361,24 @@ public class DOMUtils {
         }
     }
 
+    /**
+     * Parse XML bytes straight from the array, the encoding being the one of the XML
+     * declaration, UTF-8 by default.
+     */
     public static Element stringToDOM(byte[] bytes) throws SAXException, IOException {
-        return stringToDOM(new String(bytes));
+        return parse(new InputSource(new ByteArrayInputStream(bytes))).getDocumentElement();
     }
 
-    public static byte[] domToBytes(Element element) {
-        String stringifiedElement = domToString(element);
-        return (stringifiedElement != null) ? stringifiedElement.getBytes() : null;
+    /**
+     * Serialize a node to UTF-8 bytes with an XML declaration, through a pooled buffer.
+     */
+    public static byte[] domToBytes(Node node) {
+        PooledBuffer buffer = borrowBuffer();
+        try {
+            serialize(node, buffer, "UTF-8", true);
+            return buffer.toByteArray();
+        } finally {
+            releaseBuffer(buffer);
+        }
     }
 }
@@ -23,6 +23,7 @@ import java.math.BigInteger;
 import java.net.InetAddress;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class is used to generate globally unique IDs. The requirements for
@@ -49,6 +50,12 @@ import java.util.Set;
  *    62    -&gt; zb
  *    63    -&gt; zc
  * </pre>
+ *
+ * Creating a GUID doesn't lock: the counters of a start time are handed out to
+ * threads in chunks through an atomic counter, and each thread then takes ids
+ * from its own chunk. Only when all the counters of a start time are used up is
+ * a new start time established, under a lock. Use {@link #nextId()} when only
+ * the string form is needed.
  */
 public final class GUID implements Cloneable, Comparable, java.io.Serializable {
     static final long serialVersionUID = -7977671257884186039L;
@@ -60,11 +67,24 @@ public final class GUID implements Cloneable, Comparable, java.io.Serializable {
     // 32 bits
     private static final byte[] ipadd = {127,0,0,1};
 
-    // 64 bits
-    private static byte[] baseId = getSystemUniqId();
+    /** Number of counter values used with one start time. */
+    private static final int COUNTERS = Short.MAX_VALUE - Short.MIN_VALUE;
 
-    // 32 bits
-    private static short cnt = Short.MIN_VALUE;
+    /** Number of counter values a thread takes at once. */
+    private static final int CHUNK = 64;
+
+    private static final int RADIX = 34;
+
+    /** Length of the longest string form, a 112 bits number in base 34. */
+    private static final int MAX_CHARS = 23;
+
+    private static volatile StartTime _startTime = new StartTime(toTime(getSystemUniqId()));
+
+    private static final ThreadLocal<Sequence> _sequence = new ThreadLocal<Sequence>() {
+        protected Sequence initialValue() {
+            return new Sequence();
+        }
+    };
 
     private static GUID _VM_GUID;
 
@@ -80,22 +100,28 @@ public final class GUID implements Cloneable, Comparable, java.io.Serializable {
      * Create a new unique GUID
      */
     public GUID() {
-        short c;
-        byte[] b;
-
-        synchronized (GUID.class) {
-            c = ++cnt;
-            b = baseId;
-
-            if (cnt == Short.MAX_VALUE) {
-                cnt = Short.MIN_VALUE;
-                baseId = getSystemUniqId();
-            }
-        }
+        Sequence seq = _sequence.get();
+        short c = seq.next();
+        long time = seq.time;
+
+        id = new byte[] { ipadd[0], ipadd[1], ipadd[2], ipadd[3], (byte) (time >>> 56),
+                (byte) (time >>> 48), (byte) (time >>> 40), (byte) (time >>> 32),
+                (byte) (time >>> 24), (byte) (time >>> 16), (byte) (time >>> 8), (byte) time,
+                (byte) ((c >>> 8) & 0xff), (byte) (c & 0xff) };
+    }
 
-        id = new byte[] { ipadd[0], ipadd[1], ipadd[2], ipadd[3], b[7], b[6],
-                b[5], b[4], b[3], b[2], b[1], b[0], (byte) ((c >>> 8) & 0xff),
-                (byte) (c & 0xff) };
+    /**
+     * Creates a new unique id, the same as <code>new GUID().toString()</code>
+     * without creating the GUID.
+     */
+    public static String nextId() {
+        Sequence seq = _sequence.get();
+        short c = seq.next();
+        long time = seq.time;
+        return format(((ipadd[0] & 0xffL) << 8) | (ipadd[1] & 0xffL),
+                ((ipadd[2] & 0xffL) << 24) | ((ipadd[3] & 0xffL) << 16) | (time >>> 48),
+                (time >>> 16) & 0xffffffffL,
+                ((time & 0xffffL) << 16) | (c & 0xffffL));
     }
 
     /**
@@ -232,8 +258,94 @@ public final class GUID implements Cloneable, Comparable, java.io.Serializable {
     }
 
     private String mapBytesToChars() {
-        BigInteger bigInt = new BigInteger(id);
-        return bigInt.toString(34);
+        if (id.length != 14 || id[0] < 0) {
+            return new BigInteger(id).toString(RADIX);
+        }
+        return format(((id[0] & 0xffL) << 8) | (id[1] & 0xffL), int32(id, 2), int32(id, 6), int32(id, 10));
+    }
+
+    private static long int32(byte[] b, int off) {
+        return ((b[off] & 0xffL) << 24) | ((b[off + 1] & 0xffL) << 16) | ((b[off + 2] & 0xffL) << 8) | (b[off + 3] & 0xffL);
+    }
+
+    /**
+     * Formats a positive 112 bits number, given as 32 bits limbs from the most
+     * significant one, the way {@link BigInteger#toString(int)} does in base 34.
+     */
+    private static String format(long l0, long l1, long l2, long l3) {
+        char[] buf = new char[MAX_CHARS];
+        int pos = buf.length;
+        do {
+            long r = l0 % RADIX;
+            l0 /= RADIX;
+            long n = (r << 32) | l1;
+            l1 = n / RADIX;
+            n = ((n % RADIX) << 32) | l2;
+            l2 = n / RADIX;
+            n = ((n % RADIX) << 32) | l3;
+            l3 = n / RADIX;
+            buf[--pos] = Character.forDigit((int) (n % RADIX), RADIX);
+        } while ((l0 | l1 | l2 | l3) != 0);
+        return new String(buf, pos, buf.length - pos);
+    }
+
+    /**
+     * Start time of the process along with the counter values handed out for it.
+     */
+    private static final class StartTime {
+        final long time;
+        final AtomicInteger allocated = new AtomicInteger();
+
+        StartTime(long time) {
+            this.time = time;
+        }
+    }
+
+    private static long toTime(byte[] uid) {
+        long t = 0;
+        for (int i = uid.length - 1; i >= 0; --i) {
+            t = (t << 8) | (uid[i] & 0xff);
+        }
+        return t;
+    }
+
+    /**
+     * Counter values reserved by a thread.
+     */
+    private static final class Sequence {
+        long time;
+        int next;
+        int end;
+
+        short next() {
+            if (next == end) {
+                reserve();
+            }
+            return (short) (Short.MIN_VALUE + 1 + next++);
+        }
+
+        private void reserve() {
+            for (;;) {
+                StartTime st = _startTime;
+                int start = st.allocated.getAndAdd(CHUNK);
+                if (start < COUNTERS) {
+                    time = st.time;
+                    next = start;
+                    end = Math.min(start + CHUNK, COUNTERS);
+                    return;
+                }
+                synchronized (GUID.class) {
+                    if (_startTime == st) {
+                        // the counters may run out within a millisecond
+                        long time;
+                        do {
+                            time = toTime(getSystemUniqId());
+                        } while (time <= st.time);
+                        _startTime = new StartTime(time);
+                    }
+                }
+            }
+        }
     }
 
     private void stringToBytes(String s) {
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.utils.concurrent;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ode.utils.metrics.Gauge;
+import org.apache.ode.utils.metrics.MetricsRegistry;
+
+/**
+ * Admission control for inbound requests. The server is saturated as soon as
+ * any of its limits is reached, e.g. the scheduler's outstanding jobs, the
+ * transaction latency or the load of the job pool, and stays saturated until
+ * all of them are back under the resume ratio of their limit. Bindings ask
+ * {@link #admit()} before creating a message exchange and turn requests away,
+ * or hold them back, while the server is saturated, rather than piling up
+ * more jobs.
+ *
+ * The limits are sampled at most once per refresh interval, so asking is
+ * cheap. Admission decisions are published in the {@value #METRICS_GROUP}
+ * group of a {@link MetricsRegistry}.
+ */
+public class BackPressure {
+    private static final Log __log = LogFactory.getLog(BackPressure.class);
+
+    public static final String METRICS_GROUP = "admission";
+
+    private final String _name;
+    private final List<Limit> _limits = new CopyOnWriteArrayList<Limit>();
+    private final AtomicLong _admitted = new AtomicLong();
+    private final AtomicLong _rejected = new AtomicLong();
+
+    private volatile double _resumeRatio = 0.8;
+    private volatile long _refreshInterval = 100;
+    private volatile int _retryAfter = 5;
+
+    private volatile long _nextRefresh;
+    private volatile boolean _saturated;
+    private volatile double _saturation;
+    private volatile String _cause;
+
+    public BackPressure(String name) {
+        _name = name;
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    /**
+     * Adds a limit on a sampled value; a limit that isn't positive is ignored.
+     */
+    public void addLimit(String name, Gauge value, double limit) {
+        if (limit <= 0) return;
+        _limits.add(new Limit(name, value, limit));
+    }
+
+    /**
+     * @param resumeRatio fraction of their limit all values must be back under before requests are admitted again
+     */
+    public void setResumeRatio(double resumeRatio) {
+        _resumeRatio = resumeRatio;
+    }
+
+    public void setRefreshInterval(long refreshInterval) {
+        _refreshInterval = refreshInterval;
+    }
+
+    /**
+     * @param retryAfter seconds clients are asked to wait before retrying a rejected request
+     */
+    public void setRetryAfter(int retryAfter) {
+        _retryAfter = retryAfter;
+    }
+
+    public int getRetryAfter() {
+        return _retryAfter;
+    }
+
+    /**
+     * Decides on a request.
+     * @return false if the server is saturated and the request should be turned away
+     */
+    public boolean admit() {
+        refresh(System.currentTimeMillis());
+        return decide();
+    }
+
+    /**
+     * Holds a request back until the server isn't saturated anymore, waiting
+     * at most maxDelay milliseconds.
+     * @return false if the server is still saturated and the request should be turned away
+     */
+    public boolean awaitAdmission(long maxDelay) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + maxDelay;
+        for (;;) {
+            long now = System.currentTimeMillis();
+            refresh(now);
+            if (!_saturated || now >= deadline) return decide();
+            Thread.sleep(Math.max(1, Math.min(_refreshInterval, deadline - now)));
+        }
+    }
+
+    private boolean decide() {
+        if (_saturated) {
+            _rejected.incrementAndGet();
+            return false;
+        }
+        _admitted.incrementAndGet();
+        return true;
+    }
+
+    public boolean isSaturated() {
+        refresh(System.currentTimeMillis());
+        return _saturated;
+    }
+
+    /**
+     * @return the highest ratio of a value to its limit at the last refresh
+     */
+    public double getSaturation() {
+        return _saturation;
+    }
+
+    /**
+     * @return name of the limit that made the server saturated, null when it isn't
+     */
+    public String getCause() {
+        return _cause;
+    }
+
+    public long getAdmittedCount() {
+        return _admitted.get();
+    }
+
+    public long getRejectedCount() {
+        return _rejected.get();
+    }
+
+    private void refresh(long now) {
+        if (now < _nextRefresh) return;
+        synchronized (this) {
+            if (now < _nextRefresh) return;
+            _nextRefresh = now + _refreshInterval;
+
+            double max = 0;
+            Limit highest = null;
+            for (Limit limit : _limits) {
+                double ratio = limit.value.getValue() / limit.limit;
+                if (highest == null || ratio > max) {
+                    max = ratio;
+                    highest = limit;
+                }
+            }
+            _saturation = max;
+            if (!_saturated && max >= 1) {
+                _saturated = true;
+                _cause = highest._name;
+                __log.warn("Server saturated, " + _name + " requests are being turned away: " + highest);
+            } else if (_saturated && max < _resumeRatio) {
+                _saturated = false;
+                _cause = null;
+                __log.info("Server no longer saturated, " + _name + " requests are admitted again.");
+            }
+        }
+    }
+
+    /**
+     * Publishes the admission decisions and the saturation (in percent) to the registry.
+     */
+    public void registerMetrics(MetricsRegistry registry) {
+        if (!registry.isEnabled()) return;
+        registry.gauge(METRICS_GROUP, _name + ".admitted", new Gauge() {
+            public long getValue() {
+                return getAdmittedCount();
+            }
+        });
+        registry.gauge(METRICS_GROUP, _name + ".rejected", new Gauge() {
+            public long getValue() {
+                return getRejectedCount();
+            }
+        });
+        registry.gauge(METRICS_GROUP, _name + ".saturation", new Gauge() {
+            public long getValue() {
+                return Math.round(getSaturation() * 100);
+            }
+        });
+        registry.gauge(METRICS_GROUP, _name + ".saturated", new Gauge() {
+            public long getValue() {
+                return _saturated ? 1 : 0;
+            }
+        });
+    }
+
+    public void unregisterMetrics(MetricsRegistry registry) {
+        for (String metric : new String[] { "admitted", "rejected", "saturation", "saturated" }) {
+            registry.remove(METRICS_GROUP, _name + "." + metric);
+        }
+    }
+
+    public String toString() {
+        return "BackPressure[" + _name + ", saturated=" + _saturated + ", saturation=" + _saturation
+                + ", admitted=" + getAdmittedCount() + ", rejected=" + getRejectedCount() + "]";
+    }
+
+    private static class Limit {
+        final String _name;
+        final Gauge value;
+        final double limit;
+
+        Limit(String name, Gauge value, double limit) {
+            _name = name;
+            this.value = value;
+            this.limit = limit;
+        }
+
+        public String toString() {
+            return _name + " at " + value.getValue() + ", limit " + limit;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.utils.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ode.utils.metrics.Gauge;
+import org.apache.ode.utils.metrics.MetricsRegistry;
+
+/**
+ * Thread pool with a fixed number of threads and a bounded queue, so that one
+ * kind of work can't starve the others of threads or grow without limit.
+ * What happens to work submitted to a saturated pool is decided by its
+ * {@link RejectionPolicy}. Idle threads time out, so an unused pool costs
+ * nothing.
+ *
+ * The pool publishes its saturation as gauges in the
+ * {@value #METRICS_GROUP} group of a {@link MetricsRegistry}.
+ */
+public class BoundedExecutor extends ThreadPoolExecutor {
+    private static final Log __log = LogFactory.getLog(BoundedExecutor.class);
+
+    public static final String METRICS_GROUP = "executor";
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * What to do with a task when all threads are busy and the queue is full.
+     */
+    public enum RejectionPolicy {
+        /** Throw a {@link RejectedExecutionException} back at the submitter. */
+        ABORT,
+        /** Run the task in the submitting thread, slowing the submitter down. */
+        CALLER_RUNS,
+        /** Block the submitting thread until there's room in the queue. */
+        BLOCK
+    }
+
+    private final String _name;
+    private final RejectionPolicy _policy;
+    private final int _queueSize;
+    private final AtomicLong _rejected = new AtomicLong();
+
+    public BoundedExecutor(String name, int threads, int queueSize, RejectionPolicy policy) {
+        this(name, threads, queueSize, policy, false);
+    }
+
+    /**
+     * @param queueSize tasks waiting for a thread; 0 hands tasks directly to an idle thread
+     * @param virtual run tasks on virtual threads when the JVM supports them
+     */
+    public BoundedExecutor(String name, int threads, int queueSize, RejectionPolicy policy, boolean virtual) {
+        super(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, createQueue(queueSize),
+                virtual ? virtualThreadFactory(name) : daemonThreadFactory(name));
+        if (policy == RejectionPolicy.BLOCK && queueSize <= 0)
+            throw new IllegalArgumentException("Executor " + name + " can't block without a queue.");
+        _name = name;
+        _policy = policy;
+        _queueSize = Math.max(queueSize, 0);
+        allowCoreThreadTimeOut(true);
+        setRejectedExecutionHandler(new Rejector());
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public RejectionPolicy getRejectionPolicy() {
+        return _policy;
+    }
+
+    public int getQueueCapacity() {
+        return _queueSize;
+    }
+
+    /**
+     * @return running and queued tasks; reaches the pool size plus the queue capacity when saturated
+     */
+    public int getLoad() {
+        return getActiveCount() + getQueue().size();
+    }
+
+    /**
+     * @return number of tasks that couldn't be queued, whatever became of them
+     */
+    public long getRejectedCount() {
+        return _rejected.get();
+    }
+
+    /**
+     * Publishes the pool's thread, queue and rejection counts to the registry.
+     */
+    public void registerMetrics(MetricsRegistry registry) {
+        if (!registry.isEnabled()) return;
+        registry.gauge(METRICS_GROUP, _name + ".active", new Gauge() {
+            public long getValue() {
+                return getActiveCount();
+            }
+        });
+        registry.gauge(METRICS_GROUP, _name + ".threads", new Gauge() {
+            public long getValue() {
+                return getPoolSize();
+            }
+        });
+        registry.gauge(METRICS_GROUP, _name + ".queued", new Gauge() {
+            public long getValue() {
+                return getQueue().size();
+            }
+        });
+        registry.gauge(METRICS_GROUP, _name + ".rejected", new Gauge() {
+            public long getValue() {
+                return getRejectedCount();
+            }
+        });
+        registry.gauge(METRICS_GROUP, _name + ".completed", new Gauge() {
+            public long getValue() {
+                return getCompletedTaskCount();
+            }
+        });
+    }
+
+    public void unregisterMetrics(MetricsRegistry registry) {
+        for (String metric : new String[] { "active", "threads", "queued", "rejected", "completed" }) {
+            registry.remove(METRICS_GROUP, _name + "." + metric);
+        }
+    }
+
+    public String toString() {
+        return "BoundedExecutor[" + _name + ", threads=" + getMaximumPoolSize() + ", active=" + getActiveCount()
+                + ", queued=" + getQueue().size() + ", rejected=" + getRejectedCount() + ", policy=" + _policy + "]";
+    }
+
+    private class Rejector implements RejectedExecutionHandler {
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            _rejected.incrementAndGet();
+            if (isShutdown())
+                throw new RejectedExecutionException("Executor " + _name + " has been shut down.");
+            switch (_policy) {
+            case CALLER_RUNS:
+                r.run();
+                break;
+            case BLOCK:
+                try {
+                    getQueue().put(r);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("Interrupted while waiting for executor " + _name);
+                }
+                break;
+            default:
+                throw new RejectedExecutionException("Executor " + _name + " is saturated: " + BoundedExecutor.this);
+            }
+        }
+    }
+
+    private static BlockingQueue<Runnable> createQueue(int queueSize) {
+        if (queueSize <= 0) return new SynchronousQueue<Runnable>();
+        return new ArrayBlockingQueue<Runnable>(queueSize);
+    }
+
+    static ThreadFactory daemonThreadFactory(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger _threadNumber = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ODE-" + name + "-" + _threadNumber.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+
+    /**
+     * Builds a factory of named virtual threads through reflection, as we still
+     * compile for JVMs that don't have them; falls back to daemon threads.
+     */
+    static ThreadFactory virtualThreadFactory(String name) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method nameMethod = builderClass.getMethod("name", String.class, long.class);
+            Method factoryMethod = builderClass.getMethod("factory");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = nameMethod.invoke(builder, "ODE-" + name + "-", 1L);
+            return (ThreadFactory) factoryMethod.invoke(builder);
+        } catch (ClassNotFoundException e) {
+            __log.info("Virtual threads aren't available on this JVM, executor " + name + " uses platform threads.");
+        } catch (NoSuchMethodException e) {
+            __log.info("Virtual threads aren't available on this JVM, executor " + name + " uses platform threads.");
+        } catch (Exception e) {
+            __log.warn("Couldn't create virtual threads for executor " + name + ", using platform threads.", e);
+        }
+        return daemonThreadFactory(name);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.utils.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ode.utils.metrics.MetricsRegistry;
+
+/**
+ * The named thread pools of a server. Each kind of work gets its own
+ * {@link BoundedExecutor}, so that a backlog of jobs can't take the threads
+ * needed to answer partners, and a slow partner can't take the threads needed
+ * to run jobs.
+ */
+public class ExecutorRegistry {
+    private static final Log __log = LogFactory.getLog(ExecutorRegistry.class);
+
+    /** Scheduler jobs: process instance execution. */
+    public static final String JOBS = "jobs";
+    /** Blocking calls to external services. */
+    public static final String OUTBOUND = "outbound";
+    /** Hand-off of messages received by the integration layer. */
+    public static final String INBOUND = "inbound";
+    /** Cleanup, replays and other housekeeping. */
+    public static final String MANAGEMENT = "management";
+    /** System cron jobs, kept apart so that housekeeping can't make them misfire. */
+    public static final String CRON = "cron";
+
+    private final Map<String, BoundedExecutor> _executors = new ConcurrentHashMap<String, BoundedExecutor>();
+    private final MetricsRegistry _metrics;
+
+    public ExecutorRegistry() {
+        this(MetricsRegistry.DISABLED);
+    }
+
+    public ExecutorRegistry(MetricsRegistry metrics) {
+        _metrics = metrics == null ? MetricsRegistry.DISABLED : metrics;
+    }
+
+    /**
+     * Creates and registers a pool, replacing (and shutting down) any pool of the same name.
+     */
+    public BoundedExecutor create(String name, int threads, int queueSize, BoundedExecutor.RejectionPolicy policy,
+                                  boolean virtual) {
+        BoundedExecutor exec = new BoundedExecutor(name, threads, queueSize, policy, virtual);
+        exec.registerMetrics(_metrics);
+        BoundedExecutor old = _executors.put(name, exec);
+        if (old != null) {
+            __log.warn("Replacing executor " + old);
+            old.shutdown();
+        }
+        if (__log.isDebugEnabled()) __log.debug("Created " + exec);
+        return exec;
+    }
+
+    /**
+     * @return the named pool, or null if there's none
+     */
+    public BoundedExecutor get(String name) {
+        return _executors.get(name);
+    }
+
+    public List<BoundedExecutor> getExecutors() {
+        return new ArrayList<BoundedExecutor>(_executors.values());
+    }
+
+    /**
+     * Stops all the pools, giving running tasks up to the timeout to finish
+     * before they're interrupted.
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        List<BoundedExecutor> executors = getExecutors();
+        _executors.clear();
+        for (BoundedExecutor exec : executors) exec.shutdown();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (BoundedExecutor exec : executors) {
+            try {
+                long left = deadline - System.nanoTime();
+                if (left <= 0 || !exec.awaitTermination(left, TimeUnit.NANOSECONDS)) {
+                    __log.warn("Executor " + exec.getName() + " didn't terminate in time, interrupting "
+                            + exec.getActiveCount() + " tasks.");
+                    exec.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                exec.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            exec.unregisterMetrics(_metrics);
+        }
+    }
+
+    public void shutdownNow() {
+        List<BoundedExecutor> executors = getExecutors();
+        _executors.clear();
+        for (BoundedExecutor exec : executors) {
+            exec.shutdownNow();
+            exec.unregisterMetrics(_metrics);
+        }
+    }
+}
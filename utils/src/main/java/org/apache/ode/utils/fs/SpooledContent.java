@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.utils.fs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Content written once and read back any number of times, kept on the heap
+ * while it's small and spilled to a file of the {@link TempFileManager} as soon
+ * as it grows past a threshold. Writing goes through {@link #getOutputStream()},
+ * so large content never needs to be materialized in memory in one piece.
+ *
+ * The spill file is deleted by {@link #dispose()}, or at the latest when the
+ * temporary files get cleaned up.
+ */
+public class SpooledContent {
+    private static final Log __log = LogFactory.getLog(SpooledContent.class);
+
+    private final String _handle;
+    private final long _threshold;
+
+    private ByteArrayOutputStream _memory = new ByteArrayOutputStream();
+    private File _file;
+    private OutputStream _fileOut;
+    private long _size;
+    private boolean _writing;
+    private boolean _closed;
+    private boolean _disposed;
+
+    /**
+     * @param handle prefix of the spill file name
+     * @param threshold number of bytes kept in memory before spilling, 0 to spill right away
+     */
+    public SpooledContent(String handle, long threshold) {
+        if (threshold < 0) throw new IllegalArgumentException("Spool threshold can't be negative: " + threshold);
+        _handle = handle;
+        _threshold = threshold;
+    }
+
+    /**
+     * @return the stream to write the content to; closing it seals the content
+     */
+    public synchronized OutputStream getOutputStream() {
+        if (_writing || _closed) throw new IllegalStateException("Content has already been written.");
+        checkDisposed();
+        _writing = true;
+        return new SpoolOutputStream();
+    }
+
+    /**
+     * @return a fresh stream over the whole content
+     */
+    public synchronized InputStream getInputStream() throws IOException {
+        checkReadable();
+        if (_file != null) return new BufferedInputStream(new FileInputStream(_file));
+        return new ByteArrayInputStream(_memory.toByteArray());
+    }
+
+    public synchronized byte[] toByteArray() throws IOException {
+        checkReadable();
+        if (_file == null) return _memory.toByteArray();
+        if (_size > Integer.MAX_VALUE) throw new IOException("Spooled content too large for an array: " + _size);
+        byte[] bytes = new byte[(int) _size];
+        InputStream in = new FileInputStream(_file);
+        try {
+            int off = 0;
+            while (off < bytes.length) {
+                int read = in.read(bytes, off, bytes.length - off);
+                if (read < 0) throw new IOException("Spool file " + _file + " is shorter than expected.");
+                off += read;
+            }
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return number of bytes written so far
+     */
+    public synchronized long getSize() {
+        return _size;
+    }
+
+    /**
+     * @return true if the content went to a file rather than staying in memory
+     */
+    public synchronized boolean isSpooled() {
+        return _file != null;
+    }
+
+    /**
+     * Releases the content and deletes the spill file, if any.
+     */
+    public synchronized void dispose() {
+        if (_disposed) return;
+        _disposed = true;
+        _memory = null;
+        if (_fileOut != null) {
+            try {
+                _fileOut.close();
+            } catch (IOException e) {
+                __log.debug("Couldn't close spool file " + _file, e);
+            }
+            _fileOut = null;
+        }
+        if (_file != null && !_file.delete() && _file.exists()) {
+            __log.warn("Couldn't delete spool file " + _file + ", it will be removed on cleanup.");
+        }
+    }
+
+    private void checkReadable() throws IOException {
+        checkDisposed();
+        if (!_closed) throw new IOException("Content is still being written.");
+    }
+
+    private void checkDisposed() {
+        if (_disposed) throw new IllegalStateException("Content has been disposed.");
+    }
+
+    private synchronized void write(byte[] b, int off, int len) throws IOException {
+        if (_closed) throw new IOException("Stream closed.");
+        checkDisposed();
+        if (_file == null && _size + len > _threshold) {
+            _file = TempFileManager.getTemporaryFile(_handle);
+            _fileOut = new BufferedOutputStream(new FileOutputStream(_file));
+            _memory.writeTo(_fileOut);
+            _memory = null;
+            if (__log.isDebugEnabled()) __log.debug("Spooling content over " + _threshold + " bytes to " + _file);
+        }
+        if (_fileOut != null) _fileOut.write(b, off, len);
+        else _memory.write(b, off, len);
+        _size += len;
+    }
+
+    private synchronized void flush() throws IOException {
+        if (_fileOut != null) _fileOut.flush();
+    }
+
+    private synchronized void close() throws IOException {
+        if (_closed) return;
+        _closed = true;
+        if (_fileOut != null) {
+            _fileOut.close();
+            _fileOut = null;
+        }
+    }
+
+    private class SpoolOutputStream extends OutputStream {
+        private final byte[] _single = new byte[1];
+
+        public void write(int b) throws IOException {
+            _single[0] = (byte) b;
+            SpooledContent.this.write(_single, 0, 1);
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            SpooledContent.this.write(b, off, len);
+        }
+
+        public void flush() throws IOException {
+            SpooledContent.this.flush();
+        }
+
+        public void close() throws IOException {
+            SpooledContent.this.close();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.utils.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free counter. Updates are spread over a few padded cells picked by
+ * thread id so that concurrent writers don't all hit the same cache line;
+ * reads sum the cells up.
+ */
+public class Counter implements CounterMBean {
+    private static final int STRIPES = 16;
+    /** 8 longs (a 64 byte cache line) between two live cells */
+    private static final int PAD = 8;
+
+    private final AtomicLongArray _cells;
+
+    public Counter() {
+        _cells = new AtomicLongArray(STRIPES * PAD);
+    }
+
+    /** Used by the no-op subclass, which never touches the cells. */
+    Counter(boolean allocate) {
+        _cells = allocate ? new AtomicLongArray(STRIPES * PAD) : null;
+    }
+
+    public void inc() {
+        add(1);
+    }
+
+    public void add(long delta) {
+        _cells.addAndGet(((int) Thread.currentThread().getId() & (STRIPES - 1)) * PAD, delta);
+    }
+
+    public long getCount() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += _cells.get(i * PAD);
+        }
+        return sum;
+    }
+
+    public void reset() {
+        for (int i = 0; i < STRIPES; i++) {
+            _cells.set(i * PAD, 0);
+        }
+    }
+
+    public String toString() {
+        return String.valueOf(getCount());
+    }
+}
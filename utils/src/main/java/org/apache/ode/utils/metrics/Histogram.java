@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.utils.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative long values (durations, sizes...) in
+ * the spirit of HdrHistogram: values are counted in log-linear buckets, so
+ * the memory footprint is fixed and percentiles are accurate to within
+ * 1/{@value #SUB_BUCKETS} of the value, whatever the range.
+ */
+public class Histogram implements HistogramMBean {
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray _buckets;
+    private final AtomicLong _count = new AtomicLong();
+    private final AtomicLong _sum = new AtomicLong();
+    private final AtomicLong _min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong _max = new AtomicLong();
+
+    public Histogram() {
+        _buckets = new AtomicLongArray(BUCKETS);
+    }
+
+    /** Used by the no-op subclass, which never records anything. */
+    Histogram(boolean allocate) {
+        _buckets = allocate ? new AtomicLongArray(BUCKETS) : null;
+    }
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        _buckets.incrementAndGet(bucketIndex(value));
+        _count.incrementAndGet();
+        _sum.addAndGet(value);
+        long cur;
+        while (value < (cur = _min.get()) && !_min.compareAndSet(cur, value));
+        while (value > (cur = _max.get()) && !_max.compareAndSet(cur, value));
+    }
+
+    /**
+     * Records the time elapsed since a {@link System#nanoTime()} reading, in microseconds.
+     */
+    public void recordSince(long startNanos) {
+        record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * @return the largest value counted in the given bucket
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        long mantissa = SUB_BUCKETS + (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    public long getCount() {
+        return _count.get();
+    }
+
+    public long getSum() {
+        return _sum.get();
+    }
+
+    public long getMin() {
+        long min = _min.get();
+        return min == Long.MAX_VALUE ? 0 : min;
+    }
+
+    public long getMax() {
+        return _max.get();
+    }
+
+    public double getMean() {
+        long count = _count.get();
+        return count == 0 ? 0 : (double) _sum.get() / count;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return an upper bound of the values below the given percentile
+     */
+    public long getPercentile(double percentile) {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) count += _buckets.get(i);
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+        if (rank == 0) rank = 1;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += _buckets.get(i);
+            if (seen >= rank) return Math.min(bucketUpperBound(i), getMax());
+        }
+        return getMax();
+    }
+
+    public long getPercentile50() {
+        return getPercentile(50);
+    }
+
+    public long getPercentile90() {
+        return getPercentile(90);
+    }
+
+    public long getPercentile99() {
+        return getPercentile(99);
+    }
+
+    public long getPercentile999() {
+        return getPercentile(99.9);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) _buckets.set(i, 0);
+        _count.set(0);
+        _sum.set(0);
+        _min.set(Long.MAX_VALUE);
+        _max.set(0);
+    }
+
+    public String toString() {
+        return "count=" + getCount() + " mean=" + getMean() + " p50=" + getPercentile50()
+                + " p99=" + getPercentile99() + " max=" + getMax();
+    }
+}
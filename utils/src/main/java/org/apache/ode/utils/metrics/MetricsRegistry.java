@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.utils.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Named counters, histograms and gauges, optionally published as MBeans
+ * under the {@value #JMX_DOMAIN} domain with names like
+ * <code>org.apache.ode:type=Metrics,group=engine,name=transactionTime</code>.
+ *
+ * A disabled registry hands out shared no-op metrics and keeps nothing, so
+ * instrumented code pays for at most a virtual call; callers that need to
+ * compute the value (e.g. read the clock) should check {@link #isEnabled()}
+ * first.
+ */
+public class MetricsRegistry {
+    private static final Log __log = LogFactory.getLog(MetricsRegistry.class);
+
+    public static final String JMX_DOMAIN = "org.apache.ode";
+
+    /** Registry that records nothing. */
+    public static final MetricsRegistry DISABLED = new MetricsRegistry(false);
+
+    private static final Counter NOOP_COUNTER = new Counter(false) {
+        public void add(long delta) { }
+        public long getCount() { return 0; }
+        public void reset() { }
+    };
+
+    private static final Histogram NOOP_HISTOGRAM = new Histogram(false) {
+        public void record(long value) { }
+        public void recordSince(long startNanos) { }
+        public long getPercentile(double percentile) { return 0; }
+        public void reset() { }
+    };
+
+    private final boolean _enabled;
+    private final ConcurrentMap<String, Object> _metrics = new ConcurrentHashMap<String, Object>();
+    private volatile MBeanServer _mbeanServer;
+    /** the MBeans this registry exported, others in the domain may belong to another server in the same JVM */
+    private final Set<ObjectName> _exported = Collections.newSetFromMap(new ConcurrentHashMap<ObjectName, Boolean>());
+
+    public MetricsRegistry(boolean enabled) {
+        _enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return _enabled;
+    }
+
+    public Counter counter(String group, String name) {
+        if (!_enabled) return NOOP_COUNTER;
+        String key = key(group, name);
+        Object m = _metrics.get(key);
+        if (m == null) {
+            m = _metrics.putIfAbsent(key, new Counter());
+            if (m == null) {
+                m = _metrics.get(key);
+                export(group, name, m);
+            }
+        }
+        return (Counter) m;
+    }
+
+    public Histogram histogram(String group, String name) {
+        if (!_enabled) return NOOP_HISTOGRAM;
+        String key = key(group, name);
+        Object m = _metrics.get(key);
+        if (m == null) {
+            m = _metrics.putIfAbsent(key, new Histogram());
+            if (m == null) {
+                m = _metrics.get(key);
+                export(group, name, m);
+            }
+        }
+        return (Histogram) m;
+    }
+
+    public void gauge(String group, String name, Gauge gauge) {
+        if (!_enabled) return;
+        if (_metrics.putIfAbsent(key(group, name), gauge) == null) {
+            export(group, name, gauge);
+        }
+    }
+
+    public void remove(String group, String name) {
+        if (_metrics.remove(key(group, name)) != null) {
+            MBeanServer server = _mbeanServer;
+            if (server != null) {
+                try {
+                    ObjectName oname = createObjectName(group, name);
+                    if (_exported.remove(oname)) server.unregisterMBean(oname);
+                } catch (Exception e) {
+                    __log.debug("Couldn't unregister metric " + group + "/" + name, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return snapshot of all the metrics, keyed by group/name
+     */
+    public Map<String, Object> getMetrics() {
+        return Collections.unmodifiableMap(new TreeMap<String, Object>(_metrics));
+    }
+
+    /**
+     * Publishes the existing metrics, and the ones created from now on, to the given MBean server.
+     */
+    public void register(MBeanServer server) {
+        if (!_enabled || server == null) return;
+        _mbeanServer = server;
+        for (Map.Entry<String, Object> e : _metrics.entrySet()) {
+            int slash = e.getKey().indexOf('/');
+            String group = e.getKey().substring(0, slash);
+            String name = e.getKey().substring(slash + 1);
+            export(group, name, e.getValue());
+        }
+    }
+
+    public void unregister() {
+        MBeanServer server = _mbeanServer;
+        _mbeanServer = null;
+        if (server == null) return;
+        for (ObjectName oname : _exported) {
+            try {
+                server.unregisterMBean(oname);
+            } catch (Exception e) {
+                __log.warn("Error unregistering metrics MBean " + oname, e);
+            }
+        }
+        _exported.clear();
+    }
+
+    private void export(String group, String name, Object metric) {
+        MBeanServer server = _mbeanServer;
+        if (server == null) return;
+        try {
+            ObjectName oname = createObjectName(group, name);
+            if (!server.isRegistered(oname)) {
+                StandardMBean mbean;
+                if (metric instanceof Counter) mbean = new StandardMBean((Counter) metric, CounterMBean.class, false);
+                else if (metric instanceof Histogram) mbean = new StandardMBean((Histogram) metric, HistogramMBean.class, false);
+                else mbean = new StandardMBean((Gauge) metric, Gauge.class, false);
+                server.registerMBean(mbean, oname);
+                _exported.add(oname);
+            }
+        } catch (Exception e) {
+            __log.warn("Couldn't register metric " + group + "/" + name + " in JMX.", e);
+        }
+    }
+
+    public static ObjectName createObjectName(String group, String name) throws javax.management.MalformedObjectNameException {
+        return new ObjectName(JMX_DOMAIN + ":type=Metrics,group=" + group + ",name=" + ObjectName.quote(name));
+    }
+
+    private static String key(String group, String name) {
+        return group + "/" + name;
+    }
+}
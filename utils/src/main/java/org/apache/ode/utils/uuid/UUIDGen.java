@@ -39,7 +39,7 @@ public class UUIDGen {
    * @return a new "globally" unique identifier
    */
   public String nextUUID() {
-    return new GUID().toString();
+    return GUID.nextId();
   }
 
 }
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.utils;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class BinaryDeltaTest extends TestCase {
+    private final Random _random = new Random(42);
+
+    private byte[] random(int length) {
+        byte[] data = new byte[length];
+        _random.nextBytes(data);
+        return data;
+    }
+
+    private void assertRoundTrip(byte[] base, byte[] target) {
+        byte[] delta = BinaryDelta.diff(base, target);
+        assertTrue(Arrays.equals(target, BinaryDelta.apply(base, delta)));
+    }
+
+    public void testIdentical() {
+        byte[] base = random(100000);
+        byte[] delta = BinaryDelta.diff(base, base.clone());
+        assertTrue("delta of identical data should be tiny: " + delta.length, delta.length < 32);
+        assertRoundTrip(base, base.clone());
+    }
+
+    public void testSmallChange() {
+        byte[] base = random(100000);
+        byte[] target = base.clone();
+        target[50000] ^= 1;
+        target[70000] ^= 1;
+        byte[] delta = BinaryDelta.diff(base, target);
+        assertTrue("delta too large: " + delta.length, delta.length < 200);
+        assertRoundTrip(base, target);
+    }
+
+    public void testInsertionAndRemoval() {
+        byte[] base = random(50000);
+        byte[] inserted = random(300);
+        byte[] target = new byte[base.length + inserted.length - 1000];
+        // keep the head, insert new bytes, drop 1000 bytes further on
+        System.arraycopy(base, 0, target, 0, 20000);
+        System.arraycopy(inserted, 0, target, 20000, inserted.length);
+        System.arraycopy(base, 21000, target, 20000 + inserted.length, base.length - 21000);
+        byte[] delta = BinaryDelta.diff(base, target);
+        assertTrue("delta too large: " + delta.length, delta.length < 500);
+        assertRoundTrip(base, target);
+    }
+
+    public void testUnrelatedAndTiny() {
+        assertRoundTrip(random(1000), random(2000));
+        assertRoundTrip(new byte[0], random(10));
+        assertRoundTrip(random(10), new byte[0]);
+        assertRoundTrip(random(5), random(100));
+    }
+
+    public void testWrongBase() {
+        byte[] base = random(1000);
+        byte[] delta = BinaryDelta.diff(base, base);
+        try {
+            BinaryDelta.apply(new byte[10], delta);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
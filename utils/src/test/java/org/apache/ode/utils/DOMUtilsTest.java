@@ -20,6 +20,7 @@ package org.apache.ode.utils;
 
 import org.apache.ode.utils.TestResources;
 
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 
 import junit.framework.TestCase;
@@ -64,6 +65,49 @@ public class DOMUtilsTest extends TestCase {
     // TODO check the document itself
   }
 
+  public void testBytesRoundTrip() throws Exception {
+    Element root = DOMUtils.stringToDOM("<a:root xmlns:a='urn:a' xmlns='urn:d'><child x='1' a:y='2'>t &amp; &lt;</child>"
+        + "<b:leaf xmlns:b='urn:b'/><e xmlns=''><![CDATA[cdata]]></e><!--comment--></a:root>");
+    byte[] bytes = DOMUtils.domToBytes(root);
+    assertTrue(new String(bytes, "UTF-8").startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"));
+
+    Element copy = DOMUtils.stringToDOM(bytes);
+    assertEquals("root", copy.getLocalName());
+    assertEquals("urn:a", copy.getNamespaceURI());
+    Element child = DOMUtils.getFirstChildElement(copy);
+    assertEquals("urn:d", child.getNamespaceURI());
+    assertEquals("2", child.getAttributeNS("urn:a", "y"));
+    assertEquals("t & <", child.getTextContent());
+  }
+
+  public void testSerializeDeclaresNamespaces() throws Exception {
+    Document doc = DOMUtils.newDocument();
+    Element root = doc.createElementNS("urn:p", "p:root");
+    doc.appendChild(root);
+    Element child = doc.createElementNS("urn:q", "child");
+    child.setAttributeNS("urn:z", "att", "v");
+    child.setAttributeNS("urn:p", "p:other", "w");
+    root.appendChild(child);
+    child.appendChild(doc.createElementNS(null, "plain"));
+
+    // the DOM declares none of its namespaces
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DOMUtils.serialize(child, out, "UTF-8", false);
+    Element copy = DOMUtils.stringToDOM(out.toByteArray());
+    assertEquals("urn:q", copy.getNamespaceURI());
+    assertEquals("v", copy.getAttributeNS("urn:z", "att"));
+    assertEquals("w", copy.getAttributeNS("urn:p", "other"));
+    assertNull(DOMUtils.getFirstChildElement(copy).getNamespaceURI());
+  }
+
+  public void testSerializeSplitsCData() throws Exception {
+    Document doc = DOMUtils.newDocument();
+    Element root = doc.createElementNS(null, "root");
+    doc.appendChild(root);
+    root.appendChild(doc.createCDATASection("a]]>b"));
+    assertEquals("a]]>b", DOMUtils.stringToDOM(DOMUtils.domToBytes(doc)).getTextContent());
+  }
+
   public void testConcurrentParse() throws Exception {
     final int SIZE = 100;
     Thread[] threads = new Thread[SIZE];
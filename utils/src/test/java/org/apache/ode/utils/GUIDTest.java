@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.utils;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class GUIDTest extends TestCase {
+
+    public void testStringForm() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            GUID g = new GUID();
+            assertEquals(new BigInteger(g.getGuid()).toString(34), g.toString());
+            assertEquals(g, new GUID(g.toString()));
+        }
+    }
+
+    public void testNextId() throws Exception {
+        String id = GUID.nextId();
+        GUID g = new GUID(id);
+        assertEquals(id, g.toString());
+        assertFalse(id.equals(GUID.nextId()));
+    }
+
+    public void testUniqueAcrossThreads() throws Exception {
+        final int threads = 8;
+        final int perThread = 50000;
+        final List<Set<String>> ids = Collections.synchronizedList(new ArrayList<Set<String>>());
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread() {
+                public void run() {
+                    Set<String> mine = new HashSet<String>(perThread * 2);
+                    for (int i = 0; i < perThread; i++) {
+                        mine.add(i % 2 == 0 ? GUID.nextId() : new GUID().toString());
+                    }
+                    ids.add(mine);
+                }
+            };
+            workers[t].start();
+        }
+        Set<String> all = new HashSet<String>(threads * perThread * 2);
+        for (Thread w : workers) w.join();
+        for (Set<String> mine : ids) {
+            assertEquals(perThread, mine.size());
+            all.addAll(mine);
+        }
+        assertEquals(threads * perThread, all.size());
+    }
+}
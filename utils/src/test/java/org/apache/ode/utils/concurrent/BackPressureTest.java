@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.utils.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.TestCase;
+
+import org.apache.ode.utils.metrics.Gauge;
+import org.apache.ode.utils.metrics.MetricsRegistry;
+
+/**
+ * Test case for {@link BackPressure}.
+ */
+public class BackPressureTest extends TestCase {
+
+    private final AtomicLong _jobs = new AtomicLong();
+    private final AtomicLong _latency = new AtomicLong();
+    private BackPressure _bp;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        _bp = new BackPressure("test");
+        _bp.addLimit("jobs", gauge(_jobs), 100);
+        _bp.addLimit("latency", gauge(_latency), 1000);
+        _bp.addLimit("disabled", gauge(_jobs), 0);
+        _bp.setResumeRatio(0.5);
+        _bp.setRefreshInterval(0);
+    }
+
+    private static Gauge gauge(final AtomicLong value) {
+        return new Gauge() {
+            public long getValue() {
+                return value.get();
+            }
+        };
+    }
+
+    public void testSaturatesOnAnyLimit() {
+        _jobs.set(99);
+        assertFalse(_bp.isSaturated());
+        assertEquals(0.99, _bp.getSaturation(), 0.001);
+
+        _latency.set(1000);
+        assertTrue(_bp.isSaturated());
+        assertEquals("latency", _bp.getCause());
+    }
+
+    public void testResumesBelowRatio() {
+        _jobs.set(150);
+        assertTrue(_bp.isSaturated());
+        assertEquals("jobs", _bp.getCause());
+
+        _jobs.set(60);
+        assertTrue("hysteresis", _bp.isSaturated());
+
+        _jobs.set(40);
+        assertFalse(_bp.isSaturated());
+        assertNull(_bp.getCause());
+    }
+
+    public void testAdmissionCounts() throws Exception {
+        assertTrue(_bp.admit());
+        assertTrue(_bp.awaitAdmission(0));
+
+        _jobs.set(100);
+        assertFalse(_bp.admit());
+        assertFalse(_bp.awaitAdmission(0));
+        assertEquals(2, _bp.getAdmittedCount());
+        assertEquals(2, _bp.getRejectedCount());
+    }
+
+    public void testAwaitAdmission() throws Exception {
+        _jobs.set(100);
+        assertFalse(_bp.awaitAdmission(20));
+
+        new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+                _jobs.set(0);
+            }
+        }.start();
+        assertTrue(_bp.awaitAdmission(10000));
+    }
+
+    public void testMetrics() {
+        MetricsRegistry registry = new MetricsRegistry(true);
+        _bp.registerMetrics(registry);
+        _jobs.set(100);
+        _bp.admit();
+        assertEquals(1, gauge(registry, "test.rejected").getValue());
+        assertEquals(1, gauge(registry, "test.saturated").getValue());
+        assertEquals(100, gauge(registry, "test.saturation").getValue());
+        _bp.unregisterMetrics(registry);
+        assertFalse(registry.getMetrics().containsKey("admission/test.rejected"));
+    }
+
+    private static Gauge gauge(MetricsRegistry registry, String name) {
+        return (Gauge) registry.getMetrics().get(BackPressure.METRICS_GROUP + "/" + name);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.utils.concurrent;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+import org.apache.ode.utils.metrics.Gauge;
+import org.apache.ode.utils.metrics.MetricsRegistry;
+
+/**
+ * Test case for {@link BoundedExecutor} and {@link ExecutorRegistry}.
+ */
+public class BoundedExecutorTest extends TestCase {
+
+    private final CountDownLatch _release = new CountDownLatch(1);
+
+    private final Runnable _blocker = new Runnable() {
+        public void run() {
+            try {
+                _release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    };
+
+    public void testAbortWhenSaturated() throws Exception {
+        BoundedExecutor exec = new BoundedExecutor("test", 1, 1, BoundedExecutor.RejectionPolicy.ABORT);
+        try {
+            exec.execute(_blocker);
+            exec.execute(_blocker);
+            try {
+                exec.execute(_blocker);
+                fail("Saturated executor accepted a task");
+            } catch (RejectedExecutionException e) {
+                // expected
+            }
+            assertEquals(1, exec.getRejectedCount());
+            assertEquals(1, exec.getQueue().size());
+        } finally {
+            _release.countDown();
+            exec.shutdown();
+        }
+        assertTrue(exec.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(2, exec.getCompletedTaskCount());
+    }
+
+    public void testCallerRuns() throws Exception {
+        BoundedExecutor exec = new BoundedExecutor("test", 1, 0, BoundedExecutor.RejectionPolicy.CALLER_RUNS);
+        try {
+            exec.execute(_blocker);
+            final AtomicReference<Thread> ranIn = new AtomicReference<Thread>();
+            exec.execute(new Runnable() {
+                public void run() {
+                    ranIn.set(Thread.currentThread());
+                }
+            });
+            assertSame(Thread.currentThread(), ranIn.get());
+            assertEquals(1, exec.getRejectedCount());
+        } finally {
+            _release.countDown();
+            exec.shutdown();
+        }
+    }
+
+    public void testBlockUntilQueued() throws Exception {
+        final BoundedExecutor exec = new BoundedExecutor("test", 1, 1, BoundedExecutor.RejectionPolicy.BLOCK);
+        try {
+            exec.execute(_blocker);
+            exec.execute(_blocker);
+            final CountDownLatch submitted = new CountDownLatch(1);
+            Thread submitter = new Thread() {
+                public void run() {
+                    exec.execute(_blocker);
+                    submitted.countDown();
+                }
+            };
+            submitter.start();
+            assertFalse(submitted.await(200, TimeUnit.MILLISECONDS));
+            _release.countDown();
+            assertTrue(submitted.await(5, TimeUnit.SECONDS));
+        } finally {
+            _release.countDown();
+            exec.shutdown();
+        }
+        assertTrue(exec.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(3, exec.getCompletedTaskCount());
+    }
+
+    public void testRegistry() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry(true);
+        ExecutorRegistry registry = new ExecutorRegistry(metrics);
+        BoundedExecutor jobs = registry.create(ExecutorRegistry.JOBS, 2, 10, BoundedExecutor.RejectionPolicy.BLOCK, false);
+        registry.create(ExecutorRegistry.OUTBOUND, 2, 0, BoundedExecutor.RejectionPolicy.ABORT, true);
+        assertSame(jobs, registry.get(ExecutorRegistry.JOBS));
+        assertNull(registry.get(ExecutorRegistry.INBOUND));
+
+        jobs.execute(_blocker);
+        jobs.execute(_blocker);
+        jobs.execute(_blocker);
+        Gauge queued = (Gauge) metrics.getMetrics().get("executor/jobs.queued");
+        assertEquals(1, queued.getValue());
+
+        final CountDownLatch ran = new CountDownLatch(1);
+        registry.get(ExecutorRegistry.OUTBOUND).execute(new Runnable() {
+            public void run() {
+                ran.countDown();
+            }
+        });
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+
+        _release.countDown();
+        registry.shutdown(5, TimeUnit.SECONDS);
+        assertTrue(jobs.isTerminated());
+        assertNull(registry.get(ExecutorRegistry.JOBS));
+        assertFalse(metrics.getMetrics().containsKey("executor/jobs.queued"));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.utils.fs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+
+import junit.framework.TestCase;
+
+public class SpooledContentTest extends TestCase {
+
+    protected void tearDown() throws Exception {
+        TempFileManager.cleanup();
+        super.tearDown();
+    }
+
+    public void testSmallContentStaysInMemory() throws Exception {
+        SpooledContent content = write(new SpooledContent("spool-test", 100), bytes(50));
+        assertFalse(content.isSpooled());
+        assertEquals(50, content.getSize());
+        assertContent(bytes(50), content);
+    }
+
+    public void testLargeContentIsSpooled() throws Exception {
+        SpooledContent content = write(new SpooledContent("spool-test", 100), bytes(1000));
+        assertTrue(content.isSpooled());
+        assertEquals(1000, content.getSize());
+        assertContent(bytes(1000), content);
+        // can be read more than once
+        assertContent(bytes(1000), content);
+    }
+
+    public void testZeroThresholdAlwaysSpools() throws Exception {
+        SpooledContent content = write(new SpooledContent("spool-test", 0), bytes(1));
+        assertTrue(content.isSpooled());
+        assertContent(bytes(1), content);
+    }
+
+    public void testDisposeDeletesFile() throws Exception {
+        SpooledContent content = write(new SpooledContent("spool-test", 10), bytes(100));
+        File file = spoolFile(content);
+        assertTrue(file.exists());
+        content.dispose();
+        assertFalse(file.exists());
+        try {
+            content.getInputStream();
+            fail("Disposed content shouldn't be readable.");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    public void testNotReadableWhileWriting() throws Exception {
+        SpooledContent content = new SpooledContent("spool-test", 10);
+        OutputStream out = content.getOutputStream();
+        out.write(bytes(5));
+        try {
+            content.getInputStream();
+            fail("Content shouldn't be readable before the stream is closed.");
+        } catch (IOException e) {
+            // expected
+        }
+        out.close();
+        assertContent(bytes(5), content);
+        try {
+            content.getOutputStream();
+            fail("Content can only be written once.");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    private static SpooledContent write(SpooledContent content, byte[] data) throws IOException {
+        OutputStream out = content.getOutputStream();
+        // write in chunks so the spill happens in the middle of a write sequence
+        for (int i = 0; i < data.length; i += 7) {
+            out.write(data, i, Math.min(7, data.length - i));
+        }
+        out.close();
+        return content;
+    }
+
+    private static void assertContent(byte[] expected, SpooledContent content) throws IOException {
+        assertTrue(java.util.Arrays.equals(expected, content.toByteArray()));
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        InputStream in = content.getInputStream();
+        try {
+            int b;
+            while ((b = in.read()) >= 0) read.write(b);
+        } finally {
+            in.close();
+        }
+        assertTrue(java.util.Arrays.equals(expected, read.toByteArray()));
+    }
+
+    private static byte[] bytes(int size) {
+        byte[] b = new byte[size];
+        for (int i = 0; i < size; i++) b[i] = (byte) i;
+        return b;
+    }
+
+    private static File spoolFile(SpooledContent content) throws Exception {
+        Field f = SpooledContent.class.getDeclaredField("_file");
+        f.setAccessible(true);
+        return (File) f.get(content);
+    }
+}
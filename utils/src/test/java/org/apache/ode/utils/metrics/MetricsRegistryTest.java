@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ode.utils.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+/**
+ * Test case for {@link MetricsRegistry}, {@link Counter} and {@link Histogram}.
+ */
+public class MetricsRegistryTest extends TestCase {
+
+    public void testHistogramPercentiles() {
+        Histogram h = new Histogram();
+        for (long i = 1; i <= 1000; i++) h.record(i);
+        assertEquals(1000, h.getCount());
+        assertEquals(1, h.getMin());
+        assertEquals(1000, h.getMax());
+        assertEquals(500.5, h.getMean(), 0.001);
+        // bucket upper bounds are within 1/16th of the actual value
+        assertTrue(h.getPercentile50() >= 500 && h.getPercentile50() <= 500 + 500 / 16);
+        assertTrue(h.getPercentile99() >= 990 && h.getPercentile99() <= 1000);
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getPercentile99());
+    }
+
+    public void testBucketBounds() {
+        long[] values = { 0, 1, 15, 16, 17, 31, 32, 1000, 123456789L, Long.MAX_VALUE };
+        for (long v : values) {
+            int idx = Histogram.bucketIndex(v);
+            assertTrue(idx >= 0 && idx < Histogram.BUCKETS);
+            assertTrue("value " + v, Histogram.bucketUpperBound(idx) >= v);
+            if (idx > 0) assertTrue("value " + v, Histogram.bucketUpperBound(idx - 1) < v);
+        }
+    }
+
+    public void testCounter() throws Exception {
+        final Counter c = new Counter();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                public void run() {
+                    for (int i = 0; i < 10000; i++) c.inc();
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads) t.join();
+        assertEquals(40000, c.getCount());
+    }
+
+    public void testDisabled() {
+        MetricsRegistry reg = new MetricsRegistry(false);
+        reg.counter("engine", "c").inc();
+        reg.histogram("engine", "h").record(10);
+        assertEquals(0, reg.counter("engine", "c").getCount());
+        assertEquals(0, reg.histogram("engine", "h").getCount());
+        assertTrue(reg.getMetrics().isEmpty());
+    }
+
+    public void testJmxExport() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        MetricsRegistry reg = new MetricsRegistry(true);
+        reg.counter("test", "before").add(3);
+        reg.register(server);
+        try {
+            reg.histogram("test", "{urn:ns}process-1").record(42);
+            assertEquals(3L, server.getAttribute(MetricsRegistry.createObjectName("test", "before"), "Count"));
+            assertEquals(1L, server.getAttribute(MetricsRegistry.createObjectName("test", "{urn:ns}process-1"), "Count"));
+            assertEquals(2, server.queryNames(new ObjectName("org.apache.ode:type=Metrics,group=test,*"), null).size());
+        } finally {
+            reg.unregister();
+        }
+        assertEquals(0, server.queryNames(new ObjectName("org.apache.ode:type=Metrics,group=test,*"), null).size());
+    }
+
+    public void testUnregisterOnlyOwnMBeans() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        MetricsRegistry first = new MetricsRegistry(true);
+        MetricsRegistry second = new MetricsRegistry(true);
+        first.register(server);
+        second.register(server);
+        try {
+            first.counter("test", "first").inc();
+            second.counter("test", "second").inc();
+            first.unregister();
+            assertFalse(server.isRegistered(MetricsRegistry.createObjectName("test", "first")));
+            assertTrue(server.isRegistered(MetricsRegistry.createObjectName("test", "second")));
+        } finally {
+            first.unregister();
+            second.unregister();
+        }
+        assertFalse(server.isRegistered(MetricsRegistry.createObjectName("test", "second")));
+    }
+}